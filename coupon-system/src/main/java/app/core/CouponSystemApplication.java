@@ -1,23 +1,46 @@
 package app.core;
 
+import java.io.IOException;
+import java.net.URI;
 import java.time.LocalDate;
+import java.util.UUID;
 
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import app.core.beans.IdempotencyStore;
 import app.core.beans.LoginManager;
+import app.core.beans.RateLimiter;
+import app.core.controllers.CustomerController;
+import app.core.dto.ClientIdentity;
 import app.core.entities.Company;
 import app.core.entities.Coupon;
 import app.core.entities.Customer;
 import app.core.enums.Category;
 import app.core.enums.ClientType;
+import app.core.filters.IdempotencyFilter;
+import app.core.filters.RateLimitFilter;
 import app.core.filters.TokenFilter;
-import app.core.jwt.JwtUtil;
+import app.core.jwt.VerifiedTokenCache;
 import app.core.services.AdminService;
 import app.core.services.CompanyService;
 import app.core.services.CustomerService;
@@ -25,6 +48,7 @@ import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
 @SpringBootApplication
 @EnableSwagger2
+@EnableScheduling
 public class CouponSystemApplication {
 
 	public static void main(String[] args) {
@@ -43,6 +67,8 @@ public class CouponSystemApplication {
 
 						.allowedHeaders("*")
 
+						.exposedHeaders(CustomerController.NEXT_CURSOR_HEADER)
+
 						.maxAge(3600)
 
 						.allowedMethods("GET", "POST", "PUT", "DELETE");
@@ -52,16 +78,58 @@ public class CouponSystemApplication {
 	}
 
 	@Bean
-	public FilterRegistrationBean<TokenFilter> tokenFilterRegistration(JwtUtil jwtUtil) {
+	public FilterRegistrationBean<TokenFilter> tokenFilterRegistration(VerifiedTokenCache tokenCache) {
 		FilterRegistrationBean<TokenFilter> filterRegistrationBean = new FilterRegistrationBean<>();
-		TokenFilter tokenFilter = new TokenFilter(jwtUtil);
+		TokenFilter tokenFilter = new TokenFilter(tokenCache);
 		filterRegistrationBean.setFilter(tokenFilter);
-		filterRegistrationBean.addUrlPatterns("/api/**");
+		filterRegistrationBean.addUrlPatterns("/api/*");
+		filterRegistrationBean.setOrder(1);
+		return filterRegistrationBean;
+	}
+
+	@Bean
+	public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimiter rateLimiter,
+			ObjectMapper objectMapper) {
+		FilterRegistrationBean<RateLimitFilter> filterRegistrationBean = new FilterRegistrationBean<>();
+		filterRegistrationBean.setFilter(new RateLimitFilter(rateLimiter, objectMapper));
+		filterRegistrationBean.addUrlPatterns("/api/login", "/api/customer/*");
+		// after token filter (purchase is limited by customer id of the token)
+		filterRegistrationBean.setOrder(2);
+		return filterRegistrationBean;
+	}
+
+	@Bean
+	public FilterRegistrationBean<IdempotencyFilter> idempotencyFilterRegistration(IdempotencyStore idempotencyStore) {
+		FilterRegistrationBean<IdempotencyFilter> filterRegistrationBean = new FilterRegistrationBean<>();
+		filterRegistrationBean.setFilter(new IdempotencyFilter(idempotencyStore));
+		filterRegistrationBean.addUrlPatterns("/api/customer/*", "/api/admin/add/company");
+		filterRegistrationBean.setOrder(3);
 		return filterRegistrationBean;
 	}
 
 	/**
-	 * Initializing DB with data.
+	 * Hibernate second level cache regions (see ehcache.xml) in cache manager of
+	 * its own, that is closed together with the session factory (application
+	 * contexts in the same JVM do not share, nor close, regions of each other).
+	 * 
+	 * @param config specified ehcache configuration.
+	 * @return hibernate properties customizer.
+	 * @throws IOException if failed to read the configuration.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.cache.use_second_level_cache", havingValue = "true")
+	public HibernatePropertiesCustomizer secondLevelCacheManager(
+			@Value("${app.cache.config:classpath:ehcache.xml}") Resource config) throws IOException {
+		EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching
+				.getCachingProvider(EhcacheCachingProvider.class.getName());
+		CacheManager cacheManager = provider.getCacheManager(URI.create("coupon-system:" + UUID.randomUUID()),
+				new XmlConfiguration(config.getURL(), getClass().getClassLoader()));
+		return properties -> properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+	}
+
+	/**
+	 * Initializing DB with data (only one node of the cluster should do it, see
+	 * {@code app.seed.enabled}).
 	 * 
 	 * @param adminService
 	 * @param companyService
@@ -69,15 +137,15 @@ public class CouponSystemApplication {
 	 * @return
 	 */
 	@Bean
-	CommandLineRunner initDB(LoginManager manager) {
+	@ConditionalOnProperty(name = "app.seed.enabled", matchIfMissing = true)
+	CommandLineRunner initDB(LoginManager manager, AdminService adminService, CompanyService companyService,
+			CustomerService customerService) {
 		CommandLineRunner runner = new CommandLineRunner() {
 
 			@Override
 			public void run(String... args) throws Exception {
 
 				////////////////////////////// - Administrator - ///////////////////////////////
-				AdminService adminService = (AdminService) manager.login("admin@admin.com", "admin",
-						ClientType.ADMINISTRATOR);
 				Company company1 = new Company(0, "FORD", "ford@mail.com", "fordp");
 				Company company2 = new Company(0, "BUG", "bug@mail.co.il", "bugp");
 
@@ -101,26 +169,20 @@ public class CouponSystemApplication {
 						LocalDate.of(2020, 3, 15), LocalDate.of(now.getYear(), now.getMonth(), now.getDayOfMonth()), 22,
 						11.99, "expired image");
 
-				CompanyService companyService = (CompanyService) manager.login("ford@mail.com", "fordp",
-						ClientType.COMPANY);
-				Company currentCompany = companyService.getCompanyByEmailAndPassword("ford@mail.com", "fordp");
+				ClientIdentity currentCompany = manager.login("ford@mail.com", "fordp", ClientType.COMPANY);
 				coupon1 = companyService.addCoupon(currentCompany.getId(), coupon1);
 
-				companyService = (CompanyService) manager.login("bug@mail.co.il", "bugp", ClientType.COMPANY);
-				currentCompany = companyService.getCompanyByEmailAndPassword("bug@mail.co.il", "bugp");
+				currentCompany = manager.login("bug@mail.co.il", "bugp", ClientType.COMPANY);
 				coupon2 = companyService.addCoupon(currentCompany.getId(), coupon2);
 				coupon3 = companyService.addCoupon(currentCompany.getId(), coupon3);
 
 				////////////////////////////// - Customer - ///////////////////////////////
-				CustomerService customerService = (CustomerService) manager.login("david@mail.com", "david",
-						ClientType.CUSTOMER);
-				Customer currentCustomer = customerService.getCustomerByEmailAndPassword("david@mail.com", "david");
+				ClientIdentity currentCustomer = manager.login("david@mail.com", "david", ClientType.CUSTOMER);
 				coupon1 = customerService.purchaseCoupon(currentCustomer.getId(), coupon1);
 				coupon2 = customerService.purchaseCoupon(currentCustomer.getId(), coupon2);
 				coupon3 = customerService.purchaseCoupon(currentCustomer.getId(), coupon3);
 
-				customerService = (CustomerService) manager.login("ruth@mail.com", "ruth", ClientType.CUSTOMER);
-				currentCustomer = customerService.getCustomerByEmailAndPassword("ruth@mail.com", "ruth");
+				currentCustomer = manager.login("ruth@mail.com", "ruth", ClientType.CUSTOMER);
 				coupon2 = customerService.purchaseCoupon(currentCustomer.getId(), coupon2);
 				coupon1 = customerService.purchaseCoupon(currentCustomer.getId(), coupon1);
 				coupon3 = customerService.purchaseCoupon(currentCustomer.getId(), coupon3);
@@ -0,0 +1,110 @@
+package app.core.aspects;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.persistence.OptimisticLockException;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.hibernate.StaleStateException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import app.core.exceptions.StaleVersionException;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The class {@code ConflictRetryAspect} retries operations marked by
+ * {@link RetryOnConflict} when they failed on optimistic locking conflict.
+ * 
+ * <p>
+ * The aspect is ordered before the transaction interceptor, so each attempt
+ * runs in its own transaction and reads fresh state. Attempts are separated by
+ * random (jittered) backoff that grows exponentially up to the configured
+ * maximum, and exhausted operation fails with {@link StaleVersionException}.
+ * Operations called inside an already running transaction are not retried
+ * (that transaction is already marked for rollback). Conflicts, retries and
+ * exhausted operations are counted per operation.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConflictRetryAspect {
+
+	private MeterRegistry meterRegistry;
+	private int maxAttempts;
+	private long backoffMS;
+	private long maxBackoffMS;
+
+	public ConflictRetryAspect(MeterRegistry meterRegistry,
+			@Value("${app.retry.conflict.maxAttempts:4}") int maxAttempts,
+			@Value("${app.retry.conflict.backoffMS:10}") long backoffMS,
+			@Value("${app.retry.conflict.maxBackoffMS:200}") long maxBackoffMS) {
+		this.meterRegistry = meterRegistry;
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.backoffMS = backoffMS;
+		this.maxBackoffMS = maxBackoffMS;
+	}
+
+	@Around("@annotation(app.core.aspects.RetryOnConflict)")
+	public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+		if (TransactionSynchronizationManager.isActualTransactionActive())
+			return joinPoint.proceed();
+
+		String operation = operationName(joinPoint);
+		for (int attempt = 1;; attempt++) {
+			try {
+				return joinPoint.proceed();
+			} catch (Throwable e) {
+				if (!isConflict(e))
+					throw e;
+
+				meterRegistry.counter("coupon.conflict.conflicts", "operation", operation).increment();
+				if (attempt >= maxAttempts) {
+					meterRegistry.counter("coupon.conflict.exhausted", "operation", operation).increment();
+					throw new StaleVersionException("operation " + operation
+							+ " failed: data was modified concurrently, please try again!", e);
+				}
+
+				meterRegistry.counter("coupon.conflict.retries", "operation", operation).increment();
+				Thread.sleep(backoff(attempt));
+			}
+		}
+	}
+
+	// full jitter: random delay in [0, min(max, base * 2^(attempt - 1))]
+	private long backoff(int attempt) {
+		long ceiling = Math.min(maxBackoffMS, backoffMS << Math.min(attempt - 1, 20));
+		return ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	private static boolean isConflict(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof OptimisticLockingFailureException || cause instanceof OptimisticLockException
+					|| cause instanceof StaleStateException)
+				return true;
+			if (cause.getCause() == cause)
+				break;
+		}
+		return false;
+	}
+
+	private static String operationName(ProceedingJoinPoint joinPoint) {
+		MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+		RetryOnConflict retryOnConflict = signature.getMethod().getAnnotation(RetryOnConflict.class);
+		if (retryOnConflict != null && !retryOnConflict.value().isEmpty())
+			return retryOnConflict.value();
+
+		return signature.getDeclaringType().getSimpleName() + "." + signature.getName();
+	}
+
+}
@@ -0,0 +1,31 @@
+package app.core.aspects;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks service operation that should be retried (in a new transaction) when it
+ * failed because the entities it modified were updated concurrently (optimistic
+ * locking conflict).
+ * 
+ * @author Vitaly Zlobin
+ *
+ * @see ConflictRetryAspect
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+
+	/**
+	 * Returns name of the operation that is used in conflict and retry metrics.
+	 * If empty - name of the class and method is used.
+	 * 
+	 * @return name of the operation.
+	 */
+	String value() default "";
+
+}
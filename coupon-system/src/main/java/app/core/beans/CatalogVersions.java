@@ -0,0 +1,208 @@
+package app.core.beans;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * The class {@code CatalogVersions} holds monotonically increasing versions of
+ * the catalog (every change), of each company (its coupons) and of each
+ * customer (its purchases), so lists of coupons, companies and customers are
+ * tagged ({@code ETag}) and revalidated ({@code If-None-Match}) without
+ * touching the storage.
+ * 
+ * <p>
+ * Versions are bumped by the services once the change is committed, and tags
+ * are taken before the list is read, so list read before the change is never
+ * tagged with version after it. Coupons purchased by customer show the stock
+ * of coupons of any company, so tag of customer also changes with every change
+ * of existing coupon (update, delete, purchase or set-based job). Versions of
+ * companies and customers are held in fixed count of counters (by id): company
+ * or customer that shares counter with other one is just revalidated more
+ * often.
+ * 
+ * <p>
+ * Versions are held in memory of each node: tag holds random epoch of the node
+ * (tag of other node or of previous start never matches), but changes made by
+ * other node (or by the leader, see {@link LeaderElection}, for set-based
+ * jobs) are not seen by this node. Such change is seen when tags expire, at
+ * most {@code ttlMS} later (as changes seen by second level cache of each
+ * node).
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class CatalogVersions {
+
+	// counters of companies and of customers, by id
+	private static final int STRIPES = 4096;
+
+	private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+	private final AtomicLong catalog = new AtomicLong();
+	// changes of existing coupons
+	private final AtomicLong coupons = new AtomicLong();
+	// set-based changes of coupons (of any company)
+	private final AtomicLong jobs = new AtomicLong();
+	private final AtomicLongArray companies = new AtomicLongArray(STRIPES);
+	private final AtomicLongArray customers = new AtomicLongArray(STRIPES);
+	private long ttlMS;
+
+	public CatalogVersions(@Value("${app.catalog.etag.ttlMS:60000}") long ttlMS) {
+		this.ttlMS = Math.max(1, ttlMS);
+	}
+
+	/**
+	 * Returns tag of the catalog: changes with every change of coupons,
+	 * companies or customers.
+	 * 
+	 * @return tag of the catalog.
+	 */
+	public String catalogTag() {
+		return tag('a', catalog.get(), 0);
+	}
+
+	/**
+	 * Returns tag of coupons of specified by id company.
+	 * 
+	 * @param companyId specified company id.
+	 * @return tag of coupons of the company.
+	 */
+	public String companyTag(int companyId) {
+		return tag('c', companies.get(stripe(companyId)), jobs.get());
+	}
+
+	/**
+	 * Returns tag of coupons purchased by specified by id customer.
+	 * 
+	 * @param customerId specified customer id.
+	 * @return tag of coupons of the customer.
+	 */
+	public String customerTag(int customerId) {
+		return tag('p', customers.get(stripe(customerId)), coupons.get());
+	}
+
+	/**
+	 * Bumps versions changed by coupon added to specified by id company, once
+	 * current transaction is committed.
+	 * 
+	 * @param companyId specified company id.
+	 */
+	public void couponAdded(int companyId) {
+		afterCommit(() -> {
+			companies.incrementAndGet(stripe(companyId));
+			catalog.incrementAndGet();
+		});
+	}
+
+	/**
+	 * Bumps versions changed by coupon (updated or deleted) of specified by id
+	 * company, once current transaction is committed.
+	 * 
+	 * @param companyId specified company id.
+	 */
+	public void couponChanged(int companyId) {
+		afterCommit(() -> {
+			companies.incrementAndGet(stripe(companyId));
+			coupons.incrementAndGet();
+			catalog.incrementAndGet();
+		});
+	}
+
+	/**
+	 * Bumps versions changed by purchase of coupon of specified by id company by
+	 * specified by id customer, once current transaction (if any) is committed.
+	 * 
+	 * @param companyId  specified company id.
+	 * @param customerId specified customer id.
+	 */
+	public void couponPurchased(int companyId, int customerId) {
+		afterCommit(() -> {
+			companies.incrementAndGet(stripe(companyId));
+			customers.incrementAndGet(stripe(customerId));
+			coupons.incrementAndGet();
+			catalog.incrementAndGet();
+		});
+	}
+
+	/**
+	 * Bumps versions changed by set-based change of coupons of any company
+	 * (expired or stock of hot coupons flushed), once current transaction is
+	 * committed.
+	 */
+	public void couponsChanged() {
+		afterCommit(() -> {
+			jobs.incrementAndGet();
+			coupons.incrementAndGet();
+			catalog.incrementAndGet();
+		});
+	}
+
+	/**
+	 * Bumps versions changed by specified by id company (added or updated), once
+	 * current transaction is committed.
+	 * 
+	 * @param companyId specified company id.
+	 */
+	public void companyChanged(int companyId) {
+		afterCommit(() -> {
+			companies.incrementAndGet(stripe(companyId));
+			catalog.incrementAndGet();
+		});
+	}
+
+	/**
+	 * Bumps versions changed by deleted company with all its coupons, once current
+	 * transaction is committed.
+	 * 
+	 * @param companyId specified company id.
+	 */
+	public void companyDeleted(int companyId) {
+		couponChanged(companyId);
+	}
+
+	/**
+	 * Bumps versions changed by specified by id customer (added, updated or
+	 * deleted), once current transaction is committed.
+	 * 
+	 * @param customerId specified customer id.
+	 */
+	public void customerChanged(int customerId) {
+		afterCommit(() -> {
+			customers.incrementAndGet(stripe(customerId));
+			catalog.incrementAndGet();
+		});
+	}
+
+	private String tag(char scope, long version, long shared) {
+		// available coupons depend on the date, changes of other nodes - on ttl
+		return "\"" + epoch + "-" + scope + Long.toString(version, 36) + "." + Long.toString(shared, 36) + "-"
+				+ Long.toString(LocalDate.now().toEpochDay(), 36) + "."
+				+ Long.toString(System.currentTimeMillis() / ttlMS, 36) + "\"";
+	}
+
+	private static int stripe(int id) {
+		return Math.floorMod(id, STRIPES);
+	}
+
+	private static void afterCommit(Runnable change) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			change.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+			@Override
+			public void afterCommit() {
+				change.run();
+			}
+		});
+	}
+
+}
@@ -0,0 +1,132 @@
+package app.core.beans;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import app.core.services.DailyJobService;
+import app.core.services.DailyJobService.ChunkResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The class {@code CouponArchiveMover} moves expired coupons (marked by
+ * {@link CouponExpiryWheel} and {@link CouponExpirationDailyJob}) with their
+ * purchase records from the coupon tables to the archive tables, so the coupon
+ * tables (and their indexes) grow with active inventory only, while purchase
+ * history is kept for reporting.
+ * 
+ * <p>
+ * The mover runs on the application scheduler, every configured interval.
+ * Coupons are moved in batches of {@code batchSize}, each batch in its own
+ * short transaction (copied to the archive and deleted by set-based statements,
+ * see {@link DailyJobService}), until no expired coupons are left, and the run
+ * is throttled to {@code rowsPerSecond} moved rows. When several nodes share
+ * the storage, only the leader (see {@link LeaderElection}) moves coupons.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class CouponArchiveMover {
+
+	private static final Logger log = LoggerFactory.getLogger(CouponArchiveMover.class);
+
+	private DailyJobService dailyJobService;
+	private LeaderElection leaderElection;
+	private boolean enabled;
+	private int batchSize;
+	private int rowsPerSecond;
+
+	private volatile boolean quit;
+	private final Timer runTimes;
+	private final Counter movedCoupons;
+	private final Counter movedPurchases;
+	private final Counter failures;
+
+	public CouponArchiveMover(DailyJobService dailyJobService, LeaderElection leaderElection,
+			MeterRegistry meterRegistry,
+			@Value("${app.archive.enabled:true}") boolean enabled,
+			@Value("${app.archive.batchSize:500}") int batchSize,
+			@Value("${app.archive.rowsPerSecond:5000}") int rowsPerSecond) {
+		this.dailyJobService = dailyJobService;
+		this.leaderElection = leaderElection;
+		this.enabled = enabled;
+		this.batchSize = Math.max(1, batchSize);
+		this.rowsPerSecond = rowsPerSecond;
+		this.runTimes = Timer.builder("coupon.archive.run").description("duration of archive move")
+				.register(meterRegistry);
+		this.movedCoupons = Counter.builder("coupon.archive.moved").tag("table", "coupon")
+				.description("rows moved to archive").register(meterRegistry);
+		this.movedPurchases = Counter.builder("coupon.archive.moved").tag("table", "customers_vs_coupons")
+				.description("rows moved to archive").register(meterRegistry);
+		this.failures = Counter.builder("coupon.archive.failures").description("archive moves stopped by failure")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Moves all expired coupons (with their purchase records) to the archive, in
+	 * throttled batches.
+	 */
+	@Scheduled(initialDelayString = "${app.archive.initialDelayMS:60000}",
+			fixedDelayString = "${app.archive.intervalMS:600000}")
+	public void run() {
+		if (!enabled)
+			return;
+
+		long token = leaderElection.getToken();
+		if (token == LeaderElection.NOT_LEADER)
+			return;
+
+		long startedAt = System.nanoTime();
+		long coupons = 0;
+		long purchases = 0;
+		try {
+			ChunkResult result;
+			do {
+				result = dailyJobService.archiveExpiredCoupons(batchSize, token);
+				movedCoupons.increment(result.getCoupons());
+				movedPurchases.increment(result.getPurchases());
+				coupons += result.getCoupons();
+				purchases += result.getPurchases();
+
+				throttle(coupons + purchases, startedAt);
+			} while (result.getCoupons() == batchSize && !quit && leaderElection.getToken() == token);
+
+			if (coupons > 0)
+				log.info("archive mover moved {} expired coupons and {} purchases in {} ms", coupons, purchases,
+						TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.info("archive mover interrupted after {} expired coupons", coupons);
+		} catch (Exception e) {
+			failures.increment();
+			log.error("archive mover failed after {} expired coupons (continues on next run)", coupons, e);
+		} finally {
+			runTimes.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void stop() {
+		this.quit = true;
+	}
+
+	private void throttle(long rows, long startedAt) throws InterruptedException {
+		if (rowsPerSecond <= 0)
+			return;
+
+		// sleep until the rate of the whole run is back under the limit
+		long aheadNanos = rows * TimeUnit.SECONDS.toNanos(1) / rowsPerSecond - (System.nanoTime() - startedAt);
+		if (aheadNanos > 0)
+			TimeUnit.NANOSECONDS.sleep(aheadNanos);
+	}
+
+}
@@ -2,100 +2,145 @@ package app.core.beans;
 
 import java.time.LocalDate;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import app.core.exceptions.CouponSystemException;
 import app.core.services.DailyJobService;
+import app.core.services.DailyJobService.ChunkResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 /**
- * The class {@code CouponExpirationDailyJob} and its implements
- * {@code Runnable} interface.
- * 
- * <p>
  * The class {@code CouponExpirationDailyJob} is part of coupon system
  * application and its main purpose is to scan storage for available expired
- * coupons and if found - remove it and its purchase records from the storage.
+ * coupons and if found - mark them as expired (hidden from every query of
+ * coupons, their purchase records are kept and moved to the archive by
+ * {@link CouponArchiveMover}).
+ * 
+ * <p>
+ * The job runs on the application scheduler (on start and then once per
+ * configured interval). Expired coupons are marked in ranges of
+ * {@code chunkSize} ids, each range in its own short transaction (see
+ * {@link DailyJobService}), and the sweep is throttled to
+ * {@code rowsPerSecond} updated rows, so it never holds locks on many rows nor
+ * competes with purchases for the storage. Sweep that was stopped (by failure
+ * or shutdown) continues from the last expired range on the next run.
+ * 
+ * <p>
+ * Coupons are expired on time by {@link CouponExpiryWheel}, this job is the
+ * backstop for coupons the wheel missed. When several nodes share the storage,
+ * only the leader (see {@link LeaderElection}) runs the sweep.
  * 
  * @author Vitaly Zlobin
  *
  */
 @Component
-public class CouponExpirationDailyJob implements Runnable {
+public class CouponExpirationDailyJob {
 
-	private DailyJobService dailyJobService;
-
-	private boolean quit;
-	private Thread jobThread;
-//	private long sleepDurationInHours = 24;
+	private static final Logger log = LoggerFactory.getLogger(CouponExpirationDailyJob.class);
 
-	public CouponExpirationDailyJob(DailyJobService dailyJobService) {
+	private DailyJobService dailyJobService;
+	private LeaderElection leaderElection;
+	private boolean enabled;
+	private int chunkSize;
+	private int rowsPerSecond;
+
+	private volatile boolean quit;
+	private final Timer runTimes;
+	private final Counter chunks;
+	private final Counter expiredCoupons;
+	private final Counter failures;
+	private final AtomicLong lastExpired = new AtomicLong();
+
+	public CouponExpirationDailyJob(DailyJobService dailyJobService, LeaderElection leaderElection,
+			MeterRegistry meterRegistry,
+			@Value("${app.expiration.enabled:true}") boolean enabled,
+			@Value("${app.expiration.chunkSize:1000}") int chunkSize,
+			@Value("${app.expiration.rowsPerSecond:5000}") int rowsPerSecond) {
 		this.dailyJobService = dailyJobService;
+		this.leaderElection = leaderElection;
+		this.enabled = enabled;
+		this.chunkSize = Math.max(1, chunkSize);
+		this.rowsPerSecond = rowsPerSecond;
+		this.runTimes = Timer.builder("coupon.expiration.run").description("duration of expiration sweep")
+				.register(meterRegistry);
+		this.chunks = Counter.builder("coupon.expiration.chunks").description("ranges of ids expired by sweep")
+				.register(meterRegistry);
+		this.expiredCoupons = Counter.builder("coupon.expiration.expired").description("coupons expired by sweep")
+				.register(meterRegistry);
+		this.failures = Counter.builder("coupon.expiration.failures").description("sweeps stopped by failure")
+				.register(meterRegistry);
+		meterRegistry.gauge("coupon.expiration.last.expired", lastExpired);
 	}
 
 	/**
-	 * Sets the thread that started this runnable.
-	 * 
-	 * @param jobThread specified reference to the thread that started this
-	 *                  runnable.
-	 */
-	public void setThread(Thread jobThread) {
-		this.jobThread = jobThread;
-	}
-
-	/**
-	 * Returns {@code Thread} that represents the thread that started this runnable.
-	 * 
-	 * @return thread of this runnable.
+	 * Marks all coupons expired before today as expired, in throttled ranges of
+	 * ids.
 	 */
-	public Thread getJobThread() {
-		return jobThread;
-	}
-
-	@Override
+	@Scheduled(initialDelayString = "${app.expiration.initialDelayMS:0}",
+			fixedDelayString = "${app.expiration.intervalMS:86400000}")
 	public void run() {
-		System.out.println(" ---> Coupon expiration daily job started <--- ");
-
-		while (!quit) {
-			try {
-				long deletedCoupons = dailyJobService.deleteExpiredCoupons(LocalDate.now());
-
-				System.out.println("\n*********************************************************"
-						+ "\nDaily Job Service remomoved " + deletedCoupons + " expired coupons"
-						+ "\n*********************************************************\n");
-
-				Thread.sleep(TimeUnit.DAYS.toMillis(1));
-
-			} catch (InterruptedException e) {
-				System.out.println(" >>> Job sleep interrupted!");
-			} catch (CouponSystemException e1) {
-				System.err.println(" >>> Daily job failed: " + e1.getMessage());
-				e1.printStackTrace();
-				stopDailyJob();
-			} catch (Exception e2) {
-				System.err.println(" >>> Daily job failed: " + e2.getMessage());
-				e2.printStackTrace();
-				stopDailyJob();
-			}
+		if (!enabled)
+			return;
 
+		long token = leaderElection.getToken();
+		if (token == LeaderElection.NOT_LEADER) {
+			log.debug("expiration sweep skipped: node {} is not the leader", leaderElection.getNodeId());
+			return;
 		}
 
-		System.out.println(" ---> Coupon expiration daily job ended <--- ");
-	}
+		LocalDate today = LocalDate.now();
+		long startedAt = System.nanoTime();
+		long coupons = 0;
+		try {
+			int fromId = dailyJobService.getExpirationStart(today);
+			int endId = dailyJobService.getExpirationEnd(today);
+			while (fromId < endId && !quit && leaderElection.getToken() == token) {
+				int toId = (int) Math.min(endId, (long) fromId + chunkSize);
+				ChunkResult result = dailyJobService.expireCoupons(today, fromId, toId, token);
+				chunks.increment();
+				expiredCoupons.increment(result.getCoupons());
+				coupons += result.getCoupons();
+				fromId = toId;
+
+				throttle(coupons, startedAt);
+			}
 
-	@PostConstruct
-	public void startDailyJob() {
-		this.jobThread = new Thread(this);
-		this.jobThread.start();
+			log.info("expiration sweep {} {} coupons in {} ms", fromId < endId ? "stopped after" : "expired", coupons,
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.info("expiration sweep interrupted after {} expired coupons", coupons);
+		} catch (Exception e) {
+			failures.increment();
+			log.error("expiration sweep failed after {} expired coupons (continues on next run)", coupons, e);
+		} finally {
+			lastExpired.set(coupons);
+			runTimes.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+		}
 	}
 
 	@PreDestroy
-	public void stopDailyJob() {
+	public void stop() {
 		this.quit = true;
-		this.jobThread.interrupt();
+	}
+
+	private void throttle(long rows, long startedAt) throws InterruptedException {
+		if (rowsPerSecond <= 0)
+			return;
+
+		// sleep until the rate of the whole run is back under the limit
+		long aheadNanos = rows * TimeUnit.SECONDS.toNanos(1) / rowsPerSecond - (System.nanoTime() - startedAt);
+		if (aheadNanos > 0)
+			TimeUnit.NANOSECONDS.sleep(aheadNanos);
 	}
 
 }
@@ -0,0 +1,230 @@
+package app.core.beans;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import app.core.dto.CouponEndDate;
+import app.core.services.DailyJobService;
+import app.core.services.DailyJobService.ChunkResult;
+import app.core.utilities.TimingWheel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The class {@code CouponExpiryWheel} marks every coupon as expired (hidden
+ * from every query of coupons, until {@link CouponArchiveMover} moves it to the
+ * archive) within a tick (second by default) of its expiration: the start of
+ * the day after its end date.
+ * 
+ * <p>
+ * Coupons that expire within {@code horizonDays} are held in
+ * {@link TimingWheel}, so each tick processes only the coupons that are due.
+ * The wheel is seeded from the storage on start (coupons that expired while
+ * application was stopped are due at once) and seeded again every
+ * {@code reseedIntervalMS} as the horizon moves. Added, updated and deleted
+ * coupons are rescheduled right away (see {@link #schedule(int, LocalDate)}).
+ * Expiration is checked against the storage, so a coupon which expiration date
+ * was changed meanwhile is never expired early. {@link CouponExpirationDailyJob}
+ * remains as a backstop.
+ * 
+ * <p>
+ * Every node keeps its wheel current, but only the leader (see
+ * {@link LeaderElection}) expires due coupons. Node that becomes the leader
+ * seeds its wheel again first, so coupons that were due meanwhile are expired
+ * at once.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class CouponExpiryWheel {
+
+	private static final Logger log = LoggerFactory.getLogger(CouponExpiryWheel.class);
+
+	private DailyJobService dailyJobService;
+	private LeaderElection leaderElection;
+	private boolean enabled;
+	private long tickMS;
+	private int horizonDays;
+	private long reseedIntervalMS;
+	private int batchSize;
+	private long retryDelayMS;
+	private final ZoneId zone = ZoneId.systemDefault();
+
+	private TimingWheel<Integer> wheel;
+	private ScheduledExecutorService executor;
+	// token of the last tick, accessed by wheel thread only
+	private long lastToken = LeaderElection.NOT_LEADER;
+	private final Counter expired;
+	private final Counter failures;
+	private final Timer batchTimes;
+
+	public CouponExpiryWheel(DailyJobService dailyJobService, LeaderElection leaderElection,
+			MeterRegistry meterRegistry,
+			@Value("${app.expiration.wheel.enabled:true}") boolean enabled,
+			@Value("${app.expiration.wheel.tickMS:1000}") long tickMS,
+			@Value("${app.expiration.wheel.horizonDays:2}") int horizonDays,
+			@Value("${app.expiration.wheel.reseedIntervalMS:3600000}") long reseedIntervalMS,
+			@Value("${app.expiration.wheel.batchSize:500}") int batchSize,
+			@Value("${app.expiration.wheel.retryDelayMS:10000}") long retryDelayMS) {
+		this.dailyJobService = dailyJobService;
+		this.leaderElection = leaderElection;
+		this.enabled = enabled;
+		this.tickMS = tickMS;
+		this.horizonDays = Math.max(1, horizonDays);
+		this.reseedIntervalMS = reseedIntervalMS;
+		this.batchSize = Math.max(1, batchSize);
+		this.retryDelayMS = retryDelayMS;
+		this.expired = Counter.builder("coupon.expiry.expired").description("coupons expired by expiry wheel")
+				.register(meterRegistry);
+		this.failures = Counter.builder("coupon.expiry.failures").description("batches of due coupons failed")
+				.register(meterRegistry);
+		this.batchTimes = Timer.builder("coupon.expiry.batch").description("time to expire batch of due coupons")
+				.register(meterRegistry);
+		Gauge.builder("coupon.expiry.scheduled", this, CouponExpiryWheel::size)
+				.description("coupons held by expiry wheel").register(meterRegistry);
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!enabled)
+			return;
+
+		this.wheel = new TimingWheel<>(tickMS, System.currentTimeMillis());
+		this.lastToken = leaderElection.getToken();
+		reseed();
+
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "coupon-expiry-wheel");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.scheduleAtFixedRate(this::tick, tickMS, tickMS, TimeUnit.MILLISECONDS);
+		this.executor.scheduleWithFixedDelay(this::reseed, reseedIntervalMS, reseedIntervalMS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	/**
+	 * Schedules expiration of coupon with specified id at the start of the day
+	 * after specified end date, replacing its previous expiration. Coupon that
+	 * expires beyond the horizon is left to the next seeding.
+	 * 
+	 * @param couponId specified coupon id.
+	 * @param endDate  specified end date of the coupon.
+	 */
+	public void schedule(int couponId, LocalDate endDate) {
+		if (!enabled || endDate == null)
+			return;
+
+		synchronized (wheel) {
+			if (endDate.isBefore(LocalDate.now(zone).plusDays(horizonDays)))
+				wheel.schedule(couponId, expirationOf(endDate));
+			else
+				wheel.cancel(couponId);
+		}
+	}
+
+	/**
+	 * Cancels expiration of coupon with specified id (coupon was deleted).
+	 * 
+	 * @param couponId specified coupon id.
+	 */
+	public void cancel(int couponId) {
+		if (!enabled)
+			return;
+
+		synchronized (wheel) {
+			wheel.cancel(couponId);
+		}
+	}
+
+	private int size() {
+		if (wheel == null)
+			return 0;
+		synchronized (wheel) {
+			return wheel.size();
+		}
+	}
+
+	private long expirationOf(LocalDate endDate) {
+		return endDate.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+	}
+
+	private void reseed() {
+		try {
+			List<CouponEndDate> coupons = dailyJobService
+					.getEndDatesBefore(LocalDate.now(zone).plusDays(horizonDays));
+			synchronized (wheel) {
+				for (CouponEndDate coupon : coupons)
+					wheel.schedule(coupon.getId(), expirationOf(coupon.getEndDate()));
+			}
+			log.debug("expiry wheel seeded with {} coupons", coupons.size());
+		} catch (Exception e) {
+			log.error("expiry wheel failed to seed coupons (retried on next seeding)", e);
+		}
+	}
+
+	private void tick() {
+		long token = leaderElection.getToken();
+		if (token != lastToken) {
+			lastToken = token;
+			if (token != LeaderElection.NOT_LEADER)
+				reseed();
+		}
+
+		long now = System.currentTimeMillis();
+		List<Integer> due = new ArrayList<>();
+		synchronized (wheel) {
+			wheel.advance(now, due::add);
+		}
+		// due coupons of standby node are expired by the leader
+		if (token == LeaderElection.NOT_LEADER)
+			return;
+
+		// date of the tick, so coupon due at midnight is checked against the new day
+		LocalDate today = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+		for (int from = 0; from < due.size(); from += batchSize)
+			expire(today, due.subList(from, Math.min(due.size(), from + batchSize)), now, token);
+	}
+
+	private void expire(LocalDate today, List<Integer> couponIds, long now, long token) {
+		long startedAt = System.nanoTime();
+		try {
+			ChunkResult result = dailyJobService.expireCoupons(today, couponIds, token);
+			expired.increment(result.getCoupons());
+			log.debug("expiry wheel expired {} coupons", result.getCoupons());
+		} catch (Exception e) {
+			failures.increment();
+			log.error("expiry wheel failed to expire {} coupons (retried)", couponIds.size(), e);
+			synchronized (wheel) {
+				for (Integer couponId : couponIds)
+					wheel.schedule(couponId, now + retryDelayMS);
+			}
+		} finally {
+			batchTimes.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+		}
+	}
+
+}
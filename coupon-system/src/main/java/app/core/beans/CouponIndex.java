@@ -0,0 +1,365 @@
+package app.core.beans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import app.core.dto.CouponCriteria;
+import app.core.dto.CouponKey;
+import app.core.entities.Coupon;
+import app.core.enums.Category;
+import app.core.enums.CouponSort;
+import app.core.repositories.CouponRepository;
+import app.core.utilities.CatalogCursor;
+import app.core.utilities.CouponPostings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * The class {@code CouponIndex} holds {@link CouponPostings} (ids of coupons
+ * by category and by price) of recently used companies and customers, so
+ * coupons of company or customer sorted by price are filtered by categories
+ * and price range in memory instead of by query. Coupons themselves are loaded
+ * by id (from second level cache, see {@link EntityCache}) by the entity
+ * manager of current transaction.
+ * 
+ * <p>
+ * Postings of company or customer are loaded on first use and then kept
+ * current by changes of coupons and purchases made through the services, once
+ * the change is committed. Unlike cached query results, postings are not
+ * invalidated by changes of stock, so purchases of other customers do not
+ * evict them. Every loaded coupon is checked against the criteria once more:
+ * postings that hold coupon which was expired, deleted or changed by other
+ * node (or by set-based jobs) are evicted and the criteria are answered by
+ * query. Coupons added by other node are seen when postings are loaded again,
+ * at most {@code ttlMS} later. The index is bounded: least recently used
+ * postings are evicted first.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class CouponIndex {
+
+	private CouponRepository couponRepository;
+	private EntityManager entityManager;
+	private boolean enabled;
+	private int maxEntries;
+	private long ttlMS;
+
+	private final Owners companies;
+	private final Owners customers;
+
+	public CouponIndex(CouponRepository couponRepository, EntityManager entityManager, MeterRegistry meterRegistry,
+			@Value("${app.couponIndex.enabled:true}") boolean enabled,
+			@Value("${app.couponIndex.maxEntries:10000}") int maxEntries,
+			@Value("${app.couponIndex.ttlMS:60000}") long ttlMS) {
+		this.couponRepository = couponRepository;
+		this.entityManager = entityManager;
+		this.enabled = enabled;
+		this.maxEntries = maxEntries;
+		this.ttlMS = ttlMS;
+		this.companies = new Owners("company", meterRegistry);
+		this.customers = new Owners("customer", meterRegistry);
+	}
+
+	/**
+	 * Returns {@code true} if the index is enabled, otherwise - {@code false}
+	 * (coupons are filtered by queries).
+	 * 
+	 * @return {@code true} if enabled, otherwise - {@code false}.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns page of available coupons of specified by id company that match
+	 * specified criteria, in order of price and id, starting after specified
+	 * cursor. Returns {@code null} if the criteria can not be answered by the
+	 * index (see {@link #answers(CouponCriteria, CouponSort)}) or postings of the
+	 * company are stale (they are evicted then), so the criteria should be
+	 * answered by query.
+	 * 
+	 * @param companyId specified company id.
+	 * @param criteria  specified criteria.
+	 * @param sort      specified order of coupons.
+	 * @param after     specified cursor of previous page ({@code null} for the
+	 *                  first page).
+	 * @param limit     specified max count of coupons.
+	 * @return page of matching coupons or {@code null}.
+	 */
+	public List<Coupon> findCompanyCoupons(int companyId, CouponCriteria criteria, CouponSort sort,
+			CatalogCursor after, int limit) {
+		if (!answers(criteria, sort) || (criteria.getCompanyId() != null && criteria.getCompanyId() != companyId))
+			return null;
+		return find(companies, companyId, couponRepository::findKeysByCompanyId, criteria, after, limit);
+	}
+
+	/**
+	 * Returns page of available coupons purchased by specified by id customer that
+	 * match specified criteria, in order of price and id, starting after specified
+	 * cursor. Returns {@code null} if the criteria can not be answered by the
+	 * index (see {@link #answers(CouponCriteria, CouponSort)}, company of coupons
+	 * is not held in postings of customers) or postings of the customer are stale
+	 * (they are evicted then), so the criteria should be answered by query.
+	 * 
+	 * @param customerId specified customer id.
+	 * @param criteria   specified criteria.
+	 * @param sort       specified order of coupons.
+	 * @param after      specified cursor of previous page ({@code null} for the
+	 *                   first page).
+	 * @param limit      specified max count of coupons.
+	 * @return page of matching coupons or {@code null}.
+	 */
+	public List<Coupon> findCustomerCoupons(int customerId, CouponCriteria criteria, CouponSort sort,
+			CatalogCursor after, int limit) {
+		if (!answers(criteria, sort) || criteria.getCompanyId() != null)
+			return null;
+		return find(customers, customerId, couponRepository::findKeysByCustomerId, criteria, after, limit);
+	}
+
+	/**
+	 * Returns {@code true} if specified criteria in specified order can be
+	 * answered by the index: the index is enabled, coupons are sorted by price and
+	 * filtered by categories and price only (stock and dates are not held in
+	 * postings), otherwise - {@code false}.
+	 * 
+	 * @param criteria specified criteria.
+	 * @param sort     specified order of coupons.
+	 * @return {@code true} if criteria can be answered by the index, otherwise -
+	 *         {@code false}.
+	 */
+	public boolean answers(CouponCriteria criteria, CouponSort sort) {
+		return enabled && sort == CouponSort.PRICE && criteria.getValidFrom() == null
+				&& criteria.getValidTo() == null && criteria.getInStock() == null;
+	}
+
+	/**
+	 * Adds specified coupon (added or updated) to postings of its company and
+	 * updates it in postings of customers that purchased it, once current
+	 * transaction is committed.
+	 * 
+	 * @param coupon specified coupon.
+	 */
+	public void couponSaved(Coupon coupon) {
+		int couponId = coupon.getId();
+		int companyId = coupon.getCompanyId();
+		Category category = coupon.getCategory();
+		double price = coupon.getPrice();
+		afterCommit(() -> {
+			companies.update(companyId, postings -> postings.with(couponId, category, price));
+			customers.updateAll(couponId, postings -> postings.with(couponId, category, price));
+		});
+	}
+
+	/**
+	 * Removes specified coupon from postings of its company and of customers that
+	 * purchased it, once current transaction is committed.
+	 * 
+	 * @param coupon specified coupon.
+	 */
+	public void couponDeleted(Coupon coupon) {
+		int couponId = coupon.getId();
+		int companyId = coupon.getCompanyId();
+		afterCommit(() -> {
+			companies.update(companyId, postings -> postings.without(couponId));
+			customers.updateAll(couponId, postings -> postings.without(couponId));
+		});
+	}
+
+	/**
+	 * Adds specified coupon to postings of specified by id customer, once current
+	 * transaction (if any) is committed.
+	 * 
+	 * @param customerId specified customer id.
+	 * @param coupon     specified purchased coupon.
+	 */
+	public void couponPurchased(int customerId, Coupon coupon) {
+		int couponId = coupon.getId();
+		Category category = coupon.getCategory();
+		double price = coupon.getPrice();
+		afterCommit(() -> customers.update(customerId, postings -> postings.with(couponId, category, price)));
+	}
+
+	/**
+	 * Evicts postings of specified by id company, once current transaction is
+	 * committed.
+	 * 
+	 * @param companyId specified company id.
+	 */
+	public void companyDeleted(int companyId) {
+		afterCommit(() -> companies.evict(companyId));
+	}
+
+	/**
+	 * Evicts postings of specified by id customer, once current transaction is
+	 * committed.
+	 * 
+	 * @param customerId specified customer id.
+	 */
+	public void customerDeleted(int customerId) {
+		afterCommit(() -> customers.evict(customerId));
+	}
+
+	private List<Coupon> find(Owners owners, int ownerId, IntFunction<List<CouponKey>> loader,
+			CouponCriteria criteria, CatalogCursor after, int limit) {
+		int[] ids = owners.get(ownerId, loader).find(criteria.getCategories(),
+				criteria.getMinPrice() == null ? Double.NEGATIVE_INFINITY : criteria.getMinPrice(),
+				criteria.getMaxPrice() == null ? Double.POSITIVE_INFINITY : criteria.getMaxPrice(),
+				after == null ? Double.NEGATIVE_INFINITY : after.getPrice(),
+				after == null ? Integer.MIN_VALUE : after.getId(), limit);
+
+		List<Coupon> coupons = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			// not through repository: no proxy and transaction interceptor per coupon
+			Coupon coupon = entityManager.find(Coupon.class, id);
+			if (coupon == null || !criteria.matches(coupon)) {
+				// expired, deleted or changed by other node (or by set-based job)
+				owners.evict(ownerId);
+				return null;
+			}
+			coupons.add(coupon);
+		}
+		return coupons;
+	}
+
+	private static void afterCommit(Runnable change) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			change.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+			@Override
+			public void afterCommit() {
+				change.run();
+			}
+		});
+	}
+
+	/**
+	 * The class {@code Owners} holds postings of companies or of customers, by
+	 * their id.
+	 */
+	private final class Owners {
+
+		private final Map<Integer, Entry> entries;
+		// postings being loaded, by owner id
+		private final Map<Integer, Load> loads = new HashMap<>();
+		private final Counter hits;
+		private final Counter misses;
+
+		private Owners(String owner, MeterRegistry meterRegistry) {
+			this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+					return size() > CouponIndex.this.maxEntries;
+				}
+			};
+			this.hits = meterRegistry.counter("coupon.index.requests", "owner", owner, "result", "hit");
+			this.misses = meterRegistry.counter("coupon.index.requests", "owner", owner, "result", "miss");
+			meterRegistry.gaugeMapSize("coupon.index.size", Tags.of("owner", owner), entries);
+		}
+
+		private CouponPostings get(int id, IntFunction<List<CouponKey>> loader) {
+			long now = System.currentTimeMillis();
+			Load load;
+			synchronized (this) {
+				Entry entry = entries.get(id);
+				if (entry != null && now - entry.loadedAt < ttlMS) {
+					hits.increment();
+					return entry.postings;
+				}
+				load = loads.computeIfAbsent(id, key -> new Load());
+				load.loaders++;
+			}
+
+			misses.increment();
+			CouponPostings postings = null;
+			try {
+				postings = CouponPostings.of(loader.apply(id));
+			} finally {
+				synchronized (this) {
+					if (--load.loaders == 0)
+						loads.remove(id);
+					// postings loaded while owner was changed could miss the change, so they are
+					// used once but not held
+					if (postings != null && !load.changed)
+						entries.put(id, new Entry(postings, now));
+				}
+			}
+			return postings;
+		}
+
+		private synchronized void update(int id, UnaryOperator<CouponPostings> change) {
+			Load load = loads.get(id);
+			if (load != null)
+				load.changed = true;
+			Entry entry = entries.get(id);
+			if (entry != null)
+				entries.put(id, new Entry(change.apply(entry.postings), entry.loadedAt));
+		}
+
+		private synchronized void updateAll(int couponId, UnaryOperator<CouponPostings> change) {
+			// owners being loaded could hold the coupon as well
+			for (Load load : loads.values())
+				load.changed = true;
+			for (Map.Entry<Integer, Entry> entry : entries.entrySet()) {
+				CouponPostings postings = entry.getValue().postings;
+				if (postings.contains(couponId))
+					entry.setValue(new Entry(change.apply(postings), entry.getValue().loadedAt));
+			}
+		}
+
+		private synchronized void evict(int id) {
+			Load load = loads.get(id);
+			if (load != null)
+				load.changed = true;
+			entries.remove(id);
+		}
+
+	}
+
+	/**
+	 * The class {@code Entry} is postings of single owner and the time they were
+	 * loaded.
+	 */
+	private static final class Entry {
+
+		private final CouponPostings postings;
+		private final long loadedAt;
+
+		private Entry(CouponPostings postings, long loadedAt) {
+			this.postings = postings;
+			this.loadedAt = loadedAt;
+		}
+
+	}
+
+	/**
+	 * The class {@code Load} is postings of single owner being loaded, and whether
+	 * the owner was changed meanwhile.
+	 */
+	private static final class Load {
+
+		private int loaders;
+		private boolean changed;
+
+	}
+
+}
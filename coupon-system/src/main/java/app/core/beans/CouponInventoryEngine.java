@@ -0,0 +1,414 @@
+package app.core.beans;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import app.core.entities.Coupon;
+import app.core.enums.RejectionReason;
+import app.core.exceptions.CouponSystemException;
+import app.core.exceptions.PurchaseRejectedException;
+import app.core.services.CouponInventoryService;
+
+/**
+ * The class {@code CouponInventoryEngine} holds stock of hot coupons in memory,
+ * so purchases of these coupons are accepted or rejected without touching the
+ * storage (only customer is looked up by id, usually in second level cache).
+ * 
+ * <p>
+ * Stock of each hot coupon is kept in lock-free counter. Accepted purchases are
+ * appended to {@link PurchaseJournal} and flushed to the storage in batches by
+ * background thread. Purchases left in the journal (if application was stopped
+ * before flush) are applied again on start. While hot coupon is updated or
+ * deleted its in-memory purchases are suspended (see {@link #suspend(int)}).
+ * 
+ * <p>
+ * The engine is disabled by default and is meant for single node only: each
+ * node holds the whole stock of hot coupons, so nodes that share the storage
+ * would accept more purchases than the stock. Purchases that do not fit the
+ * stock in the storage are skipped when flushed, and their stock is returned.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class CouponInventoryEngine {
+
+	private static final Logger log = LoggerFactory.getLogger(CouponInventoryEngine.class);
+
+	private CouponInventoryService inventoryService;
+	private CatalogVersions catalogVersions;
+	private PurchaseMetrics purchaseMetrics;
+	private boolean enabled;
+	private String journalPath;
+	private int journalCapacity;
+	private long flushIntervalMS;
+	private int flushBatchSize;
+
+	private final Map<Integer, Stock> stocks = new ConcurrentHashMap<>();
+	private final Map<Integer, Integer> suspended = new ConcurrentHashMap<>();
+	private final ReentrantLock flushLock = new ReentrantLock();
+	private PurchaseJournal journal;
+	private ScheduledExecutorService executor;
+
+	public CouponInventoryEngine(CouponInventoryService inventoryService, CatalogVersions catalogVersions,
+			PurchaseMetrics purchaseMetrics, @Value("${app.inventory.enabled:false}") boolean enabled,
+			@Value("${app.inventory.journal.path:coupon-inventory.journal}") String journalPath,
+			@Value("${app.inventory.journal.capacity:65536}") int journalCapacity,
+			@Value("${app.inventory.flush.intervalMS:200}") long flushIntervalMS,
+			@Value("${app.inventory.flush.batchSize:500}") int flushBatchSize) {
+		this.inventoryService = inventoryService;
+		this.catalogVersions = catalogVersions;
+		this.purchaseMetrics = purchaseMetrics;
+		this.enabled = enabled;
+		this.journalPath = journalPath;
+		this.journalCapacity = journalCapacity;
+		this.flushIntervalMS = flushIntervalMS;
+		this.flushBatchSize = flushBatchSize;
+	}
+
+	@PostConstruct
+	public void start() throws CouponSystemException {
+		if (!enabled)
+			return;
+
+		try {
+			this.journal = PurchaseJournal.open(Paths.get(journalPath), journalCapacity);
+		} catch (IOException e) {
+			throw new CouponSystemException("failed to open purchase journal: " + e.getMessage(), e);
+		}
+
+		// purchases that were accepted but not flushed before last stop
+		flush();
+
+		for (Coupon coupon : inventoryService.getHotCoupons())
+			track(coupon);
+
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "coupon-inventory-flush");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.scheduleWithFixedDelay(this::flushAndPurge, flushIntervalMS, flushIntervalMS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (executor == null)
+			return;
+
+		executor.shutdown();
+		try {
+			executor.awaitTermination(flushIntervalMS * 10, TimeUnit.MILLISECONDS);
+			flush();
+			journal.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (CouponSystemException | IOException e) {
+			log.error("inventory engine failed to flush purchases", e);
+		}
+	}
+
+	/**
+	 * Returns {@code true} if inventory engine is enabled, otherwise -
+	 * {@code false}. While enabled, stock of hot coupons is held by this engine.
+	 * 
+	 * @return {@code true} if enabled, otherwise - {@code false}.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Purchases coupon with specified id for specified customer in memory, only if
+	 * stock of this coupon is currently held by this engine. Returns purchased
+	 * coupon with updated stock, or {@code null} if coupon is not held by this
+	 * engine (so it should be purchased through the storage). Purchase by
+	 * customer that not exists is rejected before the stock is taken.
+	 * 
+	 * @param customerId specified customer id.
+	 * @param couponId   specified coupon id.
+	 * @return purchased coupon with updated stock, or {@code null} if coupon is
+	 *         not held by this engine.
+	 * @throws CouponSystemException if purchase was rejected.
+	 */
+	public Coupon purchase(int customerId, int couponId) throws CouponSystemException {
+		Stock stock = stocks.get(couponId);
+		if (stock == null)
+			return null;
+
+		if (!inventoryService.customerExists(customerId))
+			throw new PurchaseRejectedException(RejectionReason.NOT_FOUND,
+					"failed to get customer details: customer with id = " + customerId + " not found!");
+
+		if (!stock.enter())
+			return null;
+
+		// stock taken by this purchase is returned unless the purchase is journaled
+		boolean taken = false;
+		boolean journaled = false;
+		try {
+			if (stock.coupon.getEndDate().isBefore(LocalDate.now()))
+				throw new PurchaseRejectedException(RejectionReason.EXPIRED, "failed to purchase coupon: coupon "
+						+ "with id = " + couponId + " expired at " + stock.coupon.getEndDate() + "!");
+
+			if (!stock.purchasers.add(customerId))
+				throw new PurchaseRejectedException(RejectionReason.ALREADY_PURCHASED, "failed to purchase coupon: "
+						+ "coupon with id = " + couponId
+						+ " already purchased in the past (only 1 purchase per coupon allowed)!");
+
+			int amount = stock.take();
+			if (amount < 0) {
+				stock.purchasers.remove(customerId);
+				throw new PurchaseRejectedException(RejectionReason.OUT_OF_STOCK,
+						"failed to purchase coupon: coupon with id = " + couponId + " out of stock!");
+			}
+			taken = true;
+
+			if (!journal.append(couponId, customerId)) {
+				// journal is full - flush it and try again
+				flush();
+				if (!journal.append(couponId, customerId))
+					throw new PurchaseRejectedException(RejectionReason.UNAVAILABLE, "failed to purchase coupon: "
+							+ "coupon with id = " + couponId + " is temporarily unavailable, please try again!");
+			}
+			journaled = true;
+
+			return stock.purchased(amount);
+		} catch (CouponSystemException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new CouponSystemException("failed to purchase coupon: " + e.getMessage()
+					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
+		} finally {
+			if (taken && !journaled)
+				stock.restore(customerId);
+			stock.exit();
+		}
+	}
+
+	/**
+	 * Suspends in-memory purchases of coupon with specified id until current
+	 * transaction is completed: all its accepted purchases are flushed to the
+	 * storage and after transaction completion the coupon is loaded again (only if
+	 * it still exists and flagged as hot).
+	 * 
+	 * @param couponId specified coupon id.
+	 * @throws CouponSystemException if failed to flush accepted purchases.
+	 */
+	public void suspend(int couponId) throws CouponSystemException {
+		if (!enabled)
+			return;
+
+		suspended.merge(couponId, 1, Integer::sum);
+		trackAfterCompletion(couponId, true);
+
+		Stock stock = stocks.remove(couponId);
+		if (stock != null) {
+			stock.close();
+			flush();
+		}
+	}
+
+	/**
+	 * Suspends in-memory purchases of all coupons of specified by id company (see
+	 * {@link #suspend(int)}).
+	 * 
+	 * @param companyId specified company id.
+	 * @throws CouponSystemException if failed to flush accepted purchases.
+	 */
+	public void suspendCompany(int companyId) throws CouponSystemException {
+		for (Stock stock : stocks.values()) {
+			if (stock.coupon.getCompanyId() == companyId)
+				suspend(stock.coupon.getId());
+		}
+	}
+
+	/**
+	 * Loads coupon with specified id into the engine after current transaction is
+	 * completed (only if it exists and flagged as hot).
+	 * 
+	 * @param couponId specified coupon id.
+	 */
+	public void track(int couponId) {
+		if (enabled)
+			trackAfterCompletion(couponId, false);
+	}
+
+	private void trackAfterCompletion(int couponId, boolean resume) {
+		Runnable task = () -> {
+			if (resume)
+				suspended.computeIfPresent(couponId, (id, count) -> count == 1 ? null : count - 1);
+			if (!suspended.containsKey(couponId))
+				inventoryService.getHotCoupon(couponId).ifPresent(this::track);
+		};
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					executor.execute(task);
+				}
+			});
+		} else {
+			executor.execute(task);
+		}
+	}
+
+	private void track(Coupon coupon) {
+		if (coupon.getEndDate().isBefore(LocalDate.now()))
+			return;
+
+		Stock stock = new Stock(coupon, inventoryService.getPurchaserIds(coupon.getId()));
+		Stock previous = stocks.put(coupon.getId(), stock);
+		if (previous != null)
+			previous.close();
+	}
+
+	private void flushAndPurge() {
+		try {
+			journal.force();
+			flush();
+		} catch (Exception e) {
+			log.error("inventory engine failed to flush purchases", e);
+		}
+
+		LocalDate today = LocalDate.now();
+		stocks.values().removeIf(stock -> stock.coupon.getEndDate().isBefore(today));
+	}
+
+	/**
+	 * Applies all accepted purchases from the journal to the storage.
+	 * 
+	 * @throws CouponSystemException if failed to apply purchases.
+	 */
+	private void flush() throws CouponSystemException {
+		flushLock.lock();
+		try {
+			List<PurchaseJournal.Record> records;
+			while (!(records = journal.pending(flushBatchSize)).isEmpty()) {
+				List<PurchaseJournal.Record> skipped = inventoryService.applyPurchases(records);
+				journal.markFlushed(records.size());
+				// stock of flushed coupons is seen by lists only now
+				catalogVersions.couponsChanged();
+
+				// customer or coupon was deleted meanwhile, or out of stock in the storage - return taken stock
+				for (PurchaseJournal.Record record : skipped) {
+					log.warn("inventory engine dropped accepted purchase of coupon {} by customer {} "
+							+ "(coupon or customer not found, or out of stock in the storage)", record.getCouponId(),
+							record.getCustomerId());
+					purchaseMetrics.dropped();
+					Stock stock = stocks.get(record.getCouponId());
+					if (stock != null)
+						stock.restore(record.getCustomerId());
+				}
+			}
+		} catch (Exception e) {
+			throw new CouponSystemException("failed to flush purchases: " + e.getMessage()
+					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * The class {@code Stock} holds in-memory stock and purchases of single hot
+	 * coupon.
+	 */
+	private static final class Stock {
+
+		private final Coupon coupon;
+		private final AtomicInteger amount;
+		private final Set<Integer> purchasers;
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private volatile boolean closed;
+
+		private Stock(Coupon coupon, List<Integer> purchasers) {
+			this.coupon = coupon;
+			this.amount = new AtomicInteger(coupon.getAmount());
+			this.purchasers = ConcurrentHashMap.newKeySet();
+			this.purchasers.addAll(purchasers);
+		}
+
+		private boolean enter() {
+			inFlight.incrementAndGet();
+			if (closed) {
+				exit();
+				return false;
+			}
+			return true;
+		}
+
+		private void exit() {
+			if (inFlight.decrementAndGet() == 0 && closed) {
+				synchronized (this) {
+					notifyAll();
+				}
+			}
+		}
+
+		// waits for all purchases in progress (purchase may be flushing full journal to the storage)
+		private void close() {
+			closed = true;
+			boolean interrupted = false;
+			synchronized (this) {
+				while (inFlight.get() != 0) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// purchases in progress must still be waited for
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+
+		// returns remaining amount, or -1 if out of stock
+		private int take() {
+			int current;
+			do {
+				current = amount.get();
+				if (current <= 0)
+					return -1;
+			} while (!amount.compareAndSet(current, current - 1));
+			return current - 1;
+		}
+
+		private void restore(int customerId) {
+			if (purchasers.remove(customerId))
+				amount.incrementAndGet();
+		}
+
+		private Coupon purchased(int remaining) throws CouponSystemException {
+			Coupon purchased = new Coupon(coupon.getId(), coupon.getCompanyId(), coupon.getCategory(),
+					coupon.getTitle(), coupon.getDescription(), coupon.getStartDate(), coupon.getEndDate(), remaining,
+					coupon.getPrice(), coupon.getImage());
+			purchased.setHot(true);
+			return purchased;
+		}
+
+	}
+
+}
@@ -0,0 +1,79 @@
+package app.core.beans;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import app.core.entities.Company;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The class {@code EntityCache} is part of coupon system application that
+ * looks after hibernate second level cache of coupons, companies and customers
+ * (regions are configured in ehcache.xml).
+ * 
+ * <p>
+ * Updates through hibernate (and set-based statements, which declare the tables
+ * they update) keep the cache consistent by themselves. Coupons are added to
+ * company by their company id rather than through its collection, so cached
+ * collection of company coupons is evicted explicitly (see
+ * {@link #evictCompanyCoupons(int)}).
+ * 
+ * <p>
+ * Hit ratio of every region (entities, collections and query results) is
+ * published as {@code hibernate.cache.hit.ratio} gauge, next to hit and miss
+ * counters that are published by hibernate metrics.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class EntityCache {
+
+	private static final String COMPANY_COUPONS = Company.class.getName() + ".coupons";
+
+	private SessionFactory sessionFactory;
+
+	public EntityCache(EntityManagerFactory entityManagerFactory, MeterRegistry meterRegistry) {
+		this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+
+		Statistics statistics = sessionFactory.getStatistics();
+		for (String region : statistics.getSecondLevelCacheRegionNames())
+			Gauge.builder("hibernate.cache.hit.ratio", statistics, s -> hitRatio(s.getCacheRegionStatistics(region)))
+					.tag("region", region).description("share of cache lookups found in the region")
+					.register(meterRegistry);
+	}
+
+	/**
+	 * Evicts cached coupons collection of specified by id company, now and once
+	 * more after current transaction is completed (so collection read by other
+	 * transaction meanwhile is not left in the cache).
+	 * 
+	 * @param companyId specified company id.
+	 */
+	public void evictCompanyCoupons(int companyId) {
+		sessionFactory.getCache().evictCollectionData(COMPANY_COUPONS, companyId);
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+				@Override
+				public void afterCompletion(int status) {
+					sessionFactory.getCache().evictCollectionData(COMPANY_COUPONS, companyId);
+				}
+			});
+	}
+
+	private static double hitRatio(CacheRegionStatistics region) {
+		if (region == null)
+			return Double.NaN;
+		long lookups = region.getHitCount() + region.getMissCount();
+		return lookups == 0 ? Double.NaN : (double) region.getHitCount() / lookups;
+	}
+
+}
@@ -0,0 +1,180 @@
+package app.core.beans;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import app.core.entities.IdempotencyRecord;
+import app.core.repositories.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The class {@code IdempotencyStore} keeps responses of requests that were
+ * sent with {@code Idempotency-Key} header for a limited time.
+ * 
+ * <p>
+ * Recently used records are held in a bounded in-memory map (least recently
+ * used records are evicted first) and every record is also saved to the
+ * storage, so it is found after eviction or restart. Expired records are
+ * removed from both by background thread.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class IdempotencyStore {
+
+	private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+	private IdempotencyRecordRepository recordRepository;
+	private long ttlMS;
+	private int maxEntries;
+	private long purgeIntervalMS;
+
+	private final Map<String, IdempotencyRecord> records;
+	private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+	private final Counter hits;
+	private final Counter misses;
+	private ScheduledExecutorService executor;
+
+	public IdempotencyStore(IdempotencyRecordRepository recordRepository, MeterRegistry meterRegistry,
+			@Value("${app.idempotency.ttlMS:86400000}") long ttlMS,
+			@Value("${app.idempotency.maxEntries:10000}") int maxEntries,
+			@Value("${app.idempotency.purge.intervalMS:60000}") long purgeIntervalMS) {
+		this.recordRepository = recordRepository;
+		this.ttlMS = ttlMS;
+		this.maxEntries = maxEntries;
+		this.purgeIntervalMS = purgeIntervalMS;
+		this.records = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+				return size() > IdempotencyStore.this.maxEntries;
+			}
+		};
+		this.hits = meterRegistry.counter("idempotency.requests", "result", "hit");
+		this.misses = meterRegistry.counter("idempotency.requests", "result", "miss");
+		meterRegistry.gaugeMapSize("idempotency.store.size", Collections.emptyList(), records);
+	}
+
+	@PostConstruct
+	public void start() {
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "idempotency-purge");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.scheduleWithFixedDelay(this::purge, purgeIntervalMS, purgeIntervalMS, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Returns stored response of request with specified key, or {@code null} if
+	 * not found or expired.
+	 * 
+	 * @param key specified request key.
+	 * @return stored response or {@code null}.
+	 */
+	public IdempotencyRecord find(String key) {
+		long now = System.currentTimeMillis();
+		IdempotencyRecord record;
+		synchronized (records) {
+			record = records.get(key);
+		}
+
+		if (record == null) {
+			record = recordRepository.findById(key).orElse(null);
+			if (record != null && !record.isExpired(now)) {
+				synchronized (records) {
+					records.put(key, record);
+				}
+			}
+		}
+
+		if (record == null || record.isExpired(now)) {
+			misses.increment();
+			return null;
+		}
+
+		hits.increment();
+		return record;
+	}
+
+	/**
+	 * Marks request with specified key as in progress. Returns {@code false} if
+	 * request with same key is already in progress.
+	 * 
+	 * @param key specified request key.
+	 * @return {@code true} if marked, otherwise - {@code false}.
+	 */
+	public boolean begin(String key) {
+		return inProgress.add(key);
+	}
+
+	/**
+	 * Saves specified response of request with specified key and marks the request
+	 * as completed.
+	 * 
+	 * @param key         specified request key.
+	 * @param requestHash specified digest of request body.
+	 * @param status      specified response status code.
+	 * @param contentType specified response content type.
+	 * @param body        specified response body.
+	 */
+	public void complete(String key, String requestHash, int status, String contentType, byte[] body) {
+		try {
+			IdempotencyRecord record = recordRepository.save(new IdempotencyRecord(key, requestHash, status,
+					contentType, body, System.currentTimeMillis() + ttlMS));
+			synchronized (records) {
+				records.put(key, record);
+			}
+		} catch (Exception e) {
+			log.error("idempotency store failed to save response", e);
+		} finally {
+			inProgress.remove(key);
+		}
+	}
+
+	/**
+	 * Marks request with specified key as completed without saving its response
+	 * (so it will be executed again on retry).
+	 * 
+	 * @param key specified request key.
+	 */
+	public void abort(String key) {
+		inProgress.remove(key);
+	}
+
+	private void purge() {
+		long now = System.currentTimeMillis();
+		synchronized (records) {
+			records.values().removeIf(record -> record.isExpired(now));
+		}
+
+		try {
+			recordRepository.deleteExpired(now);
+		} catch (Exception e) {
+			log.error("idempotency store failed to purge expired records", e);
+		}
+	}
+
+}
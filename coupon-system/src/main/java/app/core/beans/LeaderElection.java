@@ -0,0 +1,215 @@
+package app.core.beans;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import app.core.entities.JobLease;
+import app.core.repositories.JobLeaseRepository;
+import app.core.services.DailyJobService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The class {@code LeaderElection} elects single node, of all nodes that share
+ * the storage, to run coupon expiration jobs ({@link CouponExpirationDailyJob}
+ * and {@link CouponExpiryWheel}).
+ * 
+ * <p>
+ * The leader holds a lease row and renews it every {@code heartbeatMS}. When
+ * the leader stops renewing (crashed or lost the storage), the lease expires
+ * after {@code durationMS} and the next heartbeat of a standby node takes it
+ * over, so leadership passes within {@code durationMS + heartbeatMS}. Every
+ * takeover increments the fencing token of the lease: jobs pass the token they
+ * started with to the storage, and writes with older token are rejected (see
+ * {@link DailyJobService}). The leader stops acting as leader
+ * {@code maxClockSkewMS} before its lease may be taken over by a node with a
+ * clock that runs ahead.
+ * 
+ * <p>
+ * If disabled, every node is the leader with token {@link #UNFENCED} (single
+ * node deployment).
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class LeaderElection {
+
+	/**
+	 * Token of the leader when election is disabled: writes are not fenced.
+	 */
+	public static final long UNFENCED = 0;
+	/**
+	 * Token of node that is not the leader.
+	 */
+	public static final long NOT_LEADER = -1;
+
+	private static final Logger log = LoggerFactory.getLogger(LeaderElection.class);
+
+	private JobLeaseRepository leaseRepository;
+	private boolean enabled;
+	private String nodeId;
+	private long durationMS;
+	private long heartbeatMS;
+	private long maxClockSkewMS;
+
+	private volatile long token = NOT_LEADER;
+	private volatile long validUntilNanos;
+	private ScheduledExecutorService executor;
+	private final Counter acquired;
+	private final Counter lost;
+
+	public LeaderElection(JobLeaseRepository leaseRepository, MeterRegistry meterRegistry,
+			@Value("${app.cluster.lease.enabled:true}") boolean enabled,
+			@Value("${app.cluster.nodeId:}") String nodeId,
+			@Value("${app.cluster.lease.durationMS:30000}") long durationMS,
+			@Value("${app.cluster.lease.heartbeatMS:5000}") long heartbeatMS,
+			@Value("${app.cluster.lease.maxClockSkewMS:1000}") long maxClockSkewMS) {
+		this.leaseRepository = leaseRepository;
+		this.enabled = enabled;
+		this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+		this.durationMS = durationMS;
+		this.heartbeatMS = heartbeatMS;
+		this.maxClockSkewMS = maxClockSkewMS;
+		this.acquired = Counter.builder("cluster.leader.changes").tag("event", "acquired")
+				.description("times this node became the leader").register(meterRegistry);
+		this.lost = Counter.builder("cluster.leader.changes").tag("event", "lost")
+				.description("times this node lost leadership").register(meterRegistry);
+		Gauge.builder("cluster.leader", this, election -> election.isLeader() ? 1 : 0)
+				.description("1 if this node runs expiration jobs").register(meterRegistry);
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!enabled)
+			return;
+
+		createLease();
+		heartbeat();
+
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "leader-election");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.scheduleWithFixedDelay(this::heartbeat, heartbeatMS, heartbeatMS, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (executor == null)
+			return;
+
+		executor.shutdownNow();
+		long current = token;
+		token = NOT_LEADER;
+		if (current != NOT_LEADER) {
+			try {
+				// standby takes over on its next heartbeat instead of waiting for expiration
+				if (leaseRepository.release(DailyJobService.EXPIRATION_JOB, nodeId, current) == 1)
+					log.info("node {} released leadership (token {})", nodeId, current);
+			} catch (Exception e) {
+				log.warn("node {} failed to release leadership: {}", nodeId, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Returns {@code true} if this node is the leader, otherwise - {@code false}.
+	 * 
+	 * @return {@code true} if this node is the leader, otherwise - {@code false}.
+	 */
+	public boolean isLeader() {
+		return getToken() != NOT_LEADER;
+	}
+
+	/**
+	 * Returns fencing token of this node if it is the leader ({@link #UNFENCED} if
+	 * election is disabled), otherwise - {@link #NOT_LEADER}.
+	 * 
+	 * @return fencing token or {@link #NOT_LEADER}.
+	 */
+	public long getToken() {
+		if (!enabled)
+			return UNFENCED;
+
+		long current = token;
+		return current != NOT_LEADER && System.nanoTime() - validUntilNanos < 0 ? current : NOT_LEADER;
+	}
+
+	/**
+	 * Returns id of this node.
+	 * 
+	 * @return id of this node.
+	 */
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	private void createLease() {
+		try {
+			if (!leaseRepository.existsById(DailyJobService.EXPIRATION_JOB))
+				leaseRepository.save(new JobLease(DailyJobService.EXPIRATION_JOB));
+		} catch (DataIntegrityViolationException e) {
+			// created by other node meanwhile
+		}
+	}
+
+	private void heartbeat() {
+		try {
+			long startedAt = System.nanoTime();
+			long now = System.currentTimeMillis();
+			long current = token;
+
+			if (current != NOT_LEADER) {
+				int renewed = leaseRepository.renew(DailyJobService.EXPIRATION_JOB, nodeId, current, now,
+						now + durationMS);
+				if (renewed == 1) {
+					validUntilNanos = startedAt + TimeUnit.MILLISECONDS.toNanos(durationMS - maxClockSkewMS);
+					return;
+				}
+				token = NOT_LEADER;
+				lost.increment();
+				log.warn("node {} lost leadership (token {})", nodeId, current);
+			}
+
+			if (leaseRepository.takeOver(DailyJobService.EXPIRATION_JOB, nodeId, now, now + durationMS) == 1) {
+				JobLease lease = leaseRepository.findById(DailyJobService.EXPIRATION_JOB).orElseThrow();
+				if (!nodeId.equals(lease.getOwner()))
+					return;
+				validUntilNanos = startedAt + TimeUnit.MILLISECONDS.toNanos(durationMS - maxClockSkewMS);
+				token = lease.getToken();
+				acquired.increment();
+				log.info("node {} became leader (token {})", nodeId, lease.getToken());
+			}
+		} catch (Exception e) {
+			// leadership lapses by itself if heartbeats keep failing
+			log.warn("node {} failed to send heartbeat: {}", nodeId, e.getMessage());
+		}
+	}
+
+	private static String defaultNodeId() {
+		String host;
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			host = "node";
+		}
+		return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+	}
+
+}
@@ -1,9 +1,12 @@
 package app.core.beans;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
+import app.core.dto.ClientIdentity;
 import app.core.enums.ClientType;
 import app.core.exceptions.CouponSystemException;
 import app.core.services.AdminService;
@@ -22,48 +25,33 @@ import app.core.services.CustomerService;
 @Component
 public class LoginManager {
 
-	private ApplicationContext ctx;
+	private final Map<ClientType, ClientService> clientServices = new EnumMap<>(ClientType.class);
 
 	@Autowired
-	public LoginManager(ApplicationContext ctx) {
-		this.ctx = ctx;
+	public LoginManager(AdminService adminService, CompanyService companyService, CustomerService customerService) {
+		clientServices.put(ClientType.ADMINISTRATOR, adminService);
+		clientServices.put(ClientType.COMPANY, companyService);
+		clientServices.put(ClientType.CUSTOMER, customerService);
 	}
 
 	/**
-	 * Returns correct and ready {@code ClientService} if specified values are valid
-	 * (validation succeeded), otherwise - {@code null}.
+	 * Returns id and name of the client if specified values are valid (validation
+	 * succeeded), otherwise - {@code null}.
 	 * 
 	 * @param email      specified client email to login.
 	 * @param password   specified client password to login.
 	 * @param clientType specified client type.
-	 * @return correct client service if validation succeeded, otherwise -
+	 * @return id and name of the client if validation succeeded, otherwise -
 	 *         {@code null};
 	 * @throws CouponSystemException if some connection issues was occurred while
 	 *                               validation.
 	 */
-	public ClientService login(String email, String password, ClientType clientType) throws CouponSystemException {
-		switch (clientType) {
-		case ADMINISTRATOR:
-			// TODO: try-catch /???/ return null
-			AdminService adminService = ctx.getBean(AdminService.class);
-			if (adminService.login(email, password))
-				return adminService;
-			break;
-		case COMPANY:
-			// TODO: try-catch /???/ return null
-			CompanyService companyService = ctx.getBean(CompanyService.class);
-			if (companyService.login(email, password))
-				return companyService;
-			break;
-		case CUSTOMER:
-			// TODO: try-catch /???/ return null
-			CustomerService customerService = ctx.getBean(CustomerService.class);
-			if (customerService.login(email, password))
-				return customerService;
-			break;
-		}
+	public ClientIdentity login(String email, String password, ClientType clientType) throws CouponSystemException {
+		ClientService clientService = clientServices.get(clientType);
+		if (clientService == null)
+			return null;
 
-		return null;
+		return clientService.login(email, password);
 	}
 
 }
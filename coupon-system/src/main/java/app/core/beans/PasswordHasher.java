@@ -0,0 +1,185 @@
+package app.core.beans;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import app.core.exceptions.CouponSystemException;
+import app.core.exceptions.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The class {@code PasswordHasher} hashes and verifies client passwords with
+ * bcrypt.
+ * 
+ * <p>
+ * Bcrypt is slow on purpose, so hashing runs on its own bounded pool of worker
+ * threads instead of request threads: when all workers are busy and the queue
+ * is full, the request fails fast (see {@link ServiceBusyException}) instead of
+ * piling up. Hashes that were made with a cost other than the configured one
+ * are reported by {@link #needsRehash(String)}, so they can be replaced on next
+ * successful login.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class PasswordHasher {
+
+	private MeterRegistry meterRegistry;
+	private int cost;
+	private int workers;
+	private int queueCapacity;
+	private long timeoutMS;
+
+	private BCryptPasswordEncoder encoder;
+	private ThreadPoolExecutor executor;
+	// verified when client is not found, so response time does not reveal if email exists
+	private String dummyHash;
+	private final Timer hashTimes;
+	private final Timer verifyTimes;
+	private final Timer waitTimes;
+	private final Counter rejected;
+
+	public PasswordHasher(MeterRegistry meterRegistry, @Value("${app.password.bcrypt.cost:10}") int cost,
+			@Value("${app.password.hasher.workers:0}") int workers,
+			@Value("${app.password.hasher.queueCapacity:64}") int queueCapacity,
+			@Value("${app.password.hasher.timeoutMS:5000}") long timeoutMS) {
+		this.meterRegistry = meterRegistry;
+		this.cost = cost;
+		this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+		this.queueCapacity = queueCapacity;
+		this.timeoutMS = timeoutMS;
+		this.hashTimes = Timer.builder("password.hash.latency").description("time to hash password")
+				.tag("operation", "hash").publishPercentileHistogram().register(meterRegistry);
+		this.verifyTimes = Timer.builder("password.hash.latency").description("time to verify password")
+				.tag("operation", "verify").publishPercentileHistogram().register(meterRegistry);
+		this.waitTimes = Timer.builder("password.hash.wait").description("time password waited for free worker")
+				.publishPercentileHistogram().register(meterRegistry);
+		this.rejected = Counter.builder("password.hash.rejected").description("passwords rejected by full queue")
+				.register(meterRegistry);
+	}
+
+	@PostConstruct
+	public void start() {
+		this.encoder = new BCryptPasswordEncoder(cost);
+		AtomicInteger index = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, "password-hasher-" + index.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		Gauge.builder("password.hash.queue.depth", executor.getQueue(), BlockingQueue::size)
+				.description("passwords waiting for free worker").register(meterRegistry);
+		this.dummyHash = encoder.encode("dummy-password");
+	}
+
+	@PreDestroy
+	public void stop() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Returns bcrypt hash of specified password, made with configured cost.
+	 * 
+	 * @param password specified password to hash.
+	 * @return hash of specified password.
+	 * @throws CouponSystemException if failed to hash specified password
+	 *                               ({@link ServiceBusyException} if all workers
+	 *                               are busy).
+	 */
+	public String hash(String password) throws CouponSystemException {
+		return execute(hashTimes, () -> encoder.encode(password));
+	}
+
+	/**
+	 * Returns {@code true} if specified password matches specified hash,
+	 * otherwise - {@code false}. If hash is {@code null} (client not found)
+	 * password is verified anyway and {@code false} is returned.
+	 * 
+	 * @param password specified password to verify.
+	 * @param hash     specified stored hash.
+	 * @return {@code true} if password matches, otherwise - {@code false}.
+	 * @throws CouponSystemException if failed to verify specified password
+	 *                               ({@link ServiceBusyException} if all workers
+	 *                               are busy).
+	 */
+	public boolean matches(String password, String hash) throws CouponSystemException {
+		if (password == null)
+			return false;
+
+		String expected = hash == null ? dummyHash : hash;
+		boolean matches = execute(verifyTimes, () -> encoder.matches(password, expected));
+		return matches && hash != null;
+	}
+
+	/**
+	 * Returns {@code true} if specified hash was not made with configured cost (so
+	 * password should be hashed again), otherwise - {@code false}.
+	 * 
+	 * @param hash specified stored hash.
+	 * @return {@code true} if specified hash should be replaced, otherwise -
+	 *         {@code false}.
+	 */
+	public boolean needsRehash(String hash) {
+		// $2a$10$... - version, cost and salted hash
+		if (hash == null || hash.length() < 7 || !hash.startsWith("$2") || hash.charAt(6) != '$')
+			return true;
+		try {
+			return Integer.parseInt(hash.substring(4, 6)) != cost;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	private <T> T execute(Timer timer, Callable<T> task) throws CouponSystemException {
+		long submittedAt = System.nanoTime();
+		Future<T> future;
+		try {
+			future = executor.submit(() -> {
+				long startedAt = System.nanoTime();
+				waitTimes.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+				try {
+					return task.call();
+				} finally {
+					timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw new ServiceBusyException("server is busy, please try again later!", e);
+		}
+
+		try {
+			return future.get(timeoutMS, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw new ServiceBusyException("server is busy, please try again later!", e);
+		} catch (ExecutionException e) {
+			throw new CouponSystemException("failed to hash password: " + e.getCause().getMessage(), e.getCause());
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new CouponSystemException("failed to hash password: interrupted", e);
+		}
+	}
+
+}
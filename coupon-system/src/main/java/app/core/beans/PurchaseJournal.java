@@ -0,0 +1,202 @@
+package app.core.beans;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class {@code PurchaseJournal} is an append-only, memory-mapped journal of
+ * purchases that were accepted by inventory engine but not applied to the
+ * storage yet.
+ * 
+ * <p>
+ * The journal file starts with a header (magic number and offset of the first
+ * not flushed record) followed by fixed size records (coupon id, customer id
+ * and checksum). The record after the last written one is always zeroed, so
+ * pending records can be found again after restart. When all records are
+ * flushed the journal is rewound to its beginning.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class PurchaseJournal implements Closeable {
+
+	private static final int MAGIC = 0x43504A31;
+	private static final int HEADER_SIZE = 16; // magic, reserved, flushed offset
+	private static final int RECORD_SIZE = 12; // coupon id, customer id, checksum
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int size;
+	private int writePosition;
+	private int flushedPosition;
+
+	private PurchaseJournal(FileChannel channel, MappedByteBuffer buffer, int size) {
+		this.channel = channel;
+		this.buffer = buffer;
+		this.size = size;
+	}
+
+	/**
+	 * Opens (or creates) journal file by specified path and finds all records
+	 * that were not flushed yet.
+	 * 
+	 * @param path     specified journal file path.
+	 * @param capacity specified max count of records in the journal.
+	 * @return opened journal.
+	 * @throws IOException if failed to open or map the journal file.
+	 */
+	public static PurchaseJournal open(Path path, int capacity) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		int size = (int) Math.max(HEADER_SIZE + (long) capacity * RECORD_SIZE, channel.size());
+		PurchaseJournal journal = new PurchaseJournal(channel, channel.map(MapMode.READ_WRITE, 0, size), size);
+		journal.recover();
+		return journal;
+	}
+
+	private void recover() {
+		long flushed = buffer.getLong(8);
+		if (buffer.getInt(0) != MAGIC || flushed < HEADER_SIZE || flushed > size
+				|| (flushed - HEADER_SIZE) % RECORD_SIZE != 0) {
+			buffer.putInt(0, MAGIC);
+			flushed = HEADER_SIZE;
+			buffer.putLong(8, flushed);
+			clearRecord(HEADER_SIZE);
+		}
+
+		flushedPosition = (int) flushed;
+		writePosition = flushedPosition;
+		while (writePosition + RECORD_SIZE <= size && isValidRecord(writePosition))
+			writePosition += RECORD_SIZE;
+	}
+
+	/**
+	 * Appends purchase of specified coupon by specified customer to the journal.
+	 * 
+	 * @param couponId   specified coupon id.
+	 * @param customerId specified customer id.
+	 * @return {@code true} if purchase was appended, {@code false} if journal is
+	 *         full.
+	 */
+	public synchronized boolean append(int couponId, int customerId) {
+		if (writePosition + RECORD_SIZE > size)
+			return false;
+
+		clearRecord(writePosition + RECORD_SIZE);
+		buffer.putInt(writePosition + 4, customerId);
+		buffer.putInt(writePosition + 8, checksum(couponId, customerId));
+		buffer.putInt(writePosition, couponId);
+		writePosition += RECORD_SIZE;
+		return true;
+	}
+
+	/**
+	 * Returns list of records that were not flushed yet, but not more than
+	 * specified max count.
+	 * 
+	 * @param max specified max count of records.
+	 * @return list of not flushed records (oldest first).
+	 */
+	public synchronized List<Record> pending(int max) {
+		List<Record> records = new ArrayList<>();
+		for (int position = flushedPosition; position < writePosition && records.size() < max; position += RECORD_SIZE)
+			records.add(new Record(buffer.getInt(position), buffer.getInt(position + 4)));
+		return records;
+	}
+
+	/**
+	 * Marks specified count of the oldest pending records as flushed. If no
+	 * pending records left - journal is rewound to its beginning.
+	 * 
+	 * @param count specified count of flushed records.
+	 */
+	public synchronized void markFlushed(int count) {
+		flushedPosition = Math.min(writePosition, flushedPosition + count * RECORD_SIZE);
+		if (flushedPosition == writePosition) {
+			clearRecord(HEADER_SIZE);
+			flushedPosition = HEADER_SIZE;
+			writePosition = HEADER_SIZE;
+		}
+		buffer.putLong(8, flushedPosition);
+	}
+
+	/**
+	 * Returns count of records that were not flushed yet.
+	 * 
+	 * @return count of pending records.
+	 */
+	public synchronized int pendingCount() {
+		return (writePosition - flushedPosition) / RECORD_SIZE;
+	}
+
+	/**
+	 * Forces all journal changes to be written to the storage device.
+	 */
+	public void force() {
+		buffer.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		force();
+		channel.close();
+	}
+
+	private boolean isValidRecord(int position) {
+		int couponId = buffer.getInt(position);
+		return couponId != 0 && buffer.getInt(position + 8) == checksum(couponId, buffer.getInt(position + 4));
+	}
+
+	private void clearRecord(int position) {
+		if (position + RECORD_SIZE <= size) {
+			buffer.putInt(position, 0);
+			buffer.putInt(position + 4, 0);
+			buffer.putInt(position + 8, 0);
+		}
+	}
+
+	private static int checksum(int couponId, int customerId) {
+		return MAGIC ^ couponId ^ Integer.rotateLeft(customerId, 16);
+	}
+
+	/**
+	 * The class {@code Record} represents single purchase saved in the journal.
+	 */
+	public static final class Record {
+
+		private final int couponId;
+		private final int customerId;
+
+		public Record(int couponId, int customerId) {
+			this.couponId = couponId;
+			this.customerId = customerId;
+		}
+
+		/**
+		 * Returns integer that represents id of purchased coupon.
+		 * 
+		 * @return id of purchased coupon.
+		 */
+		public int getCouponId() {
+			return couponId;
+		}
+
+		/**
+		 * Returns integer that represents id of customer that purchased the coupon.
+		 * 
+		 * @return id of customer.
+		 */
+		public int getCustomerId() {
+			return customerId;
+		}
+
+	}
+
+}
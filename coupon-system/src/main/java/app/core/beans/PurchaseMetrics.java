@@ -0,0 +1,90 @@
+package app.core.beans;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import app.core.enums.RejectionReason;
+import app.core.exceptions.CouponSystemException;
+import app.core.exceptions.PurchaseRejectedException;
+import app.core.exceptions.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The class {@code PurchaseMetrics} counts coupon purchases by the path that
+ * completed them, and rejected purchases by reason.
+ * 
+ * <p>
+ * Purchase may be rejected by {@link CouponInventoryEngine},
+ * {@link PurchasePipeline} or by storage, and every one of them throws
+ * {@link PurchaseRejectedException} with the reason of the rejection. Busy
+ * service is counted as {@code busy} and any other failure as {@code other}.
+ * Purchases of hot coupons that were accepted, but dropped when applied to the
+ * storage, are counted as {@code dropped}.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class PurchaseMetrics {
+
+	/**
+	 * The enum {@code Path} represents the way purchase was completed: in memory
+	 * (hot coupon), in batch of the pipeline lane, or directly in storage.
+	 */
+	public enum Path {
+		HOT, PIPELINE, DIRECT
+	}
+
+	private final Map<Path, Counter> purchases = new EnumMap<>(Path.class);
+	private final Map<RejectionReason, Counter> rejections = new EnumMap<>(RejectionReason.class);
+
+	public PurchaseMetrics(MeterRegistry meterRegistry) {
+		for (Path path : Path.values())
+			purchases.put(path, Counter.builder("coupon.purchases").description("completed purchases")
+					.tag("path", path.name().toLowerCase()).register(meterRegistry));
+		for (RejectionReason reason : RejectionReason.values())
+			rejections.put(reason, Counter.builder("coupon.purchases.rejected").description("rejected purchases")
+					.tag("reason", reason.name().toLowerCase()).register(meterRegistry));
+	}
+
+	/**
+	 * Counts purchase completed by specified path.
+	 * 
+	 * @param path specified path.
+	 */
+	public void purchased(Path path) {
+		purchases.get(path).increment();
+	}
+
+	/**
+	 * Counts purchase rejected by specified exception and returns the exception,
+	 * so it can be thrown right away.
+	 * 
+	 * @param e specified exception the purchase was rejected with.
+	 * @return specified exception.
+	 */
+	public CouponSystemException rejected(CouponSystemException e) {
+		rejections.get(reasonOf(e)).increment();
+		return e;
+	}
+
+	/**
+	 * Counts purchase that was accepted by {@link CouponInventoryEngine}, but
+	 * dropped when applied to the storage.
+	 */
+	public void dropped() {
+		rejections.get(RejectionReason.DROPPED).increment();
+	}
+
+	static RejectionReason reasonOf(CouponSystemException e) {
+		if (e instanceof PurchaseRejectedException)
+			return ((PurchaseRejectedException) e).getReason();
+		if (e instanceof ServiceBusyException)
+			return RejectionReason.BUSY;
+		return RejectionReason.OTHER;
+	}
+
+}
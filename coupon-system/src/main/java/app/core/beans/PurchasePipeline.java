@@ -0,0 +1,318 @@
+package app.core.beans;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import app.core.entities.Coupon;
+import app.core.enums.RejectionReason;
+import app.core.exceptions.CouponSystemException;
+import app.core.exceptions.PurchaseRejectedException;
+import app.core.services.CouponPurchaseService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The class {@code PurchasePipeline} serializes purchases of the same coupon
+ * through a single writer, so concurrent purchases of a popular coupon do not
+ * compete for the same storage row.
+ * 
+ * <p>
+ * Purchases are spread between lanes by coupon id, so all purchases of the same
+ * coupon always go to the same lane. Each lane is a bounded queue drained by
+ * its own thread: the thread collects purchases for a short linger time (or
+ * until batch is full), groups them by coupon and applies each group in a
+ * single transaction (see {@link CouponPurchaseService#purchaseCoupons}).
+ * Callers are released only after the transaction is committed. Purchase that
+ * was not applied in time is cancelled: the lane skips it, so caller that was
+ * told the coupon is unavailable is never charged later.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class PurchasePipeline {
+
+	private CouponPurchaseService purchaseService;
+	private MeterRegistry meterRegistry;
+	private boolean enabled;
+	private int laneCount;
+	private int queueCapacity;
+	private int batchSize;
+	private long lingerMS;
+	private long timeoutMS;
+
+	private Lane[] lanes;
+
+	public PurchasePipeline(CouponPurchaseService purchaseService, MeterRegistry meterRegistry,
+			@Value("${app.purchase.pipeline.enabled:false}") boolean enabled,
+			@Value("${app.purchase.pipeline.lanes:4}") int laneCount,
+			@Value("${app.purchase.pipeline.queueCapacity:1024}") int queueCapacity,
+			@Value("${app.purchase.pipeline.batchSize:64}") int batchSize,
+			@Value("${app.purchase.pipeline.lingerMS:2}") long lingerMS,
+			@Value("${app.purchase.pipeline.timeoutMS:5000}") long timeoutMS) {
+		this.purchaseService = purchaseService;
+		this.meterRegistry = meterRegistry;
+		this.enabled = enabled;
+		this.laneCount = laneCount;
+		this.queueCapacity = queueCapacity;
+		this.batchSize = batchSize;
+		this.lingerMS = lingerMS;
+		this.timeoutMS = timeoutMS;
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!enabled)
+			return;
+
+		lanes = new Lane[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			lanes[i] = new Lane(i);
+			lanes[i].thread.start();
+		}
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (lanes == null)
+			return;
+
+		for (Lane lane : lanes)
+			lane.thread.interrupt();
+		for (Lane lane : lanes) {
+			try {
+				lane.thread.join(timeoutMS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			lane.rejectQueued();
+		}
+	}
+
+	/**
+	 * Returns {@code true} if purchase pipeline is enabled, otherwise -
+	 * {@code false}.
+	 * 
+	 * @return {@code true} if enabled, otherwise - {@code false}.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Purchases coupon with specified id for specified customer through the lane
+	 * of this coupon and waits until the purchase is committed. Returns purchased
+	 * coupon with updated stock, or {@code null} if pipeline is disabled or lane
+	 * of this coupon is full (so it should be purchased directly).
+	 * 
+	 * @param customerId specified customer id.
+	 * @param couponId   specified coupon id.
+	 * @return purchased coupon with updated stock, or {@code null} if purchase was
+	 *         not accepted by pipeline.
+	 * @throws CouponSystemException if purchase was rejected or not completed in
+	 *                               time.
+	 */
+	public Coupon purchase(int customerId, int couponId) throws CouponSystemException {
+		if (lanes == null)
+			return null;
+
+		Lane lane = lanes[Math.floorMod(couponId, lanes.length)];
+		Purchase purchase = new Purchase(customerId, couponId);
+		if (!lane.queue.offer(purchase))
+			return null;
+
+		try {
+			try {
+				return purchase.result.get(timeoutMS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				if (purchase.cancel())
+					throw unavailable(couponId);
+				// taken by the lane: its batch is being applied right now
+				return purchase.result.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CouponSystemException)
+				throw (CouponSystemException) e.getCause();
+			throw new CouponSystemException("failed to purchase coupon: " + e.getCause().getMessage(), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			purchase.cancel();
+			throw new CouponSystemException("failed to purchase coupon: interrupted", e);
+		}
+	}
+
+	private static PurchaseRejectedException unavailable(int couponId) {
+		return new PurchaseRejectedException(RejectionReason.UNAVAILABLE, "failed to purchase coupon: coupon with id = "
+				+ couponId + " is temporarily unavailable, please try again!");
+	}
+
+	/**
+	 * The class {@code Lane} is a single writer of purchases: bounded ring buffer
+	 * of waiting purchases and the thread that drains it.
+	 */
+	private final class Lane implements Runnable {
+
+		private final BlockingQueue<Purchase> queue = new ArrayBlockingQueue<>(queueCapacity);
+		private final Thread thread;
+		private final DistributionSummary batchSizes;
+		private final Timer lingerTimes;
+		private final Counter accepted;
+		private final Counter rejected;
+		private final Counter cancelled;
+
+		private Lane(int index) {
+			String lane = String.valueOf(index);
+			this.thread = new Thread(this, "coupon-purchase-lane-" + index);
+			this.thread.setDaemon(true);
+			this.batchSizes = DistributionSummary.builder("coupon.purchase.lane.batch.size")
+					.description("purchases applied in a single batch").tag("lane", lane).register(meterRegistry);
+			this.lingerTimes = Timer.builder("coupon.purchase.lane.linger")
+					.description("time purchase waited in lane before its batch was applied").tag("lane", lane)
+					.register(meterRegistry);
+			this.accepted = Counter.builder("coupon.purchase.lane.purchases").tag("lane", lane)
+					.tag("result", "accepted").register(meterRegistry);
+			this.rejected = Counter.builder("coupon.purchase.lane.purchases").tag("lane", lane)
+					.tag("result", "rejected").register(meterRegistry);
+			this.cancelled = Counter.builder("coupon.purchase.lane.purchases").tag("lane", lane)
+					.tag("result", "cancelled").register(meterRegistry);
+			Gauge.builder("coupon.purchase.lane.queue.depth", queue, BlockingQueue::size)
+					.description("purchases waiting in lane").tag("lane", lane).register(meterRegistry);
+		}
+
+		@Override
+		public void run() {
+			List<Purchase> batch = new ArrayList<>(batchSize);
+			while (!Thread.currentThread().isInterrupted()) {
+				try {
+					batch.add(queue.take());
+					long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMS);
+					while (batch.size() < batchSize) {
+						if (queue.drainTo(batch, batchSize - batch.size()) > 0)
+							continue;
+						Purchase next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+						if (next == null)
+							break;
+						batch.add(next);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				if (!batch.isEmpty())
+					apply(batch);
+				batch.clear();
+			}
+		}
+
+		private void apply(List<Purchase> batch) {
+			long now = System.nanoTime();
+			batchSizes.record(batch.size());
+
+			Map<Integer, List<Purchase>> byCoupon = new LinkedHashMap<>();
+			for (Purchase purchase : batch) {
+				lingerTimes.record(now - purchase.enqueuedAt, TimeUnit.NANOSECONDS);
+				// caller gave up waiting
+				if (!purchase.take()) {
+					cancelled.increment();
+					continue;
+				}
+				byCoupon.computeIfAbsent(purchase.couponId, id -> new ArrayList<>()).add(purchase);
+			}
+
+			for (Map.Entry<Integer, List<Purchase>> entry : byCoupon.entrySet()) {
+				List<Integer> customerIds = new ArrayList<>(entry.getValue().size());
+				for (Purchase purchase : entry.getValue())
+					customerIds.add(purchase.customerId);
+
+				try {
+					CouponPurchaseService.BatchResult result = purchaseService.purchaseCoupons(entry.getKey(),
+							customerIds);
+					for (int i = 0; i < entry.getValue().size(); i++) {
+						Purchase purchase = entry.getValue().get(i);
+						PurchaseRejectedException rejection = result.getRejection(i);
+						if (rejection == null) {
+							accepted.increment();
+							purchase.result.complete(result.getCoupon());
+						} else {
+							rejected.increment();
+							purchase.result.completeExceptionally(rejection);
+						}
+					}
+				} catch (Exception e) {
+					// whole batch rolled back
+					rejected.increment(entry.getValue().size());
+					for (Purchase purchase : entry.getValue())
+						purchase.result.completeExceptionally(e);
+				}
+			}
+		}
+
+		private void rejectQueued() {
+			Purchase purchase;
+			while ((purchase = queue.poll()) != null)
+				if (purchase.take())
+					purchase.result.completeExceptionally(unavailable(purchase.couponId));
+		}
+
+	}
+
+	/**
+	 * The class {@code Purchase} represents single purchase waiting in lane.
+	 */
+	private static final class Purchase {
+
+		private final int customerId;
+		private final int couponId;
+		private final long enqueuedAt = System.nanoTime();
+		private final CompletableFuture<Coupon> result = new CompletableFuture<>();
+		// taken by the lane to be applied, or cancelled by the caller
+		private final AtomicBoolean taken = new AtomicBoolean();
+
+		private Purchase(int customerId, int couponId) {
+			this.customerId = customerId;
+			this.couponId = couponId;
+		}
+
+		/**
+		 * Takes this purchase to be applied by the lane.
+		 * 
+		 * @return {@code true} if taken, {@code false} if it was cancelled.
+		 */
+		private boolean take() {
+			return taken.compareAndSet(false, true);
+		}
+
+		/**
+		 * Cancels this purchase, unless the lane already took it.
+		 * 
+		 * @return {@code true} if cancelled (never applied), {@code false} if taken
+		 *         by the lane.
+		 */
+		private boolean cancel() {
+			if (!taken.compareAndSet(false, true))
+				return false;
+			result.cancel(false);
+			return true;
+		}
+
+	}
+
+}
@@ -0,0 +1,215 @@
+package app.core.beans;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The class {@code RateLimiter} limits rate of requests per key (client ip,
+ * login email, customer id) with token buckets: each key may send a burst of
+ * up to {@code capacity} requests, then requests are allowed at
+ * {@code refillPerSecond} rate.
+ * 
+ * <p>
+ * Buckets of each {@link Limit} are spread between stripes by key hash, and
+ * every stripe is guarded by its own lock, so requests of different keys
+ * rarely wait for each other. Buckets of a stripe are held in access order:
+ * bucket that was idle long enough to be full again is the same as no bucket,
+ * so idle buckets are removed from the head of the stripe on each access (in
+ * constant time), and when the stripe is full its least recently used bucket is
+ * evicted. Memory is bounded by {@code maxEntries} buckets per limit whatever
+ * the count of distinct keys is.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class RateLimiter {
+
+	/**
+	 * The enum {@code Limit} represents kinds of keys requests are limited by.
+	 */
+	public enum Limit {
+		IP, LOGIN, PURCHASE
+	}
+
+	private boolean enabled;
+	private final Map<Limit, BucketTable> tables = new EnumMap<>(Limit.class);
+
+	public RateLimiter(MeterRegistry meterRegistry, @Value("${app.ratelimit.enabled:true}") boolean enabled,
+			@Value("${app.ratelimit.stripes:64}") int stripes,
+			@Value("${app.ratelimit.maxEntries:65536}") int maxEntries,
+			@Value("${app.ratelimit.ip.capacity:30}") int ipCapacity,
+			@Value("${app.ratelimit.ip.refillPerSecond:10}") double ipRefillPerSecond,
+			@Value("${app.ratelimit.login.capacity:5}") int loginCapacity,
+			@Value("${app.ratelimit.login.refillPerSecond:0.1}") double loginRefillPerSecond,
+			@Value("${app.ratelimit.purchase.capacity:10}") int purchaseCapacity,
+			@Value("${app.ratelimit.purchase.refillPerSecond:2}") double purchaseRefillPerSecond) {
+		this.enabled = enabled;
+		tables.put(Limit.IP, new BucketTable(Limit.IP, ipCapacity, ipRefillPerSecond, stripes, maxEntries,
+				meterRegistry));
+		tables.put(Limit.LOGIN, new BucketTable(Limit.LOGIN, loginCapacity, loginRefillPerSecond, stripes,
+				maxEntries, meterRegistry));
+		tables.put(Limit.PURCHASE, new BucketTable(Limit.PURCHASE, purchaseCapacity, purchaseRefillPerSecond,
+				stripes, maxEntries, meterRegistry));
+	}
+
+	/**
+	 * Takes single token from the bucket of specified key. Returns {@code 0} if
+	 * request is allowed, otherwise - count of seconds until next request of
+	 * this key will be allowed.
+	 * 
+	 * @param limit specified kind of key.
+	 * @param key   specified key.
+	 * @return {@code 0} if allowed, otherwise - seconds to wait (at least 1).
+	 */
+	public long tryAcquire(Limit limit, String key) {
+		return tryAcquire(limit, key, System.nanoTime());
+	}
+
+	/**
+	 * Takes single token from the bucket of specified key at specified time (see
+	 * {@link #tryAcquire(Limit, String)}).
+	 * 
+	 * @param limit specified kind of key.
+	 * @param key   specified key.
+	 * @param now   specified time, in nanoseconds of {@link System#nanoTime()}.
+	 * @return {@code 0} if allowed, otherwise - seconds to wait (at least 1).
+	 */
+	long tryAcquire(Limit limit, String key, long now) {
+		if (!enabled || key == null)
+			return 0;
+		return tables.get(limit).tryAcquire(key, now);
+	}
+
+	/**
+	 * The class {@code BucketTable} holds striped buckets of single limit.
+	 */
+	private static final class BucketTable {
+
+		private final long capacity;
+		private final double tokensPerNano;
+		// bucket idle this long is full again
+		private final long idleNanos;
+		private final Stripe[] stripes;
+		private final int perStripe;
+		private final Counter allowed;
+		private final Counter rejected;
+		private final Counter idleEvictions;
+		private final Counter sizeEvictions;
+
+		private BucketTable(Limit limit, int capacity, double refillPerSecond, int stripes, int maxEntries,
+				MeterRegistry meterRegistry) {
+			this.capacity = capacity;
+			this.tokensPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+			this.idleNanos = (long) Math.ceil(capacity / tokensPerNano);
+			this.stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+			for (int i = 0; i < this.stripes.length; i++)
+				this.stripes[i] = new Stripe();
+			this.perStripe = Math.max(1, maxEntries / this.stripes.length);
+
+			String tag = limit.name().toLowerCase();
+			this.allowed = Counter.builder("ratelimit.requests").tag("limit", tag).tag("result", "allowed")
+					.register(meterRegistry);
+			this.rejected = Counter.builder("ratelimit.requests").tag("limit", tag).tag("result", "rejected")
+					.register(meterRegistry);
+			this.idleEvictions = Counter.builder("ratelimit.evictions").tag("limit", tag).tag("cause", "idle")
+					.register(meterRegistry);
+			this.sizeEvictions = Counter.builder("ratelimit.evictions").tag("limit", tag).tag("cause", "size")
+					.register(meterRegistry);
+			Gauge.builder("ratelimit.buckets", this, BucketTable::size).tag("limit", tag)
+					.description("buckets held in memory").register(meterRegistry);
+		}
+
+		private long tryAcquire(String key, long now) {
+			int hash = key.hashCode();
+			Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+			synchronized (stripe) {
+				expireIdle(stripe, now);
+
+				Bucket bucket = stripe.buckets.get(key);
+				if (bucket == null) {
+					bucket = new Bucket(capacity, now);
+					stripe.buckets.put(key, bucket);
+					if (stripe.buckets.size() > perStripe) {
+						Iterator<Bucket> eldest = stripe.buckets.values().iterator();
+						eldest.next();
+						eldest.remove();
+						sizeEvictions.increment();
+					}
+				}
+
+				bucket.refill(now, capacity, tokensPerNano);
+				if (bucket.tokens >= 1) {
+					bucket.tokens--;
+					allowed.increment();
+					return 0;
+				}
+
+				rejected.increment();
+				return Math.max(1, (long) Math.ceil((1 - bucket.tokens) / tokensPerNano / TimeUnit.SECONDS.toNanos(1)));
+			}
+		}
+
+		private void expireIdle(Stripe stripe, long now) {
+			// buckets are in access order, so only the head can be idle
+			Iterator<Bucket> iterator = stripe.buckets.values().iterator();
+			while (iterator.hasNext()) {
+				if (now - iterator.next().lastAccess < idleNanos)
+					return;
+				iterator.remove();
+				idleEvictions.increment();
+			}
+		}
+
+		private int size() {
+			int size = 0;
+			for (Stripe stripe : stripes) {
+				synchronized (stripe) {
+					size += stripe.buckets.size();
+				}
+			}
+			return size;
+		}
+
+	}
+
+	/**
+	 * The class {@code Stripe} is the lock and buckets of part of keys.
+	 */
+	private static final class Stripe {
+
+		private final LinkedHashMap<String, Bucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+
+	}
+
+	/**
+	 * The class {@code Bucket} represents tokens left to single key.
+	 */
+	private static final class Bucket {
+
+		private double tokens;
+		private long lastAccess;
+
+		private Bucket(long capacity, long now) {
+			this.tokens = capacity;
+			this.lastAccess = now;
+		}
+
+		private void refill(long now, long capacity, double tokensPerNano) {
+			tokens = Math.min(capacity, tokens + (now - lastAccess) * tokensPerNano);
+			lastAccess = now;
+		}
+
+	}
+
+}
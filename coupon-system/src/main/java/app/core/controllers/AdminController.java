@@ -3,21 +3,27 @@ package app.core.controllers;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
+import app.core.beans.CatalogVersions;
 import app.core.entities.Company;
 import app.core.entities.Customer;
+import app.core.enums.View;
+import app.core.exceptions.StaleVersionException;
+import app.core.jwt.ClientPrincipal;
 import app.core.services.AdminService;
 
 @RestController
@@ -25,15 +31,18 @@ import app.core.services.AdminService;
 public class AdminController {
 
 	private AdminService adminService;
+	private CatalogVersions catalogVersions;
 
 	@Autowired
-	public AdminController(AdminService adminService) {
+	public AdminController(AdminService adminService, CatalogVersions catalogVersions) {
 		this.adminService = adminService;
+		this.catalogVersions = catalogVersions;
 	}
 
 	@PostMapping("/add/company")
-	public ResponseEntity<Company> addCompany(@RequestHeader("authorization") String token,
+	public ResponseEntity<Company> addCompany(@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
 			@RequestBody Company company) {
+		ClientAccess.checkAdmin(principal);
 		try {
 			return new ResponseEntity<Company>(adminService.addCompany(company), HttpStatus.CREATED);
 		} catch (Exception e) {
@@ -42,8 +51,9 @@ public class AdminController {
 	}
 
 	@GetMapping("/get/company")
-	public ResponseEntity<Company> getCompany(@RequestHeader("authorization") String token,
+	public ResponseEntity<Company> getCompany(@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
 			@RequestParam("id") int companyId) {
+		ClientAccess.checkAdmin(principal);
 		try {
 			return new ResponseEntity<Company>(adminService.getOneCompanyWithCoupons(companyId), HttpStatus.OK);
 		} catch (Exception e) {
@@ -52,27 +62,41 @@ public class AdminController {
 	}
 
 	@GetMapping("/get/company/all")
-	public ResponseEntity<List<Company>> getAllCompanies(@RequestHeader("authorization") String token) {
+	public ResponseEntity<List<?>> getAllCompanies(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
+			@RequestParam(name = "view", defaultValue = "FULL") View view, WebRequest request) {
+		ClientAccess.checkAdmin(principal);
+		// tag is taken before the list is read
+		String etag = catalogVersions.catalogTag();
+		if (request.checkNotModified(etag))
+			return null;
 		try {
-			return new ResponseEntity<List<Company>>(adminService.getAllCompanies(), HttpStatus.OK);
+			return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate())
+					.body(view == View.SUMMARY ? adminService.getAllCompanySummaries()
+							: adminService.getAllCompanies());
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
 		}
 	}
 
 	@PutMapping("/update/company")
-	public ResponseEntity<Company> updateCompany(@RequestHeader("authorization") String token,
-			@RequestBody Company company) {
+	public ResponseEntity<Company> updateCompany(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal, @RequestBody Company company) {
+		ClientAccess.checkAdmin(principal);
 		try {
 			return new ResponseEntity<Company>(adminService.updateComapany(company), HttpStatus.OK);
+		} catch (StaleVersionException e) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
 		}
 	}
 
 	@DeleteMapping("/delete/company")
-	public ResponseEntity<Company> deleteCompany(@RequestHeader("authorization") String token,
+	public ResponseEntity<Company> deleteCompany(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
 			@RequestParam("id") int companyId) {
+		ClientAccess.checkAdmin(principal);
 		try {
 			return new ResponseEntity<Company>(adminService.deleteCompany(companyId), HttpStatus.OK);
 		} catch (Exception e) {
@@ -81,8 +105,9 @@ public class AdminController {
 	}
 
 	@PostMapping("/add/customer")
-	public ResponseEntity<Customer> addCustomer(@RequestHeader("authorization") String token,
+	public ResponseEntity<Customer> addCustomer(@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
 			@RequestBody Customer customer) {
+		ClientAccess.checkAdmin(principal);
 		try {
 			return new ResponseEntity<Customer>(adminService.addCustomer(customer), HttpStatus.CREATED);
 		} catch (Exception e) {
@@ -91,8 +116,9 @@ public class AdminController {
 	}
 
 	@GetMapping("/get/customer")
-	public ResponseEntity<Customer> getCustomer(@RequestHeader("authorization") String token,
+	public ResponseEntity<Customer> getCustomer(@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
 			@RequestParam("id") int customerId) {
+		ClientAccess.checkAdmin(principal);
 		try {
 			return new ResponseEntity<Customer>(adminService.getOneCustomerWithCoupons(customerId), HttpStatus.OK);
 		} catch (Exception e) {
@@ -101,27 +127,41 @@ public class AdminController {
 	}
 
 	@GetMapping("/get/customer/all")
-	public ResponseEntity<List<Customer>> getAllCustomers(@RequestHeader("authorization") String token) {
+	public ResponseEntity<List<?>> getAllCustomers(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
+			@RequestParam(name = "view", defaultValue = "FULL") View view, WebRequest request) {
+		ClientAccess.checkAdmin(principal);
+		// tag is taken before the list is read
+		String etag = catalogVersions.catalogTag();
+		if (request.checkNotModified(etag))
+			return null;
 		try {
-			return new ResponseEntity<List<Customer>>(adminService.getAllCustomers(), HttpStatus.OK);
+			return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate())
+					.body(view == View.SUMMARY ? adminService.getAllCustomerSummaries()
+							: adminService.getAllCustomers());
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
 		}
 	}
 
 	@PutMapping("/update/customer")
-	public ResponseEntity<Customer> updateCustomer(@RequestHeader("authorization") String token,
-			@RequestBody Customer customer) {
+	public ResponseEntity<Customer> updateCustomer(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal, @RequestBody Customer customer) {
+		ClientAccess.checkAdmin(principal);
 		try {
 			return new ResponseEntity<Customer>(adminService.updateCustomer(customer), HttpStatus.OK);
+		} catch (StaleVersionException e) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
 		}
 	}
 
 	@DeleteMapping("/delete/customer")
-	public ResponseEntity<Customer> deleteCustomer(@RequestHeader("authorization") String token,
+	public ResponseEntity<Customer> deleteCustomer(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
 			@RequestParam("id") int customerId) {
+		ClientAccess.checkAdmin(principal);
 		try {
 			return new ResponseEntity<Customer>(adminService.deleteCustomer(customerId), HttpStatus.OK);
 		} catch (Exception e) {
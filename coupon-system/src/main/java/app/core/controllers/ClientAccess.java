@@ -0,0 +1,48 @@
+package app.core.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import app.core.enums.ClientType;
+import app.core.jwt.ClientPrincipal;
+
+/**
+ * The class {@code ClientAccess} checks that client of the request (see
+ * {@link ClientPrincipal}) acts on its own account only: id of company or
+ * customer in the path must be the id of its token.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+final class ClientAccess {
+
+	private ClientAccess() {
+	}
+
+	/**
+	 * Checks that specified principal is the client with specified id.
+	 * 
+	 * @param principal specified principal of the request.
+	 * @param id        specified id of company or customer.
+	 * @throws ResponseStatusException with status 403 if the principal is other
+	 *                                 client.
+	 */
+	static void checkClient(ClientPrincipal principal, int id) {
+		if (principal.getId() != id)
+			throw new ResponseStatusException(HttpStatus.FORBIDDEN,
+					"access denied: client " + principal.getId() + " can not act for client " + id + "!");
+	}
+
+	/**
+	 * Checks that specified principal is the administrator.
+	 * 
+	 * @param principal specified principal of the request.
+	 * @throws ResponseStatusException with status 403 if the principal is not the
+	 *                                 administrator.
+	 */
+	static void checkAdmin(ClientPrincipal principal) {
+		if (principal.getClientType() != ClientType.ADMINISTRATOR)
+			throw new ResponseStatusException(HttpStatus.FORBIDDEN, "access denied: you are not an admin!");
+	}
+
+}
@@ -3,6 +3,7 @@ package app.core.controllers;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -10,16 +11,23 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
+import app.core.beans.CatalogVersions;
+import app.core.dto.CouponCriteria;
+import app.core.dto.CouponPage;
 import app.core.entities.Company;
 import app.core.entities.Coupon;
-import app.core.enums.Category;
+import app.core.enums.CouponSort;
+import app.core.enums.View;
+import app.core.exceptions.StaleVersionException;
+import app.core.jwt.ClientPrincipal;
 import app.core.services.CompanyService;
 
 @RestController
@@ -27,15 +35,18 @@ import app.core.services.CompanyService;
 public class CompanyController {
 
 	private CompanyService companyService;
+	private CatalogVersions catalogVersions;
 
 	@Autowired
-	public CompanyController(CompanyService companyService) {
+	public CompanyController(CompanyService companyService, CatalogVersions catalogVersions) {
 		this.companyService = companyService;
+		this.catalogVersions = catalogVersions;
 	}
 
 	@PostMapping("/{id}/add/coupon")
-	public ResponseEntity<Coupon> addCoupon(@RequestHeader("authorization") String token, @PathVariable int id,
-			@RequestBody Coupon coupon) {
+	public ResponseEntity<Coupon> addCoupon(@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
+			@PathVariable int id, @RequestBody Coupon coupon) {
+		ClientAccess.checkClient(principal, id);
 		try {
 			return new ResponseEntity<Coupon>(companyService.addCoupon(id, coupon), HttpStatus.CREATED);
 		} catch (Exception e) {
@@ -44,67 +55,90 @@ public class CompanyController {
 	}
 
 	@GetMapping("/get/coupon")
-	public ResponseEntity<Coupon> getOneCoupon(@RequestHeader("authorization") String token,
+	public ResponseEntity<Coupon> getOneCoupon(@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
 			@RequestParam("id") int couponId) {
+		Coupon coupon;
 		try {
-			return new ResponseEntity<Coupon>(companyService.getOneCoupon(couponId), HttpStatus.OK);
+			coupon = companyService.getOneCoupon(couponId);
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
 		}
+		ClientAccess.checkClient(principal, coupon.getCompanyId());
+		return new ResponseEntity<Coupon>(coupon, HttpStatus.OK);
 	}
 
 	@DeleteMapping("/delete/coupon")
-	public ResponseEntity<Coupon> deleteCoupon(@RequestHeader("authorization") String token,
+	public ResponseEntity<Coupon> deleteCoupon(@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
 			@RequestParam("id") int couponId) {
 		try {
-			return new ResponseEntity<Coupon>(companyService.deleteCoupon(couponId), HttpStatus.OK);
+			return new ResponseEntity<Coupon>(companyService.deleteCoupon(principal.getId(), couponId), HttpStatus.OK);
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
 		}
 	}
 
 	@GetMapping("/{id}/get/coupon/all")
-	public List<Coupon> getAllCompanyCoupons(@RequestHeader("authorization") String token, @PathVariable int id) {
+	public ResponseEntity<List<?>> getAllCompanyCoupons(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal, @PathVariable int id,
+			@RequestParam(name = "view", defaultValue = "FULL") View view, WebRequest request) {
+		ClientAccess.checkClient(principal, id);
+		// tag is taken before the list is read
+		String etag = catalogVersions.companyTag(id);
+		if (request.checkNotModified(etag))
+			return null;
 		try {
-			return companyService.getAllCompanyCoupons(id);
+			return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate())
+					.body(view == View.SUMMARY ? companyService.getAllCompanyCouponSummaries(id)
+							: companyService.getAllCompanyCoupons(id));
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
 		}
 	}
 
-	@GetMapping("/{id}/get/coupon/all/{category}")
-	public List<Coupon> getAllCompanyCoupons(@RequestHeader("authorization") String token, @PathVariable int id,
-			@PathVariable("category") Category couponCategory) {
+	@GetMapping("/{id}/get/coupon/query")
+	public ResponseEntity<List<?>> getCompanyCoupons(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal, @PathVariable int id,
+			CouponCriteria criteria, @RequestParam(name = "sort", defaultValue = "PRICE") CouponSort sort,
+			@RequestParam(name = "size", required = false) Integer size,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "view", defaultValue = "FULL") View view, WebRequest request) {
+		ClientAccess.checkClient(principal, id);
+		String etag = catalogVersions.companyTag(id);
+		if (request.checkNotModified(etag))
+			return null;
 		try {
-			return companyService.getAllCompanyCoupons(id, couponCategory);
-		} catch (Exception e) {
-			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
-		}
-	}
-
-	@GetMapping("/{id}/get/coupon/all/{maxPrice}")
-	public List<Coupon> getAllCompanyCoupons(@RequestHeader("authorization") String token, @PathVariable int id,
-			@PathVariable("maxPrice") double maxCouponPrice) {
-		try {
-			return companyService.getAllCompanyCoupons(id, maxCouponPrice);
+			CouponPage<?> page = view == View.SUMMARY
+					? companyService.getCompanyCouponSummaries(id, criteria, sort, size, cursor)
+					: companyService.getCompanyCoupons(id, criteria, sort, size, cursor);
+			ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag)
+					.cacheControl(CacheControl.noCache().cachePrivate());
+			if (page.getNextCursor() != null)
+				response.header(CustomerController.NEXT_CURSOR_HEADER, page.getNextCursor());
+			return response.body(page.getCoupons());
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
 		}
 	}
 
 	@PutMapping("/{id}/update/coupon")
-	public ResponseEntity<Coupon> updateCoupon(@RequestHeader("authorization") String token, @PathVariable int id,
-			@RequestBody Coupon coupon) {
+	public ResponseEntity<Coupon> updateCoupon(@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
+			@PathVariable int id, @RequestBody Coupon coupon) {
+		ClientAccess.checkClient(principal, id);
 		try {
 			return new ResponseEntity<Coupon>(companyService.updateCoupon(id, coupon), HttpStatus.OK);
+		} catch (StaleVersionException e) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
 		}
 	}
 
 	@GetMapping("/{id}/get/details")
-	public ResponseEntity<Company> getCompanyDetails(@RequestHeader("authorization") String token,
-			@PathVariable int id) {
+	public ResponseEntity<Company> getCompanyDetails(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal, @PathVariable int id) {
+		ClientAccess.checkClient(principal, id);
 		try {
 			return new ResponseEntity<Company>(companyService.getCompanyDetailsWithCoupons(id), HttpStatus.OK);
 		} catch (Exception e) {
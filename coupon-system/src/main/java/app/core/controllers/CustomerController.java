@@ -1,97 +1,164 @@
 package app.core.controllers;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
+import app.core.beans.CatalogVersions;
+import app.core.dto.CouponCriteria;
+import app.core.dto.CouponPage;
 import app.core.entities.Coupon;
 import app.core.entities.Customer;
-import app.core.enums.Category;
+import app.core.enums.CouponSort;
+import app.core.enums.View;
+import app.core.jwt.ClientPrincipal;
 import app.core.services.CustomerService;
 
 @RestController
 @RequestMapping("/api/customer")
 public class CustomerController {
 
+	public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
 	private CustomerService customerService;
+	private CatalogVersions catalogVersions;
+	private CacheControl catalogCacheControl;
 
 	@Autowired
-	public CustomerController(CustomerService customerService) {
+	public CustomerController(CustomerService customerService, CatalogVersions catalogVersions,
+			@Value("${app.catalog.maxAgeSeconds:5}") long catalogMaxAgeSeconds) {
 		this.customerService = customerService;
+		this.catalogVersions = catalogVersions;
+		// same for every customer, but served to authenticated clients only
+		this.catalogCacheControl = CacheControl.maxAge(catalogMaxAgeSeconds, TimeUnit.SECONDS).cachePrivate()
+				.mustRevalidate();
 	}
 
 	@PutMapping("/{id}/purchase")
-	public ResponseEntity<Coupon> purchaseCoupon(@RequestHeader("authorization") String token, @PathVariable int id,
-			@RequestBody Coupon coupon) {
+	public ResponseEntity<Coupon> purchaseCoupon(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal, @PathVariable int id,
+			@RequestBody Coupon coupon, HttpServletResponse response) {
+		ClientAccess.checkClient(principal, id);
 		try {
 			return new ResponseEntity<Coupon>(customerService.purchaseCoupon(id, coupon), HttpStatus.OK);
 		} catch (Exception e) {
-			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+			throw PurchaseRejections.toStatus(e, response);
 		}
 	}
 
-	@GetMapping("/get/coupon")
-	public ResponseEntity<Coupon> getOneCoupon(@RequestHeader("authorization") String token,
-			@RequestParam("id") int couponId) {
+	@PutMapping("/{id}/purchase/{couponId}")
+	public ResponseEntity<Coupon> purchaseCouponById(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal, @PathVariable int id,
+			@PathVariable int couponId, HttpServletResponse response) {
+		ClientAccess.checkClient(principal, id);
 		try {
-			return new ResponseEntity<Coupon>(customerService.getOneCoupon(couponId), HttpStatus.OK);
+			return new ResponseEntity<Coupon>(customerService.purchaseCoupon(id, couponId), HttpStatus.OK);
 		} catch (Exception e) {
-			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+			throw PurchaseRejections.toStatus(e, response);
 		}
 	}
 
-	@GetMapping("/get/coupon/all")
-	public List<Coupon> getAllAvailableCoupons(@RequestHeader("authorization") String token) {
+	@GetMapping("/get/coupon")
+	public ResponseEntity<Coupon> getOneCoupon(@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
+			@RequestParam("id") int couponId) {
 		try {
-			return customerService.getAllAvailableCoupons();
+			return new ResponseEntity<Coupon>(customerService.getOneCoupon(couponId), HttpStatus.OK);
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
 		}
 	}
 
-	@GetMapping("/{id}/get/coupon/all")
-	public List<Coupon> getAllCustomerCoupons(@RequestHeader("authorization") String token, @PathVariable int id) {
+	@GetMapping("/get/coupon/all")
+	public ResponseEntity<List<?>> getAllAvailableCoupons(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal,
+			@RequestParam(name = "sort", defaultValue = "END_DATE") CouponSort sort,
+			@RequestParam(name = "size", required = false) Integer size,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "view", defaultValue = "FULL") View view, WebRequest request) {
+		// tag is taken before the page is read
+		String etag = catalogVersions.catalogTag();
+		if (request.checkNotModified(etag))
+			return null;
 		try {
-			return customerService.getAllCustomerCoupons(id);
+			CouponPage<?> page = view == View.SUMMARY ? customerService.getAvailableCouponSummaries(sort, size, cursor)
+					: customerService.getAvailableCoupons(sort, size, cursor);
+			ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).cacheControl(catalogCacheControl);
+			if (page.getNextCursor() != null)
+				response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+			return response.body(page.getCoupons());
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
 		}
 	}
 
-	@GetMapping("/{id}/get/coupon/all/{category}")
-	public List<Coupon> getAllCustomerCoupons(@RequestHeader("authorization") String token, @PathVariable int id,
-			@PathVariable("category") Category couponCategory) {
+	@GetMapping("/{id}/get/coupon/all")
+	public ResponseEntity<List<?>> getAllCustomerCoupons(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal, @PathVariable int id,
+			@RequestParam(name = "view", defaultValue = "FULL") View view, WebRequest request) {
+		ClientAccess.checkClient(principal, id);
+		// tag is taken before the list is read
+		String etag = catalogVersions.customerTag(id);
+		if (request.checkNotModified(etag))
+			return null;
 		try {
-			return customerService.getAllCustomerCoupons(id, couponCategory);
+			return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate())
+					.body(view == View.SUMMARY ? customerService.getAllCustomerCouponSummaries(id)
+							: customerService.getAllCustomerCoupons(id));
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
 		}
 	}
 
-	@GetMapping("/{id}/get/coupon/all/{maxPrice}")
-	public List<Coupon> getAllCustomerCoupons(@RequestHeader("authorization") String token, @PathVariable int id,
-			@PathVariable("maxPrice") double maxCouponPrice) {
+	@GetMapping("/{id}/get/coupon/query")
+	public ResponseEntity<List<?>> getCustomerCoupons(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal, @PathVariable int id,
+			CouponCriteria criteria, @RequestParam(name = "sort", defaultValue = "PRICE") CouponSort sort,
+			@RequestParam(name = "size", required = false) Integer size,
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "view", defaultValue = "FULL") View view, WebRequest request) {
+		ClientAccess.checkClient(principal, id);
+		String etag = catalogVersions.customerTag(id);
+		if (request.checkNotModified(etag))
+			return null;
 		try {
-			return customerService.getAllCustomerCoupons(id, maxCouponPrice);
+			CouponPage<?> page = view == View.SUMMARY
+					? customerService.getCustomerCouponSummaries(id, criteria, sort, size, cursor)
+					: customerService.getCustomerCoupons(id, criteria, sort, size, cursor);
+			ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag)
+					.cacheControl(CacheControl.noCache().cachePrivate());
+			if (page.getNextCursor() != null)
+				response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+			return response.body(page.getCoupons());
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
 		} catch (Exception e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
 		}
 	}
 
 	@GetMapping("/{id}/get/details")
-	public ResponseEntity<Customer> getCustomerDetails(@RequestHeader("authorization") String token,
-			@PathVariable int id) {
+	public ResponseEntity<Customer> getCustomerDetails(
+			@RequestAttribute(ClientPrincipal.ATTRIBUTE) ClientPrincipal principal, @PathVariable int id) {
+		ClientAccess.checkClient(principal, id);
 		try {
 			return new ResponseEntity<Customer>(customerService.getCustomerDetailsWithCoupons(id), HttpStatus.OK);
 		} catch (Exception e) {
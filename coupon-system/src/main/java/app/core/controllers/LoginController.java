@@ -1,5 +1,9 @@
 package app.core.controllers;
 
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -8,28 +12,30 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
 import app.core.beans.LoginManager;
-import app.core.entities.Company;
-import app.core.entities.Customer;
+import app.core.dto.ClientIdentity;
 import app.core.enums.ClientType;
 import app.core.exceptions.CouponSystemException;
+import app.core.exceptions.ServiceBusyException;
+import app.core.filters.TokenFilter;
 import app.core.jwt.JwtUtil;
 import app.core.jwt.LoginModel;
 import app.core.jwt.UserDetails;
-import app.core.services.AdminService;
-import app.core.services.ClientService;
-import app.core.services.CompanyService;
-import app.core.services.CustomerService;
+import app.core.jwt.VerifiedTokenCache;
 
 @RestController
 public class LoginController {
 
+	private static final Logger log = LoggerFactory.getLogger(LoginController.class);
+
 	private LoginManager loginManager;
 	private JwtUtil jwtUtil;
+	private VerifiedTokenCache tokenCache;
 
 	@Autowired
-	public LoginController(LoginManager loginManager, JwtUtil jwtUtil) {
+	public LoginController(LoginManager loginManager, JwtUtil jwtUtil, VerifiedTokenCache tokenCache) {
 		this.loginManager = loginManager;
 		this.jwtUtil = jwtUtil;
+		this.tokenCache = tokenCache;
 	}
 
 	@PostMapping("/api/login")
@@ -38,45 +44,35 @@ public class LoginController {
 			String email = loginModel.email;
 			String password = loginModel.password;
 			ClientType clientType = ClientType.valueOf(loginModel.clientType);
-			ClientService currentClient = loginManager.login(email, password, clientType);
-			System.out.println("Login Succeeded!");
+			ClientIdentity client = loginManager.login(email, password, clientType);
 
-			if (currentClient == null)
+			if (client == null) {
+				log.info("login failed: {} {}", clientType, email);
 				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid email or password!");
-
-			String clientName = null;
-			int clientId = -1;
-
-			if (currentClient instanceof AdminService) {
-				clientName = "Administrator";
-			} else if (currentClient instanceof CompanyService) {
-				Company company = ((CompanyService) currentClient).getCompanyByEmailAndPassword(email, password);
-				clientId = company.getId();
-				clientName = company.getName();
-			} else {
-				Customer customer = ((CustomerService) currentClient).getCustomerByEmailAndPassword(email, password);
-				clientId = customer.getId();
-//				clientName = customer.getFirstName().concat(" ").concat(customer.getLastName());
-				clientName = customer.getFirstName();
 			}
 
-			UserDetails userDetails = new UserDetails(clientId, clientName, email, clientType);
+			UserDetails userDetails = new UserDetails(client.getId(), client.getName(), email, clientType);
 
 			String token = jwtUtil.generateToken(userDetails);
 			userDetails.token = token;
 
-			System.out.println("\n===================== Client Service Login =====================");
-			System.out.println("Email: " + email);
-			System.out.println("Password: " + password);
-			System.out.println("Client Type: " + clientType);
-			System.out.println("Client Service: " + currentClient == null ? null : currentClient.getClass().getName());
-			System.out.println("Token: " + token);
-
-			System.out.println(" - Login Succeeded! - ");
+			log.info("login succeeded: {} {}", clientType, client);
 			return userDetails;
+		} catch (ServiceBusyException e) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
 		} catch (CouponSystemException e) {
 			throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, e.getMessage());
 		}
 	}
 
+	/**
+	 * Revokes token of the request, so it is not accepted anymore.
+	 * 
+	 * @param request specified request (authenticated by {@link TokenFilter}).
+	 */
+	@PostMapping("/api/logout")
+	public void logout(HttpServletRequest request) {
+		tokenCache.revoke(TokenFilter.extractToken(request));
+	}
+
 }
@@ -0,0 +1,68 @@
+package app.core.controllers;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import app.core.exceptions.PurchaseRejectedException;
+import app.core.exceptions.ServiceBusyException;
+
+/**
+ * The class {@code PurchaseRejections} maps failed coupon purchase to response
+ * status by reason of the rejection, so clients can tell purchase that may be
+ * retried (503 with {@code Retry-After} header) from purchase that will fail
+ * again.
+ *
+ * @author Vitaly Zlobin
+ *
+ */
+final class PurchaseRejections {
+
+	// seconds client should wait before retrying temporarily unavailable purchase
+	static final int RETRY_AFTER_SECONDS = 1;
+
+	private PurchaseRejections() {
+	}
+
+	/**
+	 * Returns exception with response status of specified purchase failure:
+	 * {@code 404} if coupon or customer not found, {@code 409} if coupon out of
+	 * stock, expired or already purchased, {@code 503} if coupon temporarily
+	 * unavailable or service busy, otherwise - {@code 400}.
+	 *
+	 * @param e        specified exception the purchase failed with.
+	 * @param response specified response ({@code Retry-After} header is set on
+	 *                 it for {@code 503}).
+	 * @return exception with response status.
+	 */
+	static ResponseStatusException toStatus(Exception e, HttpServletResponse response) {
+		HttpStatus status = HttpStatus.BAD_REQUEST;
+		if (e instanceof ServiceBusyException) {
+			status = HttpStatus.SERVICE_UNAVAILABLE;
+		} else if (e instanceof PurchaseRejectedException) {
+			switch (((PurchaseRejectedException) e).getReason()) {
+			case NOT_FOUND:
+				status = HttpStatus.NOT_FOUND;
+				break;
+			case OUT_OF_STOCK:
+			case EXPIRED:
+			case ALREADY_PURCHASED:
+				status = HttpStatus.CONFLICT;
+				break;
+			case UNAVAILABLE:
+			case BUSY:
+				status = HttpStatus.SERVICE_UNAVAILABLE;
+				break;
+			default:
+				break;
+			}
+		}
+
+		if (status == HttpStatus.SERVICE_UNAVAILABLE)
+			response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS));
+		return new ResponseStatusException(status, e.getMessage());
+	}
+
+}
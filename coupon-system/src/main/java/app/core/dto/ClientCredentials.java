@@ -0,0 +1,58 @@
+package app.core.dto;
+
+/**
+ * The class {@code ClientCredentials} represents id, name and password hash of
+ * client that was found by its email, so the password can be verified.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class ClientCredentials {
+
+	private final int id;
+	private final String name;
+	private final String passwordHash;
+
+	public ClientCredentials(int id, String name, String passwordHash) {
+		this.id = id;
+		this.name = name;
+		this.passwordHash = passwordHash;
+	}
+
+	/**
+	 * Returns integer that represents id of this client.
+	 * 
+	 * @return id of this client.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns {@link String} that represents name of this client.
+	 * 
+	 * @return name of this client.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns {@link String} that represents stored password hash of this client.
+	 * 
+	 * @return password hash of this client.
+	 */
+	public String getPasswordHash() {
+		return passwordHash;
+	}
+
+	/**
+	 * Returns id and name of this client.
+	 * 
+	 * @return id and name of this client.
+	 */
+	public ClientIdentity toIdentity() {
+		return new ClientIdentity(id, name);
+	}
+
+}
@@ -0,0 +1,44 @@
+package app.core.dto;
+
+/**
+ * The class {@code ClientIdentity} represents id and name of client that was
+ * found by its login credentials.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class ClientIdentity {
+
+	private final int id;
+	private final String name;
+
+	public ClientIdentity(int id, String name) {
+		this.id = id;
+		this.name = name;
+	}
+
+	/**
+	 * Returns integer that represents id of this client ({@code -1} for
+	 * administrator).
+	 * 
+	 * @return id of this client.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns {@link String} that represents name of this client.
+	 * 
+	 * @return name of this client.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return "ClientIdentity [id=" + id + ", name=" + name + "]";
+	}
+
+}
@@ -0,0 +1,54 @@
+package app.core.dto;
+
+/**
+ * The class {@code CompanySummary} represents the values of company that lists
+ * of companies show: id, name and email (no password and no coupons).
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class CompanySummary {
+
+	private final int id;
+	private final String name;
+	private final String email;
+
+	public CompanySummary(int id, String name, String email) {
+		this.id = id;
+		this.name = name;
+		this.email = email;
+	}
+
+	/**
+	 * Returns integer that represents id of this company.
+	 * 
+	 * @return id of this company.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns {@link String} that represents name of this company.
+	 * 
+	 * @return name of this company.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns {@link String} that represents email of this company.
+	 * 
+	 * @return email of this company.
+	 */
+	public String getEmail() {
+		return email;
+	}
+
+	@Override
+	public String toString() {
+		return "CompanySummary [id=" + id + ", name=" + name + ", email=" + email + "]";
+	}
+
+}
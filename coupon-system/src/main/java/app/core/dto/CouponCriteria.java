@@ -0,0 +1,150 @@
+package app.core.dto;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+
+import app.core.entities.Coupon;
+import app.core.enums.Category;
+
+/**
+ * The class {@code CouponCriteria} represents filter of coupons: every
+ * specified (not {@code null}) criterion must match, criteria that are not
+ * specified match every coupon.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class CouponCriteria {
+
+	private Integer companyId;
+	private Set<Category> categories;
+	private Double minPrice;
+	private Double maxPrice;
+	@DateTimeFormat(iso = ISO.DATE)
+	private LocalDate validFrom;
+	@DateTimeFormat(iso = ISO.DATE)
+	private LocalDate validTo;
+	private Boolean inStock;
+
+	/**
+	 * Returns id of company that coupons belong to.
+	 * 
+	 * @return company id or {@code null}.
+	 */
+	public Integer getCompanyId() {
+		return companyId;
+	}
+
+	/**
+	 * Returns categories that coupons belong to (any of them).
+	 * 
+	 * @return categories or {@code null}.
+	 */
+	public Set<Category> getCategories() {
+		return categories;
+	}
+
+	/**
+	 * Returns min price of coupons (inclusive).
+	 * 
+	 * @return min price or {@code null}.
+	 */
+	public Double getMinPrice() {
+		return minPrice;
+	}
+
+	/**
+	 * Returns max price of coupons (exclusive).
+	 * 
+	 * @return max price or {@code null}.
+	 */
+	public Double getMaxPrice() {
+		return maxPrice;
+	}
+
+	/**
+	 * Returns first day of validity window: coupons that end before it do not
+	 * match.
+	 * 
+	 * @return first day of validity window or {@code null}.
+	 */
+	public LocalDate getValidFrom() {
+		return validFrom;
+	}
+
+	/**
+	 * Returns last day of validity window: coupons that start after it do not
+	 * match.
+	 * 
+	 * @return last day of validity window or {@code null}.
+	 */
+	public LocalDate getValidTo() {
+		return validTo;
+	}
+
+	/**
+	 * Returns {@code true} if only coupons in stock match, {@code false} if only
+	 * coupons out of stock match.
+	 * 
+	 * @return in stock flag or {@code null}.
+	 */
+	public Boolean getInStock() {
+		return inStock;
+	}
+
+	public void setCompanyId(Integer companyId) {
+		this.companyId = companyId;
+	}
+
+	public void setCategories(Set<Category> categories) {
+		this.categories = categories;
+	}
+
+	public void setMinPrice(Double minPrice) {
+		this.minPrice = minPrice;
+	}
+
+	public void setMaxPrice(Double maxPrice) {
+		this.maxPrice = maxPrice;
+	}
+
+	public void setValidFrom(LocalDate validFrom) {
+		this.validFrom = validFrom;
+	}
+
+	public void setValidTo(LocalDate validTo) {
+		this.validTo = validTo;
+	}
+
+	public void setInStock(Boolean inStock) {
+		this.inStock = inStock;
+	}
+
+	/**
+	 * Returns {@code true} if specified coupon matches this criteria, otherwise -
+	 * {@code false}.
+	 * 
+	 * @param coupon specified coupon.
+	 * @return {@code true} if coupon matches, otherwise - {@code false}.
+	 */
+	public boolean matches(Coupon coupon) {
+		return (companyId == null || coupon.getCompanyId() == companyId)
+				&& (categories == null || categories.isEmpty() || categories.contains(coupon.getCategory()))
+				&& (minPrice == null || coupon.getPrice() >= minPrice)
+				&& (maxPrice == null || coupon.getPrice() < maxPrice)
+				&& (validFrom == null || !coupon.getEndDate().isBefore(validFrom))
+				&& (validTo == null || !coupon.getStartDate().isAfter(validTo))
+				&& (inStock == null || inStock == coupon.getAmount() > 0);
+	}
+
+	@Override
+	public String toString() {
+		return "CouponCriteria [companyId=" + companyId + ", categories=" + categories + ", minPrice=" + minPrice
+				+ ", maxPrice=" + maxPrice + ", validFrom=" + validFrom + ", validTo=" + validTo + ", inStock="
+				+ inStock + "]";
+	}
+
+}
@@ -0,0 +1,45 @@
+package app.core.dto;
+
+import java.time.LocalDate;
+
+/**
+ * The class {@code CouponEndDate} represents id and expiration date of coupon.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class CouponEndDate {
+
+	private final int id;
+	private final LocalDate endDate;
+
+	public CouponEndDate(int id, LocalDate endDate) {
+		this.id = id;
+		this.endDate = endDate;
+	}
+
+	/**
+	 * Returns integer that represents id of this coupon.
+	 * 
+	 * @return id of this coupon.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns {@link LocalDate} that represents expiration date of this coupon
+	 * (last day the coupon is available).
+	 * 
+	 * @return expiration date of this coupon.
+	 */
+	public LocalDate getEndDate() {
+		return endDate;
+	}
+
+	@Override
+	public String toString() {
+		return "CouponEndDate [id=" + id + ", endDate=" + endDate + "]";
+	}
+
+}
@@ -0,0 +1,56 @@
+package app.core.dto;
+
+import app.core.enums.Category;
+
+/**
+ * The class {@code CouponKey} represents id, category and price of coupon (the
+ * values coupons of company or customer are filtered by).
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class CouponKey {
+
+	private final int id;
+	private final Category category;
+	private final double price;
+
+	public CouponKey(int id, Category category, double price) {
+		this.id = id;
+		this.category = category;
+		this.price = price;
+	}
+
+	/**
+	 * Returns integer that represents id of this coupon.
+	 * 
+	 * @return id of this coupon.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns {@link Category} that represents category of this coupon.
+	 * 
+	 * @return category of this coupon.
+	 */
+	public Category getCategory() {
+		return category;
+	}
+
+	/**
+	 * Returns floating number that represents price of this coupon.
+	 * 
+	 * @return price of this coupon.
+	 */
+	public double getPrice() {
+		return price;
+	}
+
+	@Override
+	public String toString() {
+		return "CouponKey [id=" + id + ", category=" + category + ", price=" + price + "]";
+	}
+
+}
@@ -0,0 +1,66 @@
+package app.core.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+import app.core.entities.Coupon;
+import app.core.utilities.CatalogCursor;
+
+/**
+ * The class {@code CouponPage} represents single page of coupons catalog and
+ * the cursor of the next page.
+ * 
+ * @param <T> the type of coupons of the page ({@link Coupon} or
+ *            {@link CouponSummary}).
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class CouponPage<T> {
+
+	private final List<T> coupons;
+	private final String nextCursor;
+
+	public CouponPage(List<T> coupons, String nextCursor) {
+		this.coupons = coupons;
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * Returns page of the first {@code pageSize} of specified coupons, that were
+	 * fetched with one extra coupon to know if there is next page.
+	 * 
+	 * @param <T>      the type of coupons.
+	 * @param coupons  specified coupons (up to {@code pageSize + 1}).
+	 * @param pageSize specified page size.
+	 * @param cursor   specified cursor right after coupon.
+	 * @return page of specified coupons and cursor of the next page.
+	 */
+	public static <T> CouponPage<T> of(List<T> coupons, int pageSize, Function<T, CatalogCursor> cursor) {
+		if (coupons.size() <= pageSize)
+			return new CouponPage<>(coupons, null);
+
+		List<T> page = coupons.subList(0, pageSize);
+		return new CouponPage<>(page, cursor.apply(page.get(pageSize - 1)).encode());
+	}
+
+	/**
+	 * Returns {@link List} that represents coupons of this page.
+	 * 
+	 * @return coupons of this page.
+	 */
+	public List<T> getCoupons() {
+		return coupons;
+	}
+
+	/**
+	 * Returns opaque cursor of the next page, or {@code null} if this page is the
+	 * last one.
+	 * 
+	 * @return cursor of the next page or {@code null}.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+}
@@ -0,0 +1,105 @@
+package app.core.dto;
+
+import java.time.LocalDate;
+
+import app.core.entities.Coupon;
+import app.core.enums.Category;
+
+/**
+ * The class {@code CouponSummary} represents the values of coupon that lists of
+ * coupons show: id, title, category, price, end date and stock. Queries of
+ * summaries select these columns only (no description and image).
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class CouponSummary {
+
+	private final int id;
+	private final String title;
+	private final Category category;
+	private final double price;
+	private final LocalDate endDate;
+	private final int amount;
+
+	public CouponSummary(int id, String title, Category category, double price, LocalDate endDate, int amount) {
+		this.id = id;
+		this.title = title;
+		this.category = category;
+		this.price = price;
+		this.endDate = endDate;
+		this.amount = amount;
+	}
+
+	/**
+	 * Returns summary of specified coupon.
+	 * 
+	 * @param coupon specified coupon.
+	 * @return summary of specified coupon.
+	 */
+	public static CouponSummary of(Coupon coupon) {
+		return new CouponSummary(coupon.getId(), coupon.getTitle(), coupon.getCategory(), coupon.getPrice(),
+				coupon.getEndDate(), coupon.getAmount());
+	}
+
+	/**
+	 * Returns integer that represents id of this coupon.
+	 * 
+	 * @return id of this coupon.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns {@link String} that represents title of this coupon.
+	 * 
+	 * @return title of this coupon.
+	 */
+	public String getTitle() {
+		return title;
+	}
+
+	/**
+	 * Returns {@link Category} that represents category of this coupon.
+	 * 
+	 * @return category of this coupon.
+	 */
+	public Category getCategory() {
+		return category;
+	}
+
+	/**
+	 * Returns floating number that represents price of this coupon.
+	 * 
+	 * @return price of this coupon.
+	 */
+	public double getPrice() {
+		return price;
+	}
+
+	/**
+	 * Returns {@link LocalDate} that represents end date of this coupon.
+	 * 
+	 * @return end date of this coupon.
+	 */
+	public LocalDate getEndDate() {
+		return endDate;
+	}
+
+	/**
+	 * Returns integer that represents stock of this coupon.
+	 * 
+	 * @return stock of this coupon.
+	 */
+	public int getAmount() {
+		return amount;
+	}
+
+	@Override
+	public String toString() {
+		return "CouponSummary [id=" + id + ", title=" + title + ", category=" + category + ", price=" + price
+				+ ", endDate=" + endDate + ", amount=" + amount + "]";
+	}
+
+}
@@ -0,0 +1,67 @@
+package app.core.dto;
+
+/**
+ * The class {@code CustomerSummary} represents the values of customer that
+ * lists of customers show: id, first and last name and email (no password and
+ * no coupons).
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class CustomerSummary {
+
+	private final int id;
+	private final String firstName;
+	private final String lastName;
+	private final String email;
+
+	public CustomerSummary(int id, String firstName, String lastName, String email) {
+		this.id = id;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.email = email;
+	}
+
+	/**
+	 * Returns integer that represents id of this customer.
+	 * 
+	 * @return id of this customer.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns {@link String} that represents first name of this customer.
+	 * 
+	 * @return first name of this customer.
+	 */
+	public String getFirstName() {
+		return firstName;
+	}
+
+	/**
+	 * Returns {@link String} that represents last name of this customer.
+	 * 
+	 * @return last name of this customer.
+	 */
+	public String getLastName() {
+		return lastName;
+	}
+
+	/**
+	 * Returns {@link String} that represents email of this customer.
+	 * 
+	 * @return email of this customer.
+	 */
+	public String getEmail() {
+		return email;
+	}
+
+	@Override
+	public String toString() {
+		return "CustomerSummary [id=" + id + ", firstName=" + firstName + ", lastName=" + lastName + ", email="
+				+ email + "]";
+	}
+
+}
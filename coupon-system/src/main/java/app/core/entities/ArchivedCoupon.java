@@ -0,0 +1,163 @@
+package app.core.entities;
+
+import java.time.LocalDate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import app.core.enums.Category;
+
+/**
+ * The class {@code ArchivedCoupon} is expired coupon moved out of the coupon
+ * table (with the same id), kept for reporting. Rows are added by set-based
+ * statements only (see
+ * {@link app.core.repositories.CouponArchiveRepository}), so the class has no
+ * setters.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Entity
+@Table(name = "coupon_archive", indexes = {
+		@Index(name = "idx_coupon_archive_company_id", columnList = "company_id"),
+		@Index(name = "idx_coupon_archive_end_date", columnList = "end_date") })
+public class ArchivedCoupon {
+
+	@Id
+	private int id;
+	@Column(name = "company_id")
+	private int companyId;
+	@Enumerated(EnumType.STRING)
+	private Category category;
+	private String title;
+	private String description;
+	@Column(name = "start_date")
+	private LocalDate startDate;
+	@Column(name = "end_date")
+	private LocalDate endDate;
+	private int amount;
+	private double price;
+	private String image;
+	private boolean hot;
+	@Column(name = "archived_at")
+	private LocalDate archivedAt;
+
+	public ArchivedCoupon() {
+	}
+
+	/**
+	 * Returns id of this coupon (the id it had in the coupon table).
+	 * 
+	 * @return id of this coupon.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns company id of this coupon.
+	 * 
+	 * @return company id of this coupon.
+	 */
+	public int getCompanyId() {
+		return companyId;
+	}
+
+	/**
+	 * Returns {@link Category} that represents category of this coupon.
+	 * 
+	 * @return category of this coupon.
+	 */
+	public Category getCategory() {
+		return category;
+	}
+
+	/**
+	 * Returns {@link String} that represents title of this coupon.
+	 * 
+	 * @return title of this coupon.
+	 */
+	public String getTitle() {
+		return title;
+	}
+
+	/**
+	 * Returns {@link String} that represents description of this coupon.
+	 * 
+	 * @return description of this coupon.
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Returns {@link LocalDate} that represents start date of this coupon.
+	 * 
+	 * @return start date of this coupon.
+	 */
+	public LocalDate getStartDate() {
+		return startDate;
+	}
+
+	/**
+	 * Returns {@link LocalDate} that represents expiration date of this coupon.
+	 * 
+	 * @return expiration date of this coupon.
+	 */
+	public LocalDate getEndDate() {
+		return endDate;
+	}
+
+	/**
+	 * Returns amount of these coupons that was left in stock when it expired.
+	 * 
+	 * @return amount of coupons left in stock.
+	 */
+	public int getAmount() {
+		return amount;
+	}
+
+	/**
+	 * Returns floating number that represents price of this coupon.
+	 * 
+	 * @return price of this coupon.
+	 */
+	public double getPrice() {
+		return price;
+	}
+
+	/**
+	 * Returns {@link String} that represents image of this coupon.
+	 * 
+	 * @return image of this coupon.
+	 */
+	public String getImage() {
+		return image;
+	}
+
+	/**
+	 * Returns {@code true} if this coupon was flagged as hot, otherwise -
+	 * {@code false}.
+	 * 
+	 * @return {@code true} if this coupon was hot, otherwise - {@code false}.
+	 */
+	public boolean isHot() {
+		return hot;
+	}
+
+	/**
+	 * Returns {@link LocalDate} that represents the date this coupon was moved to
+	 * the archive.
+	 * 
+	 * @return archive date of this coupon.
+	 */
+	public LocalDate getArchivedAt() {
+		return archivedAt;
+	}
+
+}
@@ -0,0 +1,90 @@
+package app.core.entities;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * The class {@code ArchivedPurchase} is purchase record of archived coupon (see
+ * {@link ArchivedCoupon}), moved out of the customers_vs_coupons table together
+ * with its coupon.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Entity
+@IdClass(ArchivedPurchase.Key.class)
+@Table(name = "customers_vs_coupons_archive",
+		indexes = @Index(name = "idx_cvc_archive_coupon_id", columnList = "coupon_id"))
+public class ArchivedPurchase {
+
+	@Id
+	@Column(name = "customer_id")
+	private int customerId;
+	@Id
+	@Column(name = "coupon_id")
+	private int couponId;
+
+	public ArchivedPurchase() {
+	}
+
+	/**
+	 * Returns id of the customer that purchased the coupon.
+	 * 
+	 * @return customer id.
+	 */
+	public int getCustomerId() {
+		return customerId;
+	}
+
+	/**
+	 * Returns id of the purchased coupon.
+	 * 
+	 * @return coupon id.
+	 */
+	public int getCouponId() {
+		return couponId;
+	}
+
+	/**
+	 * The class {@code Key} is the composite id of {@link ArchivedPurchase}.
+	 */
+	public static class Key implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private int customerId;
+		private int couponId;
+
+		public Key() {
+		}
+
+		public Key(int customerId, int couponId) {
+			this.customerId = customerId;
+			this.couponId = couponId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return customerId == other.customerId && couponId == other.couponId;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(customerId, couponId);
+		}
+
+	}
+
+}
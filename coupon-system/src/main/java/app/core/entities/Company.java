@@ -4,7 +4,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
@@ -12,8 +14,20 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToMany;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.annotation.Nulls;
 
 import app.core.exceptions.CouponSystemException;
+import app.core.utilities.CouponSystemUtilities;
 
 /**
  * The class {@code Company} is the bean with all available functionality for
@@ -23,6 +37,10 @@ import app.core.exceptions.CouponSystemException;
  *
  */
 @Entity
+@Table(uniqueConstraints = { @UniqueConstraint(name = "uk_company_email_normalized", columnNames = "email_normalized"),
+		@UniqueConstraint(name = "uk_company_name", columnNames = "name") })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "company")
 public class Company {
 
 	@Id
@@ -30,9 +48,21 @@ public class Company {
 	private int id;
 	private String name;
 	private String email;
+	// lower case email, so lookup by email can use the index
+	@JsonIgnore
+	@Column(name = "email_normalized", nullable = false)
+	private String emailNormalized;
+	// hash is never sent to clients, absent (or null) password is not changed on update
+	@JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+	@JsonSetter(nulls = Nulls.SKIP)
 	private String password;
+	// sent back with update, so update of stale copy is rejected
+	@Version
+	private long version;
 	@OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
 	@JoinColumn(name = "company_id")
+	// coupons are added by their company id, not through this collection (see CompanyService)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "company.coupons")
 	private List<Coupon> coupons;
 
 	{
@@ -41,12 +71,13 @@ public class Company {
 
 	/**
 	 * Initializes new company object with hard coded values (validated correct
-	 * values).
+	 * values), without password.
 	 * 
 	 * @throws CouponSystemException if some validation was failed.
 	 */
 	public Company() throws CouponSystemException {
 		this(0, "DefaultCompanyName", "DefaultCompanyEmail", "DefaultCompanyPassword");
+		this.password = null;
 	}
 
 	/**
@@ -140,6 +171,16 @@ public class Company {
 		return email;
 	}
 
+	/**
+	 * Returns {@link String} that represents email of this company in lower case
+	 * (as it is looked up by).
+	 * 
+	 * @return normalized email of this company.
+	 */
+	public String getEmailNormalized() {
+		return emailNormalized;
+	}
+
 	/**
 	 * Returns integer that represents id of this company.
 	 * 
@@ -167,6 +208,16 @@ public class Company {
 		return password;
 	}
 
+	/**
+	 * Returns long that represents version of this company (incremented by the
+	 * storage on each update, used to detect concurrent updates).
+	 * 
+	 * @return version of this company.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(id);
@@ -209,6 +260,7 @@ public class Company {
 		if (email == null || email.isEmpty() || email.isBlank())
 			throw new CouponSystemException("Failed to set company email: text is empty!");
 		this.email = email;
+		this.emailNormalized = CouponSystemUtilities.normalizeEmail(email);
 	}
 
 	/**
@@ -251,6 +303,15 @@ public class Company {
 		this.password = password;
 	}
 
+	/**
+	 * Sets version of this company (managed by the storage).
+	 * 
+	 * @param version specified version to set.
+	 */
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
 	@Override
 	public String toString() {
 		return "Company [id=" + id + ", name=" + name + ", email=" + email + ", password=" + password + "]";
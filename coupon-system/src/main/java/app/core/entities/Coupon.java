@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -14,22 +15,55 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToMany;
 import javax.persistence.PreRemove;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Where;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import app.core.enums.Category;
+import app.core.enums.CouponStatus;
 import app.core.exceptions.CouponSystemException;
 
 /**
  * The class {@code Coupon} is the bean with all available functionality for
  * coupon system application.
  * 
+ * <p>
+ * Expired coupons stay in the table (with {@link CouponStatus#EXPIRED} status)
+ * until they are moved to the archive, and every query of coupons (finders,
+ * loads by id and collections of companies and customers) sees only active
+ * coupons. The predicate is a constant, so indexes that start with status serve
+ * it (and partial index of active coupons matches it, where supported).
+ * 
+ * <p>
+ * Coupons of company are found by indexes that start with company id and
+ * status, then title (lookup by title), category and price (filters sorted by
+ * price) or price alone (sorted by price, any categories). Titles are unique
+ * per company among active coupons only (expired coupon keeps its title until
+ * archived), so the title index is not unique.
+ * 
  * @author Vitaly Zlobin
  *
  */
 @Entity
+@Table(indexes = { @Index(name = "idx_coupon_status_end_date_id", columnList = "status, end_date, id"),
+		@Index(name = "idx_coupon_status_price_id", columnList = "status, price, id"),
+		@Index(name = "idx_coupon_status_id", columnList = "status, id"),
+		@Index(name = "idx_coupon_status_hot", columnList = "status, hot"),
+		@Index(name = "idx_coupon_company_status_title", columnList = "company_id, status, title"),
+		@Index(name = "idx_coupon_company_status_category_price_id",
+				columnList = "company_id, status, category, price, id"),
+		@Index(name = "idx_coupon_company_status_price_id", columnList = "company_id, status, price, id") })
+@Where(clause = "status = 'ACTIVE'")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "coupon")
 //@JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
 public class Coupon {
 
@@ -49,6 +83,14 @@ public class Coupon {
 	private int amount;
 	private double price;
 	private String image;
+	private boolean hot;
+	@JsonIgnore
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false, length = 16)
+	private CouponStatus status;
+	// sent back with update, so update of stale copy is rejected
+	@Version
+	private long version;
 
 	@JsonIgnore
 	@ManyToMany(mappedBy = "coupons", cascade = { CascadeType.DETACH, CascadeType.REFRESH,
@@ -57,6 +99,7 @@ public class Coupon {
 
 	{
 		this.customers = new ArrayList<>();
+		this.status = CouponStatus.ACTIVE;
 	}
 
 	/**
@@ -242,6 +285,15 @@ public class Coupon {
 		return startDate;
 	}
 
+	/**
+	 * Returns {@link CouponStatus} that represents lifecycle state of this coupon.
+	 * 
+	 * @return status of this coupon.
+	 */
+	public CouponStatus getStatus() {
+		return status;
+	}
+
 	/**
 	 * Returns {@link String} that represents title of this coupon.
 	 * 
@@ -251,11 +303,31 @@ public class Coupon {
 		return title;
 	}
 
+	/**
+	 * Returns long that represents version of this coupon (incremented by the
+	 * storage on each update, used to detect concurrent updates).
+	 * 
+	 * @return version of this coupon.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(id);
 	}
 
+	/**
+	 * Returns {@code true} if this coupon is flagged as hot (high demand coupon,
+	 * which stock is held in memory while on sale), otherwise - {@code false}.
+	 * 
+	 * @return {@code true} if this coupon is hot, otherwise - {@code false}.
+	 */
+	public boolean isHot() {
+		return hot;
+	}
+
 	/**
 	 * Updates amount of this coupon only if specified amount value is not negative.
 	 * 
@@ -335,6 +407,16 @@ public class Coupon {
 		this.endDate = endDate;
 	}
 
+	/**
+	 * Flags this coupon as hot (high demand) or regular coupon.
+	 * 
+	 * @param hot {@code true} to flag this coupon as hot, otherwise -
+	 *            {@code false}.
+	 */
+	public void setHot(boolean hot) {
+		this.hot = hot;
+	}
+
 	/**
 	 * Updates id of this coupon only if specified id value not negative.
 	 * 
@@ -386,6 +468,19 @@ public class Coupon {
 		this.startDate = startDate;
 	}
 
+	/**
+	 * Updates status of this coupon only if specified status value is not
+	 * {@code null}.
+	 * 
+	 * @param status specified coupon status to update.
+	 * @throws CouponSystemException if specified status is {@code null}.
+	 */
+	public void setStatus(CouponStatus status) throws CouponSystemException {
+		if (status == null)
+			throw new CouponSystemException("Failed to set status of the coupon: is empty!");
+		this.status = status;
+	}
+
 	/**
 	 * Updates title of this coupon only if specified title value is not
 	 * {@code null}, not {@code empty} and not {@code blank}.
@@ -400,11 +495,21 @@ public class Coupon {
 		this.title = title;
 	}
 
+	/**
+	 * Sets version of this coupon (managed by the storage).
+	 * 
+	 * @param version specified version to set.
+	 */
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
 	@Override
 	public String toString() {
 		return "Coupon [\n\tid=" + id + ", \n\tcompanyId=" + companyId + ", \n\tcategory=" + category + ", \n\ttitle="
 				+ title + ", \n\tdescription=" + description + ", \n\tstartDate=" + startDate + ", \n\tendDate="
-				+ endDate + ", \n\tamount=" + amount + ", \n\tprice=" + price + ", \n\timage=" + image + "\n]";
+				+ endDate + ", \n\tamount=" + amount + ", \n\tprice=" + price + ", \n\timage=" + image + ", \n\thot="
+				+ hot + "\n]";
 	}
 
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -11,12 +12,26 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.PreRemove;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.WhereJoinTable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.annotation.Nulls;
 
 import app.core.exceptions.CouponSystemException;
+import app.core.utilities.CouponSystemUtilities;
 
 /**
  * The class {@code Customer} is the bean with all available functionality for
@@ -26,7 +41,10 @@ import app.core.exceptions.CouponSystemException;
  *
  */
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_customer_email_normalized", columnNames = "email_normalized"))
 //@JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "customer")
 public class Customer {
 
 	@Id
@@ -37,10 +55,28 @@ public class Customer {
 	@Column(name = "last_name")
 	private String lastName;
 	private String email;
+	// lower case email, so lookup by email can use the index
+	@JsonIgnore
+	@Column(name = "email_normalized", nullable = false)
+	private String emailNormalized;
+	// hash is never sent to clients, absent (or null) password is not changed on update
+	@JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+	@JsonSetter(nulls = Nulls.SKIP)
 	private String password;
+	// sent back with update, so update of stale copy is rejected
+	@Version
+	private long version;
 
 	@ManyToMany(cascade = { CascadeType.PERSIST, CascadeType.DETACH, CascadeType.REFRESH }, fetch = FetchType.LAZY)
-	@JoinTable(name = "customers_vs_coupons", joinColumns = @JoinColumn(name = "customer_id"), inverseJoinColumns = @JoinColumn(name = "coupon_id"))
+	@JoinTable(name = "customers_vs_coupons", joinColumns = @JoinColumn(name = "customer_id"),
+			inverseJoinColumns = @JoinColumn(name = "coupon_id"),
+			// coupons of customer by the unique key, purchasers of coupon by the index
+			uniqueConstraints = @UniqueConstraint(name = "uk_cvc_customer_coupon",
+					columnNames = { "customer_id", "coupon_id" }),
+			indexes = @Index(name = "idx_cvc_coupon_customer", columnList = "coupon_id, customer_id"))
+	// purchase records of active coupons only (see Coupon), also when fetched by outer join
+	@WhereJoinTable(clause = "coupon_id in (select co.id from coupon co where co.status = 'ACTIVE')")
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "customer.coupons")
 	private List<Coupon> coupons;
 
 	{
@@ -49,13 +85,14 @@ public class Customer {
 
 	/**
 	 * Initializes new customer object with hard coded values (validated correct
-	 * values).
+	 * values), without password.
 	 * 
 	 * @throws CouponSystemException if some validation was failed.
 	 */
 	public Customer() throws CouponSystemException {
 		this(0, "DefaultCustomerFirstName", "DefaultCustomerLastName", "DefaultCustomerEmail",
 				"DefaultCustomerPassword");
+		this.password = null;
 	}
 
 	/**
@@ -160,6 +197,16 @@ public class Customer {
 		return email;
 	}
 
+	/**
+	 * Returns {@link String} that represents email of this customer in lower case
+	 * (as it is looked up by).
+	 * 
+	 * @return normalized email of this customer.
+	 */
+	public String getEmailNormalized() {
+		return emailNormalized;
+	}
+
 	/**
 	 * Returns {@link String} that represents first name of this customer.
 	 * 
@@ -196,6 +243,16 @@ public class Customer {
 		return password;
 	}
 
+	/**
+	 * Returns long that represents version of this customer (incremented by the
+	 * storage on each update, used to detect concurrent updates).
+	 * 
+	 * @return version of this customer.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(id);
@@ -239,6 +296,7 @@ public class Customer {
 		if (email == null || email.isEmpty() || email.isBlank())
 			throw new CouponSystemException("Failed to set customer email: text is empty!");
 		this.email = email;
+		this.emailNormalized = CouponSystemUtilities.normalizeEmail(email);
 	}
 
 	/**
@@ -295,6 +353,15 @@ public class Customer {
 		this.password = password;
 	}
 
+	/**
+	 * Sets version of this customer (managed by the storage).
+	 * 
+	 * @param version specified version to set.
+	 */
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
 	@Override
 	public String toString() {
 		return "Customer [id=" + id + ", firstName=" + firstName + ", lastName=" + lastName + ", email=" + email
@@ -0,0 +1,120 @@
+package app.core.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+
+/**
+ * The class {@code IdempotencyRecord} is the stored response of request that
+ * was sent with {@code Idempotency-Key} header, so retries of this request are
+ * answered without executing it again.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Entity
+public class IdempotencyRecord {
+
+	@Id
+	@Column(length = 64)
+	private String id;
+	@Column(name = "request_hash", length = 64)
+	private String requestHash;
+	private int status;
+	@Column(name = "content_type")
+	private String contentType;
+	@Lob
+	private byte[] body;
+	@Column(name = "expires_at")
+	private long expiresAt;
+
+	public IdempotencyRecord() {
+	}
+
+	/**
+	 * Initializes new record of response to request with specified key.
+	 * 
+	 * @param id          specified digest of request idempotency key.
+	 * @param requestHash specified digest of request body.
+	 * @param status      specified response status code.
+	 * @param contentType specified response content type.
+	 * @param body        specified response body.
+	 * @param expiresAt   specified expiration time (epoch millis).
+	 */
+	public IdempotencyRecord(String id, String requestHash, int status, String contentType, byte[] body,
+			long expiresAt) {
+		this.id = id;
+		this.requestHash = requestHash;
+		this.status = status;
+		this.contentType = contentType;
+		this.body = body;
+		this.expiresAt = expiresAt;
+	}
+
+	/**
+	 * Returns bytes that represents body of the stored response.
+	 * 
+	 * @return body of the stored response.
+	 */
+	public byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * Returns {@link String} that represents content type of the stored response.
+	 * 
+	 * @return content type of the stored response.
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Returns time (epoch millis) when this record expires.
+	 * 
+	 * @return expiration time of this record.
+	 */
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+	/**
+	 * Returns {@link String} that represents digest of the request idempotency key.
+	 * 
+	 * @return digest of the request idempotency key.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Returns {@link String} that represents digest of the request body.
+	 * 
+	 * @return digest of the request body.
+	 */
+	public String getRequestHash() {
+		return requestHash;
+	}
+
+	/**
+	 * Returns integer that represents status code of the stored response.
+	 * 
+	 * @return status code of the stored response.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns {@code true} if this record is expired at specified time, otherwise -
+	 * {@code false}.
+	 * 
+	 * @param now specified time (epoch millis).
+	 * @return {@code true} if expired, otherwise - {@code false}.
+	 */
+	public boolean isExpired(long now) {
+		return expiresAt <= now;
+	}
+
+}
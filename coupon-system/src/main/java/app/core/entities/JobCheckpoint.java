@@ -0,0 +1,74 @@
+package app.core.entities;
+
+import java.time.LocalDate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The class {@code JobCheckpoint} is the stored progress of background job that
+ * processes coupons in ranges of ids, so the job stopped in the middle (by
+ * failure or shutdown) continues from the last completed range.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Entity
+@Table(name = "job_checkpoint")
+public class JobCheckpoint {
+
+	@Id
+	@Column(length = 64)
+	private String name;
+	private LocalDate cutoff;
+	@Column(name = "last_id")
+	private int lastId;
+
+	public JobCheckpoint() {
+	}
+
+	/**
+	 * Initializes new checkpoint of specified job.
+	 * 
+	 * @param name   specified job name.
+	 * @param cutoff specified date the run of the job is processing coupons for.
+	 * @param lastId specified id of the last processed coupon.
+	 */
+	public JobCheckpoint(String name, LocalDate cutoff, int lastId) {
+		this.name = name;
+		this.cutoff = cutoff;
+		this.lastId = lastId;
+	}
+
+	/**
+	 * Returns {@link String} that represents name of the job.
+	 * 
+	 * @return name of the job.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns {@link LocalDate} that represents the date the run of the job is
+	 * processing coupons for.
+	 * 
+	 * @return cutoff date of the run.
+	 */
+	public LocalDate getCutoff() {
+		return cutoff;
+	}
+
+	/**
+	 * Returns id of the last processed coupon (all coupons with lower ids are
+	 * processed).
+	 * 
+	 * @return id of the last processed coupon.
+	 */
+	public int getLastId() {
+		return lastId;
+	}
+
+}
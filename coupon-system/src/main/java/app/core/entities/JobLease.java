@@ -0,0 +1,79 @@
+package app.core.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The class {@code JobLease} is the lease of background job: the node that
+ * holds it (until it expires) is the only node that runs the job. Every time
+ * the lease passes to a node its token grows, so writes of a node that lost
+ * the lease are fenced off by the token.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Entity
+@Table(name = "job_lease")
+public class JobLease {
+
+	@Id
+	@Column(length = 64)
+	private String name;
+	@Column(length = 128)
+	private String owner;
+	private long token;
+	@Column(name = "expires_at")
+	private long expiresAt;
+
+	public JobLease() {
+	}
+
+	/**
+	 * Initializes new lease of specified job that is not held by any node.
+	 * 
+	 * @param name specified job name.
+	 */
+	public JobLease(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns {@link String} that represents name of the job.
+	 * 
+	 * @return name of the job.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns {@link String} that represents id of the node that holds (or last
+	 * held) this lease.
+	 * 
+	 * @return id of the node.
+	 */
+	public String getOwner() {
+		return owner;
+	}
+
+	/**
+	 * Returns fencing token of current holder of this lease.
+	 * 
+	 * @return fencing token.
+	 */
+	public long getToken() {
+		return token;
+	}
+
+	/**
+	 * Returns time (epoch millis) when this lease expires if not renewed.
+	 * 
+	 * @return expiration time of this lease.
+	 */
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+}
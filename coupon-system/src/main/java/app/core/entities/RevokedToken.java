@@ -0,0 +1,71 @@
+package app.core.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The class {@code RevokedToken} is JWT token revoked by logout, kept until the
+ * token expires, so every node rejects it (not only the node that handled the
+ * logout).
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Entity
+@Table(name = "revoked_token")
+public class RevokedToken {
+
+	@Id
+	@Column(length = 64)
+	private String id;
+	@Column(name = "expires_at")
+	private long expiresAt;
+	@Column(name = "revoked_at")
+	private long revokedAt;
+
+	public RevokedToken() {
+	}
+
+	/**
+	 * Initializes new revoked token.
+	 * 
+	 * @param id        specified digest of the token.
+	 * @param expiresAt specified expiration time of the token (epoch millis).
+	 * @param revokedAt specified revocation time (epoch millis).
+	 */
+	public RevokedToken(String id, long expiresAt, long revokedAt) {
+		this.id = id;
+		this.expiresAt = expiresAt;
+		this.revokedAt = revokedAt;
+	}
+
+	/**
+	 * Returns digest of the revoked token.
+	 * 
+	 * @return digest of the token.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Returns time (epoch millis) when the revoked token expires.
+	 * 
+	 * @return expiration time of the token.
+	 */
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+	/**
+	 * Returns time (epoch millis) when the token was revoked.
+	 * 
+	 * @return revocation time of the token.
+	 */
+	public long getRevokedAt() {
+		return revokedAt;
+	}
+
+}
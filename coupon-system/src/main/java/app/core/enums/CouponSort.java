@@ -0,0 +1,14 @@
+package app.core.enums;
+
+/**
+ * The class represents all available orders of coupons catalog pages (each
+ * order is completed by coupon id, so it is unique).
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public enum CouponSort {
+
+	END_DATE, PRICE;
+
+}
@@ -0,0 +1,15 @@
+package app.core.enums;
+
+/**
+ * The class represents lifecycle states of coupon: active coupon is on sale,
+ * expired coupon is hidden from every query and waits to be moved to the
+ * archive (with its purchase records).
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public enum CouponStatus {
+
+	ACTIVE, EXPIRED;
+
+}
@@ -0,0 +1,18 @@
+package app.core.enums;
+
+/**
+ * The class represents reasons why coupon purchase was rejected: coupon or
+ * customer not found, coupon out of stock, expired or already purchased by the
+ * customer, coupon temporarily unavailable (being updated or not purchased in
+ * time), service busy, or other failure. Purchase of hot coupon that was
+ * already accepted in memory, but could not be applied to the storage, is
+ * dropped.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public enum RejectionReason {
+
+	NOT_FOUND, OUT_OF_STOCK, EXPIRED, ALREADY_PURCHASED, UNAVAILABLE, BUSY, OTHER, DROPPED;
+
+}
@@ -0,0 +1,14 @@
+package app.core.enums;
+
+/**
+ * The class represents all available views of list endpoints: summary (only
+ * the values list screens show, selected by the query) or full entities.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public enum View {
+
+	SUMMARY, FULL;
+
+}
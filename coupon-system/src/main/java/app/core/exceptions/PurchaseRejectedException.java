@@ -0,0 +1,33 @@
+package app.core.exceptions;
+
+import app.core.enums.RejectionReason;
+
+/**
+ * The class {@code PurchaseRejectedException} is thrown when coupon purchase
+ * was rejected for a known reason (see {@link RejectionReason}), so the reason
+ * is counted without parsing the message.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class PurchaseRejectedException extends CouponSystemException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final RejectionReason reason;
+
+	public PurchaseRejectedException(RejectionReason reason, String message) {
+		super(message);
+		this.reason = reason;
+	}
+
+	/**
+	 * Returns reason of the rejected purchase.
+	 * 
+	 * @return reason of the rejection.
+	 */
+	public RejectionReason getReason() {
+		return reason;
+	}
+
+}
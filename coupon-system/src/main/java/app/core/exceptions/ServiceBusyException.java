@@ -0,0 +1,23 @@
+package app.core.exceptions;
+
+/**
+ * The class {@code ServiceBusyException} is thrown when request was rejected
+ * without being processed, because the resource it needs is saturated. The
+ * request may be retried later.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class ServiceBusyException extends CouponSystemException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ServiceBusyException(String message) {
+		super(message);
+	}
+
+	public ServiceBusyException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
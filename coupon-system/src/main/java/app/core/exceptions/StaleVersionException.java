@@ -0,0 +1,24 @@
+package app.core.exceptions;
+
+/**
+ * The class {@code StaleVersionException} is thrown when entity was updated
+ * from a stale copy: version of the copy is not the current version of the
+ * entity, because the entity was modified since the copy was read. The entity
+ * should be read again before it is updated.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class StaleVersionException extends CouponSystemException {
+
+	private static final long serialVersionUID = 1L;
+
+	public StaleVersionException(String message) {
+		super(message);
+	}
+
+	public StaleVersionException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,113 @@
+package app.core.filters;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * The class {@code CachedBodyRequest} is request with body that was already
+ * read by a filter (to look into it), so the body is read again by the
+ * controller, through its input stream or its reader.
+ *
+ * @author Vitaly Zlobin
+ *
+ */
+final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+	private final byte[] body;
+
+	/**
+	 * Initializes request with specified body that was already read from
+	 * specified request.
+	 *
+	 * @param request specified request.
+	 * @param body    specified body of the request.
+	 */
+	CachedBodyRequest(HttpServletRequest request, byte[] body) {
+		super(request);
+		this.body = body;
+	}
+
+	/**
+	 * Reads body of specified request, only if it is not longer than specified
+	 * max length. Body of unknown length is read up to one byte more than max
+	 * length (so the rest of it is not read anyway).
+	 *
+	 * @param request   specified request.
+	 * @param maxLength specified max length of the body in bytes.
+	 * @return body of the request, or {@code null} if it is longer than max
+	 *         length.
+	 * @throws IOException if failed to read the body.
+	 */
+	static byte[] readBody(HttpServletRequest request, int maxLength) throws IOException {
+		long length = request.getContentLengthLong();
+		if (length > maxLength)
+			return null;
+
+		byte[] body = request.getInputStream().readNBytes(length >= 0 ? (int) length : maxLength + 1);
+		return body.length > maxLength ? null : body;
+	}
+
+	/**
+	 * Returns body of this request.
+	 *
+	 * @return body of the request.
+	 */
+	byte[] getBody() {
+		return body;
+	}
+
+	@Override
+	public ServletInputStream getInputStream() {
+		ByteArrayInputStream input = new ByteArrayInputStream(body);
+		return new ServletInputStream() {
+
+			@Override
+			public int read() {
+				return input.read();
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				return input.read(b, off, len);
+			}
+
+			@Override
+			public boolean isFinished() {
+				return input.available() == 0;
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setReadListener(ReadListener listener) {
+				// whole body is in memory already
+				try {
+					listener.onDataAvailable();
+					listener.onAllDataRead();
+				} catch (IOException e) {
+					listener.onError(e);
+				}
+			}
+		};
+	}
+
+	@Override
+	public BufferedReader getReader() {
+		String encoding = getCharacterEncoding();
+		return new BufferedReader(new InputStreamReader(getInputStream(),
+				encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,147 @@
+package app.core.filters;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import app.core.beans.IdempotencyStore;
+import app.core.entities.IdempotencyRecord;
+import app.core.jwt.ClientPrincipal;
+
+/**
+ * The class {@code IdempotencyFilter} answers retries of {@code POST} and
+ * {@code PUT} requests that were sent with {@code Idempotency-Key} header by
+ * the stored response of the first successful request, so the request is not
+ * executed again.
+ * 
+ * <p>
+ * Key is scoped by client of the request (see {@link ClientPrincipal}), request
+ * method and URI, and the response is stored with digest of the request body:
+ * retry with the same key and other body is rejected with
+ * {@code 422 Unprocessable Entity}. Only successful (2xx) responses are stored -
+ * failed requests are executed again on retry. Retry that arrives while the
+ * first request is still in progress is rejected with {@code 409 Conflict}.
+ * Body is buffered to be digested, so request with body longer than 1 MB is
+ * rejected with {@code 413 Payload Too Large}.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class IdempotencyFilter implements Filter {
+
+	public static final String HEADER = "Idempotency-Key";
+	public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+	private static final int MAX_KEY_LENGTH = 255;
+	// bodies of coupons and clients are small, larger body is rejected before it is buffered
+	static final int MAX_BODY = 1024 * 1024;
+
+	private IdempotencyStore idempotencyStore;
+
+	public IdempotencyFilter(IdempotencyStore idempotencyStore) {
+		this.idempotencyStore = idempotencyStore;
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		HttpServletRequest req = (HttpServletRequest) request;
+		HttpServletResponse resp = (HttpServletResponse) response;
+		String idempotencyKey = req.getHeader(HEADER);
+		String method = req.getMethod();
+
+		if (idempotencyKey == null || !(method.equals("POST") || method.equals("PUT"))) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+			resp.sendError(HttpStatus.BAD_REQUEST.value(),
+					HEADER + " must be not blank and not longer than " + MAX_KEY_LENGTH + " characters");
+			return;
+		}
+
+		// set by token filter (runs first)
+		ClientPrincipal principal = (ClientPrincipal) req.getAttribute(ClientPrincipal.ATTRIBUTE);
+		String client = principal == null ? "anonymous" : principal.getClientType() + ":" + principal.getId();
+		String key = digest(client + " " + method + " " + req.getRequestURI() + " " + idempotencyKey);
+		byte[] body = CachedBodyRequest.readBody(req, MAX_BODY);
+		if (body == null) {
+			resp.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(),
+					"request with " + HEADER + " must have body not longer than " + MAX_BODY + " bytes");
+			return;
+		}
+		String requestHash = digest(body);
+		if (!idempotencyStore.begin(key)) {
+			resp.sendError(HttpStatus.CONFLICT.value(), "request with same " + HEADER + " is in progress");
+			return;
+		}
+
+		IdempotencyRecord record = idempotencyStore.find(key);
+		if (record != null) {
+			idempotencyStore.abort(key);
+			// records saved before digests of bodies were stored are replayed
+			if (record.getRequestHash() != null && !record.getRequestHash().equals(requestHash))
+				resp.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+						"request with same " + HEADER + " had other body");
+			else
+				replay(record, resp);
+			return;
+		}
+
+		ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(resp);
+		boolean completed = false;
+		try {
+			chain.doFilter(new CachedBodyRequest(req, body), wrapper);
+			int status = wrapper.getStatus();
+			if (status >= 200 && status < 300) {
+				idempotencyStore.complete(key, requestHash, status, wrapper.getContentType(),
+						wrapper.getContentAsByteArray());
+				completed = true;
+			}
+		} finally {
+			if (!completed)
+				idempotencyStore.abort(key);
+			wrapper.copyBodyToResponse();
+		}
+	}
+
+	private static void replay(IdempotencyRecord record, HttpServletResponse resp) throws IOException {
+		resp.setStatus(record.getStatus());
+		resp.setHeader(REPLAYED_HEADER, "true");
+		if (record.getContentType() != null)
+			resp.setContentType(record.getContentType());
+		if (record.getBody() != null) {
+			resp.setContentLength(record.getBody().length);
+			resp.getOutputStream().write(record.getBody());
+		}
+	}
+
+	private static String digest(String value) {
+		return digest(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String digest(byte[] value) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(value);
+			StringBuilder hex = new StringBuilder(hash.length * 2);
+			for (byte b : hash)
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+package app.core.filters;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import app.core.beans.RateLimiter;
+import app.core.beans.RateLimiter.Limit;
+import app.core.jwt.ClientPrincipal;
+import app.core.utilities.CouponSystemUtilities;
+
+/**
+ * The class {@code RateLimitFilter} rejects login and purchase requests that
+ * exceed the rate allowed by {@link RateLimiter} with 429 (Too Many Requests),
+ * before they reach any controller or storage.
+ * 
+ * <p>
+ * Login is limited by client ip and by email it tries to login with. Purchase
+ * is limited by client ip and by customer id of the token, so it must be
+ * placed after {@link TokenFilter}.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class RateLimitFilter implements Filter {
+
+	// login body is tiny, larger body is not parsed for email (still limited by ip)
+	private static final int MAX_LOGIN_BODY = 4096;
+
+	private RateLimiter rateLimiter;
+	private ObjectMapper objectMapper;
+
+	public RateLimitFilter(RateLimiter rateLimiter, ObjectMapper objectMapper) {
+		this.rateLimiter = rateLimiter;
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		HttpServletRequest req = (HttpServletRequest) request;
+		HttpServletResponse resp = (HttpServletResponse) response;
+		String url = req.getRequestURI();
+		String method = req.getMethod();
+
+		if (method.equals("POST") && url.endsWith("/login")) {
+			// client ip is taken as is (see server.forward-headers-strategy behind proxy)
+			if (reject(resp, Limit.IP, req.getRemoteAddr()))
+				return;
+
+			// body is read once (only if its length is known and small), so the controller can still read it
+			int length = req.getContentLength();
+			byte[] body = length >= 0 && length <= MAX_LOGIN_BODY ? CachedBodyRequest.readBody(req, MAX_LOGIN_BODY)
+					: null;
+			if (reject(resp, Limit.LOGIN, extractEmail(body)))
+				return;
+			chain.doFilter(body != null ? new CachedBodyRequest(req, body) : req, response);
+			return;
+		}
+
+		if (method.equals("PUT") && url.contains("/purchase")) {
+			if (reject(resp, Limit.IP, req.getRemoteAddr()))
+				return;
+
+			ClientPrincipal principal = (ClientPrincipal) req.getAttribute(ClientPrincipal.ATTRIBUTE);
+			if (principal != null && reject(resp, Limit.PURCHASE, String.valueOf(principal.getId())))
+				return;
+		}
+
+		chain.doFilter(request, response);
+	}
+
+	private boolean reject(HttpServletResponse resp, Limit limit, String key) throws IOException {
+		long retryAfter = rateLimiter.tryAcquire(limit, key);
+		if (retryAfter == 0)
+			return false;
+
+		resp.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+		resp.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "too many requests, please try again later!");
+		return true;
+	}
+
+	private String extractEmail(byte[] body) {
+		if (body == null || body.length == 0)
+			return null;
+		try {
+			JsonNode email = objectMapper.readTree(body).get("email");
+			return email == null || !email.isTextual() ? null : CouponSystemUtilities.normalizeEmail(email.asText());
+		} catch (IOException e) {
+			// malformed body is rejected by controller
+			return null;
+		}
+	}
+
+}
@@ -10,19 +10,26 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 
 import app.core.enums.ClientType;
-import app.core.jwt.JwtUtil;
+import app.core.jwt.ClientPrincipal;
+import app.core.jwt.VerifiedTokenCache;
+import app.core.logging.SamplingTurboFilter;
+import io.jsonwebtoken.JwtException;
 
 public class TokenFilter implements Filter {
 
-	private JwtUtil jwtUtil;
+	private static final Logger log = LoggerFactory.getLogger(TokenFilter.class);
+
+	private VerifiedTokenCache tokenCache;
 
 	@Autowired
-	public TokenFilter(JwtUtil jwtUtil) {
-		this.jwtUtil = jwtUtil;
+	public TokenFilter(VerifiedTokenCache tokenCache) {
+		this.tokenCache = tokenCache;
 	}
 
 	@Override
@@ -33,47 +40,53 @@ public class TokenFilter implements Filter {
 
 		if (url.endsWith("/login")) {
 			chain.doFilter(request, response);
-			System.out.println("================ - Passed Login Filter - ================");
+			log.debug(SamplingTurboFilter.SAMPLED, "login request passed: {}", url);
 			return;
 		}
 
 		HttpServletResponse resp = (HttpServletResponse) response;
-		String token = req.getHeader("token");
-
-		System.out.println("In filter before if token: " + token);
+		String token = extractToken(req);
 
 		if (token != null) {
-			if (jwtUtil.isTokenExpired(token)) {
+			// token is verified and parsed only once per request (or not at all if cached)
+			ClientPrincipal principal;
+			try {
+				principal = tokenCache.verify(token);
+			} catch (JwtException | IllegalArgumentException e) {
+				log.debug("invalid token: {}", e.getMessage());
 				resp.sendError(HttpStatus.UNAUTHORIZED.value(), "you are not logged in!");
+				return;
 			}
-			if (req.getRequestURI().contains("/admin")) {
-				if (jwtUtil.extractUserType(token) == ClientType.ADMINISTRATOR) {
-					System.out.println("ADMIN FILTER PASS-------------");
-					chain.doFilter(request, response);
+
+			if (url.contains("/admin")) {
+				if (principal.getClientType() == ClientType.ADMINISTRATOR) {
+					log.debug(SamplingTurboFilter.SAMPLED, "admin request passed: {} {}", principal.getId(), url);
+					pass(principal, req, response, chain);
 				} else {
-					System.out.println("ADMIN FILTER FAILL-------------");
+					log.debug("admin request rejected: {} {} {}", principal.getClientType(), principal.getId(), url);
 					resp.sendError(HttpStatus.UNAUTHORIZED.value(), "you are not an admin");
 				}
 
-			} else if (req.getRequestURI().contains("/company")) {
-				if (jwtUtil.extractUserType(token) == ClientType.COMPANY) {
-					System.out.println("COMPANY FILTER PASS-------------");
-					chain.doFilter(request, response);
+			} else if (url.contains("/company")) {
+				if (principal.getClientType() == ClientType.COMPANY) {
+					log.debug(SamplingTurboFilter.SAMPLED, "company request passed: {} {}", principal.getId(), url);
+					pass(principal, req, response, chain);
 				} else {
-					System.out.println("COMPANY FILTER FAILL-------------");
+					log.debug("company request rejected: {} {} {}", principal.getClientType(), principal.getId(), url);
 					resp.sendError(HttpStatus.UNAUTHORIZED.value(), "you are not a company");
 				}
-			} else if (req.getRequestURI().contains("/customer")) {
-				if (jwtUtil.extractUserType(token) == ClientType.CUSTOMER) {
-					System.out.println("CUSTOMER FILTER PASS-------------");
-					chain.doFilter(request, response);
+			} else if (url.contains("/customer")) {
+				if (principal.getClientType() == ClientType.CUSTOMER) {
+					log.debug(SamplingTurboFilter.SAMPLED, "customer request passed: {} {}", principal.getId(), url);
+					pass(principal, req, response, chain);
 				} else {
-					System.out.println("CUSTOMER FILTER FAILL-------------");
+					log.debug("customer request rejected: {} {} {}", principal.getClientType(), principal.getId(),
+							url);
 					resp.sendError(HttpStatus.UNAUTHORIZED.value(), "you are not a customer");
 				}
 			} else {
-				System.out.println("LOGIN FILTER PASS-------------");
-				chain.doFilter(request, response);
+				log.debug(SamplingTurboFilter.SAMPLED, "request passed: {} {}", principal.getId(), url);
+				pass(principal, req, response, chain);
 			}
 		} else {
 
@@ -81,16 +94,39 @@ public class TokenFilter implements Filter {
 			String acrhHeader = req.getHeader("access-control-request-headers");
 
 			if (acrhHeader != null && method.equals("OPTIONS")) {
-				System.out.println("PREFLIGHT-------------");
+				log.debug(SamplingTurboFilter.SAMPLED, "preflight request: {}", url);
 				resp.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE");
 				resp.setHeader("Access-Control-Allow-Origin", "*");
 				resp.setHeader("Access-Control-Allow-Headers", "*");
 				resp.sendError(HttpStatus.OK.value(), "preflight");
 			} else {
-				System.out.println("LOGIN FILTER FAILL-------------");
+				log.debug("request without token rejected: {}", url);
 				resp.sendError(HttpStatus.UNAUTHORIZED.value(), "you are not logged in");
 			}
 		}
 	}
 
+	private static void pass(ClientPrincipal principal, HttpServletRequest req, ServletResponse response,
+			FilterChain chain) throws IOException, ServletException {
+		req.setAttribute(ClientPrincipal.ATTRIBUTE, principal);
+		chain.doFilter(req, response);
+	}
+
+	/**
+	 * Returns JWT token of the request: "token" header, or "authorization" header
+	 * (with or without "Bearer " prefix).
+	 * 
+	 * @param req specified request.
+	 * @return token of the request or {@code null}.
+	 */
+	public static String extractToken(HttpServletRequest req) {
+		String token = req.getHeader("token");
+		if (token == null) {
+			token = req.getHeader("authorization");
+			if (token != null && token.regionMatches(true, 0, "Bearer ", 0, 7))
+				token = token.substring(7);
+		}
+		return token == null || token.isBlank() ? null : token.trim();
+	}
+
 }
@@ -0,0 +1,99 @@
+package app.core.jwt;
+
+import java.time.Instant;
+
+import app.core.enums.ClientType;
+
+/**
+ * The class {@code ClientPrincipal} represents logged in client, as it was
+ * extracted from verified JWT token. It is parsed once per request by
+ * {@link app.core.filters.TokenFilter} and stored as request attribute
+ * {@link #ATTRIBUTE}, so controllers can inject it by
+ * {@code @RequestAttribute(ClientPrincipal.ATTRIBUTE)}.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public final class ClientPrincipal {
+
+	public static final String ATTRIBUTE = "app.core.jwt.ClientPrincipal";
+
+	private final int id;
+	private final String name;
+	private final String email;
+	private final ClientType clientType;
+	private final Instant expiration;
+
+	public ClientPrincipal(int id, String name, String email, ClientType clientType, Instant expiration) {
+		this.id = id;
+		this.name = name;
+		this.email = email;
+		this.clientType = clientType;
+		this.expiration = expiration;
+	}
+
+	/**
+	 * Returns integer that represents id of this client (company or customer id,
+	 * {@code -1} for administrator).
+	 * 
+	 * @return id of this client.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns {@link String} that represents name of this client.
+	 * 
+	 * @return name of this client.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns {@link String} that represents email of this client.
+	 * 
+	 * @return email of this client.
+	 */
+	public String getEmail() {
+		return email;
+	}
+
+	/**
+	 * Returns {@link ClientType} that represents type of this client.
+	 * 
+	 * @return type of this client.
+	 */
+	public ClientType getClientType() {
+		return clientType;
+	}
+
+	/**
+	 * Returns {@link Instant} that represents expiration of the token of this
+	 * client.
+	 * 
+	 * @return expiration of the token.
+	 */
+	public Instant getExpiration() {
+		return expiration;
+	}
+
+	/**
+	 * Returns {@code true} if token of this client is expired at specified time,
+	 * otherwise - {@code false}.
+	 * 
+	 * @param now specified time.
+	 * @return {@code true} if expired, otherwise - {@code false}.
+	 */
+	public boolean isExpired(Instant now) {
+		return !now.isBefore(expiration);
+	}
+
+	@Override
+	public String toString() {
+		return "ClientPrincipal [id=" + id + ", name=" + name + ", email=" + email + ", clientType=" + clientType
+				+ ", expiration=" + expiration + "]";
+	}
+
+}
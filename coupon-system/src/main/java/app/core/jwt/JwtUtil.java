@@ -18,8 +18,10 @@ import org.springframework.stereotype.Service;
 import app.core.enums.ClientType;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
 
 @Service
@@ -28,6 +30,7 @@ public class JwtUtil {
 	private String signatureAlgorithm;
 	private String secret;
 	private Key decodedSecretKey;
+	private JwtParser jwtParser;
 	private long tokenDurationMS;
 
 	@Autowired
@@ -39,8 +42,10 @@ public class JwtUtil {
 	}
 
 	@PostConstruct
-	private void init() {
+	public void init() {
 		this.decodedSecretKey = new SecretKeySpec(Base64.getDecoder().decode(this.secret), this.signatureAlgorithm);
+		// parser is immutable and thread-safe - built once and shared by all requests
+		this.jwtParser = Jwts.parserBuilder().setSigningKey(this.decodedSecretKey).build();
 	}
 
 	/**
@@ -89,10 +94,33 @@ public class JwtUtil {
 	 * @throws ExpiredJwtException
 	 */
 	private Claims extractAllClaims(String token) throws ExpiredJwtException {
-		JwtParser jwtParser = Jwts.parserBuilder().setSigningKey(this.decodedSecretKey).build();
 		return jwtParser.parseClaimsJws(token).getBody();
 	}
 
+	/**
+	 * Verifies specified JWT token and returns the client it was issued for.
+	 * Signature and expiration are checked, and claims are parsed only once.
+	 * 
+	 * @param token specified JWT token.
+	 * @return client extracted from the token.
+	 * @throws JwtException if token is expired, not signed by this application or
+	 *                      malformed.
+	 */
+	public ClientPrincipal parseToken(String token) throws JwtException {
+		Claims claims = extractAllClaims(token);
+		Integer id = claims.get("userId", Integer.class);
+		String userType = claims.get("userType", String.class);
+		if (id == null || userType == null || claims.getExpiration() == null)
+			throw new MalformedJwtException("token has no user details");
+
+		try {
+			return new ClientPrincipal(id, claims.get("userName", String.class), claims.getSubject(),
+					ClientType.valueOf(userType), claims.getExpiration().toInstant());
+		} catch (IllegalArgumentException e) {
+			throw new MalformedJwtException("unknown user type: " + userType, e);
+		}
+	}
+
 	/**
 	 * Returns the JWT subject (email).
 	 * 
@@ -114,9 +142,7 @@ public class JwtUtil {
 	}
 
 	public ClientType extractUserType(String token) {
-		ClientType type = extractAllClaims(token).get("userType", ClientType.class);
-		System.out.println("client type: " + type);
-		return type;
+		return parseToken(token).getClientType();
 	}
 
 	/**
@@ -142,9 +168,9 @@ public class JwtUtil {
 	 * @return
 	 */
 	private UserDetails extractUserDetails(String token) {
-		Claims claims = this.extractAllClaims(token);
-		UserDetails userDetails = new UserDetails(claims.get("userId", Integer.class),
-				claims.get("userName", String.class), claims.getSubject(), claims.get("userType", ClientType.class));
+		ClientPrincipal principal = parseToken(token);
+		UserDetails userDetails = new UserDetails(principal.getId(), principal.getName(), principal.getEmail(),
+				principal.getClientType());
 		return userDetails;
 	}
 
@@ -0,0 +1,282 @@
+package app.core.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import app.core.entities.RevokedToken;
+import app.core.repositories.RevokedTokenRepository;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The class {@code VerifiedTokenCache} keeps clients of recently verified JWT
+ * tokens, so the same token sent again is not verified (signature checked and
+ * claims parsed) on every request.
+ * 
+ * <p>
+ * Entries are keyed by digest of the token (the token itself is not held in
+ * memory) and held until the token expires. Entries are spread between
+ * stripes by key hash, and every stripe is guarded by its own lock (as buckets
+ * of {@link app.core.beans.RateLimiter}), so requests with different tokens
+ * rarely wait for each other. The cache is bounded: each stripe holds up to
+ * its share of {@code maxEntries}, and its least recently used entries are
+ * evicted first. Revoked tokens are rejected until they expire, whether they
+ * are cached or not.
+ * 
+ * <p>
+ * Revoked tokens are also saved to the storage, and every node reads tokens
+ * revoked by other nodes each {@code syncIntervalMS}, so token revoked on one
+ * node is rejected by every node at most {@code syncIntervalMS} later.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Component
+public class VerifiedTokenCache {
+
+	private static final Logger log = LoggerFactory.getLogger(VerifiedTokenCache.class);
+	// revocations are read again for this long (clock skew of nodes, late commits)
+	private static final long SYNC_OVERLAP_MS = 10000;
+
+	private JwtUtil jwtUtil;
+	private RevokedTokenRepository revokedTokenRepository;
+	private boolean enabled;
+	private long purgeIntervalMS;
+	private long syncIntervalMS;
+	// revocation time the next read starts from (epoch millis)
+	private volatile long syncedAt;
+
+	private final Stripe[] stripes;
+	private final int perStripe;
+	// digest of revoked token -> expiration of the token
+	private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter sizeEvictions;
+	private final Counter expiredEvictions;
+	private final Counter revokedEvictions;
+	private ScheduledExecutorService executor;
+
+	public VerifiedTokenCache(JwtUtil jwtUtil, RevokedTokenRepository revokedTokenRepository,
+			MeterRegistry meterRegistry, @Value("${app.jwt.cache.enabled:true}") boolean enabled,
+			@Value("${app.jwt.cache.stripes:64}") int stripes,
+			@Value("${app.jwt.cache.maxEntries:10000}") int maxEntries,
+			@Value("${app.jwt.cache.purge.intervalMS:60000}") long purgeIntervalMS,
+			@Value("${app.jwt.revocation.sync.intervalMS:1000}") long syncIntervalMS) {
+		this.jwtUtil = jwtUtil;
+		this.revokedTokenRepository = revokedTokenRepository;
+		this.enabled = enabled;
+		this.purgeIntervalMS = purgeIntervalMS;
+		this.syncIntervalMS = syncIntervalMS;
+		this.stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+		for (int i = 0; i < this.stripes.length; i++)
+			this.stripes[i] = new Stripe();
+		this.perStripe = Math.max(1, maxEntries / this.stripes.length);
+		this.hits = meterRegistry.counter("jwt.cache.requests", "result", "hit");
+		this.misses = meterRegistry.counter("jwt.cache.requests", "result", "miss");
+		this.sizeEvictions = meterRegistry.counter("jwt.cache.evictions", "cause", "size");
+		this.expiredEvictions = meterRegistry.counter("jwt.cache.evictions", "cause", "expired");
+		this.revokedEvictions = meterRegistry.counter("jwt.cache.evictions", "cause", "revoked");
+		Gauge.builder("jwt.cache.size", this, VerifiedTokenCache::size).register(meterRegistry);
+		meterRegistry.gaugeMapSize("jwt.cache.revoked.size", Collections.emptyList(), revoked);
+	}
+
+	@PostConstruct
+	public void start() {
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "jwt-cache-purge");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.scheduleWithFixedDelay(this::purge, purgeIntervalMS, purgeIntervalMS, TimeUnit.MILLISECONDS);
+		this.executor.scheduleWithFixedDelay(this::sync, 0, syncIntervalMS, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Returns the client specified JWT token was issued for. The token is verified
+	 * only if it is not found in the cache.
+	 * 
+	 * @param token specified JWT token.
+	 * @return client of the token.
+	 * @throws JwtException if token is expired, revoked, not signed by this
+	 *                      application or malformed.
+	 */
+	public ClientPrincipal verify(String token) throws JwtException {
+		if (!enabled)
+			return jwtUtil.parseToken(token);
+
+		Instant now = Instant.now();
+		String key = digest(token);
+		if (!revoked.isEmpty() && revoked.containsKey(key))
+			throw new JwtException("token was revoked");
+
+		Stripe stripe = stripeOf(key);
+		ClientPrincipal principal;
+		synchronized (stripe) {
+			principal = stripe.principals.get(key);
+			if (principal != null && principal.isExpired(now)) {
+				stripe.principals.remove(key);
+				expiredEvictions.increment();
+				principal = null;
+			}
+		}
+
+		if (principal != null) {
+			hits.increment();
+			return principal;
+		}
+
+		misses.increment();
+		// throws if token is not valid (or already expired), so it is never cached
+		principal = jwtUtil.parseToken(token);
+		synchronized (stripe) {
+			stripe.principals.put(key, principal);
+			if (stripe.principals.size() > perStripe) {
+				Iterator<ClientPrincipal> eldest = stripe.principals.values().iterator();
+				eldest.next();
+				eldest.remove();
+				sizeEvictions.increment();
+			}
+		}
+		return principal;
+	}
+
+	/**
+	 * Revokes specified JWT token: it is removed from the cache and rejected until
+	 * it expires, by this node at once and by other nodes once they read it from
+	 * the storage. Token that is not valid is ignored.
+	 * 
+	 * @param token specified JWT token.
+	 */
+	public void revoke(String token) {
+		String key = digest(token);
+		Stripe stripe = stripeOf(key);
+		ClientPrincipal principal;
+		synchronized (stripe) {
+			principal = stripe.principals.remove(key);
+		}
+
+		if (principal != null) {
+			revokedEvictions.increment();
+		} else {
+			try {
+				principal = jwtUtil.parseToken(token);
+			} catch (JwtException | IllegalArgumentException e) {
+				// not valid anyway
+				return;
+			}
+		}
+		revoked.put(key, principal.getExpiration());
+		try {
+			revokedTokenRepository
+					.save(new RevokedToken(key, principal.getExpiration().toEpochMilli(), System.currentTimeMillis()));
+		} catch (Exception e) {
+			// still rejected by this node
+			log.error("token cache failed to save revoked token", e);
+		}
+	}
+
+	/**
+	 * Reads tokens revoked since previous read (by any node) from the storage, so
+	 * they are rejected by this node too.
+	 */
+	void sync() {
+		long now = System.currentTimeMillis();
+		try {
+			for (RevokedToken token : revokedTokenRepository.findRevokedSince(syncedAt - SYNC_OVERLAP_MS, now)) {
+				if (revoked.put(token.getId(), Instant.ofEpochMilli(token.getExpiresAt())) != null)
+					continue;
+				Stripe stripe = stripeOf(token.getId());
+				synchronized (stripe) {
+					if (stripe.principals.remove(token.getId()) != null)
+						revokedEvictions.increment();
+				}
+			}
+			syncedAt = now;
+		} catch (Exception e) {
+			log.error("token cache failed to read revoked tokens (retried)", e);
+		}
+	}
+
+	private void purge() {
+		Instant now = Instant.now();
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				stripe.principals.values().removeIf(principal -> {
+					if (!principal.isExpired(now))
+						return false;
+					expiredEvictions.increment();
+					return true;
+				});
+			}
+		}
+		revoked.values().removeIf(expiration -> !now.isBefore(expiration));
+		try {
+			revokedTokenRepository.deleteExpired(now.toEpochMilli());
+		} catch (Exception e) {
+			log.error("token cache failed to purge expired revoked tokens", e);
+		}
+	}
+
+	private Stripe stripeOf(String key) {
+		int hash = key.hashCode();
+		return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+	}
+
+	private int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.principals.size();
+			}
+		}
+		return size;
+	}
+
+	private static String digest(String token) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder(hash.length * 2);
+			for (byte b : hash)
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * The class {@code Stripe} is the lock and cached clients of part of tokens.
+	 */
+	private static final class Stripe {
+
+		private final Map<String, ClientPrincipal> principals = new LinkedHashMap<>(16, 0.75f, true);
+
+	}
+
+}
@@ -0,0 +1,62 @@
+package app.core.logging;
+
+import java.util.regex.Pattern;
+
+import ch.qos.logback.classic.pattern.MessageConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * The class {@code RedactingMessageConverter} replaces the message conversion
+ * words ({@code %m}, {@code %msg}, {@code %message}) of log patterns and masks
+ * secrets that got into log message: JWT tokens, bcrypt hashes and values of
+ * {@code password}/{@code secret}/{@code token} keys.
+ * 
+ * <p>
+ * It runs on the thread of the appender (asynchronous worker), and messages
+ * without any suspicious substring are returned as is.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class RedactingMessageConverter extends MessageConverter {
+
+	private static final String MASK = "***";
+	private static final Pattern JWT = Pattern.compile("eyJ[\\w-]*\\.[\\w-]*\\.[\\w-]*");
+	private static final Pattern BCRYPT = Pattern.compile("\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}");
+	private static final Pattern KEY_VALUE = Pattern
+			.compile("(?i)(password|secret|token)(\"?\\s*[=:]\\s*\"?)[^\\s\",;&}]+");
+
+	@Override
+	public String convert(ILoggingEvent event) {
+		return redact(event.getFormattedMessage());
+	}
+
+	/**
+	 * Returns specified message with all secrets masked.
+	 * 
+	 * @param message specified message.
+	 * @return message with secrets masked.
+	 */
+	public static String redact(String message) {
+		if (message == null)
+			return null;
+
+		if (message.contains("eyJ"))
+			message = JWT.matcher(message).replaceAll(MASK);
+		if (message.contains("$2"))
+			message = BCRYPT.matcher(message).replaceAll(MASK);
+		if (containsIgnoreCase(message, "password") || containsIgnoreCase(message, "secret")
+				|| containsIgnoreCase(message, "token"))
+			message = KEY_VALUE.matcher(message).replaceAll("$1$2" + MASK);
+		return message;
+	}
+
+	private static boolean containsIgnoreCase(String message, String word) {
+		int last = message.length() - word.length();
+		for (int i = 0; i <= last; i++)
+			if (message.regionMatches(true, i, word, 0, word.length()))
+				return true;
+		return false;
+	}
+
+}
@@ -0,0 +1,54 @@
+package app.core.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * The class {@code SamplingTurboFilter} lets through only one of every
+ * {@code rate} log events marked with {@link #SAMPLED}, so per-request lines can
+ * stay enabled under load.
+ * 
+ * <p>
+ * Events are counted only if their level is enabled, so
+ * {@code isDebugEnabled()} checks and disabled levels cost nothing.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+	/**
+	 * Marker of log events that are sampled.
+	 */
+	public static final Marker SAMPLED = MarkerFactory.getMarker("SAMPLED");
+
+	private int rate = 100;
+	private final AtomicLong counter = new AtomicLong();
+
+	@Override
+	public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+			Throwable t) {
+		if (marker != SAMPLED || format == null || rate <= 1)
+			return FilterReply.NEUTRAL;
+		if (!level.isGreaterOrEqual(logger.getEffectiveLevel()))
+			return FilterReply.NEUTRAL;
+		return counter.getAndIncrement() % rate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+	}
+
+	/**
+	 * Sets count of marked events per single logged event.
+	 * 
+	 * @param rate specified sampling rate.
+	 */
+	public void setRate(int rate) {
+		this.rate = rate;
+	}
+
+}
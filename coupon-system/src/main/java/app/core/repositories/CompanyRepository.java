@@ -1,29 +1,83 @@
 package app.core.repositories;
 
 import java.util.List;
+import java.util.Optional;
 
+import javax.persistence.QueryHint;
+import javax.transaction.Transactional;
+
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import app.core.dto.ClientCredentials;
+import app.core.dto.CompanySummary;
 import app.core.entities.Company;
 
 public interface CompanyRepository extends JpaRepository<Company, Integer> {
 
 	/**
-	 * Retrieves entity by its email and password.
+	 * Retrieves id, name and password hash of entity by its normalized email.
 	 * 
-	 * @param email    specified entity email to check.
-	 * @param password specified entity password to check.
-	 * @return entity with specified parameters if found.
+	 * @param emailNormalized specified entity email (in lower case) to check.
+	 * @return id, name and password hash of entity with specified email if
+	 *         found.
 	 */
-	Company findByEmailIgnoreCaseAndPassword(String email, String password);
+	@Query("select new app.core.dto.ClientCredentials(c.id, c.name, c.password) from Company c "
+			+ "where c.emailNormalized = :emailNormalized")
+	ClientCredentials findCredentialsByEmail(@Param("emailNormalized") String emailNormalized);
 
 	/**
-	 * Retrieves entity with specified name or email if found.
+	 * Replaces password hash of entity with specified id.
 	 * 
-	 * @param name  specified entity name to check.
-	 * @param email specified entity email to check.
+	 * @param id       specified entity id.
+	 * @param password specified new password hash.
+	 * @return count of updated entities.
+	 */
+	@Transactional
+	@Modifying
+	@Query("update Company c set c.password = :password, c.version = c.version + 1 where c.id = :id")
+	int updatePassword(@Param("id") int id, @Param("password") String password);
+
+	/**
+	 * Retrieves entity with specified name or normalized email if found.
+	 * 
+	 * @param name            specified entity name to check.
+	 * @param emailNormalized specified entity email (in lower case) to check.
 	 * @return entity with specified parameters if found.
 	 */
-	List<Company> findByNameOrEmailIgnoreCase(String name, String email);
+	List<Company> findByNameOrEmailNormalized(String name, String emailNormalized);
+
+	/**
+	 * Returns summaries of all companys (selects only the columns of summary, no
+	 * coupons).
+	 * 
+	 * @return summaries of all companys.
+	 */
+	@Query("select new app.core.dto.CompanySummary(c.id, c.name, c.email) from Company c")
+	List<CompanySummary> findAllSummaries();
+
+	/**
+	 * Retrieves entity by its id together with all its coupons (in single query).
+	 * 
+	 * @param id specified entity id.
+	 * @return entity with its coupons if found.
+	 */
+	@EntityGraph(attributePaths = "coupons")
+	@Query("select c from Company c where c.id = :id")
+	Optional<Company> findByIdWithCoupons(@Param("id") int id);
+
+	/**
+	 * Retrieves all entities together with all their coupons (in single query).
+	 * 
+	 * @return list of all entities with their coupons.
+	 */
+	@EntityGraph(attributePaths = "coupons")
+	@QueryHints(@QueryHint(name = "hibernate.query.passDistinctThrough", value = "false"))
+	@Query("select distinct c from Company c")
+	List<Company> findAllWithCoupons();
 
 }
@@ -0,0 +1,66 @@
+package app.core.repositories;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import app.core.entities.ArchivedCoupon;
+
+public interface CouponArchiveRepository extends JpaRepository<ArchivedCoupon, Integer> {
+
+	/**
+	 * Copies expired coupons, from specified ids, to the archive by single
+	 * statement.
+	 * 
+	 * @param couponIds  specified coupons ids.
+	 * @param archivedAt specified archive date.
+	 * @return count of archived coupons.
+	 */
+	@Modifying
+	@QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "coupon_archive"))
+	@Query(value = "insert into coupon_archive (id, company_id, category, title, description, start_date, "
+			+ "end_date, amount, price, image, hot, archived_at) "
+			+ "select co.id, co.company_id, co.category, co.title, co.description, co.start_date, "
+			+ "co.end_date, co.amount, co.price, co.image, co.hot, :archivedAt from coupon co "
+			+ "where co.id in (:couponIds) and co.status = 'EXPIRED'", nativeQuery = true)
+	int archiveExpiredIn(@Param("couponIds") Collection<Integer> couponIds,
+			@Param("archivedAt") LocalDate archivedAt);
+
+	/**
+	 * Copies purchase records of expired coupons, from specified ids, to the
+	 * archive by single statement.
+	 * 
+	 * @param couponIds specified coupons ids.
+	 * @return count of archived purchase records.
+	 */
+	@Modifying
+	@QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "customers_vs_coupons_archive"))
+	@Query(value = "insert into customers_vs_coupons_archive (customer_id, coupon_id) "
+			+ "select cvc.customer_id, cvc.coupon_id from customers_vs_coupons cvc "
+			+ "join coupon co on co.id = cvc.coupon_id "
+			+ "where co.id in (:couponIds) and co.status = 'EXPIRED'", nativeQuery = true)
+	int archiveExpiredPurchasesIn(@Param("couponIds") Collection<Integer> couponIds);
+
+	/**
+	 * Copies purchase records of expired coupons by specified customer to the
+	 * archive by single statement.
+	 * 
+	 * @param customerId specified customer id.
+	 * @return count of archived purchase records.
+	 */
+	@Modifying
+	@QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "customers_vs_coupons_archive"))
+	@Query(value = "insert into customers_vs_coupons_archive (customer_id, coupon_id) "
+			+ "select cvc.customer_id, cvc.coupon_id from customers_vs_coupons cvc "
+			+ "join coupon co on co.id = cvc.coupon_id "
+			+ "where cvc.customer_id = :customerId and co.status = 'EXPIRED'", nativeQuery = true)
+	int archiveExpiredPurchasesByCustomerId(@Param("customerId") int customerId);
+
+}
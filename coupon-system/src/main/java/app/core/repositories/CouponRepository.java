@@ -1,14 +1,44 @@
 package app.core.repositories;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import app.core.dto.CouponEndDate;
+import app.core.dto.CouponKey;
+import app.core.dto.CouponSummary;
 import app.core.entities.Coupon;
-import app.core.enums.Category;
 
-public interface CouponRepository extends JpaRepository<Coupon, Integer> {
+/**
+ * Repository of coupons. Every query of {@link Coupon} entities (derived
+ * finders, JPQL queries and loads by id) sees only active coupons: the
+ * predicate is declared once on the entity (see {@link Coupon}). Native
+ * statements name the status they expect explicitly.
+ * 
+ * <p>
+ * Results of finders are held in the query cache (ids only, the coupons are
+ * held in the entity cache) until any table they read is updated. Native
+ * statements declare the table they update (query space), so only cache
+ * regions of that table are invalidated instead of the whole cache: purchase
+ * records are declared as the coupon space, which covers collections of
+ * coupons of customers and companies.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public interface CouponRepository extends JpaRepository<Coupon, Integer>, CouponRepositoryCustom {
 
 	/**
 	 * Returns entity with specified company id and coupon title, if found.
@@ -17,6 +47,8 @@ public interface CouponRepository extends JpaRepository<Coupon, Integer> {
 	 * @param title     specified coupon title to check.
 	 * @return entity if found.
 	 */
+	@QueryHints({ @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+			@QueryHint(name = "org.hibernate.cacheRegion", value = "coupon.finders") })
 	Coupon findByCompanyIdAndTitle(int companyId, String title);
 
 	/**
@@ -25,37 +57,379 @@ public interface CouponRepository extends JpaRepository<Coupon, Integer> {
 	 * @param companyId specified company id.
 	 * @return list of all available company coupons.
 	 */
+	@QueryHints({ @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+			@QueryHint(name = "org.hibernate.cacheRegion", value = "coupon.finders") })
 	List<Coupon> findAllByCompanyId(int companyId);
 
+	@QueryHints({ @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+			@QueryHint(name = "org.hibernate.cacheRegion", value = "coupon.finders") })
+	List<Coupon> findAllByCustomersId(int customerId);
+
 	/**
-	 * Returns list of all available coupons with specified category of specified by
-	 * id company.
+	 * Returns summaries of all available coupons of specified by id company
+	 * (selects only the columns of summary).
 	 * 
 	 * @param companyId specified company id.
-	 * @param category  specified coupon category.
-	 * @return list of all available company coupons with specified coupon category.
+	 * @return summaries of all available company coupons.
+	 */
+	@QueryHints({ @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+			@QueryHint(name = "org.hibernate.cacheRegion", value = "coupon.finders") })
+	@Query("select new app.core.dto.CouponSummary(c.id, c.title, c.category, c.price, c.endDate, c.amount) "
+			+ "from Coupon c where c.companyId = :companyId")
+	List<CouponSummary> findSummariesByCompanyId(@Param("companyId") int companyId);
+
+	/**
+	 * Returns summaries of all available coupons purchased by specified by id
+	 * customer (selects only the columns of summary).
+	 * 
+	 * @param customerId specified customer id.
+	 * @return summaries of all available customer coupons.
 	 */
-	List<Coupon> findAllByCompanyIdAndCategory(int companyId, Category category);
+	@QueryHints({ @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+			@QueryHint(name = "org.hibernate.cacheRegion", value = "coupon.finders") })
+	@Query("select new app.core.dto.CouponSummary(c.id, c.title, c.category, c.price, c.endDate, c.amount) "
+			+ "from Coupon c join c.customers cu where cu.id = :customerId")
+	List<CouponSummary> findSummariesByCustomerId(@Param("customerId") int customerId);
 
 	/**
-	 * Returns list of available coupons with price, that less than specified value,
-	 * of specified by id company.
+	 * Returns id, category and price of every available coupon of specified by id
+	 * company.
 	 * 
 	 * @param companyId specified company id.
-	 * @param price     specified max price.
-	 * @return list of all available company coupons with specified max coupon
-	 *         price.
+	 * @return keys of company coupons.
 	 */
-	List<Coupon> findAllByCompanyIdAndPriceLessThan(int companyId, double price);
+	@Query("select new app.core.dto.CouponKey(c.id, c.category, c.price) from Coupon c where c.companyId = :companyId")
+	List<CouponKey> findKeysByCompanyId(@Param("companyId") int companyId);
 
-	List<Coupon> findAllByCustomersId(int customerId);
+	/**
+	 * Returns id, category and price of every available coupon purchased by
+	 * specified by id customer.
+	 * 
+	 * @param customerId specified customer id.
+	 * @return keys of customer coupons.
+	 */
+	@Query("select new app.core.dto.CouponKey(c.id, c.category, c.price) from Coupon c join c.customers cu "
+			+ "where cu.id = :customerId")
+	List<CouponKey> findKeysByCustomerId(@Param("customerId") int customerId);
+
+	/**
+	 * Returns the highest id of coupons that expired before specified date, or
+	 * {@code null} if there are no such coupons.
+	 * 
+	 * @param today specified date to check expiration against.
+	 * @return highest id of expired coupons or {@code null}.
+	 */
+	@Query("select max(c.id) from Coupon c where c.endDate < :today")
+	Integer findMaxExpiredId(@Param("today") LocalDate today);
+
+	/**
+	 * Returns the lowest id of coupons that expired before specified date, or
+	 * {@code null} if there are no such coupons.
+	 * 
+	 * @param today specified date to check expiration against.
+	 * @return lowest id of expired coupons or {@code null}.
+	 */
+	@Query("select min(c.id) from Coupon c where c.endDate < :today")
+	Integer findMinExpiredId(@Param("today") LocalDate today);
+
+	/**
+	 * Returns id and expiration date of every coupon that expires before specified
+	 * date (including already expired coupons).
+	 * 
+	 * @param until specified date.
+	 * @return list of ids and expiration dates.
+	 */
+	@Query("select new app.core.dto.CouponEndDate(c.id, c.endDate) from Coupon c where c.endDate < :until")
+	List<CouponEndDate> findEndDatesBefore(@Param("until") LocalDate until);
+
+	/**
+	 * Returns ids of hot coupons, from specified ids, that expired before
+	 * specified date.
+	 * 
+	 * @param couponIds specified coupons ids.
+	 * @param today     specified date to check expiration against.
+	 * @return list of coupons ids.
+	 */
+	@Query("select c.id from Coupon c where c.id in (:couponIds) and c.endDate < :today and c.hot = true")
+	List<Integer> findExpiredHotIdsIn(@Param("couponIds") Collection<Integer> couponIds,
+			@Param("today") LocalDate today);
+
+	/**
+	 * Marks active coupons, from specified ids, that expired before specified date
+	 * as expired by single statement.
+	 * 
+	 * @param couponIds specified coupons ids.
+	 * @param today     specified date to check expiration against.
+	 * @return count of expired coupons.
+	 */
+	@Modifying
+	@Query("update Coupon c set c.status = app.core.enums.CouponStatus.EXPIRED, c.version = c.version + 1 "
+			+ "where c.id in (:couponIds) and c.endDate < :today and c.status = app.core.enums.CouponStatus.ACTIVE")
+	int expireIn(@Param("couponIds") Collection<Integer> couponIds, @Param("today") LocalDate today);
+
+	/**
+	 * Returns ids of hot coupons, in specified range of ids, that expired before
+	 * specified date.
+	 * 
+	 * @param fromId specified lower bound of ids (exclusive).
+	 * @param toId   specified upper bound of ids (inclusive).
+	 * @param today  specified date to check expiration against.
+	 * @return list of coupons ids.
+	 */
+	@Query("select c.id from Coupon c where c.id > :fromId and c.id <= :toId and c.endDate < :today and c.hot = true")
+	List<Integer> findExpiredHotIdsInRange(@Param("fromId") int fromId, @Param("toId") int toId,
+			@Param("today") LocalDate today);
+
+	/**
+	 * Marks active coupons, in specified range of ids, that expired before
+	 * specified date as expired by single statement.
+	 * 
+	 * @param fromId specified lower bound of ids (exclusive).
+	 * @param toId   specified upper bound of ids (inclusive).
+	 * @param today  specified date to check expiration against.
+	 * @return count of expired coupons.
+	 */
+	@Modifying
+	@Query("update Coupon c set c.status = app.core.enums.CouponStatus.EXPIRED, c.version = c.version + 1 "
+			+ "where c.id > :fromId and c.id <= :toId and c.endDate < :today "
+			+ "and c.status = app.core.enums.CouponStatus.ACTIVE")
+	int expireInRange(@Param("fromId") int fromId, @Param("toId") int toId, @Param("today") LocalDate today);
+
+	/**
+	 * Returns ids of expired coupons (waiting to be archived), lowest first.
+	 * 
+	 * @param limit specified max count of ids.
+	 * @return list of coupons ids.
+	 */
+	@Query(value = "select co.id from coupon co where co.status = 'EXPIRED' order by co.id limit :limit",
+			nativeQuery = true)
+	List<Integer> findExpiredIds(@Param("limit") int limit);
+
+	/**
+	 * Returns ids of expired coupons (waiting to be archived) of specified by id
+	 * company.
+	 * 
+	 * @param companyId specified company id.
+	 * @return list of coupons ids.
+	 */
+	@Query(value = "select co.id from coupon co where co.status = 'EXPIRED' and co.company_id = :companyId",
+			nativeQuery = true)
+	List<Integer> findExpiredIdsByCompanyId(@Param("companyId") int companyId);
+
+	/**
+	 * Deletes purchase records of expired coupons, from specified ids, by single
+	 * statement (they must be archived first).
+	 * 
+	 * @param couponIds specified coupons ids.
+	 * @return count of deleted purchase records.
+	 */
+	@Modifying
+	@QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "coupon"))
+	@Query(value = "delete from customers_vs_coupons where coupon_id in (select co.id from coupon co "
+			+ "where co.id in (:couponIds) and co.status = 'EXPIRED')", nativeQuery = true)
+	int deleteExpiredPurchasesIn(@Param("couponIds") Collection<Integer> couponIds);
+
+	/**
+	 * Deletes purchase records of expired coupons by specified customer, by single
+	 * statement (they must be archived first).
+	 * 
+	 * @param customerId specified customer id.
+	 * @return count of deleted purchase records.
+	 */
+	@Modifying
+	@QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "coupon"))
+	@Query(value = "delete from customers_vs_coupons where customer_id = :customerId and coupon_id in "
+			+ "(select co.id from coupon co where co.status = 'EXPIRED')", nativeQuery = true)
+	int deleteExpiredPurchasesByCustomerId(@Param("customerId") int customerId);
+
+	/**
+	 * Deletes expired coupons, from specified ids, by single statement (they must
+	 * be archived first and their purchase records deleted).
+	 * 
+	 * @param couponIds specified coupons ids.
+	 * @return count of deleted coupons.
+	 * @see #deleteExpiredPurchasesIn(Collection)
+	 */
+	@Modifying
+	@QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "coupon"))
+	@Query(value = "delete from coupon where id in (:couponIds) and status = 'EXPIRED'", nativeQuery = true)
+	int deleteExpiredIn(@Param("couponIds") Collection<Integer> couponIds);
 
-	List<Coupon> findAllByCustomersIdAndCategory(int customerId, Category category);
+	/**
+	 * Takes one coupon out of stock in a single conditional statement: the row is
+	 * updated only if coupon exists, still in stock and not expired at specified
+	 * date. Hot coupons are taken out of stock only if specified {@code allowHot}
+	 * is {@code true} (otherwise their stock is held by inventory engine).
+	 * 
+	 * @param couponId specified coupon id.
+	 * @param today    specified date to check expiration against.
+	 * @param allowHot specified flag to allow update of hot coupons.
+	 * @return {@code 1} if coupon was taken out of stock, otherwise - {@code 0}.
+	 */
+	@Modifying
+	@Query("update Coupon c set c.amount = c.amount - 1, c.version = c.version + 1 "
+			+ "where c.id = :couponId and c.amount > 0 and c.status = app.core.enums.CouponStatus.ACTIVE "
+			+ "and c.endDate >= :today and (:allowHot = true or c.hot = false)")
+	int decrementAmountIfAvailable(@Param("couponId") int couponId, @Param("today") LocalDate today,
+			@Param("allowHot") boolean allowHot);
 
-	List<Coupon> findAllByCustomersIdAndPriceLessThan(int customerId, double price);
+	/**
+	 * Takes specified count of coupons out of stock (used to apply purchases that
+	 * were already accepted by inventory engine), only if at least this count is
+	 * still in stock.
+	 * 
+	 * @param couponId specified coupon id.
+	 * @param count    specified count of purchased coupons.
+	 * @return {@code 1} if coupon was updated, otherwise - {@code 0}.
+	 */
+	@Modifying
+	@Query("update Coupon c set c.amount = c.amount - :count, c.version = c.version + 1 "
+			+ "where c.id = :couponId and c.amount >= :count")
+	int decrementAmountBy(@Param("couponId") int couponId, @Param("count") int count);
 
-	// removes expired coupons
-	long deleteAllByEndDateBefore(LocalDate endDate);
+	/**
+	 * Returns page of available coupons (in stock and not expired at specified
+	 * date) that are after specified position in order of end date and id.
+	 * 
+	 * @param today    specified date to check expiration against.
+	 * @param endDate  specified end date of the last coupon of previous page.
+	 * @param id       specified id of the last coupon of previous page.
+	 * @param pageable specified page size.
+	 * @return page of available coupons.
+	 */
+	@QueryHints({ @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+			@QueryHint(name = "org.hibernate.cacheRegion", value = "coupon.finders") })
+	@Query("select c from Coupon c where c.amount > 0 and c.endDate >= :today "
+			+ "and (c.endDate > :endDate or (c.endDate = :endDate and c.id > :id)) order by c.endDate, c.id")
+	List<Coupon> findAvailableAfterEndDate(@Param("today") LocalDate today, @Param("endDate") LocalDate endDate,
+			@Param("id") int id, Pageable pageable);
+
+	/**
+	 * Returns page of available coupons (in stock and not expired at specified
+	 * date) that are after specified position in order of price and id.
+	 * 
+	 * @param today    specified date to check expiration against.
+	 * @param price    specified price of the last coupon of previous page.
+	 * @param id       specified id of the last coupon of previous page.
+	 * @param pageable specified page size.
+	 * @return page of available coupons.
+	 */
+	@QueryHints({ @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+			@QueryHint(name = "org.hibernate.cacheRegion", value = "coupon.finders") })
+	@Query("select c from Coupon c where c.amount > 0 and c.endDate >= :today "
+			+ "and (c.price > :price or (c.price = :price and c.id > :id)) order by c.price, c.id")
+	List<Coupon> findAvailableAfterPrice(@Param("today") LocalDate today, @Param("price") double price,
+			@Param("id") int id, Pageable pageable);
+
+	/**
+	 * Returns summaries of the coupons that
+	 * {@link #findAvailableAfterEndDate(LocalDate, LocalDate, int, Pageable)}
+	 * returns (selects only the columns of summary).
+	 * 
+	 * @param today    specified date to check expiration against.
+	 * @param endDate  specified end date of the last coupon of previous page.
+	 * @param id       specified id of the last coupon of previous page.
+	 * @param pageable specified page size.
+	 * @return page of summaries of available coupons.
+	 */
+	@QueryHints({ @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+			@QueryHint(name = "org.hibernate.cacheRegion", value = "coupon.finders") })
+	@Query("select new app.core.dto.CouponSummary(c.id, c.title, c.category, c.price, c.endDate, c.amount) "
+			+ "from Coupon c where c.amount > 0 and c.endDate >= :today "
+			+ "and (c.endDate > :endDate or (c.endDate = :endDate and c.id > :id)) order by c.endDate, c.id")
+	List<CouponSummary> findAvailableSummariesAfterEndDate(@Param("today") LocalDate today,
+			@Param("endDate") LocalDate endDate, @Param("id") int id, Pageable pageable);
+
+	/**
+	 * Returns summaries of the coupons that
+	 * {@link #findAvailableAfterPrice(LocalDate, double, int, Pageable)} returns
+	 * (selects only the columns of summary).
+	 * 
+	 * @param today    specified date to check expiration against.
+	 * @param price    specified price of the last coupon of previous page.
+	 * @param id       specified id of the last coupon of previous page.
+	 * @param pageable specified page size.
+	 * @return page of summaries of available coupons.
+	 */
+	@QueryHints({ @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+			@QueryHint(name = "org.hibernate.cacheRegion", value = "coupon.finders") })
+	@Query("select new app.core.dto.CouponSummary(c.id, c.title, c.category, c.price, c.endDate, c.amount) "
+			+ "from Coupon c where c.amount > 0 and c.endDate >= :today "
+			+ "and (c.price > :price or (c.price = :price and c.id > :id)) order by c.price, c.id")
+	List<CouponSummary> findAvailableSummariesAfterPrice(@Param("today") LocalDate today,
+			@Param("price") double price, @Param("id") int id, Pageable pageable);
+
+	/**
+	 * Returns list of all coupons flagged as hot.
+	 * 
+	 * @return list of hot coupons.
+	 */
+	List<Coupon> findAllByHotTrue();
+
+	/**
+	 * Returns ids of all customers that purchased specified by id coupon.
+	 * 
+	 * @param couponId specified coupon id.
+	 * @return list of customers ids.
+	 */
+	@Query(value = "select cvc.customer_id from customers_vs_coupons cvc where cvc.coupon_id = :couponId",
+			nativeQuery = true)
+	List<Integer> findPurchaserIds(@Param("couponId") int couponId);
+
+	/**
+	 * Returns ids of customers, from specified list, that purchased specified by
+	 * id coupon.
+	 * 
+	 * @param couponId    specified coupon id.
+	 * @param customerIds specified customers ids to check.
+	 * @return list of customers ids.
+	 */
+	@Query(value = "select cvc.customer_id from customers_vs_coupons cvc where cvc.coupon_id = :couponId "
+			+ "and cvc.customer_id in (:customerIds)", nativeQuery = true)
+	List<Integer> findPurchaserIdsIn(@Param("couponId") int couponId,
+			@Param("customerIds") Collection<Integer> customerIds);
+
+	/**
+	 * Retrieves entity by its id and locks it for update until the end of current
+	 * transaction.
+	 * 
+	 * @param couponId specified coupon id.
+	 * @return entity if found.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select c from Coupon c where c.id = :couponId")
+	Optional<Coupon> findByIdForUpdate(@Param("couponId") int couponId);
+
+	/**
+	 * Adds purchase record of specified coupon by specified customer, only if
+	 * customer and active coupon exist and this coupon was not purchased by this customer
+	 * in the past.
+	 * 
+	 * @param customerId specified customer id.
+	 * @param couponId   specified coupon id.
+	 * @return {@code 1} if purchase record was added, otherwise - {@code 0}.
+	 */
+	@Modifying
+	@QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "coupon"))
+	@Query(value = "insert into customers_vs_coupons (customer_id, coupon_id) "
+			+ "select cu.id, :couponId from customer cu where cu.id = :customerId "
+			+ "and exists (select 1 from coupon co where co.id = :couponId and co.status = 'ACTIVE') "
+			+ "and not exists (select 1 from customers_vs_coupons cvc "
+			+ "where cvc.customer_id = :customerId and cvc.coupon_id = :couponId)", nativeQuery = true)
+	int addPurchaseIfAbsent(@Param("customerId") int customerId, @Param("couponId") int couponId);
+
+	/**
+	 * Deletes purchase record of specified coupon by specified customer.
+	 * 
+	 * @param customerId specified customer id.
+	 * @param couponId   specified coupon id.
+	 * @return count of deleted purchase records.
+	 */
+	@Modifying
+	@QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "coupon"))
+	@Query(value = "delete from customers_vs_coupons where customer_id = :customerId and coupon_id = :couponId",
+			nativeQuery = true)
+	int deletePurchase(@Param("customerId") int customerId, @Param("couponId") int couponId);
 
 	// List of coupons not purchased by specified by id customer.
 //	List<Coupon> findAllByCustomersIdNot(int customerId);
@@ -0,0 +1,65 @@
+package app.core.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import app.core.dto.CouponCriteria;
+import app.core.dto.CouponSummary;
+import app.core.entities.Coupon;
+import app.core.enums.CouponSort;
+import app.core.utilities.CatalogCursor;
+
+/**
+ * Custom operations of {@link CouponRepository} that can not be declared as
+ * query methods.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public interface CouponRepositoryCustom {
+
+	/**
+	 * Adds purchase records of specified coupon by all specified customers in a
+	 * single statement.
+	 * 
+	 * @param couponId    specified coupon id.
+	 * @param customerIds specified customers ids.
+	 * @return count of added purchase records.
+	 */
+	int addPurchases(int couponId, Collection<Integer> customerIds);
+
+	/**
+	 * Returns page of available coupons that match specified criteria (and were
+	 * purchased by specified customer, if specified), in specified order, starting
+	 * after specified cursor. The criteria are combined into single statement.
+	 * 
+	 * @param criteria   specified criteria.
+	 * @param customerId specified customer id ({@code null} for coupons of any
+	 *                   customer).
+	 * @param sort       specified order of coupons.
+	 * @param after      specified cursor of previous page ({@code null} for the
+	 *                   first page).
+	 * @param limit      specified max count of coupons.
+	 * @return page of matching coupons.
+	 */
+	List<Coupon> findByCriteria(CouponCriteria criteria, Integer customerId, CouponSort sort, CatalogCursor after,
+			int limit);
+
+	/**
+	 * Returns summaries of the coupons that
+	 * {@link #findByCriteria(CouponCriteria, Integer, CouponSort, CatalogCursor, int)}
+	 * returns, selecting only the columns of summary.
+	 * 
+	 * @param criteria   specified criteria.
+	 * @param customerId specified customer id ({@code null} for coupons of any
+	 *                   customer).
+	 * @param sort       specified order of coupons.
+	 * @param after      specified cursor of previous page ({@code null} for the
+	 *                   first page).
+	 * @param limit      specified max count of coupons.
+	 * @return page of summaries of matching coupons.
+	 */
+	List<CouponSummary> findSummariesByCriteria(CouponCriteria criteria, Integer customerId, CouponSort sort,
+			CatalogCursor after, int limit);
+
+}
@@ -0,0 +1,123 @@
+package app.core.repositories;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.query.NativeQuery;
+
+import app.core.dto.CouponCriteria;
+import app.core.dto.CouponSummary;
+import app.core.entities.Coupon;
+import app.core.enums.CouponSort;
+import app.core.utilities.CatalogCursor;
+
+/**
+ * Implementation of {@link CouponRepositoryCustom}.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class CouponRepositoryImpl implements CouponRepositoryCustom {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public int addPurchases(int couponId, Collection<Integer> customerIds) {
+		if (customerIds.isEmpty())
+			return 0;
+
+		StringBuilder sql = new StringBuilder("insert into customers_vs_coupons (customer_id, coupon_id) values ");
+		for (int i = 0; i < customerIds.size(); i++)
+			sql.append(i == 0 ? "" : ", ").append("(?, ?)");
+
+		Query query = entityManager.createNativeQuery(sql.toString());
+		// invalidates cached coupon collections only, not the whole cache
+		query.unwrap(NativeQuery.class).addSynchronizedEntityClass(Coupon.class);
+		int position = 1;
+		for (Integer customerId : customerIds) {
+			query.setParameter(position++, customerId);
+			query.setParameter(position++, couponId);
+		}
+		return query.executeUpdate();
+	}
+
+	@Override
+	public List<Coupon> findByCriteria(CouponCriteria criteria, Integer customerId, CouponSort sort,
+			CatalogCursor after, int limit) {
+		return findByCriteria(Coupon.class, (cb, coupon) -> coupon, criteria, customerId, sort, after, limit);
+	}
+
+	@Override
+	public List<CouponSummary> findSummariesByCriteria(CouponCriteria criteria, Integer customerId, CouponSort sort,
+			CatalogCursor after, int limit) {
+		return findByCriteria(CouponSummary.class,
+				(cb, coupon) -> cb.construct(CouponSummary.class, coupon.get("id"), coupon.get("title"),
+						coupon.get("category"), coupon.get("price"), coupon.get("endDate"), coupon.get("amount")),
+				criteria, customerId, sort, after, limit);
+	}
+
+	private <T> List<T> findByCriteria(Class<T> resultType,
+			BiFunction<CriteriaBuilder, Root<Coupon>, Selection<? extends T>> selection, CouponCriteria criteria,
+			Integer customerId, CouponSort sort, CatalogCursor after, int limit) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<T> query = cb.createQuery(resultType);
+		Root<Coupon> coupon = query.from(Coupon.class);
+		Path<Integer> id = coupon.get("id");
+		Path<Double> price = coupon.get("price");
+		Path<LocalDate> endDate = coupon.get("endDate");
+
+		// only specified criteria are added, so each combination is its own statement
+		// (and its own plan)
+		List<Predicate> predicates = new ArrayList<>();
+		if (customerId != null)
+			predicates.add(cb.equal(coupon.join("customers").get("id"), customerId));
+		if (criteria.getCompanyId() != null)
+			predicates.add(cb.equal(coupon.get("companyId"), criteria.getCompanyId()));
+		if (criteria.getCategories() != null && !criteria.getCategories().isEmpty())
+			predicates.add(coupon.get("category").in(criteria.getCategories()));
+		if (criteria.getMinPrice() != null)
+			predicates.add(cb.greaterThanOrEqualTo(price, criteria.getMinPrice()));
+		if (criteria.getMaxPrice() != null)
+			predicates.add(cb.lessThan(price, criteria.getMaxPrice()));
+		if (criteria.getValidFrom() != null)
+			predicates.add(cb.greaterThanOrEqualTo(endDate, criteria.getValidFrom()));
+		if (criteria.getValidTo() != null)
+			predicates.add(cb.lessThanOrEqualTo(coupon.<LocalDate>get("startDate"), criteria.getValidTo()));
+		if (criteria.getInStock() != null)
+			predicates.add(criteria.getInStock() ? cb.greaterThan(coupon.<Integer>get("amount"), 0)
+					: cb.lessThanOrEqualTo(coupon.<Integer>get("amount"), 0));
+
+		// keyset pagination: rows after the last coupon of previous page
+		if (sort == CouponSort.PRICE) {
+			if (after != null)
+				predicates.add(cb.or(cb.greaterThan(price, after.getPrice()),
+						cb.and(cb.equal(price, after.getPrice()), cb.greaterThan(id, after.getId()))));
+			query.orderBy(cb.asc(price), cb.asc(id));
+		} else {
+			if (after != null)
+				predicates.add(cb.or(cb.greaterThan(endDate, after.getEndDate()),
+						cb.and(cb.equal(endDate, after.getEndDate()), cb.greaterThan(id, after.getId()))));
+			query.orderBy(cb.asc(endDate), cb.asc(id));
+		}
+
+		query.select(selection.apply(cb, coupon)).where(predicates.toArray(new Predicate[0]));
+		return entityManager.createQuery(query).setMaxResults(limit).setHint(QueryHints.CACHEABLE, true)
+				.setHint(QueryHints.CACHE_REGION, "coupon.finders").getResultList();
+	}
+
+}
@@ -1,27 +1,95 @@
 package app.core.repositories;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.QueryHint;
+import javax.transaction.Transactional;
+
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import app.core.dto.ClientCredentials;
+import app.core.dto.CustomerSummary;
 import app.core.entities.Customer;
 
 public interface CustomerRepository extends JpaRepository<Customer, Integer> {
 
 	/**
-	 * Retrieves entity by its email and password.
+	 * Retrieves id, first name and password hash of entity by its normalized email.
+	 * 
+	 * @param emailNormalized specified entity email (in lower case) to check.
+	 * @return id, first name and password hash of entity with specified email if
+	 *         found.
+	 */
+	@Query("select new app.core.dto.ClientCredentials(c.id, c.firstName, c.password) from Customer c "
+			+ "where c.emailNormalized = :emailNormalized")
+	ClientCredentials findCredentialsByEmail(@Param("emailNormalized") String emailNormalized);
+
+	/**
+	 * Replaces password hash of entity with specified id.
 	 * 
-	 * @param email    specified email to check.
-	 * @param password specified password to check.
-	 * @return entity with specified email and password.
+	 * @param id       specified entity id.
+	 * @param password specified new password hash.
+	 * @return count of updated entities.
 	 */
-	Customer findByEmailIgnoreCaseAndPassword(String email, String password);
+	@Transactional
+	@Modifying
+	@Query("update Customer c set c.password = :password, c.version = c.version + 1 where c.id = :id")
+	int updatePassword(@Param("id") int id, @Param("password") String password);
 
 	/**
-	 * Retrieves entity with specified email if found.
+	 * Retrieves entity with specified normalized email if found.
 	 * 
-	 * @param email specified email to check.
+	 * @param emailNormalized specified email (in lower case) to check.
 	 * @return entity if found.
 	 */
-	Customer findByEmailIgnoreCase(String email);
+	Customer findByEmailNormalized(String emailNormalized);
+
+	/**
+	 * Returns ids of customers, from specified list, that exist.
+	 * 
+	 * @param ids specified customers ids to check.
+	 * @return list of existing customers ids.
+	 */
+	@Query("select c.id from Customer c where c.id in :ids")
+	List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
+	/**
+	 * Returns summaries of all customers (selects only the columns of summary, no
+	 * coupons).
+	 * 
+	 * @return summaries of all customers.
+	 */
+	@Query("select new app.core.dto.CustomerSummary(c.id, c.firstName, c.lastName, c.email) from Customer c")
+	List<CustomerSummary> findAllSummaries();
+
+	/**
+	 * Retrieves entity by its id together with all its purchased coupons (in
+	 * single query).
+	 * 
+	 * @param id specified entity id.
+	 * @return entity with its coupons if found.
+	 */
+	@EntityGraph(attributePaths = "coupons")
+	@Query("select c from Customer c where c.id = :id")
+	Optional<Customer> findByIdWithCoupons(@Param("id") int id);
+
+	/**
+	 * Retrieves all entities together with all their purchased coupons (in single
+	 * query).
+	 * 
+	 * @return list of all entities with their coupons.
+	 */
+	@EntityGraph(attributePaths = "coupons")
+	@QueryHints(@QueryHint(name = "hibernate.query.passDistinctThrough", value = "false"))
+	@Query("select distinct c from Customer c")
+	List<Customer> findAllWithCoupons();
 
 	// if coupons was purchased
 //	boolean existsByIdAndCouponsId(int customerId, int couponId);
@@ -0,0 +1,25 @@
+package app.core.repositories;
+
+import javax.transaction.Transactional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import app.core.entities.IdempotencyRecord;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+	/**
+	 * Deletes all records that expired before specified time.
+	 * 
+	 * @param now specified time (epoch millis).
+	 * @return count of deleted records.
+	 */
+	@Transactional
+	@Modifying
+	@Query("delete from IdempotencyRecord r where r.expiresAt <= :now")
+	int deleteExpired(@Param("now") long now);
+
+}
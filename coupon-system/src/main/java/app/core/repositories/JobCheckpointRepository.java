@@ -0,0 +1,9 @@
+package app.core.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import app.core.entities.JobCheckpoint;
+
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+
+}
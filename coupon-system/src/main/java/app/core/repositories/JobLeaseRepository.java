@@ -0,0 +1,78 @@
+package app.core.repositories;
+
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+import javax.transaction.Transactional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import app.core.entities.JobLease;
+
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+	/**
+	 * Extends specified lease, only if it is still held by specified node with
+	 * specified token and not expired.
+	 * 
+	 * @param name      specified lease name.
+	 * @param owner     specified node id.
+	 * @param token     specified fencing token.
+	 * @param now       specified current time (epoch millis).
+	 * @param expiresAt specified new expiration time (epoch millis).
+	 * @return {@code 1} if lease was extended, otherwise - {@code 0}.
+	 */
+	@Transactional
+	@Modifying
+	@Query("update JobLease l set l.expiresAt = :expiresAt where l.name = :name and l.owner = :owner "
+			+ "and l.token = :token and l.expiresAt >= :now")
+	int renew(@Param("name") String name, @Param("owner") String owner, @Param("token") long token,
+			@Param("now") long now, @Param("expiresAt") long expiresAt);
+
+	/**
+	 * Passes specified lease to specified node with next token, only if the lease
+	 * expired.
+	 * 
+	 * @param name      specified lease name.
+	 * @param owner     specified node id.
+	 * @param now       specified current time (epoch millis).
+	 * @param expiresAt specified expiration time (epoch millis).
+	 * @return {@code 1} if lease was taken over, otherwise - {@code 0}.
+	 */
+	@Transactional
+	@Modifying
+	@Query("update JobLease l set l.owner = :owner, l.token = l.token + 1, l.expiresAt = :expiresAt "
+			+ "where l.name = :name and l.expiresAt < :now")
+	int takeOver(@Param("name") String name, @Param("owner") String owner, @Param("now") long now,
+			@Param("expiresAt") long expiresAt);
+
+	/**
+	 * Expires specified lease at once, only if it is held by specified node with
+	 * specified token (so other node can take it over without waiting).
+	 * 
+	 * @param name  specified lease name.
+	 * @param owner specified node id.
+	 * @param token specified fencing token.
+	 * @return {@code 1} if lease was released, otherwise - {@code 0}.
+	 */
+	@Transactional
+	@Modifying
+	@Query("update JobLease l set l.expiresAt = 0 where l.name = :name and l.owner = :owner and l.token = :token")
+	int release(@Param("name") String name, @Param("owner") String owner, @Param("token") long token);
+
+	/**
+	 * Retrieves lease by its name and locks it until the end of current
+	 * transaction, so the lease can not pass to other node meanwhile.
+	 * 
+	 * @param name specified lease name.
+	 * @return entity if found.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select l from JobLease l where l.name = :name")
+	Optional<JobLease> findByNameForUpdate(@Param("name") String name);
+
+}
@@ -0,0 +1,37 @@
+package app.core.repositories;
+
+import java.util.List;
+
+import javax.transaction.Transactional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import app.core.entities.RevokedToken;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+	/**
+	 * Returns tokens revoked since specified time that are not expired yet.
+	 * 
+	 * @param since specified revocation time (epoch millis).
+	 * @param now   specified current time (epoch millis).
+	 * @return revoked tokens.
+	 */
+	@Query("select t from RevokedToken t where t.revokedAt >= :since and t.expiresAt > :now")
+	List<RevokedToken> findRevokedSince(@Param("since") long since, @Param("now") long now);
+
+	/**
+	 * Deletes all tokens that expired before specified time.
+	 * 
+	 * @param now specified time (epoch millis).
+	 * @return count of deleted tokens.
+	 */
+	@Transactional
+	@Modifying
+	@Query("delete from RevokedToken t where t.expiresAt <= :now")
+	int deleteExpired(@Param("now") long now);
+
+}
@@ -6,12 +6,20 @@ import java.util.Optional;
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 
+import app.core.aspects.RetryOnConflict;
+import app.core.beans.CatalogVersions;
+import app.core.beans.CouponIndex;
+import app.core.beans.CouponInventoryEngine;
+import app.core.beans.PasswordHasher;
+import app.core.dto.ClientIdentity;
+import app.core.dto.CompanySummary;
+import app.core.dto.CustomerSummary;
 import app.core.entities.Company;
 import app.core.entities.Customer;
 import app.core.exceptions.CouponSystemException;
+import app.core.exceptions.StaleVersionException;
 import app.core.repositories.CompanyRepository;
 import app.core.repositories.CouponRepository;
 import app.core.repositories.CustomerRepository;
@@ -25,26 +33,38 @@ import app.core.repositories.CustomerRepository;
  */
 @Service
 @Transactional
-@Scope("prototype")
 public class AdminService extends ClientService {
 
 	private String email;
 	private String password;
+	private CouponInventoryEngine inventoryEngine;
+	private PasswordHasher passwordHasher;
+	private DailyJobService dailyJobService;
+	private CouponIndex couponIndex;
+	private CatalogVersions catalogVersions;
 
 	public AdminService(CompanyRepository companyRepository, CustomerRepository customerRepository,
-			CouponRepository couponRepository, @Value("${admin.email}") String email,
-			@Value("${admin.password}") String password) {
+			CouponRepository couponRepository, CouponInventoryEngine inventoryEngine, PasswordHasher passwordHasher,
+			DailyJobService dailyJobService, CouponIndex couponIndex, CatalogVersions catalogVersions,
+			@Value("${admin.email}") String email, @Value("${admin.password}") String password) {
 		this.companyRepository = companyRepository;
 		this.customerRepository = customerRepository;
 		this.couponRepository = couponRepository;
+		this.inventoryEngine = inventoryEngine;
+		this.passwordHasher = passwordHasher;
+		this.dailyJobService = dailyJobService;
+		this.couponIndex = couponIndex;
+		this.catalogVersions = catalogVersions;
 		this.email = email;
 		this.password = password;
 	}
 
 	@Override
-	public boolean login(String email, String password) throws CouponSystemException {
+	public ClientIdentity login(String email, String password) throws CouponSystemException {
 		try {
-			return this.email.equals(email) && this.password.equals(password);
+			if (this.email.equals(email) && this.password.equals(password))
+				return new ClientIdentity(-1, "Administrator");
+			return null;
 		} catch (Exception e) {
 			throw new CouponSystemException(
 					"admin login failed: " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""), e);
@@ -64,8 +84,8 @@ public class AdminService extends ClientService {
 		if (company == null)
 			throw new CouponSystemException("failed to save company: is null!");
 
-		List<Company> foundCompanies = companyRepository.findByNameOrEmailIgnoreCase(company.getName(),
-				company.getEmail());
+		List<Company> foundCompanies = companyRepository.findByNameOrEmailNormalized(company.getName(),
+				company.getEmailNormalized());
 		if (!foundCompanies.isEmpty()) {
 			for (Company comp : foundCompanies) {
 				if (comp != null) {
@@ -80,12 +100,16 @@ public class AdminService extends ClientService {
 		}
 
 		Company savedCompany;
+		if (company.getPassword() == null)
+			throw new CouponSystemException("failed to save company: password is empty!");
+		company.setPassword(passwordHasher.hash(company.getPassword()));
 		try {
 			savedCompany = companyRepository.save(company);
 		} catch (Exception e) {
 			throw new CouponSystemException(
 					"failed to save company: " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""), e);
 		}
+		catalogVersions.companyChanged(savedCompany.getId());
 
 		return savedCompany;
 	}
@@ -112,15 +136,17 @@ public class AdminService extends ClientService {
 	 * @throws CouponSystemException if company with specified id not exists.
 	 */
 	public Company getOneCompanyWithCoupons(int companyId) throws CouponSystemException {
-		Company company = getOneCompany(companyId);
+		Optional<Company> opt;
 		try {
-			company.setCoupons(couponRepository.findAllByCompanyId(companyId));
+			opt = companyRepository.findByIdWithCoupons(companyId);
 		} catch (Exception e) {
 			throw new CouponSystemException("failed to get company with id = " + companyId + ": " + e.getMessage()
 					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
 		}
 
-		return company;
+		if (opt.isPresent())
+			return opt.get();
+		throw new CouponSystemException("company with id = " + companyId + " not found!");
 	}
 
 	/**
@@ -141,6 +167,22 @@ public class AdminService extends ClientService {
 		return companies;
 	}
 
+	/**
+	 * Returns summaries of all available companies (only the columns of summary
+	 * are selected, no coupons).
+	 * 
+	 * @return list of summaries of all available companies.
+	 * @throws CouponSystemException if failed to retrieve list of companies.
+	 */
+	public List<CompanySummary> getAllCompanySummaries() throws CouponSystemException {
+		try {
+			return companyRepository.findAllSummaries();
+		} catch (Exception e) {
+			throw new CouponSystemException("failed to retrieve all available companies: " + e.getMessage()
+					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
+		}
+	}
+
 	/**
 	 * Returns all available companies with its coupons.
 	 * 
@@ -150,10 +192,7 @@ public class AdminService extends ClientService {
 	public List<Company> getAllCompaniesWithCoupons() throws CouponSystemException {
 		List<Company> companies;
 		try {
-			companies = companyRepository.findAll();
-			for (Company company : companies) {
-				company.setCoupons(couponRepository.findAllByCompanyId(company.getId()));
-			}
+			companies = companyRepository.findAllWithCoupons();
 		} catch (Exception e) {
 			throw new CouponSystemException("failed to retrieve all available companies: " + e.getMessage()
 					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
@@ -171,6 +210,7 @@ public class AdminService extends ClientService {
 	 * @return updated entity.
 	 * @throws CouponSystemException if failed update specified entity.
 	 */
+	@RetryOnConflict
 	public Company updateComapany(Company company) throws CouponSystemException {
 		if (company == null)
 			throw new CouponSystemException("failed to update company: is null!");
@@ -182,8 +222,12 @@ public class AdminService extends ClientService {
 			throw new CouponSystemException("failed to update company: " + e.getMessage(), e);
 		}
 
-		List<Company> foundCompanies = companyRepository.findByNameOrEmailIgnoreCase(company.getName(),
-				company.getEmail());
+		if (company.getVersion() != companyFromDB.getVersion())
+			throw new StaleVersionException("failed to update company: company with id = " + company.getId()
+					+ " was modified (version " + companyFromDB.getVersion() + "), please reload it!");
+
+		List<Company> foundCompanies = companyRepository.findByNameOrEmailNormalized(company.getName(),
+				company.getEmailNormalized());
 		if (!foundCompanies.isEmpty()) {
 			for (Company comp : foundCompanies) {
 				if (comp != null) {
@@ -199,33 +243,42 @@ public class AdminService extends ClientService {
 
 		try {
 			companyFromDB.setEmail(company.getEmail());
-			companyFromDB.setPassword(company.getPassword());
+			// absent password is not changed
+			if (company.getPassword() != null)
+				companyFromDB.setPassword(passwordHasher.hash(company.getPassword()));
 		} catch (CouponSystemException e) {
 			throw new CouponSystemException("failed to update company: " + e.getMessage(), e);
 		}
+		catalogVersions.companyChanged(companyFromDB.getId());
 
 		return companyFromDB;
 	}
 
 	/**
 	 * Returns deleted entity with specified id, all its coupons and all its coupons
-	 * purchase history, if found.
+	 * purchase history, if found. Its expired coupons that were not archived yet
+	 * are moved to the archive (with their purchase history) first.
 	 * 
 	 * @param companyId specified entity id.
 	 * @return deleted entity, if found.
 	 * @throws CouponSystemException if failed to delete entity with all coupons and
 	 *                               sales.
 	 */
+	@RetryOnConflict
 	public Company deleteCompany(int companyId) throws CouponSystemException {
 		Company company;
 		try {
+			inventoryEngine.suspendCompany(companyId);
 			company = getOneCompany(companyId);
 		} catch (CouponSystemException e) {
 			throw new CouponSystemException("failed to delete company: " + e.getMessage(), e);
 		}
 
 		try {
+			dailyJobService.archiveExpiredCouponsOfCompany(companyId);
 			companyRepository.delete(company);
+			couponIndex.companyDeleted(companyId);
+			catalogVersions.companyDeleted(companyId);
 		} catch (Exception e) {
 			throw new CouponSystemException(
 					"failed to delete company: " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""),
@@ -248,11 +301,14 @@ public class AdminService extends ClientService {
 		if (customer == null)
 			throw new CouponSystemException("failed to save customer: is null!");
 
-		if (customerRepository.findByEmailIgnoreCase(customer.getEmail()) != null)
+		if (customerRepository.findByEmailNormalized(customer.getEmailNormalized()) != null)
 			throw new CouponSystemException(
 					"failed to save customer: email(" + customer.getEmail() + ") already in use!");
 
 		Customer savedCustomer;
+		if (customer.getPassword() == null)
+			throw new CouponSystemException("failed to save customer: password is empty!");
+		customer.setPassword(passwordHasher.hash(customer.getPassword()));
 		try {
 			savedCustomer = customerRepository.save(customer);
 		} catch (Exception e) {
@@ -260,6 +316,7 @@ public class AdminService extends ClientService {
 					"failed to save customer: " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""),
 					e);
 		}
+		catalogVersions.customerChanged(savedCustomer.getId());
 
 		return savedCustomer;
 	}
@@ -286,15 +343,17 @@ public class AdminService extends ClientService {
 	 * @throws CouponSystemException if customer with specified id not exists.
 	 */
 	public Customer getOneCustomerWithCoupons(int customerId) throws CouponSystemException {
-		Customer customer = getOneCustomer(customerId);
+		Optional<Customer> opt;
 		try {
-			customer.setCoupons(couponRepository.findAllByCustomersId(customerId));
+			opt = customerRepository.findByIdWithCoupons(customerId);
 		} catch (Exception e) {
 			throw new CouponSystemException("failed to get customer with id = " + customerId + ": " + e.getMessage()
 					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
 		}
 
-		return customer;
+		if (opt.isPresent())
+			return opt.get();
+		throw new CouponSystemException("customer with id = " + customerId + " not found!");
 	}
 
 	/**
@@ -315,6 +374,22 @@ public class AdminService extends ClientService {
 		return customers;
 	}
 
+	/**
+	 * Returns summaries of all available customers (only the columns of summary
+	 * are selected, no coupons).
+	 * 
+	 * @return list of summaries of all available customers.
+	 * @throws CouponSystemException if failed to retrieve list of customers.
+	 */
+	public List<CustomerSummary> getAllCustomerSummaries() throws CouponSystemException {
+		try {
+			return customerRepository.findAllSummaries();
+		} catch (Exception e) {
+			throw new CouponSystemException("failed to retrieve all available customers: " + e.getMessage()
+					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
+		}
+	}
+
 	/**
 	 * Returns all available customers with coupons purchases.
 	 * 
@@ -324,10 +399,7 @@ public class AdminService extends ClientService {
 	public List<Customer> getAllCustomersWithCoupons() throws CouponSystemException {
 		List<Customer> customers;
 		try {
-			customers = customerRepository.findAll();
-			for (Customer customer : customers) {
-				customer.setCoupons(couponRepository.findAllByCustomersId(customer.getId()));
-			}
+			customers = customerRepository.findAllWithCoupons();
 		} catch (Exception e) {
 			throw new CouponSystemException("failed to retrieve all available customers: " + e.getMessage()
 					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
@@ -345,6 +417,7 @@ public class AdminService extends ClientService {
 	 * @return updated entity.
 	 * @throws CouponSystemException if failed to update specified customer.
 	 */
+	@RetryOnConflict
 	public Customer updateCustomer(Customer customer) throws CouponSystemException {
 		if (customer == null)
 			throw new CouponSystemException("failed to update customer: is null!");
@@ -356,7 +429,11 @@ public class AdminService extends ClientService {
 			throw new CouponSystemException("failed to update customer: " + e.getMessage(), e);
 		}
 
-		Customer foundCustomer = customerRepository.findByEmailIgnoreCase(customer.getEmail());
+		if (customer.getVersion() != customerFromDB.getVersion())
+			throw new StaleVersionException("failed to update customer: customer with id = " + customer.getId()
+					+ " was modified (version " + customerFromDB.getVersion() + "), please reload it!");
+
+		Customer foundCustomer = customerRepository.findByEmailNormalized(customer.getEmailNormalized());
 		if (foundCustomer != null && !foundCustomer.equals(customer))
 			throw new CouponSystemException(
 					"failed to update customer: email(" + customer.getEmail() + ") already in use!");
@@ -365,23 +442,28 @@ public class AdminService extends ClientService {
 			customerFromDB.setFirstName(customer.getFirstName());
 			customerFromDB.setLastName(customer.getLastName());
 			customerFromDB.setEmail(customer.getEmail());
-			customerFromDB.setPassword(customer.getPassword());
+			// absent password is not changed
+			if (customer.getPassword() != null)
+				customerFromDB.setPassword(passwordHasher.hash(customer.getPassword()));
 		} catch (Exception e) {
 			throw new CouponSystemException("failed to update customer: " + e.getMessage(), e);
 		}
+		catalogVersions.customerChanged(customerFromDB.getId());
 
 		return customerFromDB;
 	}
 
 	/**
 	 * Returns deleted entity with specified id and all its coupons purchase
-	 * history, if found.
+	 * history, if found. Its purchases of expired coupons that were not archived
+	 * yet are moved to the archive first.
 	 * 
 	 * @param customerId specified entity id.
 	 * @return deleted entity, if found.
 	 * @throws CouponSystemException if failed to delete entity with all coupons
 	 *                               purchases.
 	 */
+	@RetryOnConflict
 	public Customer deleteCustomer(int customerId) throws CouponSystemException {
 		Customer customer;
 		try {
@@ -391,7 +473,10 @@ public class AdminService extends ClientService {
 		}
 
 		try {
+			dailyJobService.archiveExpiredPurchasesOfCustomer(customerId);
 			customerRepository.delete(customer);
+			couponIndex.customerDeleted(customerId);
+			catalogVersions.customerChanged(customerId);
 		} catch (Exception e) {
 			throw new CouponSystemException(
 					"failed to delete customer: " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""),
@@ -1,5 +1,6 @@
 package app.core.services;
 
+import app.core.dto.ClientIdentity;
 import app.core.exceptions.CouponSystemException;
 import app.core.repositories.CompanyRepository;
 import app.core.repositories.CouponRepository;
@@ -9,6 +10,11 @@ import app.core.repositories.CustomerRepository;
  * The class {@code ClientService} and it gives all subclasses option to login
  * into coupon system application.
  * 
+ * <p>
+ * Client services are stateless singletons, shared by all clients: identity
+ * of logged in client is carried by its token (see
+ * {@link app.core.jwt.ClientPrincipal}).
+ * 
  * @author Vitaly Zlobin
  *
  */
@@ -20,16 +26,16 @@ public abstract class ClientService {
 
 	/**
 	 * Performs connection to the DB by using specified parameters (email and
-	 * password). Returns {@code true} if connection succeeded, otherwise -
-	 * {@code false}.
+	 * password). Returns id and name of the client if connection succeeded,
+	 * otherwise - {@code null}.
 	 * 
 	 * @param email    specified email to connect with.
 	 * @param password specified password to connect with.
-	 * @return {@code true} if connection to the storage was succeeded, otherwise -
-	 *         {@code false}.
+	 * @return id and name of the client if connection to the storage was
+	 *         succeeded, otherwise - {@code null}.
 	 * @throws CouponSystemException if failed to connect to storage with specified
 	 *                               email and password.
 	 */
-	abstract boolean login(String email, String password) throws CouponSystemException;
+	public abstract ClientIdentity login(String email, String password) throws CouponSystemException;
 
 }
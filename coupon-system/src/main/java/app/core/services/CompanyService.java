@@ -4,16 +4,31 @@ import java.util.List;
 import java.util.Optional;
 
 import javax.transaction.Transactional;
+import javax.transaction.Transactional.TxType;
 
-import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 
+import app.core.aspects.RetryOnConflict;
+import app.core.beans.CatalogVersions;
+import app.core.beans.CouponExpiryWheel;
+import app.core.beans.CouponIndex;
+import app.core.beans.CouponInventoryEngine;
+import app.core.beans.EntityCache;
+import app.core.beans.PasswordHasher;
+import app.core.dto.ClientCredentials;
+import app.core.dto.ClientIdentity;
+import app.core.dto.CouponCriteria;
+import app.core.dto.CouponPage;
+import app.core.dto.CouponSummary;
 import app.core.entities.Company;
 import app.core.entities.Coupon;
-import app.core.enums.Category;
+import app.core.enums.CouponSort;
 import app.core.exceptions.CouponSystemException;
+import app.core.exceptions.StaleVersionException;
+import app.core.exceptions.ServiceBusyException;
 import app.core.repositories.CompanyRepository;
 import app.core.repositories.CouponRepository;
+import app.core.utilities.CouponSystemUtilities;
 
 /**
  * The class {@code CompanyService} represents business logic layer for coupon
@@ -24,25 +39,48 @@ import app.core.repositories.CouponRepository;
  */
 @Service
 @Transactional
-@Scope("prototype")
 public class CompanyService extends ClientService {
 
 //	private int companyId; // id of company that trying to login
 
-	public CompanyService(CompanyRepository companyRepository, CouponRepository couponRepository) {
+	private CouponInventoryEngine inventoryEngine;
+	private PasswordHasher passwordHasher;
+	private CouponExpiryWheel expiryWheel;
+	private EntityCache entityCache;
+	private CouponIndex couponIndex;
+	private CouponQueryService queryService;
+	private CatalogVersions catalogVersions;
+
+	public CompanyService(CompanyRepository companyRepository, CouponRepository couponRepository,
+			CouponInventoryEngine inventoryEngine, PasswordHasher passwordHasher, CouponExpiryWheel expiryWheel,
+			EntityCache entityCache, CouponIndex couponIndex, CouponQueryService queryService,
+			CatalogVersions catalogVersions) {
 		this.companyRepository = companyRepository;
 		this.couponRepository = couponRepository;
+		this.inventoryEngine = inventoryEngine;
+		this.passwordHasher = passwordHasher;
+		this.expiryWheel = expiryWheel;
+		this.entityCache = entityCache;
+		this.couponIndex = couponIndex;
+		this.queryService = queryService;
+		this.catalogVersions = catalogVersions;
 	}
 
 	@Override
-	public boolean login(String email, String password) throws CouponSystemException {
+	@Transactional(TxType.NOT_SUPPORTED)
+	public ClientIdentity login(String email, String password) throws CouponSystemException {
 		try {
-			Company loggedInCompany = getCompanyByEmailAndPassword(email, password);
-			if (loggedInCompany == null)
-				return false;
-
-//			this.companyId = loggedInCompany.getId();
-			return true;
+			// single indexed lookup, password is verified out of transaction
+			ClientCredentials credentials = companyRepository
+					.findCredentialsByEmail(CouponSystemUtilities.normalizeEmail(email));
+			if (!passwordHasher.matches(password, credentials == null ? null : credentials.getPasswordHash()))
+				return null;
+
+			if (passwordHasher.needsRehash(credentials.getPasswordHash()))
+				companyRepository.updatePassword(credentials.getId(), passwordHasher.hash(password));
+			return credentials.toIdentity();
+		} catch (ServiceBusyException e) {
+			throw e;
 		} catch (Exception e) {
 			throw new CouponSystemException(
 					"company login failed: " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""), e);
@@ -74,6 +112,13 @@ public class CompanyService extends ClientService {
 					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
 		}
 
+		if (savedCoupon.isHot())
+			inventoryEngine.track(savedCoupon.getId());
+		expiryWheel.schedule(savedCoupon.getId(), savedCoupon.getEndDate());
+		entityCache.evictCompanyCoupons(id);
+		couponIndex.couponSaved(savedCoupon);
+		catalogVersions.couponAdded(id);
+
 		return savedCoupon;
 	}
 
@@ -93,21 +138,29 @@ public class CompanyService extends ClientService {
 	}
 
 	/**
-	 * Returns deleted by id coupon and all its purchases history if found.
+	 * Returns deleted by id coupon of specified by id company and all its
+	 * purchases history if found.
 	 * 
+	 * @param id       specified company id.
 	 * @param couponId specified coupon id.
 	 * @return deleted entity.
-	 * @throws CouponSystemException if failed to delete coupon.
+	 * @throws CouponSystemException if failed to delete coupon or coupon belongs
+	 *                               to other company.
 	 */
-	public Coupon deleteCoupon(int couponId) throws CouponSystemException {
+	@RetryOnConflict
+	public Coupon deleteCoupon(int id, int couponId) throws CouponSystemException {
 		// TODO: cascading to remove purchases...
 		Coupon coupon;
 		try {
+			inventoryEngine.suspend(couponId);
 			coupon = getOneCoupon(couponId);
 		} catch (CouponSystemException e) {
 			throw new CouponSystemException("failed to delete coupon: " + e.getMessage(), e);
 		}
 
+		if (coupon.getCompanyId() != id)
+			throw new CouponSystemException("failed to delete coupon: not found!");
+
 		try {
 			couponRepository.delete(coupon);
 		} catch (Exception e) {
@@ -115,6 +168,10 @@ public class CompanyService extends ClientService {
 					"failed to delete coupon: " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""),
 					e);
 		}
+		expiryWheel.cancel(couponId);
+		entityCache.evictCompanyCoupons(coupon.getCompanyId());
+		couponIndex.couponDeleted(coupon);
+		catalogVersions.couponChanged(coupon.getCompanyId());
 
 		return coupon;
 	}
@@ -138,41 +195,76 @@ public class CompanyService extends ClientService {
 	}
 
 	/**
-	 * Returns list of all available coupons with specified category for currently
-	 * logged in company.
+	 * Returns summaries of all available coupons of currently logged in company
+	 * (only the columns of summary are selected).
 	 * 
-	 * @param category specified coupon category.
-	 * @return list of all company coupons with specified coupon category.
+	 * @return list of summaries of all company coupons.
 	 * @throws CouponSystemException if failed to get list of company coupons.
 	 */
-	public List<Coupon> getAllCompanyCoupons(int id, Category category) throws CouponSystemException {
-		List<Coupon> coupons;
+	public List<CouponSummary> getAllCompanyCouponSummaries(int id) throws CouponSystemException {
 		try {
-			coupons = couponRepository.findAllByCompanyIdAndCategory(id, category);
+			return couponRepository.findSummariesByCompanyId(id);
 		} catch (Exception e) {
-			throw new CouponSystemException("failed to retrieve all available company coupons by specified category("
-					+ category + "): " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""), e);
+			throw new CouponSystemException("failed to retrieve all available company coupons: " + e.getMessage()
+					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
 		}
-		return coupons;
 	}
 
 	/**
-	 * Returns list of all available coupons with price, that less than specified
-	 * value, for currently logged in company.
+	 * Returns single page of available coupons of currently logged in company that
+	 * match specified criteria (any combination of categories, price range,
+	 * validity window and stock), in specified order, starting after specified
+	 * cursor.
 	 * 
-	 * @param maxPrice specified max price.
-	 * @return list of all company coupons with specified max coupon price.
-	 * @throws CouponSystemException if failed to get list of company coupons.
+	 * @param criteria specified criteria ({@code null} for all coupons).
+	 * @param sort     specified order of coupons.
+	 * @param size     specified page size ({@code null} for default size).
+	 * @param cursor   specified cursor returned with previous page ({@code null}
+	 *                 for the first page).
+	 * @return page of matching coupons and cursor of the next page.
+	 * @throws CouponSystemException if failed to get page of company coupons.
+	 * @throws IllegalArgumentException if specified cursor is invalid.
+	 * @see CouponQueryService#findCompanyCoupons(int, CouponCriteria, CouponSort,
+	 *      Integer, String)
 	 */
-	public List<Coupon> getAllCompanyCoupons(int id, double maxPrice) throws CouponSystemException {
-		List<Coupon> coupons;
+	public CouponPage<Coupon> getCompanyCoupons(int id, CouponCriteria criteria, CouponSort sort, Integer size,
+			String cursor) throws CouponSystemException {
 		try {
-			coupons = couponRepository.findAllByCompanyIdAndPriceLessThan(id, maxPrice);
+			return queryService.findCompanyCoupons(id, criteria, sort, size, cursor);
+		} catch (IllegalArgumentException e) {
+			// invalid cursor
+			throw e;
 		} catch (Exception e) {
-			throw new CouponSystemException("failed to retrieve all available company coupons by specified max price("
-					+ maxPrice + "): " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""), e);
+			throw new CouponSystemException("failed to retrieve company coupons by specified criteria(" + criteria
+					+ "): " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""), e);
+		}
+	}
+
+	/**
+	 * Returns summaries of the coupons that
+	 * {@link #getCompanyCoupons(int, CouponCriteria, CouponSort, Integer, String)}
+	 * returns.
+	 * 
+	 * @param criteria specified criteria ({@code null} for all coupons).
+	 * @param sort     specified order of coupons.
+	 * @param size     specified page size ({@code null} for default size).
+	 * @param cursor   specified cursor returned with previous page ({@code null}
+	 *                 for the first page).
+	 * @return page of summaries of matching coupons and cursor of the next page.
+	 * @throws CouponSystemException if failed to get page of company coupons.
+	 * @throws IllegalArgumentException if specified cursor is invalid.
+	 */
+	public CouponPage<CouponSummary> getCompanyCouponSummaries(int id, CouponCriteria criteria, CouponSort sort,
+			Integer size, String cursor) throws CouponSystemException {
+		try {
+			return queryService.findCompanyCouponSummaries(id, criteria, sort, size, cursor);
+		} catch (IllegalArgumentException e) {
+			// invalid cursor
+			throw e;
+		} catch (Exception e) {
+			throw new CouponSystemException("failed to retrieve company coupons by specified criteria(" + criteria
+					+ "): " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""), e);
 		}
-		return coupons;
 	}
 
 	/**
@@ -184,12 +276,14 @@ public class CompanyService extends ClientService {
 	 * @return updated entity.
 	 * @throws CouponSystemException if failed to update specified entity.
 	 */
+	@RetryOnConflict
 	public Coupon updateCoupon(int id, Coupon coupon) throws CouponSystemException {
 		if (coupon == null)
 			throw new CouponSystemException("failed to update coupon: is null!");
 
 		Coupon couponFromDb;
 		try {
+			inventoryEngine.suspend(coupon.getId());
 			couponFromDb = getOneCoupon(coupon.getId());
 		} catch (CouponSystemException e) {
 			throw new CouponSystemException("failed to update coupon: " + e.getMessage(), e);
@@ -199,6 +293,10 @@ public class CompanyService extends ClientService {
 		if (couponFromDb.getCompanyId() != id)
 			throw new CouponSystemException("failed to update coupon: not found!");
 
+		if (coupon.getVersion() != couponFromDb.getVersion())
+			throw new StaleVersionException("failed to update coupon: coupon with id = " + coupon.getId()
+					+ " was modified (version " + couponFromDb.getVersion() + "), please reload it!");
+
 		Coupon foundCoupon = couponRepository.findByCompanyIdAndTitle(id, coupon.getTitle());
 		if (foundCoupon != null && !foundCoupon.equals(couponFromDb))
 			throw new CouponSystemException(
@@ -213,9 +311,13 @@ public class CompanyService extends ClientService {
 			couponFromDb.setAmount(coupon.getAmount());
 			couponFromDb.setPrice(coupon.getPrice());
 			couponFromDb.setImage(coupon.getImage());
+			couponFromDb.setHot(coupon.isHot());
 		} catch (CouponSystemException e) {
 			throw new CouponSystemException("failed to update company: " + e.getMessage(), e);
 		}
+		expiryWheel.schedule(couponFromDb.getId(), couponFromDb.getEndDate());
+		couponIndex.couponSaved(couponFromDb);
+		catalogVersions.couponChanged(id);
 
 		return couponFromDb;
 	}
@@ -243,12 +345,10 @@ public class CompanyService extends ClientService {
 	 * @throws CouponSystemException if failed to get company entity.
 	 */
 	public Company getCompanyDetailsWithCoupons(int id) throws CouponSystemException {
-		Company company = getCompanyDetails(id);
-		company.setCoupons(getAllCompanyCoupons(id));
-		return company;
-	}
+		Optional<Company> opt = companyRepository.findByIdWithCoupons(id);
+		if (opt.isPresent())
+			return opt.get();
 
-	public Company getCompanyByEmailAndPassword(String email, String password) {
-		return companyRepository.findByEmailIgnoreCaseAndPassword(email, password);
+		throw new CouponSystemException("failed to get company details: company with id = " + id + " not found!");
 	}
 }
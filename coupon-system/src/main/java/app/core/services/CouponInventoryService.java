@@ -0,0 +1,123 @@
+package app.core.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.transaction.Transactional;
+import javax.transaction.Transactional.TxType;
+
+import org.springframework.stereotype.Service;
+
+import app.core.beans.PurchaseJournal;
+import app.core.entities.Coupon;
+import app.core.repositories.CouponRepository;
+import app.core.repositories.CustomerRepository;
+
+/**
+ * The class {@code CouponInventoryService} represents storage access layer of
+ * the hot coupons inventory engine.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Service
+@Transactional
+public class CouponInventoryService {
+
+	private CouponRepository couponRepository;
+	private CustomerRepository customerRepository;
+
+	public CouponInventoryService(CouponRepository couponRepository, CustomerRepository customerRepository) {
+		this.couponRepository = couponRepository;
+		this.customerRepository = customerRepository;
+	}
+
+	/**
+	 * Returns list of all coupons flagged as hot.
+	 * 
+	 * @return list of hot coupons.
+	 */
+	public List<Coupon> getHotCoupons() {
+		return couponRepository.findAllByHotTrue();
+	}
+
+	/**
+	 * Returns coupon by specified id only if it exists and flagged as hot.
+	 * 
+	 * @param couponId specified coupon id.
+	 * @return hot coupon if found.
+	 */
+	public Optional<Coupon> getHotCoupon(int couponId) {
+		return couponRepository.findById(couponId).filter(Coupon::isHot);
+	}
+
+	/**
+	 * Returns {@code true} if customer with specified id exists, otherwise -
+	 * {@code false}. Customer is loaded by id, so it is usually found in second
+	 * level cache without touching the storage.
+	 * 
+	 * @param customerId specified customer id.
+	 * @return {@code true} if customer exists, otherwise - {@code false}.
+	 */
+	public boolean customerExists(int customerId) {
+		return customerRepository.findById(customerId).isPresent();
+	}
+
+	/**
+	 * Returns ids of all customers that purchased specified by id coupon.
+	 * 
+	 * @param couponId specified coupon id.
+	 * @return list of customers ids.
+	 */
+	public List<Integer> getPurchaserIds(int couponId) {
+		return couponRepository.findPurchaserIds(couponId);
+	}
+
+	/**
+	 * Applies specified purchases (accepted by inventory engine) to the storage in
+	 * its own transaction: adds purchase records and takes purchased coupons out
+	 * of stock. Purchase that was already applied is ignored (so same purchases
+	 * can be applied again safely). Purchase is skipped if coupon or customer not
+	 * exists. The stock is never taken below zero: purchases that do not fit the
+	 * stock left in the storage (the latest of each coupon) are skipped too.
+	 * 
+	 * @param records specified purchases to apply.
+	 * @return list of skipped purchases (not applied).
+	 */
+	@Transactional(TxType.REQUIRES_NEW)
+	public List<PurchaseJournal.Record> applyPurchases(List<PurchaseJournal.Record> records) {
+		List<PurchaseJournal.Record> skipped = new ArrayList<>();
+		Map<Integer, List<PurchaseJournal.Record>> purchased = new LinkedHashMap<>();
+
+		for (PurchaseJournal.Record record : records) {
+			if (couponRepository.addPurchaseIfAbsent(record.getCustomerId(), record.getCouponId()) == 1)
+				purchased.computeIfAbsent(record.getCouponId(), id -> new ArrayList<>()).add(record);
+			else if (couponRepository.findPurchaserIdsIn(record.getCouponId(), List.of(record.getCustomerId()))
+					.isEmpty())
+				skipped.add(record);
+		}
+
+		for (Map.Entry<Integer, List<PurchaseJournal.Record>> entry : purchased.entrySet()) {
+			int couponId = entry.getKey();
+			List<PurchaseJournal.Record> added = entry.getValue();
+			if (couponRepository.decrementAmountBy(couponId, added.size()) == 1)
+				continue;
+
+			// not enough stock left - take what is left, purchases that do not fit are removed
+			int fit = Math.min(added.size(),
+					couponRepository.findByIdForUpdate(couponId).map(Coupon::getAmount).orElse(0));
+			if (fit > 0)
+				couponRepository.decrementAmountBy(couponId, fit);
+			for (PurchaseJournal.Record record : added.subList(Math.max(fit, 0), added.size())) {
+				couponRepository.deletePurchase(record.getCustomerId(), couponId);
+				skipped.add(record);
+			}
+		}
+
+		return skipped;
+	}
+
+}
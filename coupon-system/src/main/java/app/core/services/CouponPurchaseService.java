@@ -0,0 +1,253 @@
+package app.core.services;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.transaction.Transactional;
+
+import org.springframework.stereotype.Service;
+
+import app.core.beans.CouponInventoryEngine;
+import app.core.entities.Coupon;
+import app.core.enums.RejectionReason;
+import app.core.exceptions.CouponSystemException;
+import app.core.exceptions.PurchaseRejectedException;
+import app.core.repositories.CouponRepository;
+import app.core.repositories.CustomerRepository;
+
+/**
+ * The class {@code CouponPurchaseService} represents storage layer of coupon
+ * purchases: single purchases and batches of purchases of the same coupon.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Service
+@Transactional(rollbackOn = CouponSystemException.class)
+public class CouponPurchaseService {
+
+	private CouponRepository couponRepository;
+	private CustomerRepository customerRepository;
+	private CouponInventoryEngine inventoryEngine;
+
+	public CouponPurchaseService(CouponRepository couponRepository, CustomerRepository customerRepository,
+			CouponInventoryEngine inventoryEngine) {
+		this.couponRepository = couponRepository;
+		this.customerRepository = customerRepository;
+		this.inventoryEngine = inventoryEngine;
+	}
+
+	/**
+	 * Purchases coupon with specified id for specified customer and returns
+	 * updated coupon stock after purchase.<br>
+	 * Stock is taken by single conditional update (coupon in stock and not
+	 * expired) and purchase record is added only if not purchased in past, so
+	 * concurrent purchases can not oversell the coupon. If any of the conditions
+	 * failed - all changes are rolled back and the reason is resolved.
+	 * 
+	 * @param customerId specified customer id.
+	 * @param couponId   specified coupon id to purchase.
+	 * @return purchased entity with updated stock.
+	 * @throws CouponSystemException if failed to purchase specified coupon.
+	 */
+	public Coupon purchaseCoupon(int customerId, int couponId) throws CouponSystemException {
+		LocalDate today = LocalDate.now();
+
+		// 1) take coupon out of stock (only if exists, available, not expired and
+		// its stock not held by inventory engine)
+		if (couponRepository.decrementAmountIfAvailable(couponId, today, !inventoryEngine.isEnabled()) == 0) {
+			// coupon could be loaded by inventory engine meanwhile
+			Coupon hotCoupon = inventoryEngine.purchase(customerId, couponId);
+			if (hotCoupon != null)
+				return hotCoupon;
+			throw purchaseRejected(couponId, today);
+		}
+
+		// 2) purchase (only if customer exists and not purchased in past)
+		if (couponRepository.addPurchaseIfAbsent(customerId, couponId) == 0) {
+			if (!customerRepository.existsById(customerId))
+				throw customerNotFound(customerId);
+			throw alreadyPurchased(couponId);
+		}
+
+		Optional<Coupon> opt = couponRepository.findById(couponId);
+		if (opt.isPresent())
+			return opt.get();
+		throw new CouponSystemException("coupon with id = " + couponId + " not found!");
+	}
+
+	/**
+	 * Purchases coupon with specified id for all specified customers in a single
+	 * transaction: coupon is locked once, taken out of stock by single update and
+	 * all purchase records are added by single statement. Purchases are accepted
+	 * in the specified order until coupon is out of stock, each rejected purchase
+	 * gets its own reason. Customer that appears more than once purchases the
+	 * coupon by its first purchase only.
+	 * 
+	 * @param couponId    specified coupon id to purchase.
+	 * @param customerIds specified customers ids (in order of purchases).
+	 * @return result of each purchase, by its index in specified customers ids.
+	 * @throws CouponSystemException if failed to purchase coupons.
+	 */
+	public BatchResult purchaseCoupons(int couponId, List<Integer> customerIds) throws CouponSystemException {
+		BatchResult result = new BatchResult(customerIds.size());
+		LocalDate today = LocalDate.now();
+
+		Optional<Coupon> opt = couponRepository.findByIdForUpdate(couponId);
+		if (opt.isEmpty())
+			return result.rejectAll(notFound(couponId));
+
+		Coupon coupon = opt.get();
+		if (coupon.getEndDate().isBefore(today))
+			return result.rejectAll(expired(coupon));
+
+		if (coupon.isHot() && inventoryEngine.isEnabled())
+			return result.rejectAll(unavailable(couponId));
+
+		// index of the first purchase of each customer
+		Map<Integer, Integer> candidates = new LinkedHashMap<>();
+		for (int i = 0; i < customerIds.size(); i++) {
+			if (candidates.putIfAbsent(customerIds.get(i), i) != null)
+				result.reject(i, alreadyPurchased(couponId));
+		}
+
+		for (Integer customerId : couponRepository.findPurchaserIdsIn(couponId, candidates.keySet()))
+			result.reject(candidates.remove(customerId), alreadyPurchased(couponId));
+
+		Set<Integer> existing = candidates.isEmpty() ? Set.of()
+				: new HashSet<>(customerRepository.findExistingIds(candidates.keySet()));
+		List<Integer> accepted = new ArrayList<>();
+		for (Map.Entry<Integer, Integer> candidate : candidates.entrySet()) {
+			int customerId = candidate.getKey();
+			if (!existing.contains(customerId))
+				result.reject(candidate.getValue(), customerNotFound(customerId));
+			else if (accepted.size() < coupon.getAmount())
+				accepted.add(customerId);
+			else
+				result.reject(candidate.getValue(), outOfStock(couponId));
+		}
+
+		if (!accepted.isEmpty()) {
+			coupon.setAmount(coupon.getAmount() - accepted.size());
+			couponRepository.addPurchases(couponId, accepted);
+		}
+
+		result.coupon = coupon;
+		return result;
+	}
+
+	/**
+	 * Resolves the reason why coupon with specified id could not be taken out of
+	 * stock.
+	 * 
+	 * @param couponId specified coupon id.
+	 * @param today    specified date the expiration was checked against.
+	 * @return exception that describes the reason of rejection.
+	 */
+	private PurchaseRejectedException purchaseRejected(int couponId, LocalDate today) {
+		Optional<Coupon> opt = couponRepository.findById(couponId);
+		if (opt.isEmpty())
+			return notFound(couponId);
+
+		Coupon couponFromDB = opt.get();
+		if (couponFromDB.getAmount() == 0)
+			return outOfStock(couponId);
+
+		if (couponFromDB.getEndDate().isBefore(today))
+			return expired(couponFromDB);
+
+		// hot coupon that is being updated right now
+		return unavailable(couponId);
+	}
+
+	private static PurchaseRejectedException notFound(int couponId) {
+		return new PurchaseRejectedException(RejectionReason.NOT_FOUND,
+				"failed to purchase coupon: coupon with id = " + couponId + " not found!");
+	}
+
+	private static PurchaseRejectedException customerNotFound(int customerId) {
+		return new PurchaseRejectedException(RejectionReason.NOT_FOUND,
+				"failed to get customer details: customer with id = " + customerId + " not found!");
+	}
+
+	private static PurchaseRejectedException outOfStock(int couponId) {
+		return new PurchaseRejectedException(RejectionReason.OUT_OF_STOCK,
+				"failed to purchase coupon: coupon with id = " + couponId + " out of stock!");
+	}
+
+	private static PurchaseRejectedException expired(Coupon coupon) {
+		return new PurchaseRejectedException(RejectionReason.EXPIRED, "failed to purchase coupon: coupon with id = "
+				+ coupon.getId() + " expired at " + coupon.getEndDate() + "!");
+	}
+
+	private static PurchaseRejectedException unavailable(int couponId) {
+		return new PurchaseRejectedException(RejectionReason.UNAVAILABLE, "failed to purchase coupon: coupon with id = "
+				+ couponId + " is temporarily unavailable, please try again!");
+	}
+
+	private static PurchaseRejectedException alreadyPurchased(int couponId) {
+		return new PurchaseRejectedException(RejectionReason.ALREADY_PURCHASED,
+				"failed to purchase coupon: coupon with id = " + couponId
+						+ " already purchased in the past (only 1 purchase per coupon allowed)!");
+	}
+
+	/**
+	 * The class {@code BatchResult} represents result of batch of purchases of the
+	 * same coupon: purchased coupon (with updated stock) and reasons of rejected
+	 * purchases by index of the purchase in the batch.
+	 */
+	public static class BatchResult {
+
+		private Coupon coupon;
+		// reason and message of each rejected purchase (exception is created for each caller)
+		private final RejectionReason[] reasons;
+		private final String[] messages;
+
+		private BatchResult(int purchases) {
+			this.reasons = new RejectionReason[purchases];
+			this.messages = new String[purchases];
+		}
+
+		private BatchResult rejectAll(PurchaseRejectedException rejection) {
+			for (int i = 0; i < reasons.length; i++)
+				reject(i, rejection);
+			return this;
+		}
+
+		private void reject(int index, PurchaseRejectedException rejection) {
+			if (reasons[index] == null) {
+				reasons[index] = rejection.getReason();
+				messages[index] = rejection.getMessage();
+			}
+		}
+
+		/**
+		 * Returns purchased coupon with updated stock, or {@code null} if coupon was
+		 * not found.
+		 * 
+		 * @return purchased coupon.
+		 */
+		public Coupon getCoupon() {
+			return coupon;
+		}
+
+		/**
+		 * Returns rejection of the purchase with specified index in the batch, or
+		 * {@code null} if purchase was accepted.
+		 * 
+		 * @param index specified index of the purchase in the batch.
+		 * @return rejection of the purchase or {@code null}.
+		 */
+		public PurchaseRejectedException getRejection(int index) {
+			return reasons[index] == null ? null : new PurchaseRejectedException(reasons[index], messages[index]);
+		}
+
+	}
+
+}
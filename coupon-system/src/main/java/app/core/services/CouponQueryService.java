@@ -0,0 +1,180 @@
+package app.core.services;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.transaction.Transactional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import app.core.beans.CouponIndex;
+import app.core.dto.CouponCriteria;
+import app.core.dto.CouponPage;
+import app.core.dto.CouponSummary;
+import app.core.entities.Coupon;
+import app.core.enums.CouponSort;
+import app.core.repositories.CouponRepository;
+import app.core.utilities.CatalogCursor;
+
+/**
+ * The class {@code CouponQueryService} represents queries of coupons of
+ * companies and customers by any combination of criteria (see
+ * {@link CouponCriteria}), page by page.
+ * 
+ * <p>
+ * Criteria are answered by {@link CouponIndex} when it can answer them,
+ * otherwise - by single statement, that has only the predicates of specified
+ * criteria (see {@link CouponRepository#findByCriteria}). Pages are positioned
+ * by cursor (sort key and id of the last coupon of previous page), so no page
+ * scans the coupons of previous pages.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@Service
+@Transactional
+public class CouponQueryService {
+
+	private CouponRepository couponRepository;
+	private CouponIndex couponIndex;
+	private int defaultPageSize;
+	private int maxPageSize;
+
+	public CouponQueryService(CouponRepository couponRepository, CouponIndex couponIndex,
+			@Value("${app.catalog.pageSize.default:20}") int defaultPageSize,
+			@Value("${app.catalog.pageSize.max:100}") int maxPageSize) {
+		this.couponRepository = couponRepository;
+		this.couponIndex = couponIndex;
+		this.defaultPageSize = defaultPageSize;
+		this.maxPageSize = maxPageSize;
+	}
+
+	/**
+	 * Returns single page of available coupons of specified by id company that
+	 * match specified criteria (company of the criteria is replaced by specified
+	 * company), in specified order, starting after specified cursor.
+	 * 
+	 * @param companyId specified company id.
+	 * @param criteria  specified criteria ({@code null} for all coupons).
+	 * @param sort      specified order of coupons.
+	 * @param size      specified page size ({@code null} for default size).
+	 * @param cursor    specified cursor returned with previous page ({@code null}
+	 *                  for the first page).
+	 * @return page of matching coupons and cursor of the next page.
+	 * @throws IllegalArgumentException if specified cursor is invalid.
+	 */
+	public CouponPage<Coupon> findCompanyCoupons(int companyId, CouponCriteria criteria, CouponSort sort,
+			Integer size, String cursor) {
+		CouponCriteria companyCriteria = companyCriteria(companyId, criteria);
+		CatalogCursor after = decode(sort, cursor);
+		int pageSize = pageSize(size);
+
+		// one extra coupon to know if there is next page
+		List<Coupon> coupons = couponIndex.findCompanyCoupons(companyId, companyCriteria, sort, after, pageSize + 1);
+		if (coupons == null)
+			coupons = couponRepository.findByCriteria(companyCriteria, null, sort, after, pageSize + 1);
+		return CouponPage.of(coupons, pageSize, coupon -> CatalogCursor.after(sort, coupon));
+	}
+
+	/**
+	 * Returns summaries of the coupons that
+	 * {@link #findCompanyCoupons(int, CouponCriteria, CouponSort, Integer, String)}
+	 * returns. Summaries are selected by the query, or made of the coupons found
+	 * by the index (which are read from second level cache anyway).
+	 * 
+	 * @param companyId specified company id.
+	 * @param criteria  specified criteria ({@code null} for all coupons).
+	 * @param sort      specified order of coupons.
+	 * @param size      specified page size ({@code null} for default size).
+	 * @param cursor    specified cursor returned with previous page ({@code null}
+	 *                  for the first page).
+	 * @return page of summaries of matching coupons and cursor of the next page.
+	 * @throws IllegalArgumentException if specified cursor is invalid.
+	 */
+	public CouponPage<CouponSummary> findCompanyCouponSummaries(int companyId, CouponCriteria criteria,
+			CouponSort sort, Integer size, String cursor) {
+		CouponCriteria companyCriteria = companyCriteria(companyId, criteria);
+		CatalogCursor after = decode(sort, cursor);
+		int pageSize = pageSize(size);
+
+		List<Coupon> coupons = couponIndex.findCompanyCoupons(companyId, companyCriteria, sort, after, pageSize + 1);
+		List<CouponSummary> summaries = coupons != null ? summaries(coupons)
+				: couponRepository.findSummariesByCriteria(companyCriteria, null, sort, after, pageSize + 1);
+		return CouponPage.of(summaries, pageSize, summary -> CatalogCursor.after(sort, summary));
+	}
+
+	/**
+	 * Returns single page of available coupons purchased by specified by id
+	 * customer that match specified criteria, in specified order, starting after
+	 * specified cursor.
+	 * 
+	 * @param customerId specified customer id.
+	 * @param criteria   specified criteria ({@code null} for all coupons).
+	 * @param sort       specified order of coupons.
+	 * @param size       specified page size ({@code null} for default size).
+	 * @param cursor     specified cursor returned with previous page ({@code null}
+	 *                   for the first page).
+	 * @return page of matching coupons and cursor of the next page.
+	 * @throws IllegalArgumentException if specified cursor is invalid.
+	 */
+	public CouponPage<Coupon> findCustomerCoupons(int customerId, CouponCriteria criteria, CouponSort sort,
+			Integer size, String cursor) {
+		CouponCriteria customerCriteria = criteria == null ? new CouponCriteria() : criteria;
+		CatalogCursor after = decode(sort, cursor);
+		int pageSize = pageSize(size);
+
+		List<Coupon> coupons = couponIndex.findCustomerCoupons(customerId, customerCriteria, sort, after,
+				pageSize + 1);
+		if (coupons == null)
+			coupons = couponRepository.findByCriteria(customerCriteria, customerId, sort, after, pageSize + 1);
+		return CouponPage.of(coupons, pageSize, coupon -> CatalogCursor.after(sort, coupon));
+	}
+
+	/**
+	 * Returns summaries of the coupons that
+	 * {@link #findCustomerCoupons(int, CouponCriteria, CouponSort, Integer, String)}
+	 * returns (see
+	 * {@link #findCompanyCouponSummaries(int, CouponCriteria, CouponSort, Integer, String)}).
+	 * 
+	 * @param customerId specified customer id.
+	 * @param criteria   specified criteria ({@code null} for all coupons).
+	 * @param sort       specified order of coupons.
+	 * @param size       specified page size ({@code null} for default size).
+	 * @param cursor     specified cursor returned with previous page ({@code null}
+	 *                   for the first page).
+	 * @return page of summaries of matching coupons and cursor of the next page.
+	 * @throws IllegalArgumentException if specified cursor is invalid.
+	 */
+	public CouponPage<CouponSummary> findCustomerCouponSummaries(int customerId, CouponCriteria criteria,
+			CouponSort sort, Integer size, String cursor) {
+		CouponCriteria customerCriteria = criteria == null ? new CouponCriteria() : criteria;
+		CatalogCursor after = decode(sort, cursor);
+		int pageSize = pageSize(size);
+
+		List<Coupon> coupons = couponIndex.findCustomerCoupons(customerId, customerCriteria, sort, after,
+				pageSize + 1);
+		List<CouponSummary> summaries = coupons != null ? summaries(coupons)
+				: couponRepository.findSummariesByCriteria(customerCriteria, customerId, sort, after, pageSize + 1);
+		return CouponPage.of(summaries, pageSize, summary -> CatalogCursor.after(sort, summary));
+	}
+
+	private int pageSize(Integer size) {
+		return size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+	}
+
+	private static CouponCriteria companyCriteria(int companyId, CouponCriteria criteria) {
+		CouponCriteria companyCriteria = criteria == null ? new CouponCriteria() : criteria;
+		companyCriteria.setCompanyId(companyId);
+		return companyCriteria;
+	}
+
+	private static CatalogCursor decode(CouponSort sort, String cursor) {
+		return cursor == null || cursor.isEmpty() ? null : CatalogCursor.decode(sort, cursor);
+	}
+
+	private static List<CouponSummary> summaries(List<Coupon> coupons) {
+		return coupons.stream().map(CouponSummary::of).collect(Collectors.toList());
+	}
+
+}
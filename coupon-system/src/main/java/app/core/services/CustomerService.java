@@ -5,16 +5,36 @@ import java.util.List;
 import java.util.Optional;
 
 import javax.transaction.Transactional;
+import javax.transaction.Transactional.TxType;
 
-import org.springframework.context.annotation.Scope;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import app.core.beans.CatalogVersions;
+import app.core.beans.CouponIndex;
+import app.core.beans.CouponInventoryEngine;
+import app.core.beans.PasswordHasher;
+import app.core.beans.PurchaseMetrics;
+import app.core.beans.PurchaseMetrics.Path;
+import app.core.beans.PurchasePipeline;
+import app.core.dto.ClientCredentials;
+import app.core.dto.ClientIdentity;
+import app.core.dto.CouponCriteria;
+import app.core.dto.CouponPage;
+import app.core.dto.CouponSummary;
 import app.core.entities.Coupon;
 import app.core.entities.Customer;
-import app.core.enums.Category;
+import app.core.enums.CouponSort;
+import app.core.enums.RejectionReason;
 import app.core.exceptions.CouponSystemException;
+import app.core.exceptions.PurchaseRejectedException;
+import app.core.exceptions.ServiceBusyException;
 import app.core.repositories.CouponRepository;
 import app.core.repositories.CustomerRepository;
+import app.core.utilities.CatalogCursor;
+import app.core.utilities.CouponSystemUtilities;
 
 /**
  * The class {@code CustomerService} represents business logic layer for coupon
@@ -25,25 +45,56 @@ import app.core.repositories.CustomerRepository;
  */
 @Service
 @Transactional
-@Scope("prototype")
 public class CustomerService extends ClientService {
 
 //	private int customerId; // id of customer that trying to login
 
-	public CustomerService(CustomerRepository customerRepository, CouponRepository couponRepository) {
+	private CouponInventoryEngine inventoryEngine;
+	private PasswordHasher passwordHasher;
+	private PurchasePipeline purchasePipeline;
+	private CouponPurchaseService purchaseService;
+	private PurchaseMetrics purchaseMetrics;
+	private CouponIndex couponIndex;
+	private CouponQueryService queryService;
+	private CatalogVersions catalogVersions;
+	private int defaultPageSize;
+	private int maxPageSize;
+
+	public CustomerService(CustomerRepository customerRepository, CouponRepository couponRepository,
+			CouponInventoryEngine inventoryEngine, PasswordHasher passwordHasher, PurchasePipeline purchasePipeline,
+			CouponPurchaseService purchaseService, PurchaseMetrics purchaseMetrics, CouponIndex couponIndex,
+			CouponQueryService queryService, CatalogVersions catalogVersions,
+			@Value("${app.catalog.pageSize.default:20}") int defaultPageSize,
+			@Value("${app.catalog.pageSize.max:100}") int maxPageSize) {
 		this.customerRepository = customerRepository;
 		this.couponRepository = couponRepository;
+		this.inventoryEngine = inventoryEngine;
+		this.passwordHasher = passwordHasher;
+		this.purchasePipeline = purchasePipeline;
+		this.purchaseService = purchaseService;
+		this.purchaseMetrics = purchaseMetrics;
+		this.couponIndex = couponIndex;
+		this.queryService = queryService;
+		this.catalogVersions = catalogVersions;
+		this.defaultPageSize = defaultPageSize;
+		this.maxPageSize = maxPageSize;
 	}
 
 	@Override
-	public boolean login(String email, String password) throws CouponSystemException {
+	@Transactional(TxType.NOT_SUPPORTED)
+	public ClientIdentity login(String email, String password) throws CouponSystemException {
 		try {
-			Customer loggedInCustomer = getCustomerByEmailAndPassword(email, password);
-			if (loggedInCustomer == null)
-				return false;
-
-//			this.customerId = loggedInCustomer.getId();
-			return true;
+			// single indexed lookup, password is verified out of transaction
+			ClientCredentials credentials = customerRepository
+					.findCredentialsByEmail(CouponSystemUtilities.normalizeEmail(email));
+			if (!passwordHasher.matches(password, credentials == null ? null : credentials.getPasswordHash()))
+				return null;
+
+			if (passwordHasher.needsRehash(credentials.getPasswordHash()))
+				customerRepository.updatePassword(credentials.getId(), passwordHasher.hash(password));
+			return credentials.toIdentity();
+		} catch (ServiceBusyException e) {
+			throw e;
 		} catch (Exception e) {
 			throw new CouponSystemException(
 					"customer login failed: " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""), e);
@@ -60,47 +111,59 @@ public class CustomerService extends ClientService {
 	 * @param coupon specified coupon to purchase.
 	 * @return purchased entity with updated stock.
 	 * @throws CouponSystemException if failed to purchase specified coupon.
+	 * @see #purchaseCoupon(int, int)
 	 */
+	@Transactional(TxType.NOT_SUPPORTED)
 	public Coupon purchaseCoupon(int id, Coupon coupon) throws CouponSystemException {
 		if (coupon == null)
-			throw new CouponSystemException("failed to purchase coupon: is null!");
-
-		// 1) if coupon exists
-		Coupon couponFromDB;
-		Optional<Coupon> opt = couponRepository.findById(coupon.getId());
-		if (opt.isPresent())
-			couponFromDB = opt.get();
-		else
-			throw new CouponSystemException(
-					"failed to purchase coupon: coupon with id = " + coupon.getId() + " not found!");
-
-		// 2) if not purchased
-//		if (customerRepository.existsByIdAndCouponsId(this.customerId, coupon.getId()))
-		Customer customer = getCustomerDetailsWithCoupons(id);
-		if (customer.getCoupons().contains(coupon))
-			throw new CouponSystemException("failed to purchase coupon: coupon with id = " + coupon.getId()
-					+ " already purchased in the past (only 1 purchase per coupon allowed)!");
-
-		// 3) if available in stock
-		if (couponFromDB.getAmount() == 0)
-			throw new CouponSystemException(
-					"failed to purchase coupon: coupon with id = " + coupon.getId() + " out of stock!");
+			throw purchaseMetrics.rejected(
+					new PurchaseRejectedException(RejectionReason.NOT_FOUND, "failed to purchase coupon: is null!"));
 
-		// 4) if not expired
-		if (couponFromDB.getEndDate().isBefore(LocalDate.now()))
-			throw new CouponSystemException("failed to purchase coupon: coupon with id = " + coupon.getId()
-					+ " expired at " + coupon.getEndDate() + "!");
-
-		// TODO:
-
-		// 5) update coupon amount changes
-		couponFromDB.setAmount(couponFromDB.getAmount() - 1);
-
-		// 6) purchase
-//		Customer customer = customerRepository.getOne(this.customerId);
-		customer.addCoupon(couponFromDB);
+		return purchaseCoupon(id, coupon.getId());
+	}
 
-		return couponFromDB;
+	/**
+	 * Purchases coupon with specified id for currently logged in customer and
+	 * returns updated coupon stock after purchase.<br>
+	 * Stock of hot coupons is held by {@link CouponInventoryEngine}, so these
+	 * coupons are purchased in memory. Other coupons are purchased through the
+	 * lane of the coupon in {@link PurchasePipeline} (batched with concurrent
+	 * purchases of the same coupon), or directly if pipeline is disabled or
+	 * busy.<br>
+	 * Runs outside of transaction, so no connection is held while waiting for the
+	 * pipeline.<br>
+	 * Purchases are counted by path and rejections by reason (see
+	 * {@link PurchaseMetrics}), purchased coupon is added to postings of the
+	 * customer in {@link CouponIndex}, and versions of the catalog, of the company
+	 * and of the customer are bumped (see {@link CatalogVersions}).
+	 * 
+	 * @param id       specified customer id.
+	 * @param couponId specified coupon id to purchase.
+	 * @return purchased entity with updated stock.
+	 * @throws CouponSystemException if failed to purchase specified coupon.
+	 * @see CouponPurchaseService#purchaseCoupon(int, int)
+	 */
+	@Transactional(TxType.NOT_SUPPORTED)
+	public Coupon purchaseCoupon(int id, int couponId) throws CouponSystemException {
+		try {
+			Path path = Path.HOT;
+			Coupon purchased = inventoryEngine.purchase(id, couponId);
+			if (purchased == null) {
+				path = Path.PIPELINE;
+				purchased = purchasePipeline.purchase(id, couponId);
+			}
+			if (purchased == null) {
+				path = Path.DIRECT;
+				purchased = purchaseService.purchaseCoupon(id, couponId);
+			}
+
+			purchaseMetrics.purchased(path);
+			couponIndex.couponPurchased(id, purchased);
+			catalogVersions.couponPurchased(purchased.getCompanyId(), id);
+			return purchased;
+		} catch (CouponSystemException e) {
+			throw purchaseMetrics.rejected(e);
+		}
 	}
 
 	/**
@@ -119,23 +182,78 @@ public class CustomerService extends ClientService {
 	}
 
 	/**
-	 * Returns all available coupons.
+	 * Returns single page of available coupons (in stock and not expired) in
+	 * specified order, starting after specified cursor. Page size is limited by
+	 * configured max page size.
 	 * 
-	 * @return all available coupons.
-	 * @throws CouponSystemException if failed to get list of coupons.
+	 * @param sort   specified order of coupons.
+	 * @param size   specified page size ({@code null} for default size).
+	 * @param cursor specified cursor returned with previous page ({@code null} for
+	 *               the first page).
+	 * @return page of available coupons and cursor of the next page.
+	 * @throws CouponSystemException if failed to get page of coupons.
+	 * @throws IllegalArgumentException if specified cursor is invalid.
 	 */
-	public List<Coupon> getAllAvailableCoupons() throws CouponSystemException {
+	public CouponPage<Coupon> getAvailableCoupons(CouponSort sort, Integer size, String cursor)
+			throws CouponSystemException {
+		LocalDate today = LocalDate.now();
+		int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+		CatalogCursor after = cursor == null || cursor.isEmpty() ? CatalogCursor.first(sort, today)
+				: CatalogCursor.decode(sort, cursor);
+
 		List<Coupon> coupons;
 		try {
-//			coupons = couponRepository.findAllByCustomersIdNot(this.customerId);
-			coupons = couponRepository.findAll();
+			// one extra coupon to know if there is next page
+			Pageable pageable = PageRequest.of(0, pageSize + 1);
+			if (sort == CouponSort.PRICE)
+				coupons = couponRepository.findAvailableAfterPrice(today, after.getPrice(), after.getId(), pageable);
+			else
+				coupons = couponRepository.findAvailableAfterEndDate(today, after.getEndDate(), after.getId(),
+						pageable);
 		} catch (Exception e) {
-			throw new CouponSystemException(
-					"failed to retrieve all available coupons to purchsed for current customer: " + e.getMessage()
-							+ (e.getCause() != null ? ": " + e.getCause() : ""),
-					e);
+			throw new CouponSystemException("failed to retrieve available coupons: " + e.getMessage()
+					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
 		}
-		return coupons;
+
+		return CouponPage.of(coupons, pageSize, coupon -> CatalogCursor.after(sort, coupon));
+	}
+
+	/**
+	 * Returns summaries of the coupons that
+	 * {@link #getAvailableCoupons(CouponSort, Integer, String)} returns (only the
+	 * columns of summary are selected).
+	 * 
+	 * @param sort   specified order of coupons.
+	 * @param size   specified page size ({@code null} for default size).
+	 * @param cursor specified cursor returned with previous page ({@code null} for
+	 *               the first page).
+	 * @return page of summaries of available coupons and cursor of the next page.
+	 * @throws CouponSystemException if failed to get page of coupons.
+	 * @throws IllegalArgumentException if specified cursor is invalid.
+	 */
+	public CouponPage<CouponSummary> getAvailableCouponSummaries(CouponSort sort, Integer size, String cursor)
+			throws CouponSystemException {
+		LocalDate today = LocalDate.now();
+		int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+		CatalogCursor after = cursor == null || cursor.isEmpty() ? CatalogCursor.first(sort, today)
+				: CatalogCursor.decode(sort, cursor);
+
+		List<CouponSummary> summaries;
+		try {
+			// one extra coupon to know if there is next page
+			Pageable pageable = PageRequest.of(0, pageSize + 1);
+			if (sort == CouponSort.PRICE)
+				summaries = couponRepository.findAvailableSummariesAfterPrice(today, after.getPrice(), after.getId(),
+						pageable);
+			else
+				summaries = couponRepository.findAvailableSummariesAfterEndDate(today, after.getEndDate(),
+						after.getId(), pageable);
+		} catch (Exception e) {
+			throw new CouponSystemException("failed to retrieve available coupons: " + e.getMessage()
+					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
+		}
+
+		return CouponPage.of(summaries, pageSize, summary -> CatalogCursor.after(sort, summary));
 	}
 
 	/**
@@ -157,47 +275,76 @@ public class CustomerService extends ClientService {
 	}
 
 	/**
-	 * Returns list of all purchased coupons, with specified category, by currently
-	 * logged in customer.
+	 * Returns summaries of all purchased coupons by currently logged in customer
+	 * (only the columns of summary are selected).
 	 * 
-	 * @param category specified coupon category.
-	 * @return list of purchased coupons.
+	 * @return list of summaries of purchased coupons.
 	 * @throws CouponSystemException if failed to get list of purchased coupons.
 	 */
-	public List<Coupon> getAllCustomerCoupons(int id, Category category) throws CouponSystemException {
-		List<Coupon> coupons;
+	public List<CouponSummary> getAllCustomerCouponSummaries(int id) throws CouponSystemException {
 		try {
-			coupons = couponRepository.findAllByCustomersIdAndCategory(id, category);
+			return couponRepository.findSummariesByCustomerId(id);
 		} catch (Exception e) {
-			throw new CouponSystemException(
-					"failed to retrieve all purshased by customer coupons with specified category(" + category + "): "
-							+ e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""),
-					e);
+			throw new CouponSystemException("failed to retrieve all purchsed by customer coupons: " + e.getMessage()
+					+ (e.getCause() != null ? ": " + e.getCause() : ""), e);
 		}
-
-		return coupons;
 	}
 
 	/**
-	 * Returns list of all purchased coupons with price, that less then specified
-	 * value, by currently logged in customer.
+	 * Returns single page of available coupons purchased by currently logged in
+	 * customer that match specified criteria (any combination of company,
+	 * categories, price range, validity window and stock), in specified order,
+	 * starting after specified cursor.
 	 * 
-	 * @param maxPrice specified max value.
-	 * @return list of purchased coupons.
-	 * @throws CouponSystemException if failed to get list of purchased coupons.
+	 * @param criteria specified criteria ({@code null} for all coupons).
+	 * @param sort     specified order of coupons.
+	 * @param size     specified page size ({@code null} for default size).
+	 * @param cursor   specified cursor returned with previous page ({@code null}
+	 *                 for the first page).
+	 * @return page of matching coupons and cursor of the next page.
+	 * @throws CouponSystemException if failed to get page of purchased coupons.
+	 * @throws IllegalArgumentException if specified cursor is invalid.
+	 * @see CouponQueryService#findCustomerCoupons(int, CouponCriteria, CouponSort,
+	 *      Integer, String)
 	 */
-	public List<Coupon> getAllCustomerCoupons(int id, double maxPrice) throws CouponSystemException {
-		List<Coupon> coupons;
+	public CouponPage<Coupon> getCustomerCoupons(int id, CouponCriteria criteria, CouponSort sort, Integer size,
+			String cursor) throws CouponSystemException {
 		try {
-			coupons = couponRepository.findAllByCustomersIdAndPriceLessThan(id, maxPrice);
+			return queryService.findCustomerCoupons(id, criteria, sort, size, cursor);
+		} catch (IllegalArgumentException e) {
+			// invalid cursor
+			throw e;
 		} catch (Exception e) {
-			throw new CouponSystemException(
-					"failed to retrieve all purchased by customer coupons with specified max price(" + maxPrice + "): "
-							+ e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""),
-					e);
+			throw new CouponSystemException("failed to retrieve purchased by customer coupons by specified criteria("
+					+ criteria + "): " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""), e);
 		}
+	}
 
-		return coupons;
+	/**
+	 * Returns summaries of the coupons that
+	 * {@link #getCustomerCoupons(int, CouponCriteria, CouponSort, Integer, String)}
+	 * returns.
+	 * 
+	 * @param criteria specified criteria ({@code null} for all coupons).
+	 * @param sort     specified order of coupons.
+	 * @param size     specified page size ({@code null} for default size).
+	 * @param cursor   specified cursor returned with previous page ({@code null}
+	 *                 for the first page).
+	 * @return page of summaries of matching coupons and cursor of the next page.
+	 * @throws CouponSystemException if failed to get page of purchased coupons.
+	 * @throws IllegalArgumentException if specified cursor is invalid.
+	 */
+	public CouponPage<CouponSummary> getCustomerCouponSummaries(int id, CouponCriteria criteria, CouponSort sort,
+			Integer size, String cursor) throws CouponSystemException {
+		try {
+			return queryService.findCustomerCouponSummaries(id, criteria, sort, size, cursor);
+		} catch (IllegalArgumentException e) {
+			// invalid cursor
+			throw e;
+		} catch (Exception e) {
+			throw new CouponSystemException("failed to retrieve purchased by customer coupons by specified criteria("
+					+ criteria + "): " + e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""), e);
+		}
 	}
 
 	/**
@@ -223,13 +370,11 @@ public class CustomerService extends ClientService {
 	 * @throws CouponSystemException if failed to get customer entity.
 	 */
 	public Customer getCustomerDetailsWithCoupons(int id) throws CouponSystemException {
-		Customer customer = getCustomerDetails(id);
-		customer.setCoupons(getAllCustomerCoupons(id));
-		return customer;
-	}
+		Optional<Customer> opt = customerRepository.findByIdWithCoupons(id);
+		if (opt.isPresent())
+			return opt.get();
 
-	public Customer getCustomerByEmailAndPassword(String email, String password) {
-		return customerRepository.findByEmailIgnoreCaseAndPassword(email, password);
+		throw new CouponSystemException("failed to get customer details: customer with id = " + id + " not found!");
 	}
 
 }
@@ -1,42 +1,281 @@
 package app.core.services;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 
 import javax.transaction.Transactional;
 
 import org.springframework.stereotype.Service;
 
+import app.core.beans.CatalogVersions;
+import app.core.beans.CouponInventoryEngine;
+import app.core.beans.LeaderElection;
+import app.core.dto.CouponEndDate;
+import app.core.entities.JobCheckpoint;
+import app.core.entities.JobLease;
 import app.core.exceptions.CouponSystemException;
+import app.core.repositories.CouponArchiveRepository;
 import app.core.repositories.CouponRepository;
+import app.core.repositories.JobCheckpointRepository;
+import app.core.repositories.JobLeaseRepository;
 
 /**
  * The class {@code DailyJobService} represents business logic layer for coupon
  * system application.
  * 
+ * <p>
+ * Expired coupons are not deleted, but marked as expired (hidden from every
+ * query of coupons) in ranges of ids: each range is marked in its own short
+ * transaction by single set-based statement, and the progress is saved in the
+ * same transaction, so the sweep can be stopped at any range and continued
+ * later. Coupons that are due are also marked by ids (see
+ * {@link app.core.beans.CouponExpiryWheel}).
+ * 
+ * <p>
+ * Expired coupons are then moved, in batches, to the archive tables together
+ * with their purchase records (see {@link app.core.beans.CouponArchiveMover}),
+ * so purchase history is kept for reporting while the coupon tables hold
+ * active coupons only.
+ * 
+ * <p>
+ * Every expiration that changed coupons bumps versions of the catalog (see
+ * {@link CatalogVersions}), once committed. Moves do not: expired coupons are
+ * already hidden.
+ * 
+ * <p>
+ * Expirations and moves are fenced: each transaction locks the expiration lease and is
+ * rejected if the lease passed to other node since the job started (see
+ * {@link LeaderElection}).
+ * 
  * @author VItaly Zlobin
  *
  */
 @Service
-@Transactional
+@Transactional(rollbackOn = CouponSystemException.class)
 public class DailyJobService {
 
+	public static final String EXPIRATION_JOB = "coupon-expiration";
+
 	private CouponRepository couponRepository;
+	private CouponArchiveRepository archiveRepository;
+	private JobCheckpointRepository checkpointRepository;
+	private JobLeaseRepository leaseRepository;
+	private CouponInventoryEngine inventoryEngine;
+	private CatalogVersions catalogVersions;
 
-	public DailyJobService(CouponRepository couponRepository) {
+	public DailyJobService(CouponRepository couponRepository, CouponArchiveRepository archiveRepository,
+			JobCheckpointRepository checkpointRepository, JobLeaseRepository leaseRepository,
+			CouponInventoryEngine inventoryEngine, CatalogVersions catalogVersions) {
 		this.couponRepository = couponRepository;
+		this.archiveRepository = archiveRepository;
+		this.checkpointRepository = checkpointRepository;
+		this.leaseRepository = leaseRepository;
+		this.inventoryEngine = inventoryEngine;
+		this.catalogVersions = catalogVersions;
+	}
+
+	/**
+	 * Returns id the sweep of coupons expired before specified date starts after:
+	 * the last expired range of stopped sweep of the same date, otherwise - just
+	 * before the lowest id of expired coupons.
+	 * 
+	 * @param today specified date to check expiration against.
+	 * @return id to start after (exclusive).
+	 */
+	public int getExpirationStart(LocalDate today) {
+		JobCheckpoint checkpoint = checkpointRepository.findById(EXPIRATION_JOB).orElse(null);
+		if (checkpoint != null && today.equals(checkpoint.getCutoff()))
+			return checkpoint.getLastId();
+
+		Integer minId = couponRepository.findMinExpiredId(today);
+		return minId == null ? 0 : minId - 1;
 	}
 
-	public long deleteExpiredCoupons(LocalDate endDate) throws CouponSystemException {
+	/**
+	 * Returns the highest id of coupons expired before specified date, or
+	 * {@code 0} if there are no such coupons.
+	 * 
+	 * @param today specified date to check expiration against.
+	 * @return id the sweep ends at (inclusive).
+	 */
+	public int getExpirationEnd(LocalDate today) {
+		Integer maxId = couponRepository.findMaxExpiredId(today);
+		return maxId == null ? 0 : maxId;
+	}
+
+	/**
+	 * Marks coupons, in specified range of ids, that expired before specified date
+	 * as expired and saves the range as completed. Accepted in-memory purchases of
+	 * expired hot coupons are flushed to the storage first.
+	 * 
+	 * @param today  specified date to check expiration against.
+	 * @param fromId specified lower bound of ids (exclusive).
+	 * @param toId   specified upper bound of ids (inclusive).
+	 * @param token  specified fencing token of the job.
+	 * @return count of expired coupons.
+	 * @throws CouponSystemException if the lease passed to other node or failed to
+	 *                               flush purchases of hot coupons.
+	 */
+	public ChunkResult expireCoupons(LocalDate today, int fromId, int toId, long token)
+			throws CouponSystemException {
+		checkLease(token);
+		for (Integer couponId : couponRepository.findExpiredHotIdsInRange(fromId, toId, today))
+			inventoryEngine.suspend(couponId);
+
+		ChunkResult result = new ChunkResult();
+		result.coupons = couponRepository.expireInRange(fromId, toId, today);
+		checkpointRepository.save(new JobCheckpoint(EXPIRATION_JOB, today, toId));
+		if (result.coupons > 0)
+			catalogVersions.couponsChanged();
+		return result;
+	}
+
+	/**
+	 * Returns id and expiration date of every coupon that expires before specified
+	 * date (including already expired coupons).
+	 * 
+	 * @param until specified date.
+	 * @return list of ids and expiration dates.
+	 */
+	public List<CouponEndDate> getEndDatesBefore(LocalDate until) {
+		return couponRepository.findEndDatesBefore(until);
+	}
+
+	/**
+	 * Marks coupons, from specified ids, that expired before specified date as
+	 * expired. Coupons that are not expired (their expiration date was changed
+	 * meanwhile) are left active.
+	 * 
+	 * @param today     specified date to check expiration against.
+	 * @param couponIds specified coupons ids.
+	 * @param token     specified fencing token of the job.
+	 * @return count of expired coupons.
+	 * @throws CouponSystemException if the lease passed to other node or failed to
+	 *                               flush purchases of hot coupons.
+	 */
+	public ChunkResult expireCoupons(LocalDate today, Collection<Integer> couponIds, long token)
+			throws CouponSystemException {
+		checkLease(token);
+		for (Integer couponId : couponRepository.findExpiredHotIdsIn(couponIds, today))
+			inventoryEngine.suspend(couponId);
+
+		ChunkResult result = new ChunkResult();
+		result.coupons = couponRepository.expireIn(couponIds, today);
+		if (result.coupons > 0)
+			catalogVersions.couponsChanged();
+		return result;
+	}
+
+	/**
+	 * Moves specified count (at most) of expired coupons, lowest ids first, with
+	 * all their purchase records to the archive.
+	 * 
+	 * @param batchSize specified max count of coupons.
+	 * @param token     specified fencing token of the job.
+	 * @return counts of moved rows (nothing moved if there are no expired coupons
+	 *         left).
+	 * @throws CouponSystemException if the lease passed to other node or the
+	 *                               archive did not match the deleted rows.
+	 */
+	public ChunkResult archiveExpiredCoupons(int batchSize, long token) throws CouponSystemException {
+		checkLease(token);
+		return archive(couponRepository.findExpiredIds(batchSize));
+	}
+
+	/**
+	 * Moves all expired coupons of specified by id company with all their purchase
+	 * records to the archive (company is about to be deleted).
+	 * 
+	 * @param companyId specified company id.
+	 * @return counts of moved rows.
+	 * @throws CouponSystemException if the archive did not match the deleted rows.
+	 */
+	public ChunkResult archiveExpiredCouponsOfCompany(int companyId) throws CouponSystemException {
+		return archive(couponRepository.findExpiredIdsByCompanyId(companyId));
+	}
+
+	/**
+	 * Moves purchase records of expired coupons by specified customer to the
+	 * archive (customer is about to be deleted, the coupons are moved later).
+	 * 
+	 * @param customerId specified customer id.
+	 * @return count of moved purchase records.
+	 * @throws CouponSystemException if the archive did not match the deleted rows.
+	 */
+	public ChunkResult archiveExpiredPurchasesOfCustomer(int customerId) throws CouponSystemException {
+		ChunkResult result = new ChunkResult();
+		int purchases = archiveRepository.archiveExpiredPurchasesByCustomerId(customerId);
+		result.purchases = couponRepository.deleteExpiredPurchasesByCustomerId(customerId);
+		if (result.purchases != purchases)
+			throw new CouponSystemException("failed to archive expired purchases: archived " + purchases
+					+ " purchases, but deleted " + result.purchases + "!");
+		return result;
+	}
+
+	private ChunkResult archive(List<Integer> couponIds) throws CouponSystemException {
+		ChunkResult result = new ChunkResult();
+		if (couponIds.isEmpty())
+			return result;
+
+		int coupons = archiveRepository.archiveExpiredIn(couponIds, LocalDate.now());
+		int purchases = archiveRepository.archiveExpiredPurchasesIn(couponIds);
+		result.purchases = couponRepository.deleteExpiredPurchasesIn(couponIds);
+		result.coupons = couponRepository.deleteExpiredIn(couponIds);
+		// rows are never deleted without their copy in the archive
+		if (result.coupons != coupons || result.purchases != purchases)
+			throw new CouponSystemException("failed to archive expired coupons: archived " + coupons + " coupons and "
+					+ purchases + " purchases, but deleted " + result.coupons + " and " + result.purchases + "!");
+		return result;
+	}
+
+	/**
+	 * Locks the expiration lease until the end of current transaction, only if it
+	 * is still held with specified token (the lease can not pass to other node
+	 * until the transaction is completed).
+	 * 
+	 * @param token specified fencing token.
+	 * @throws CouponSystemException if the lease passed to other node.
+	 */
+	private void checkLease(long token) throws CouponSystemException {
+		if (token == LeaderElection.UNFENCED)
+			return;
+
+		JobLease lease = leaseRepository.findByNameForUpdate(EXPIRATION_JOB).orElse(null);
+		if (lease == null || lease.getToken() != token)
+			throw new CouponSystemException("expiration lease with token " + token + " was taken over by "
+					+ (lease == null ? "nobody" : lease.getOwner() + " (token " + lease.getToken() + ")") + "!");
+	}
+
+	/**
+	 * The class {@code ChunkResult} represents counts of rows processed in each
+	 * table by single range of the sweep, single batch of due coupons (expired
+	 * coupons only) or single batch of the archive mover (moved coupons and
+	 * purchase records).
+	 */
+	public static class ChunkResult {
+
+		private int coupons;
+		private int purchases;
 
-		// TODO:
-		// delete all coupon purchases
-		// "delete from `CUSTOMERS_VS_COUPONS` where `COUPON_ID` = any (select `ID` from
-		// `COUPONS` where `END_DATE` < ?)";
+		/**
+		 * Returns count of expired (or moved) coupons.
+		 * 
+		 * @return count of coupons.
+		 */
+		public int getCoupons() {
+			return coupons;
+		}
 
-		// delete expired coupons
-		// "delete from `COUPONS` where `END_DATE` < ?"
+		/**
+		 * Returns count of moved purchase records.
+		 * 
+		 * @return count of purchase records.
+		 */
+		public int getPurchases() {
+			return purchases;
+		}
 
-		return couponRepository.deleteAllByEndDateBefore(LocalDate.now());
 	}
 
 }
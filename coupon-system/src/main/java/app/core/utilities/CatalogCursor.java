@@ -0,0 +1,117 @@
+package app.core.utilities;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import app.core.dto.CouponSummary;
+import app.core.entities.Coupon;
+import app.core.enums.CouponSort;
+
+/**
+ * The class {@code CatalogCursor} represents position in coupons catalog: sort
+ * key and id of the last coupon of the previous page. It is passed to clients
+ * as opaque (url-safe base64) string.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public final class CatalogCursor {
+
+	private final CouponSort sort;
+	private final LocalDate endDate;
+	private final double price;
+	private final int id;
+
+	private CatalogCursor(CouponSort sort, LocalDate endDate, double price, int id) {
+		this.sort = sort;
+		this.endDate = endDate;
+		this.price = price;
+		this.id = id;
+	}
+
+	/**
+	 * Returns cursor of the first page in specified order (all coupons that not
+	 * expired at specified date are after it).
+	 * 
+	 * @param sort  specified order.
+	 * @param today specified date.
+	 * @return cursor of the first page.
+	 */
+	public static CatalogCursor first(CouponSort sort, LocalDate today) {
+		return new CatalogCursor(sort, today.minusDays(1), -1, 0);
+	}
+
+	/**
+	 * Returns cursor that points right after specified coupon in specified order.
+	 * 
+	 * @param sort   specified order.
+	 * @param coupon specified coupon (last coupon of the page).
+	 * @return cursor after specified coupon.
+	 */
+	public static CatalogCursor after(CouponSort sort, Coupon coupon) {
+		return new CatalogCursor(sort, coupon.getEndDate(), coupon.getPrice(), coupon.getId());
+	}
+
+	/**
+	 * Returns cursor that points right after specified coupon in specified order.
+	 * 
+	 * @param sort    specified order.
+	 * @param summary specified summary of coupon (last coupon of the page).
+	 * @return cursor after specified coupon.
+	 */
+	public static CatalogCursor after(CouponSort sort, CouponSummary summary) {
+		return new CatalogCursor(sort, summary.getEndDate(), summary.getPrice(), summary.getId());
+	}
+
+	/**
+	 * Decodes specified cursor string, only if it was encoded for specified order.
+	 * 
+	 * @param sort   specified order.
+	 * @param cursor specified cursor string.
+	 * @return decoded cursor.
+	 * @throws IllegalArgumentException if specified cursor is invalid.
+	 */
+	public static CatalogCursor decode(CouponSort sort, String cursor) {
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+			if (parts.length != 3 || CouponSort.valueOf(parts[0]) != sort)
+				throw new IllegalArgumentException("cursor of other order");
+
+			int id = Integer.parseInt(parts[2]);
+			if (sort == CouponSort.PRICE)
+				return new CatalogCursor(sort, null, Double.parseDouble(parts[1]), id);
+			return new CatalogCursor(sort, LocalDate.parse(parts[1]), -1, id);
+		} catch (Exception e) {
+			throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+		}
+	}
+
+	/**
+	 * Returns opaque string that represents this cursor.
+	 * 
+	 * @return encoded cursor.
+	 */
+	public String encode() {
+		String key = sort == CouponSort.PRICE ? String.valueOf(price) : endDate.toString();
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((sort + ":" + key + ":" + id).getBytes(StandardCharsets.UTF_8));
+	}
+
+	public CouponSort getSort() {
+		return sort;
+	}
+
+	public LocalDate getEndDate() {
+		return endDate;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+}
@@ -0,0 +1,260 @@
+package app.core.utilities;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+import app.core.dto.CouponKey;
+import app.core.enums.Category;
+
+/**
+ * The class {@code CouponPostings} is immutable set of coupons (ids of coupons
+ * of single company or customer) arranged to answer the filters of coupons
+ * without looking at every coupon: ids are held in primitive arrays sorted by
+ * price (and then by id), so coupons of price range (or after cursor of
+ * previous page) are found by binary search, and ids and prices of each
+ * category are partitioned in {@link EnumMap}, so coupons of single category
+ * are found without looking at coupons of other categories.
+ * 
+ * <p>
+ * Adding, replacing and removing a coupon returns new postings (arrays are
+ * copied, the postings are never changed), so readers need no lock.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public final class CouponPostings {
+
+	private static final Category[] CATEGORIES = Category.values();
+	private static final CouponPostings EMPTY = new CouponPostings(new int[0], new double[0], new Category[0]);
+
+	// parallel arrays sorted by price and then by id
+	private final int[] ids;
+	private final double[] prices;
+	private final Category[] categories;
+	// ids and prices of each category in the same order
+	private final Map<Category, int[]> idsByCategory;
+	private final Map<Category, double[]> pricesByCategory;
+
+	private CouponPostings(int[] ids, double[] prices, Category[] categories) {
+		this.ids = ids;
+		this.prices = prices;
+		this.categories = categories;
+
+		int[] counts = new int[CATEGORIES.length];
+		for (Category category : categories)
+			counts[category.ordinal()]++;
+		this.idsByCategory = new EnumMap<>(Category.class);
+		this.pricesByCategory = new EnumMap<>(Category.class);
+		for (Category category : CATEGORIES) {
+			idsByCategory.put(category, new int[counts[category.ordinal()]]);
+			pricesByCategory.put(category, new double[counts[category.ordinal()]]);
+		}
+		int[] filled = new int[CATEGORIES.length];
+		for (int i = 0; i < ids.length; i++) {
+			int at = filled[categories[i].ordinal()]++;
+			idsByCategory.get(categories[i])[at] = ids[i];
+			pricesByCategory.get(categories[i])[at] = prices[i];
+		}
+	}
+
+	/**
+	 * Returns postings without coupons.
+	 * 
+	 * @return empty postings.
+	 */
+	public static CouponPostings empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns postings of specified coupons.
+	 * 
+	 * @param coupons specified coupons (unique ids).
+	 * @return postings of specified coupons.
+	 */
+	public static CouponPostings of(Collection<CouponKey> coupons) {
+		if (coupons.isEmpty())
+			return EMPTY;
+
+		CouponKey[] sorted = coupons.toArray(new CouponKey[0]);
+		Arrays.sort(sorted, Comparator.comparingDouble(CouponKey::getPrice).thenComparingInt(CouponKey::getId));
+		int[] ids = new int[sorted.length];
+		double[] prices = new double[sorted.length];
+		Category[] categories = new Category[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			ids[i] = sorted[i].getId();
+			prices[i] = sorted[i].getPrice();
+			categories[i] = sorted[i].getCategory();
+		}
+		return new CouponPostings(ids, prices, categories);
+	}
+
+	/**
+	 * Returns postings with specified coupon added, or replaced if coupon with
+	 * same id is already held (its category or price could be changed).
+	 * 
+	 * @param id       specified coupon id.
+	 * @param category specified coupon category.
+	 * @param price    specified coupon price.
+	 * @return postings with specified coupon.
+	 */
+	public CouponPostings with(int id, Category category, double price) {
+		int replaced = indexOf(id);
+		int at = lowerBound(price, id);
+		int size = ids.length + (replaced < 0 ? 1 : 0);
+		int[] newIds = new int[size];
+		double[] newPrices = new double[size];
+		Category[] newCategories = new Category[size];
+
+		int j = 0;
+		for (int i = 0; i <= ids.length; i++) {
+			if (i == at) {
+				newIds[j] = id;
+				newPrices[j] = price;
+				newCategories[j++] = category;
+			}
+			if (i < ids.length && i != replaced) {
+				newIds[j] = ids[i];
+				newPrices[j] = prices[i];
+				newCategories[j++] = categories[i];
+			}
+		}
+		return new CouponPostings(newIds, newPrices, newCategories);
+	}
+
+	/**
+	 * Returns postings without specified coupon (same postings if coupon is not
+	 * held).
+	 * 
+	 * @param id specified coupon id.
+	 * @return postings without specified coupon.
+	 */
+	public CouponPostings without(int id) {
+		int removed = indexOf(id);
+		if (removed < 0)
+			return this;
+		if (ids.length == 1)
+			return EMPTY;
+
+		int size = ids.length - 1;
+		int[] newIds = new int[size];
+		double[] newPrices = new double[size];
+		Category[] newCategories = new Category[size];
+		System.arraycopy(ids, 0, newIds, 0, removed);
+		System.arraycopy(ids, removed + 1, newIds, removed, size - removed);
+		System.arraycopy(prices, 0, newPrices, 0, removed);
+		System.arraycopy(prices, removed + 1, newPrices, removed, size - removed);
+		System.arraycopy(categories, 0, newCategories, 0, removed);
+		System.arraycopy(categories, removed + 1, newCategories, removed, size - removed);
+		return new CouponPostings(newIds, newPrices, newCategories);
+	}
+
+	/**
+	 * Returns {@code true} if coupon with specified id is held, otherwise -
+	 * {@code false}.
+	 * 
+	 * @param id specified coupon id.
+	 * @return {@code true} if coupon is held, otherwise - {@code false}.
+	 */
+	public boolean contains(int id) {
+		return indexOf(id) >= 0;
+	}
+
+	/**
+	 * Returns ids of all held coupons, sorted by price.
+	 * 
+	 * @return ids of all coupons.
+	 */
+	public int[] ids() {
+		return ids.clone();
+	}
+
+	/**
+	 * Returns ids of coupons of any of specified categories, with price in
+	 * specified range, that are after specified coupon in order of price and id
+	 * (at most specified count of ids, sorted by price and id).
+	 * 
+	 * @param categories specified categories ({@code null} or empty for all
+	 *                   categories).
+	 * @param minPrice   specified min price (inclusive).
+	 * @param maxPrice   specified max price (exclusive).
+	 * @param afterPrice specified price of coupon that found coupons are after.
+	 * @param afterId    specified id of coupon that found coupons are after.
+	 * @param limit      specified max count of ids.
+	 * @return ids of found coupons.
+	 */
+	public int[] find(Set<Category> categories, double minPrice, double maxPrice, double afterPrice, int afterId,
+			int limit) {
+		// single category is scanned in its partition, other sets are checked per coupon
+		boolean single = categories != null && categories.size() == 1;
+		Category only = single ? categories.iterator().next() : null;
+		int[] scannedIds = single ? idsByCategory.get(only) : ids;
+		double[] scannedPrices = single ? pricesByCategory.get(only) : prices;
+		boolean filtered = !single && categories != null && !categories.isEmpty()
+				&& categories.size() < CATEGORIES.length;
+
+		int from = Math.max(lowerBound(scannedIds, scannedPrices, minPrice, Integer.MIN_VALUE),
+				upperBound(scannedIds, scannedPrices, afterPrice, afterId));
+		int[] found = new int[Math.max(0, Math.min(limit, scannedIds.length - from))];
+		int count = 0;
+		for (int i = from; i < scannedIds.length && count < found.length && scannedPrices[i] < maxPrice; i++)
+			if (!filtered || categories.contains(this.categories[i]))
+				found[count++] = scannedIds[i];
+		return count == found.length ? found : Arrays.copyOf(found, count);
+	}
+
+	/**
+	 * Returns count of held coupons.
+	 * 
+	 * @return count of coupons.
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	private int indexOf(int id) {
+		for (int i = 0; i < ids.length; i++)
+			if (ids[i] == id)
+				return i;
+		return -1;
+	}
+
+	private int lowerBound(double price, int id) {
+		return lowerBound(ids, prices, price, id);
+	}
+
+	// first position which coupon is not before specified price and id
+	private static int lowerBound(int[] ids, double[] prices, double price, int id) {
+		int low = 0;
+		int high = ids.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int compared = Double.compare(prices[mid], price);
+			if (compared < 0 || compared == 0 && ids[mid] < id)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	// first position which coupon is after specified price and id
+	private static int upperBound(int[] ids, double[] prices, double price, int id) {
+		int low = 0;
+		int high = ids.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int compared = Double.compare(prices[mid], price);
+			if (compared < 0 || compared == 0 && ids[mid] <= id)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+}
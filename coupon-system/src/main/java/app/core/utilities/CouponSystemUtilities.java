@@ -1,6 +1,7 @@
 package app.core.utilities;
 
 import java.util.List;
+import java.util.Locale;
 
 import app.core.entities.Company;
 import app.core.entities.Coupon;
@@ -8,6 +9,18 @@ import app.core.entities.Customer;
 
 public class CouponSystemUtilities {
 
+	/**
+	 * Returns specified email in the form it is stored and looked up by: trimmed
+	 * and in lower case.
+	 * 
+	 * @param email specified email.
+	 * @return normalized email, or {@code null} if specified email is
+	 *         {@code null}.
+	 */
+	public static String normalizeEmail(String email) {
+		return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+	}
+
 	/**
 	 * Prints given list on console log.
 	 * 
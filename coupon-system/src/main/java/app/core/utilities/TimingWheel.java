@@ -0,0 +1,244 @@
+package app.core.utilities;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The class {@code TimingWheel} holds keys until their deadlines in
+ * hierarchical timing wheel: level {@code 0} has a slot per tick, and every
+ * next level has a slot per full turn of the previous one. Key is placed in
+ * the lowest level that covers its deadline, and when the wheel reaches the
+ * slot of higher level, keys of that slot are moved down (cascaded) to lower
+ * levels, until they are due at level {@code 0}.
+ * 
+ * <p>
+ * Scheduling, rescheduling and canceling a key take constant time whatever the
+ * count of keys is, and advancing the wheel touches only the slots it passes
+ * and the keys that are due (or cascaded), never the whole set of keys.
+ * Deadlines are rounded up to whole ticks.
+ * 
+ * <p>
+ * The class is not thread safe.
+ * 
+ * @param <K> the type of keys.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+public class TimingWheel<K> {
+
+	// 64 slots per level, 6 levels cover 2^36 ticks (more than 2000 years of seconds)
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 6;
+	private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+	private final long tickMS;
+	private final Slot<K>[][] levels;
+	// keys that were due when scheduled
+	private final Slot<K> ready = new Slot<>();
+	private final Map<K, Entry<K>> entries = new HashMap<>();
+	// last tick that was processed
+	private long currentTick;
+
+	/**
+	 * Initializes new empty wheel with specified tick duration, that starts at
+	 * specified time.
+	 * 
+	 * @param tickMS  specified tick duration (millis).
+	 * @param startMS specified start time (epoch millis).
+	 */
+	@SuppressWarnings("unchecked")
+	public TimingWheel(long tickMS, long startMS) {
+		if (tickMS <= 0)
+			throw new IllegalArgumentException("tick must be positive");
+
+		this.tickMS = tickMS;
+		this.currentTick = startMS / tickMS;
+		this.levels = new Slot[LEVELS][SLOTS];
+		for (Slot<K>[] level : levels)
+			for (int i = 0; i < SLOTS; i++)
+				level[i] = new Slot<>();
+	}
+
+	/**
+	 * Schedules specified key to be due at specified deadline, replacing its
+	 * previous deadline if already scheduled. Key with deadline that already passed
+	 * is due on next advance.
+	 * 
+	 * @param key        specified key.
+	 * @param deadlineMS specified deadline (epoch millis).
+	 */
+	public void schedule(K key, long deadlineMS) {
+		Entry<K> entry = entries.get(key);
+		if (entry == null) {
+			entry = new Entry<>(key);
+			entries.put(key, entry);
+		} else {
+			entry.unlink();
+		}
+
+		// rounded up, so key is never due before its deadline
+		entry.deadlineTick = Math.floorDiv(deadlineMS + tickMS - 1, tickMS);
+		place(entry);
+	}
+
+	/**
+	 * Cancels specified key.
+	 * 
+	 * @param key specified key.
+	 * @return {@code true} if key was scheduled, otherwise - {@code false}.
+	 */
+	public boolean cancel(K key) {
+		Entry<K> entry = entries.remove(key);
+		if (entry == null)
+			return false;
+		entry.unlink();
+		return true;
+	}
+
+	/**
+	 * Returns deadline (epoch millis, rounded up to tick) of specified key, or
+	 * {@code -1} if key is not scheduled.
+	 * 
+	 * @param key specified key.
+	 * @return deadline of specified key or {@code -1}.
+	 */
+	public long deadlineOf(K key) {
+		Entry<K> entry = entries.get(key);
+		return entry == null ? -1 : entry.deadlineTick * tickMS;
+	}
+
+	/**
+	 * Returns count of scheduled keys.
+	 * 
+	 * @return count of scheduled keys.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Advances the wheel to specified time and passes every key that is due by
+	 * then to specified consumer (due keys are removed from the wheel).
+	 * 
+	 * @param nowMS  specified current time (epoch millis).
+	 * @param expire specified consumer of due keys.
+	 * @return count of due keys.
+	 */
+	public int advance(long nowMS, Consumer<K> expire) {
+		int due = drain(ready, expire);
+
+		long nowTick = Math.floorDiv(nowMS, tickMS);
+		while (currentTick < nowTick) {
+			currentTick++;
+			cascade();
+			due += drain(levels[0][(int) (currentTick & SLOT_MASK)], expire);
+			due += drain(ready, expire);
+		}
+		return due;
+	}
+
+	private void cascade() {
+		// slots of higher levels are reached when all lower levels turned around
+		int top = 0;
+		while (top + 1 < LEVELS && (currentTick & ((1L << (SLOT_BITS * (top + 1))) - 1)) == 0)
+			top++;
+
+		for (int level = top; level >= 1; level--) {
+			Slot<K> slot = levels[level][(int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+			Entry<K> entry;
+			while ((entry = slot.poll()) != null)
+				place(entry);
+		}
+	}
+
+	private void place(Entry<K> entry) {
+		long delta = entry.deadlineTick - currentTick;
+		if (delta <= 0) {
+			ready.add(entry);
+			return;
+		}
+
+		// far deadline is parked at the top level and cascaded again when reached
+		long tick = delta > MAX_DELTA ? currentTick + MAX_DELTA : entry.deadlineTick;
+		int level = 0;
+		while (level + 1 < LEVELS && (tick - currentTick) >= (1L << (SLOT_BITS * (level + 1))))
+			level++;
+		levels[level][(int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK)].add(entry);
+	}
+
+	private int drain(Slot<K> slot, Consumer<K> expire) {
+		int due = 0;
+		Entry<K> entry;
+		while ((entry = slot.poll()) != null) {
+			if (entry.deadlineTick > currentTick) {
+				// parked far deadline
+				place(entry);
+				continue;
+			}
+			entries.remove(entry.key);
+			expire.accept(entry.key);
+			due++;
+		}
+		return due;
+	}
+
+	/**
+	 * The class {@code Slot} is doubly linked list of entries (with sentinel
+	 * node), so an entry is unlinked from its slot in constant time.
+	 */
+	private static final class Slot<K> {
+
+		private final Entry<K> head = new Entry<>(null);
+
+		private Slot() {
+			head.prev = head;
+			head.next = head;
+		}
+
+		private void add(Entry<K> entry) {
+			entry.prev = head.prev;
+			entry.next = head;
+			head.prev.next = entry;
+			head.prev = entry;
+		}
+
+		private Entry<K> poll() {
+			Entry<K> entry = head.next;
+			if (entry == head)
+				return null;
+			entry.unlink();
+			return entry;
+		}
+
+	}
+
+	/**
+	 * The class {@code Entry} is scheduled key and its deadline.
+	 */
+	private static final class Entry<K> {
+
+		private final K key;
+		private long deadlineTick;
+		private Entry<K> prev;
+		private Entry<K> next;
+
+		private Entry(K key) {
+			this.key = key;
+		}
+
+		private void unlink() {
+			if (prev == null)
+				return;
+			prev.next = next;
+			next.prev = prev;
+			prev = null;
+			next = null;
+		}
+
+	}
+
+}
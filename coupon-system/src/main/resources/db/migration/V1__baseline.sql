@@ -0,0 +1,11 @@
+-- Schema as created by hibernate (ddl-auto) from the entities before the schema was versioned.
+-- Existing schema is baselined at this version (spring.flyway.baseline-on-migrate), new schema starts here.
+
+create table company (id integer not null auto_increment, email varchar(255), name varchar(255), password varchar(255), primary key (id)) engine=InnoDB;
+create table coupon (id integer not null auto_increment, amount integer not null, category varchar(255), company_id integer, description varchar(255), end_date date, image varchar(255), price double precision not null, start_date date, title varchar(255), primary key (id)) engine=InnoDB;
+create table customer (id integer not null auto_increment, email varchar(255), first_name varchar(255), last_name varchar(255), password varchar(255), primary key (id)) engine=InnoDB;
+create table customers_vs_coupons (customer_id integer not null, coupon_id integer not null) engine=InnoDB;
+
+alter table coupon add constraint FKe2v6qnb3w90rekqrae28iiqhm foreign key (company_id) references company (id);
+alter table customers_vs_coupons add constraint FKpdty1oqjcxnl7r4nwy48yu1fn foreign key (coupon_id) references coupon (id);
+alter table customers_vs_coupons add constraint FKevgm120f73lasrr8avi7tj43b foreign key (customer_id) references customer (id);
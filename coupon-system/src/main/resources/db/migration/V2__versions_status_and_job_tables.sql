@@ -0,0 +1,40 @@
+-- Columns and tables of the entities added after the baseline: versions of optimistic locking, flag of hot coupons,
+-- normalized emails of login lookup, status of soft expired coupons and their archive, responses of retried requests,
+-- checkpoints and leases of expiration jobs. Existing rows get the values that new rows start with.
+-- Unique keys fail if existing rows break them: companies or customers with the same email (ignoring case).
+
+-- optimistic locking (version of each row)
+alter table company add column version bigint not null default 0;
+alter table coupon add column version bigint not null default 0;
+alter table customer add column version bigint not null default 0;
+
+-- coupons held by inventory engine
+alter table coupon add column hot bit not null default 0;
+
+-- login lookup by normalized (trimmed, lower case) email
+alter table company add column email_normalized varchar(255);
+update company set email_normalized = lower(trim(email));
+alter table company modify column email_normalized varchar(255) not null;
+alter table company add constraint uk_company_email_normalized unique (email_normalized);
+alter table customer add column email_normalized varchar(255);
+update customer set email_normalized = lower(trim(email));
+alter table customer modify column email_normalized varchar(255) not null;
+alter table customer add constraint uk_customer_email_normalized unique (email_normalized);
+
+-- soft expiration (expired coupons are hidden until archived) and the archive
+alter table coupon add column status varchar(16) not null default 'ACTIVE';
+create index idx_coupon_status_end_date_id on coupon (status, end_date, id);
+create index idx_coupon_status_price_id on coupon (status, price, id);
+create index idx_coupon_status_id on coupon (status, id);
+create table coupon_archive (id integer not null, amount integer not null, archived_at date, category varchar(255), company_id integer, description varchar(255), end_date date, hot bit not null, image varchar(255), price double precision not null, start_date date, title varchar(255), primary key (id)) engine=InnoDB;
+create table customers_vs_coupons_archive (coupon_id integer not null, customer_id integer not null, primary key (coupon_id, customer_id)) engine=InnoDB;
+create index idx_coupon_archive_company_id on coupon_archive (company_id);
+create index idx_coupon_archive_end_date on coupon_archive (end_date);
+create index idx_cvc_archive_coupon_id on customers_vs_coupons_archive (coupon_id);
+
+-- responses of requests with Idempotency-Key header
+create table idempotency_record (id varchar(64) not null, body longblob, content_type varchar(255), expires_at bigint, status integer not null, primary key (id)) engine=InnoDB;
+
+-- expiration jobs: progress of the sweep and leadership of the nodes
+create table job_checkpoint (name varchar(64) not null, cutoff date, last_id integer, primary key (name)) engine=InnoDB;
+create table job_lease (name varchar(64) not null, expires_at bigint, owner varchar(128), token bigint not null, primary key (name)) engine=InnoDB;
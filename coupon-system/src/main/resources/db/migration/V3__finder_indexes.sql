@@ -0,0 +1,16 @@
+-- Indexes of the finders of CouponRepository, CompanyRepository and CustomerRepository (declared on the entities too).
+-- Unique keys fail if existing rows break them: companies with the same name, the same coupon purchased twice.
+
+-- company by name (add and update of company)
+alter table company add constraint uk_company_name unique (name);
+
+-- coupons of company: by title, filtered by category and price, sorted by price
+create index idx_coupon_company_status_title on coupon (company_id, status, title);
+create index idx_coupon_company_status_category_price_id on coupon (company_id, status, category, price, id);
+create index idx_coupon_company_status_price_id on coupon (company_id, status, price, id);
+-- hot coupons (loaded by inventory engine on start)
+create index idx_coupon_status_hot on coupon (status, hot);
+
+-- coupons of customer (and single purchase of coupon per customer), purchasers of coupon
+alter table customers_vs_coupons add constraint uk_cvc_customer_coupon unique (customer_id, coupon_id);
+create index idx_cvc_coupon_customer on customers_vs_coupons (coupon_id, customer_id);
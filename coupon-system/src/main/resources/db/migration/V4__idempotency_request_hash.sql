@@ -0,0 +1,4 @@
+-- Digest of the request body stored with the response of request with Idempotency-Key header: retry with the same key
+-- and other body is rejected instead of answered by the stored response. Records saved before have no digest.
+
+alter table idempotency_record add column request_hash varchar(64);
@@ -0,0 +1,4 @@
+-- Tokens revoked by logout, kept until they expire: every node reads them, so revoked token is rejected by all nodes
+-- (not only by the node that handled the logout).
+
+create table revoked_token (id varchar(64) not null, expires_at bigint, revoked_at bigint, primary key (id)) engine=InnoDB;
@@ -0,0 +1,30 @@
+package app.core;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts statements prepared by hibernate on each thread (registered as the
+ * statement inspector in test properties), so tests that count statements of
+ * an operation do not count statements of background threads.
+ */
+public class StatementCounter implements StatementInspector {
+
+	private static final long serialVersionUID = 1L;
+	private static final ThreadLocal<long[]> counts = ThreadLocal.withInitial(() -> new long[1]);
+
+	@Override
+	public String inspect(String sql) {
+		counts.get()[0]++;
+		return sql;
+	}
+
+	/**
+	 * Returns count of statements prepared so far on the current thread.
+	 * 
+	 * @return count of statements of the current thread.
+	 */
+	public static long count() {
+		return counts.get()[0];
+	}
+
+}
@@ -0,0 +1,164 @@
+package app.core;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.entities.Customer;
+import app.core.enums.Category;
+import app.core.enums.ClientType;
+import app.core.exceptions.CouponSystemException;
+import app.core.jwt.ClientPrincipal;
+import app.core.services.AdminService;
+import app.core.services.CompanyService;
+
+/**
+ * Adds companies, customers and coupons for tests through the services. Names
+ * and emails are numbered by one sequence shared by all tests, so tests that
+ * run against the same database never clash.
+ */
+@Component
+public class TestFixtures {
+
+	private static final AtomicInteger sequence = new AtomicInteger();
+
+	private final AdminService adminService;
+	private final CompanyService companyService;
+
+	public TestFixtures(AdminService adminService, CompanyService companyService) {
+		this.adminService = adminService;
+		this.companyService = companyService;
+	}
+
+	/**
+	 * Returns specified prefix followed by next number of the sequence.
+	 * 
+	 * @param prefix specified prefix.
+	 * @return unique name.
+	 */
+	public static String unique(String prefix) {
+		return prefix + sequence.incrementAndGet();
+	}
+
+	/**
+	 * Returns next unique email.
+	 * 
+	 * @return unique email.
+	 */
+	public static String email() {
+		return unique("fixture") + "@mail.com";
+	}
+
+	/**
+	 * Returns principal of specified client, as if the client passed the token
+	 * filter (valid for a minute).
+	 * 
+	 * @param id         specified client id.
+	 * @param clientType specified client type.
+	 * @return principal of the client.
+	 */
+	public static ClientPrincipal principal(int id, ClientType clientType) {
+		return new ClientPrincipal(id, "client", "client@mail.com", clientType, Instant.now().plusSeconds(60));
+	}
+
+	/**
+	 * Returns ids of specified coupons, in the same order.
+	 * 
+	 * @param coupons specified coupons.
+	 * @return ids of the coupons.
+	 */
+	public static List<Integer> ids(List<Coupon> coupons) {
+		return coupons.stream().map(Coupon::getId).collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns count of statements prepared by specified action on the current
+	 * thread (see {@link StatementCounter}).
+	 * 
+	 * @param action specified action.
+	 * @return count of statements.
+	 * @throws Exception if the action failed.
+	 */
+	public static long countStatements(Action action) throws Exception {
+		long before = StatementCounter.count();
+		action.run();
+		return StatementCounter.count() - before;
+	}
+
+	/**
+	 * Returns new (not added) coupon available from today for specified days.
+	 * 
+	 * @param category specified category.
+	 * @param title    specified title.
+	 * @param days     specified days till the end date.
+	 * @param amount   specified amount.
+	 * @param price    specified price.
+	 * @return new coupon.
+	 * @throws CouponSystemException if coupon is invalid.
+	 */
+	public static Coupon coupon(Category category, String title, int days, int amount, double price)
+			throws CouponSystemException {
+		return new Coupon(0, 0, category, title, "description", LocalDate.now(), LocalDate.now().plusDays(days), amount,
+				price, "image");
+	}
+
+	/**
+	 * Adds new company with unique name and email.
+	 * 
+	 * @return added company.
+	 * @throws CouponSystemException if adding failed.
+	 */
+	public Company addCompany() throws CouponSystemException {
+		String name = unique("fixture");
+		return adminService.addCompany(new Company(0, name, name + "@mail.com", "p"));
+	}
+
+	/**
+	 * Adds new customer with unique email.
+	 * 
+	 * @return added customer.
+	 * @throws CouponSystemException if adding failed.
+	 */
+	public Customer addCustomer() throws CouponSystemException {
+		return adminService.addCustomer(new Customer(0, "first", "last", email(), "p"));
+	}
+
+	/**
+	 * Adds new coupon of specified company: sport, 100 in stock for 10 days
+	 * (unless specified otherwise).
+	 * 
+	 * @param company specified company.
+	 * @return added coupon.
+	 * @throws CouponSystemException if adding failed.
+	 */
+	public Coupon addCoupon(Company company) throws CouponSystemException {
+		return addCoupon(company, "coupon");
+	}
+
+	public Coupon addCoupon(Company company, String title) throws CouponSystemException {
+		return addCoupon(company, coupon(Category.SPORT, title, 10, 100, 9.99));
+	}
+
+	public Coupon addCoupon(Company company, int amount) throws CouponSystemException {
+		return addCoupon(company, coupon(Category.SPORT, "coupon", 10, amount, 9.99));
+	}
+
+	public Coupon addCoupon(Company company, Coupon coupon) throws CouponSystemException {
+		return companyService.addCoupon(company.getId(), coupon);
+	}
+
+	/**
+	 * Action to count statements of.
+	 */
+	@FunctionalInterface
+	public interface Action {
+		void run() throws Exception;
+	}
+
+}
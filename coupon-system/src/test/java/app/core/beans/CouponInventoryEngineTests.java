@@ -0,0 +1,113 @@
+package app.core.beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import app.core.entities.Coupon;
+import app.core.enums.Category;
+import app.core.exceptions.CouponSystemException;
+import app.core.services.CouponInventoryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checks that purchase of hot coupon by customer that not exists is rejected
+ * without taking the stock, and that stock is returned when purchase could not
+ * be journaled or was dropped when flushed (storage access layer is mocked).
+ */
+class CouponInventoryEngineTests {
+
+	@TempDir
+	Path directory;
+
+	private CouponInventoryEngine engine;
+
+	@AfterEach
+	void tearDown() {
+		if (engine != null)
+			engine.stop();
+	}
+
+	@Test
+	void purchaseByMissingCustomerKeepsStock() throws Exception {
+		Coupon coupon = new Coupon(1, 1, Category.SPORT, "hot", "description", LocalDate.now(),
+				LocalDate.now().plusDays(10), 1, 9.99, "image");
+		coupon.setHot(true);
+		CouponInventoryService inventoryService = mock(CouponInventoryService.class);
+		when(inventoryService.getHotCoupons()).thenReturn(List.of(coupon));
+		when(inventoryService.customerExists(1)).thenReturn(true);
+
+		engine = new CouponInventoryEngine(inventoryService, new CatalogVersions(60000),
+				new PurchaseMetrics(new SimpleMeterRegistry()), true, directory.resolve("journal").toString(), 1024,
+				60000, 500);
+		engine.start();
+
+		CouponSystemException e = assertThrows(CouponSystemException.class, () -> engine.purchase(2, 1));
+		assertTrue(e.getMessage().contains("not found"), e.getMessage());
+		// the only coupon in stock is still there
+		assertEquals(0, engine.purchase(1, 1).getAmount());
+	}
+
+	@Test
+	void failedFlushOfFullJournalReturnsStock() throws Exception {
+		Coupon coupon = new Coupon(1, 1, Category.SPORT, "hot", "description", LocalDate.now(),
+				LocalDate.now().plusDays(10), 2, 9.99, "image");
+		coupon.setHot(true);
+		CouponInventoryService inventoryService = mock(CouponInventoryService.class);
+		when(inventoryService.getHotCoupons()).thenReturn(List.of(coupon));
+		when(inventoryService.customerExists(anyInt())).thenReturn(true);
+		when(inventoryService.applyPurchases(anyList())).thenThrow(new RuntimeException("storage is down"))
+				.thenReturn(List.of());
+
+		// journal of single record
+		engine = new CouponInventoryEngine(inventoryService, new CatalogVersions(60000),
+				new PurchaseMetrics(new SimpleMeterRegistry()), true, directory.resolve("journal").toString(), 1,
+				60000, 500);
+		engine.start();
+
+		assertEquals(1, engine.purchase(1, 1).getAmount());
+		// journal is full and its flush fails
+		assertThrows(CouponSystemException.class, () -> engine.purchase(2, 1));
+		// the stock is returned and the customer may try again
+		assertEquals(0, engine.purchase(2, 1).getAmount());
+	}
+
+	@Test
+	void droppedPurchaseIsCountedAndReturnsStock() throws Exception {
+		Coupon coupon = new Coupon(1, 1, Category.SPORT, "hot", "description", LocalDate.now(),
+				LocalDate.now().plusDays(10), 2, 9.99, "image");
+		coupon.setHot(true);
+		CouponInventoryService inventoryService = mock(CouponInventoryService.class);
+		when(inventoryService.getHotCoupons()).thenReturn(List.of(coupon));
+		when(inventoryService.customerExists(anyInt())).thenReturn(true);
+		// purchase of customer 1 does not fit the stock in the storage
+		when(inventoryService.applyPurchases(anyList())).thenReturn(List.of(new PurchaseJournal.Record(1, 1)))
+				.thenReturn(List.of());
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+		// journal of single record
+		engine = new CouponInventoryEngine(inventoryService, new CatalogVersions(60000), new PurchaseMetrics(registry),
+				true, directory.resolve("journal").toString(), 1, 60000, 500);
+		engine.start();
+
+		assertEquals(1, engine.purchase(1, 1).getAmount());
+		// journal is full - purchase of customer 1 is flushed and dropped
+		assertEquals(0, engine.purchase(2, 1).getAmount());
+		assertEquals(1, registry.get("coupon.purchases.rejected").tag("reason", "dropped").counter().count());
+		// its stock is returned and the customer may purchase again
+		assertEquals(0, engine.purchase(1, 1).getAmount());
+	}
+
+}
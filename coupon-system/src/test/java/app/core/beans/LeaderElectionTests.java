@@ -0,0 +1,107 @@
+package app.core.beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import app.core.CouponSystemApplication;
+import app.core.exceptions.CouponSystemException;
+import app.core.services.DailyJobService;
+
+/**
+ * Runs several nodes (application contexts) against one embedded database and
+ * checks that exactly one of them is the leader, that a standby node takes
+ * over within the lease bounds when the leader stops, and that the old leader
+ * is fenced off.
+ */
+class LeaderElectionTests {
+
+	private static final long DURATION_MS = 1500;
+	private static final long HEARTBEAT_MS = 200;
+
+	private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		for (ConfigurableApplicationContext node : nodes)
+			node.close();
+	}
+
+	@Test
+	void singleLeaderIsElectedAndReplacedWithinLeaseBounds() throws Exception {
+		for (int i = 0; i < 3; i++)
+			nodes.add(startNode(i));
+
+		ConfigurableApplicationContext leader = awaitSingleLeader(null, DURATION_MS + HEARTBEAT_MS * 2);
+		long token = election(leader).getToken();
+
+		// leader stops sending heartbeats (hangs or crashes) without releasing the lease
+		((ScheduledExecutorService) ReflectionTestUtils.getField(election(leader), "executor")).shutdownNow();
+		long stoppedAt = System.currentTimeMillis();
+		ConfigurableApplicationContext next = awaitSingleLeader(leader, DURATION_MS + HEARTBEAT_MS * 3);
+		assertTrue(System.currentTimeMillis() - stoppedAt <= DURATION_MS + HEARTBEAT_MS * 3);
+		assertTrue(election(next).getToken() > token);
+		assertEquals(LeaderElection.NOT_LEADER, election(leader).getToken());
+
+		// writes with the old token are rejected
+		DailyJobService oldService = leader.getBean(DailyJobService.class);
+		assertThrows(CouponSystemException.class,
+				() -> oldService.expireCoupons(LocalDate.now(), 0, 1000, token));
+		next.getBean(DailyJobService.class).expireCoupons(LocalDate.now(), 0, 1000,
+				election(next).getToken());
+
+		// graceful shutdown releases the lease, so the last node takes over on its next heartbeat
+		long nextToken = election(next).getToken();
+		next.close();
+		long closedAt = System.currentTimeMillis();
+		ConfigurableApplicationContext last = awaitSingleLeader(leader, HEARTBEAT_MS * 3);
+		assertTrue(System.currentTimeMillis() - closedAt <= HEARTBEAT_MS * 3);
+		assertNotEquals(next, last);
+		assertTrue(election(last).getToken() > nextToken);
+	}
+
+	private ConfigurableApplicationContext startNode(int index) {
+		// arguments override application.properties, all nodes share one database and only the first creates it
+		return new SpringApplicationBuilder(CouponSystemApplication.class).web(WebApplicationType.NONE).run(
+				"--spring.datasource.url=jdbc:h2:mem:leader_election;MODE=MySQL;DB_CLOSE_DELAY=-1",
+				"--spring.jpa.hibernate.ddl-auto=" + (index == 0 ? "create" : "none"), "--app.seed.enabled=false",
+				"--app.inventory.enabled=false", "--app.expiration.initialDelayMS=3600000",
+				"--app.cluster.nodeId=node-" + index, "--app.cluster.lease.durationMS=" + DURATION_MS,
+				"--app.cluster.lease.heartbeatMS=" + HEARTBEAT_MS, "--app.cluster.lease.maxClockSkewMS=100");
+	}
+
+	private ConfigurableApplicationContext awaitSingleLeader(ConfigurableApplicationContext excluded, long timeoutMS)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMS;
+		List<ConfigurableApplicationContext> leaders;
+		do {
+			leaders = nodes.stream().filter(node -> node != excluded && node.isActive())
+					.filter(node -> election(node).isLeader()).collect(Collectors.toList());
+			if (leaders.size() == 1)
+				break;
+			Thread.sleep(20);
+		} while (System.currentTimeMillis() < deadline);
+
+		assertEquals(1, leaders.size(), "count of leaders");
+		return leaders.get(0);
+	}
+
+	private static LeaderElection election(ConfigurableApplicationContext node) {
+		return node.getBean(LeaderElection.class);
+	}
+
+}
@@ -0,0 +1,113 @@
+package app.core.beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import app.core.TestFixtures;
+import app.core.entities.Company;
+import app.core.entities.Customer;
+import app.core.enums.ClientType;
+import app.core.services.AdminService;
+import app.core.services.ClientService;
+import app.core.services.CompanyService;
+import app.core.services.CustomerService;
+
+/**
+ * Checks that {@link LoginManager} refers every client type to its own client
+ * service, and that client services are singletons that keep no state of the
+ * client that logged in (see {@link app.core.benchmarks.LoginBenchmark}).
+ */
+@SpringBootTest
+class LoginManagerTests {
+
+	@Autowired
+	private LoginManager loginManager;
+	@Autowired
+	private AdminService adminService;
+	@Autowired
+	private ApplicationContext context;
+	@Value("${admin.email}")
+	private String adminEmail;
+	@Value("${admin.password}")
+	private String adminPassword;
+
+	@Test
+	void everyClientTypeIsReferredToItsService() throws Exception {
+		// company and customer with the same credentials: only the client type tells them apart
+		String email = TestFixtures.email();
+		Company company = adminService.addCompany(new Company(0, TestFixtures.unique("login"), email, "p"));
+		Customer customer = adminService.addCustomer(new Customer(0, "first", "last", email, "p"));
+
+		assertEquals(company.getId(), loginManager.login(email, "p", ClientType.COMPANY).getId());
+		assertEquals(customer.getId(), loginManager.login(email, "p", ClientType.CUSTOMER).getId());
+		assertNull(loginManager.login(email, "p", ClientType.ADMINISTRATOR));
+		assertEquals(-1, loginManager.login(adminEmail, adminPassword, ClientType.ADMINISTRATOR).getId());
+		assertNull(loginManager.login(adminEmail, adminPassword, ClientType.CUSTOMER));
+		assertNull(loginManager.login(email, "p", null));
+	}
+
+	@Test
+	void clientServicesAreStatelessSingletons() throws Exception {
+		@SuppressWarnings("unchecked")
+		Map<ClientType, ClientService> services = (Map<ClientType, ClientService>) ReflectionTestUtils
+				.getField(loginManager, "clientServices");
+		assertSame(context.getBean(AdminService.class), services.get(ClientType.ADMINISTRATOR));
+		assertSame(context.getBean(CompanyService.class), services.get(ClientType.COMPANY));
+		assertSame(context.getBean(CustomerService.class), services.get(ClientType.CUSTOMER));
+		for (String name : new String[] { "adminService", "companyService", "customerService" })
+			assertTrue(context.isSingleton(name), name);
+
+		List<Customer> customers = new ArrayList<>();
+		for (int i = 0; i < 20; i++)
+			customers.add(adminService.addCustomer(new Customer(0, "first", "last", TestFixtures.email(), "p")));
+		List<Object> before = fields(services.get(ClientType.CUSTOMER));
+
+		// concurrent logins of different customers through the same service
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> ids = new ArrayList<>();
+			for (int i = 0; i < 5; i++)
+				for (Customer customer : customers)
+					ids.add(executor.submit(
+							() -> loginManager.login(customer.getEmail(), "p", ClientType.CUSTOMER).getId()));
+			for (int i = 0; i < ids.size(); i++)
+				assertEquals(customers.get(i % customers.size()).getId(), ids.get(i).get());
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(before, fields(services.get(ClientType.CUSTOMER)));
+	}
+
+	/**
+	 * Returns values of instance fields of specified service (behind its proxy).
+	 */
+	private static List<Object> fields(ClientService service) {
+		Object target = AopTestUtils.getUltimateTargetObject(service);
+		List<Object> values = new ArrayList<>();
+		for (Class<?> type = target.getClass(); type != Object.class; type = type.getSuperclass())
+			for (Field field : type.getDeclaredFields())
+				if (!Modifier.isStatic(field.getModifiers()))
+					values.add(ReflectionTestUtils.getField(target, field.getName()));
+		return values;
+	}
+
+}
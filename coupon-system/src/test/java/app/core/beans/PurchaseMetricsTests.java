@@ -0,0 +1,42 @@
+package app.core.beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import app.core.enums.RejectionReason;
+import app.core.exceptions.CouponSystemException;
+import app.core.exceptions.PurchaseRejectedException;
+import app.core.exceptions.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checks that rejected purchases are counted by the reason carried by the
+ * exception, not by its message.
+ */
+class PurchaseMetricsTests {
+
+	@Test
+	void rejectionIsCountedByItsReason() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		PurchaseMetrics metrics = new PurchaseMetrics(registry);
+
+		metrics.rejected(new PurchaseRejectedException(RejectionReason.OUT_OF_STOCK, "sold"));
+		metrics.rejected(new PurchaseRejectedException(RejectionReason.EXPIRED, "out of stock!"));
+		metrics.rejected(new CouponSystemException("failed to purchase coupon: coupon with id = 1 out of stock!"));
+
+		assertEquals(1, rejections(registry, "out_of_stock"));
+		assertEquals(1, rejections(registry, "expired"));
+		assertEquals(1, rejections(registry, "other"));
+	}
+
+	@Test
+	void busyServiceIsCountedAsBusy() {
+		assertEquals(RejectionReason.BUSY, PurchaseMetrics.reasonOf(new ServiceBusyException("busy")));
+	}
+
+	private static double rejections(SimpleMeterRegistry registry, String reason) {
+		return registry.get("coupon.purchases.rejected").tag("reason", reason).counter().count();
+	}
+
+}
@@ -0,0 +1,94 @@
+package app.core.beans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import app.core.beans.RateLimiter.Limit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checks buckets of {@link RateLimiter} at explicit times: refill and
+ * {@code Retry-After} seconds, removal of idle buckets and eviction of least
+ * recently used bucket of a full stripe.
+ * 
+ * <p>
+ * Limiter has 2 stripes: keys {@code "a"}, {@code "c"} and {@code "e"} share
+ * one stripe, {@code "b"} is in the other.
+ */
+class RateLimiterTests {
+
+	private static final long T0 = TimeUnit.HOURS.toNanos(1);
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void retryAfterIsSecondsUntilNextToken() {
+		// 1 token per 4 seconds
+		RateLimiter limiter = limiter(1, 0.25, 2, 64);
+
+		assertEquals(0, limiter.tryAcquire(Limit.IP, "a", T0));
+		assertEquals(4, limiter.tryAcquire(Limit.IP, "a", T0));
+		assertEquals(3, limiter.tryAcquire(Limit.IP, "a", T0 + SECOND));
+		assertEquals(1, limiter.tryAcquire(Limit.IP, "a", T0 + 3 * SECOND + SECOND / 2));
+		assertEquals(0, limiter.tryAcquire(Limit.IP, "a", T0 + 4 * SECOND));
+		assertEquals(3, rejected());
+	}
+
+	@Test
+	void idleBucketIsRemovedOnceFullAgain() {
+		// full again after 2 seconds
+		RateLimiter limiter = limiter(2, 1, 2, 64);
+		assertEquals(0, limiter.tryAcquire(Limit.IP, "a", T0));
+		assertEquals(0, limiter.tryAcquire(Limit.IP, "a", T0));
+		assertEquals(1, limiter.tryAcquire(Limit.IP, "a", T0));
+
+		limiter.tryAcquire(Limit.IP, "c", T0 + 2 * SECOND - 1);
+		assertEquals(0, evictions("idle"));
+		assertEquals(2, buckets());
+
+		limiter.tryAcquire(Limit.IP, "e", T0 + 2 * SECOND);
+		assertEquals(1, evictions("idle"));
+		assertEquals(2, buckets());
+		assertEquals(0, limiter.tryAcquire(Limit.IP, "a", T0 + 2 * SECOND));
+		assertEquals(0, limiter.tryAcquire(Limit.IP, "a", T0 + 2 * SECOND));
+	}
+
+	@Test
+	void leastRecentlyUsedBucketOfFullStripeIsEvicted() {
+		// 2 buckets per stripe, no refill within the test
+		RateLimiter limiter = limiter(1, 0.001, 2, 4);
+		assertEquals(0, limiter.tryAcquire(Limit.IP, "a", T0));
+		assertEquals(0, limiter.tryAcquire(Limit.IP, "c", T0));
+		assertEquals(0, limiter.tryAcquire(Limit.IP, "b", T0));
+		assertEquals(1000, limiter.tryAcquire(Limit.IP, "a", T0 + 1));
+
+		// "c" is evicted from the stripe of "a", "b" of the other stripe is kept
+		assertEquals(0, limiter.tryAcquire(Limit.IP, "e", T0 + 2));
+		assertEquals(1, evictions("size"));
+		assertEquals(3, buckets());
+		assertEquals(1000, limiter.tryAcquire(Limit.IP, "b", T0 + 3));
+		assertEquals(1000, limiter.tryAcquire(Limit.IP, "a", T0 + 3));
+		assertEquals(0, limiter.tryAcquire(Limit.IP, "c", T0 + 3));
+	}
+
+	private RateLimiter limiter(int capacity, double refillPerSecond, int stripes, int maxEntries) {
+		return new RateLimiter(registry, true, stripes, maxEntries, capacity, refillPerSecond, 5, 0.1, 10, 2);
+	}
+
+	private double rejected() {
+		return registry.get("ratelimit.requests").tag("limit", "ip").tag("result", "rejected").counter().count();
+	}
+
+	private double evictions(String cause) {
+		return registry.get("ratelimit.evictions").tag("limit", "ip").tag("cause", cause).counter().count();
+	}
+
+	private double buckets() {
+		return registry.get("ratelimit.buckets").tag("limit", "ip").gauge().value();
+	}
+
+}
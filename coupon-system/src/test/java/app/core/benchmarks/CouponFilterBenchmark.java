@@ -0,0 +1,159 @@
+package app.core.benchmarks;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import app.core.CouponSystemApplication;
+import app.core.beans.CouponIndex;
+import app.core.dto.CouponCriteria;
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.enums.Category;
+import app.core.enums.CouponSort;
+import app.core.exceptions.CouponSystemException;
+import app.core.repositories.CouponRepository;
+import app.core.services.AdminService;
+import app.core.services.CompanyService;
+
+/**
+ * Compares filtering coupons of company by category and by price range (first
+ * page of 20) through {@link CouponIndex} with filtering by criteria query (the
+ * same transaction and second level cache in both). With {@code queryCache=evicted}
+ * cached query results are evicted before every query, as purchases of any
+ * coupon do in production.
+ * 
+ * <p>
+ * Run {@link #main} with test classpath (after {@code mvn test-compile}), or
+ * {@code org.openjdk.jmh.Main CouponFilterBenchmark} with JMH options.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class CouponFilterBenchmark {
+
+	private static final int COUPONS = 500;
+	private static final int PAGE_SIZE = 20;
+
+	@Param({ "cached", "evicted" })
+	private String queryCache;
+
+	private ConfigurableApplicationContext ctx;
+	private CouponIndex couponIndex;
+	private CouponRepository couponRepository;
+	private TransactionTemplate transactionTemplate;
+	private SessionFactory sessionFactory;
+	private int companyId;
+	private CouponCriteria category;
+	private CouponCriteria priceRange;
+
+	@Setup(Level.Trial)
+	public void setUp() throws CouponSystemException {
+		ctx = SpringApplication.run(CouponSystemApplication.class, "--spring.main.web-application-type=none",
+				"--spring.main.banner-mode=off", "--spring.jpa.show-sql=false", "--logging.level.root=WARN",
+				"--logging.level.org.hibernate.SQL=WARN");
+		couponIndex = ctx.getBean(CouponIndex.class);
+		couponRepository = ctx.getBean(CouponRepository.class);
+		transactionTemplate = ctx.getBean(TransactionTemplate.class);
+		sessionFactory = ctx.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class);
+
+		companyId = ctx.getBean(AdminService.class)
+				.addCompany(new Company(0, "benchmark", "benchmark@mail.com", "password")).getId();
+		CompanyService companyService = ctx.getBean(CompanyService.class);
+		Random random = new Random(1);
+		Category[] categories = Category.values();
+		for (int i = 0; i < COUPONS; i++)
+			companyService.addCoupon(companyId,
+					new Coupon(0, 0, categories[random.nextInt(categories.length)], "coupon" + i, "description",
+							LocalDate.now(), LocalDate.now().plusDays(30), 100, random.nextInt(10000) / 100.0,
+							"image"));
+
+		category = new CouponCriteria();
+		category.setCompanyId(companyId);
+		category.setCategories(EnumSet.of(Category.SPORT));
+		priceRange = new CouponCriteria();
+		priceRange.setCompanyId(companyId);
+		priceRange.setCategories(EnumSet.of(Category.SPORT, Category.VACATION));
+		priceRange.setMinPrice(10.0);
+		priceRange.setMaxPrice(50.0);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		ctx.close();
+	}
+
+	@Benchmark
+	public List<Coupon> categoryByIndex() {
+		return byIndex(category);
+	}
+
+	@Benchmark
+	public List<Coupon> categoryByQuery() {
+		return byQuery(category);
+	}
+
+	@Benchmark
+	public List<Coupon> priceRangeByIndex() {
+		return byIndex(priceRange);
+	}
+
+	@Benchmark
+	public List<Coupon> priceRangeByQuery() {
+		return byQuery(priceRange);
+	}
+
+	private List<Coupon> byIndex(CouponCriteria criteria) {
+		return transactionTemplate.execute(
+				status -> couponIndex.findCompanyCoupons(companyId, criteria, CouponSort.PRICE, null, PAGE_SIZE));
+	}
+
+	private List<Coupon> byQuery(CouponCriteria criteria) {
+		evictQueryCache();
+		return transactionTemplate.execute(
+				status -> couponRepository.findByCriteria(criteria, null, CouponSort.PRICE, null, PAGE_SIZE));
+	}
+
+	private void evictQueryCache() {
+		if ("evicted".equals(queryCache))
+			sessionFactory.getCache().evictQueryRegion("coupon.finders");
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(CouponFilterBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
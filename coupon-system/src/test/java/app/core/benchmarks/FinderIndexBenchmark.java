@@ -0,0 +1,267 @@
+package app.core.benchmarks;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import app.core.enums.Category;
+
+/**
+ * Compares latency of the finders of coupons, companies and customers (as SQL
+ * hibernate sends) on the schema before indexes of finders
+ * ({@code V2__versions_status_and_job_tables.sql}) and after them
+ * ({@code V3__finder_indexes.sql}), in embedded database in MySQL mode seeded
+ * with {@code coupons} coupons. Plan of every finder ({@code EXPLAIN}) is
+ * printed on setup.
+ * 
+ * <p>
+ * Run {@link #main} with test classpath (after {@code mvn test-compile}), or
+ * {@code org.openjdk.jmh.Main FinderIndexBenchmark} with JMH options. Seeding
+ * takes a while for each schema.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Threads(1)
+public class FinderIndexBenchmark {
+
+	private static final int COUPONS_PER_COMPANY = 1000;
+	private static final int PURCHASES_PER_CUSTOMER = 20;
+	private static final int CUSTOMERS = 10000;
+	private static final Category[] CATEGORIES = Category.values();
+
+	private static final String COUPON_BY_TITLE = "select * from coupon c where c.company_id = ? and c.title = ? "
+			+ "and c.status = 'ACTIVE'";
+	private static final String COMPANY_COUPONS_BY_CATEGORY = "select * from coupon c where c.company_id = ? "
+			+ "and c.category = ? and c.status = 'ACTIVE' order by c.price, c.id limit 20";
+	private static final String COMPANY_COUPONS_BY_PRICE = "select * from coupon c where c.company_id = ? "
+			+ "and c.price >= ? and c.price < ? and c.status = 'ACTIVE' order by c.price, c.id limit 20";
+	private static final String CUSTOMER_COUPONS = "select c.* from customers_vs_coupons cvc "
+			+ "join coupon c on c.id = cvc.coupon_id where cvc.customer_id = ? and c.status = 'ACTIVE'";
+	private static final String PURCHASERS = "select cvc.customer_id from customers_vs_coupons cvc "
+			+ "where cvc.coupon_id = ?";
+	private static final String COMPANY_BY_NAME = "select * from company c where c.name = ? "
+			+ "or c.email_normalized = ?";
+
+	/** last migration applied: V2 - before indexes of finders, V3 - after */
+	@Param({ "V2", "V3" })
+	private String schema;
+
+	@Param({ "1000000" })
+	private int coupons;
+
+	private Connection connection;
+	private PreparedStatement couponByTitle;
+	private PreparedStatement companyCouponsByCategory;
+	private PreparedStatement companyCouponsByPrice;
+	private PreparedStatement customerCoupons;
+	private PreparedStatement purchasers;
+	private PreparedStatement companyByName;
+	private int companies;
+	private final Random random = new Random(1);
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		connection = DriverManager.getConnection("jdbc:h2:mem:finders_" + schema + ";MODE=MySQL", "sa", "");
+		migrate("V1__baseline.sql");
+		migrate("V2__versions_status_and_job_tables.sql");
+		companies = Math.max(1, coupons / COUPONS_PER_COMPANY);
+		long startedAt = System.nanoTime();
+		seed();
+		if ("V3".equals(schema))
+			migrate("V3__finder_indexes.sql");
+		System.out.printf("%n%s: seeded %d coupons in %d s%n", schema, coupons,
+				TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt));
+
+		couponByTitle = connection.prepareStatement(COUPON_BY_TITLE);
+		companyCouponsByCategory = connection.prepareStatement(COMPANY_COUPONS_BY_CATEGORY);
+		companyCouponsByPrice = connection.prepareStatement(COMPANY_COUPONS_BY_PRICE);
+		customerCoupons = connection.prepareStatement(CUSTOMER_COUPONS);
+		purchasers = connection.prepareStatement(PURCHASERS);
+		companyByName = connection.prepareStatement(COMPANY_BY_NAME);
+
+		explain(COUPON_BY_TITLE, 1, "coupon1");
+		explain(COMPANY_COUPONS_BY_CATEGORY, 1, Category.SPORT.name());
+		explain(COMPANY_COUPONS_BY_PRICE, 1, 10.0, 20.0);
+		explain(CUSTOMER_COUPONS, 1);
+		explain(PURCHASERS, 1);
+		explain(COMPANY_BY_NAME, "company1", "company1@mail.com");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("drop all objects");
+		}
+		connection.close();
+	}
+
+	@Benchmark
+	public int couponByTitle() throws SQLException {
+		int company = 1 + random.nextInt(companies);
+		int coupon = (company - 1) * COUPONS_PER_COMPANY + random.nextInt(COUPONS_PER_COMPANY);
+		couponByTitle.setInt(1, company);
+		couponByTitle.setString(2, "coupon" + coupon);
+		return count(couponByTitle);
+	}
+
+	@Benchmark
+	public int companyCouponsByCategory() throws SQLException {
+		companyCouponsByCategory.setInt(1, 1 + random.nextInt(companies));
+		companyCouponsByCategory.setString(2, CATEGORIES[random.nextInt(CATEGORIES.length)].name());
+		return count(companyCouponsByCategory);
+	}
+
+	@Benchmark
+	public int companyCouponsByPrice() throws SQLException {
+		double minPrice = random.nextInt(90);
+		companyCouponsByPrice.setInt(1, 1 + random.nextInt(companies));
+		companyCouponsByPrice.setDouble(2, minPrice);
+		companyCouponsByPrice.setDouble(3, minPrice + 10);
+		return count(companyCouponsByPrice);
+	}
+
+	@Benchmark
+	public int customerCoupons() throws SQLException {
+		customerCoupons.setInt(1, 1 + random.nextInt(CUSTOMERS));
+		return count(customerCoupons);
+	}
+
+	@Benchmark
+	public int purchasers() throws SQLException {
+		purchasers.setInt(1, 1 + random.nextInt(coupons));
+		return count(purchasers);
+	}
+
+	@Benchmark
+	public int companyByName() throws SQLException {
+		int company = 1 + random.nextInt(companies);
+		companyByName.setString(1, "company" + company);
+		companyByName.setString(2, "company" + company + "@mail.com");
+		return count(companyByName);
+	}
+
+	private void seed() throws SQLException {
+		connection.setAutoCommit(false);
+		try (PreparedStatement company = connection.prepareStatement(
+				"insert into company (name, email, email_normalized, password, version) values (?, ?, ?, 'p', 0)")) {
+			for (int i = 1; i <= companies; i++) {
+				company.setString(1, "company" + i);
+				company.setString(2, "company" + i + "@mail.com");
+				company.setString(3, "company" + i + "@mail.com");
+				company.addBatch();
+			}
+			company.executeBatch();
+		}
+
+		Random seedRandom = new Random(1);
+		Date today = Date.valueOf(LocalDate.now());
+		try (PreparedStatement coupon = connection.prepareStatement("insert into coupon (company_id, category, title, "
+				+ "description, start_date, end_date, amount, price, image, hot, status, version) "
+				+ "values (?, ?, ?, 'description', ?, ?, 100, ?, 'image', false, ?, 0)")) {
+			for (int i = 0; i < coupons; i++) {
+				coupon.setInt(1, 1 + i / COUPONS_PER_COMPANY);
+				coupon.setString(2, CATEGORIES[seedRandom.nextInt(CATEGORIES.length)].name());
+				coupon.setString(3, "coupon" + i);
+				coupon.setDate(4, today);
+				coupon.setDate(5, Date.valueOf(LocalDate.now().plusDays(seedRandom.nextInt(365))));
+				coupon.setDouble(6, seedRandom.nextInt(10000) / 100.0);
+				// few coupons wait for archive
+				coupon.setString(7, seedRandom.nextInt(20) == 0 ? "EXPIRED" : "ACTIVE");
+				coupon.addBatch();
+				if (i % 10000 == 9999) {
+					coupon.executeBatch();
+					connection.commit();
+				}
+			}
+			coupon.executeBatch();
+		}
+
+		try (PreparedStatement customer = connection.prepareStatement("insert into customer (first_name, last_name, "
+				+ "email, email_normalized, password, version) values ('first', 'last', ?, ?, 'p', 0)");
+				PreparedStatement purchase = connection.prepareStatement(
+						"insert into customers_vs_coupons (customer_id, coupon_id) values (?, ?)")) {
+			for (int i = 1; i <= CUSTOMERS; i++) {
+				customer.setString(1, "customer" + i + "@mail.com");
+				customer.setString(2, "customer" + i + "@mail.com");
+				customer.addBatch();
+			}
+			customer.executeBatch();
+			for (int i = 1; i <= CUSTOMERS; i++)
+				for (int n = 0; n < PURCHASES_PER_CUSTOMER; n++) {
+					// distinct coupons of customer
+					purchase.setInt(1, i);
+					purchase.setInt(2, 1 + (int) (((long) i * PURCHASES_PER_CUSTOMER + n) % coupons));
+					purchase.addBatch();
+				}
+			purchase.executeBatch();
+		}
+		connection.commit();
+		connection.setAutoCommit(true);
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("analyze");
+		}
+	}
+
+	private void migrate(String script) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("runscript from 'classpath:db/migration/" + script + "'");
+		}
+	}
+
+	private void explain(String sql, Object... parameters) throws SQLException {
+		try (PreparedStatement explain = connection.prepareStatement("explain " + sql)) {
+			for (int i = 0; i < parameters.length; i++)
+				explain.setObject(i + 1, parameters[i]);
+			try (ResultSet rs = explain.executeQuery()) {
+				rs.next();
+				System.out.printf("%s: %s%n", schema, rs.getString(1).replaceAll("\\s+", " "));
+			}
+		}
+	}
+
+	private static int count(PreparedStatement statement) throws SQLException {
+		int rows = 0;
+		try (ResultSet rs = statement.executeQuery()) {
+			while (rs.next())
+				rows++;
+		}
+		return rows;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(FinderIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,93 @@
+package app.core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import app.core.CouponSystemApplication;
+import app.core.beans.LoginManager;
+import app.core.dto.ClientIdentity;
+import app.core.enums.ClientType;
+import app.core.exceptions.CouponSystemException;
+import app.core.services.AdminService;
+
+/**
+ * Compares login through singleton client services dispatched by
+ * {@link LoginManager} with login through a new client service bean per login
+ * (as it was with prototype scoped services). Administrator login is used, so
+ * the storage is not involved and only the cost of getting client service is
+ * measured.
+ * 
+ * <p>
+ * Run {@link #main} with test classpath (after {@code mvn test-compile}), or
+ * {@code org.openjdk.jmh.Main LoginBenchmark -prof gc} to see allocations too.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LoginBenchmark {
+
+	private ConfigurableApplicationContext ctx;
+	private AutowireCapableBeanFactory beanFactory;
+	private LoginManager loginManager;
+	private String email;
+	private String password;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ctx = SpringApplication.run(CouponSystemApplication.class, "--spring.main.web-application-type=none",
+				"--spring.main.banner-mode=off", "--spring.jpa.show-sql=false");
+		beanFactory = ctx.getAutowireCapableBeanFactory();
+		loginManager = ctx.getBean(LoginManager.class);
+		email = ctx.getEnvironment().getProperty("admin.email");
+		password = ctx.getEnvironment().getProperty("admin.password");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		ctx.close();
+	}
+
+	@Benchmark
+	public ClientIdentity singleton() throws CouponSystemException {
+		return loginManager.login(email, password, ClientType.ADMINISTRATOR);
+	}
+
+	@Benchmark
+	public ClientIdentity beanPerLogin() throws CouponSystemException {
+		// what ctx.getBean() did for prototype scoped service: dependency injection
+		// and transactional proxy for every login
+		AdminService adminService = beanFactory.createBean(AdminService.class);
+		return adminService.login(email, password);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(LoginBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
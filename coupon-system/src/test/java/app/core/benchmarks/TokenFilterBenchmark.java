@@ -0,0 +1,169 @@
+package app.core.benchmarks;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import app.core.enums.ClientType;
+import app.core.filters.TokenFilter;
+import app.core.jwt.JwtUtil;
+import app.core.jwt.UserDetails;
+import app.core.jwt.VerifiedTokenCache;
+import app.core.logging.SamplingTurboFilter;
+import app.core.repositories.RevokedTokenRepository;
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares throughput of {@link TokenFilter} with asynchronous SLF4J logging
+ * (per-request lines enabled and sampled, as configured in
+ * {@code logback-spring.xml}) with the same filter that also prints to
+ * {@code System.out} on every request, as it did before.
+ * 
+ * <p>
+ * Both console and log output go to {@code /dev/null}, so only the cost paid by
+ * request threads is measured.
+ * 
+ * <p>
+ * Run {@link #main} with test classpath (after {@code mvn test-compile}), or
+ * {@code org.openjdk.jmh.Main TokenFilterBenchmark} with JMH options.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class TokenFilterBenchmark {
+
+	private static final String SECRET = "/this+is+my+super+secret+key+even+dont+try+to+crack+it/";
+	private static final FilterChain CHAIN = (request, response) -> {
+	};
+
+	private TokenFilter tokenFilter;
+	private VerifiedTokenCache tokenCache;
+	private String token;
+	private PrintStream console;
+
+	@Setup(Level.Trial)
+	public void setUp() throws FileNotFoundException {
+		configureLogging();
+		console = new PrintStream(new FileOutputStream("/dev/null"), true);
+
+		JwtUtil jwtUtil = new JwtUtil(SECRET, 1000 * 60 * 20);
+		jwtUtil.init();
+		tokenCache = new VerifiedTokenCache(jwtUtil, Mockito.mock(RevokedTokenRepository.class),
+				new SimpleMeterRegistry(), true, 64, 10000, 60000, 1000);
+		tokenCache.start();
+		tokenFilter = new TokenFilter(tokenCache);
+		token = jwtUtil.generateToken(new UserDetails(1, "David", "david@mail.com", ClientType.CUSTOMER));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		tokenCache.stop();
+		((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+	}
+
+	@State(Scope.Thread)
+	public static class Exchange {
+		private MockHttpServletRequest request;
+		private MockHttpServletResponse response;
+
+		@Setup(Level.Iteration)
+		public void setUp(TokenFilterBenchmark benchmark) {
+			request = new MockHttpServletRequest("GET", "/api/customer/get/coupon/all");
+			request.addHeader("token", benchmark.token);
+			response = new MockHttpServletResponse();
+		}
+	}
+
+	@Benchmark
+	public Object slf4j(Exchange exchange) throws IOException, ServletException {
+		tokenFilter.doFilter(exchange.request, exchange.response, CHAIN);
+		return exchange.response;
+	}
+
+	@Benchmark
+	public Object systemOut(Exchange exchange) throws IOException, ServletException {
+		// lines the filter printed on every request before
+		console.println("In filter before if token: " + token);
+		tokenFilter.doFilter(exchange.request, exchange.response, CHAIN);
+		console.println("CUSTOMER FILTER PASS-------------");
+		return exchange.response;
+	}
+
+	private static void configureLogging() throws FileNotFoundException {
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.reset();
+
+		SamplingTurboFilter sampling = new SamplingTurboFilter();
+		sampling.setRate(100);
+		sampling.setContext(context);
+		sampling.start();
+		context.addTurboFilter(sampling);
+
+		PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+		encoder.setContext(context);
+		encoder.setPattern("%d %5p [%t] %logger{39} : %m%n");
+		encoder.start();
+
+		OutputStreamAppender<ILoggingEvent> output = new OutputStreamAppender<>();
+		output.setContext(context);
+		output.setEncoder(encoder);
+		output.setOutputStream(new FileOutputStream("/dev/null"));
+		output.start();
+
+		AsyncAppender async = new AsyncAppender();
+		async.setContext(context);
+		async.setQueueSize(8192);
+		async.setDiscardingThreshold(1024);
+		async.setNeverBlock(true);
+		async.addAppender(output);
+		async.start();
+
+		ch.qos.logback.classic.Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+		root.setLevel(ch.qos.logback.classic.Level.INFO);
+		root.addAppender(async);
+		context.getLogger("app.core.filters").setLevel(ch.qos.logback.classic.Level.DEBUG);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TokenFilterBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
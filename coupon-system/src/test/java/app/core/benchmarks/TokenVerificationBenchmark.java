@@ -0,0 +1,106 @@
+package app.core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import app.core.enums.ClientType;
+import app.core.jwt.ClientPrincipal;
+import app.core.jwt.JwtUtil;
+import app.core.jwt.UserDetails;
+import app.core.jwt.VerifiedTokenCache;
+import app.core.repositories.RevokedTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares verification of repeated JWT tokens with and without
+ * {@link VerifiedTokenCache}.
+ * 
+ * <p>
+ * Run {@link #main} with test classpath (after {@code mvn test-compile}), or
+ * {@code org.openjdk.jmh.Main TokenVerificationBenchmark} with JMH options.
+ * 
+ * @author Vitaly Zlobin
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TokenVerificationBenchmark {
+
+	private static final String SECRET = "/this+is+my+super+secret+key+even+dont+try+to+crack+it/";
+
+	/** count of distinct tokens (sessions) sent repeatedly */
+	@Param({ "100", "10000" })
+	private int sessions;
+
+	private JwtUtil jwtUtil;
+	private VerifiedTokenCache tokenCache;
+	private String[] tokens;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		jwtUtil = new JwtUtil(SECRET, 1000 * 60 * 20);
+		jwtUtil.init();
+		tokenCache = new VerifiedTokenCache(jwtUtil, Mockito.mock(RevokedTokenRepository.class),
+				new SimpleMeterRegistry(), true, 64, 10000, 60000, 1000);
+		tokenCache.start();
+
+		tokens = new String[sessions];
+		for (int i = 0; i < sessions; i++)
+			tokens[i] = jwtUtil.generateToken(new UserDetails(i + 1, "Customer " + (i + 1),
+					"customer" + (i + 1) + "@mail.com", ClientType.CUSTOMER));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		tokenCache.stop();
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		private String nextToken(String[] tokens) {
+			String token = tokens[next];
+			next = next + 1 == tokens.length ? 0 : next + 1;
+			return token;
+		}
+	}
+
+	@Benchmark
+	public ClientPrincipal uncached(Cursor cursor) {
+		return jwtUtil.parseToken(cursor.nextToken(tokens));
+	}
+
+	@Benchmark
+	public ClientPrincipal cached(Cursor cursor) {
+		return tokenCache.verify(cursor.nextToken(tokens));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TokenVerificationBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
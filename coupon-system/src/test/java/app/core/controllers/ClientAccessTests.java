@@ -0,0 +1,93 @@
+package app.core.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import app.core.TestFixtures;
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.entities.Customer;
+import app.core.enums.ClientType;
+import app.core.jwt.ClientPrincipal;
+import app.core.services.CompanyService;
+import app.core.services.CustomerService;
+
+/**
+ * Checks that company and customer act on their own account and coupons only,
+ * and admin requests are served to the administrator only (filters of tokens
+ * are left out).
+ */
+@SpringBootTest
+class ClientAccessTests {
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private WebApplicationContext context;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CustomerService customerService;
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+	}
+
+	@Test
+	void customerActsForItselfOnly() throws Exception {
+		Coupon coupon = fixtures.addCoupon(fixtures.addCompany());
+		Customer customer = fixtures.addCustomer();
+		Customer other = fixtures.addCustomer();
+		ClientPrincipal principal = TestFixtures.principal(customer.getId(), ClientType.CUSTOMER);
+
+		String url = "/api/customer/" + other.getId();
+		assertEquals(403, status(put(url + "/purchase/" + coupon.getId()), principal));
+		assertEquals(403, status(get(url + "/get/details"), principal));
+		assertEquals(403, status(get(url + "/get/coupon/all"), principal));
+		assertEquals(403, status(get(url + "/get/coupon/query"), principal));
+		assertEquals(100, customerService.getOneCoupon(coupon.getId()).getAmount());
+
+		url = "/api/customer/" + customer.getId();
+		assertEquals(200, status(put(url + "/purchase/" + coupon.getId()), principal));
+		assertEquals(200, status(get(url + "/get/coupon/all"), principal));
+		assertEquals(200, status(get("/api/customer/get/coupon?id=" + coupon.getId()), principal));
+	}
+
+	@Test
+	void companyActsOnItsCouponsOnly() throws Exception {
+		Company company = fixtures.addCompany();
+		Coupon coupon = fixtures.addCoupon(fixtures.addCompany());
+		ClientPrincipal principal = TestFixtures.principal(company.getId(), ClientType.COMPANY);
+
+		assertEquals(403, status(get("/api/company/get/coupon?id=" + coupon.getId()), principal));
+		assertEquals(404, status(delete("/api/company/delete/coupon?id=" + coupon.getId()), principal));
+		assertEquals(coupon, companyService.getOneCoupon(coupon.getId()));
+		assertEquals(403, status(get("/api/company/" + coupon.getCompanyId() + "/get/details"), principal));
+		assertEquals(403, status(get("/api/company/" + coupon.getCompanyId() + "/get/coupon/all"), principal));
+
+		assertEquals(200, status(get("/api/company/" + company.getId() + "/get/details"), principal));
+		assertEquals(403, status(get("/api/admin/get/company/all"), principal));
+		assertEquals(200,
+				status(get("/api/admin/get/company/all"), TestFixtures.principal(-1, ClientType.ADMINISTRATOR)));
+	}
+
+	private int status(MockHttpServletRequestBuilder request, ClientPrincipal principal) throws Exception {
+		return mockMvc.perform(request.requestAttr(ClientPrincipal.ATTRIBUTE, principal)).andReturn().getResponse()
+				.getStatus();
+	}
+
+}
@@ -0,0 +1,98 @@
+package app.core.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import app.core.TestFixtures;
+import app.core.entities.Company;
+import app.core.entities.Customer;
+import app.core.enums.ClientType;
+import app.core.jwt.ClientPrincipal;
+import app.core.services.AdminService;
+import app.core.services.CompanyService;
+import app.core.services.CustomerService;
+
+/**
+ * Checks that passwords of companies and customers are never sent to clients,
+ * and that update without password keeps the stored one (filters of tokens are
+ * left out).
+ */
+@SpringBootTest
+class ClientPasswordTests {
+
+	@Autowired
+	private WebApplicationContext context;
+	@Autowired
+	private AdminService adminService;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CustomerService customerService;
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+	}
+
+	@Test
+	void companyPasswordIsWriteOnly() throws Exception {
+		String name = TestFixtures.unique("password");
+		String email = name + "@mail.com";
+		Company company = adminService.addCompany(new Company(0, name, email, "secret"));
+
+		MockHttpServletResponse response = request(get("/api/admin/get/company").param("id", "" + company.getId()));
+		assertEquals(200, response.getStatus());
+		assertFalse(response.getContentAsString().contains("\"password\""), response.getContentAsString());
+
+		String body = "{\"id\":" + company.getId() + ",\"name\":\"" + name + "\",\"email\":\"" + email + "\"";
+		assertEquals(200, request(put("/api/admin/update/company").content(body + "}")).getStatus());
+		assertFalse(request(put("/api/admin/update/company").content(body + "}")).getContentAsString()
+				.contains("\"password\""));
+		assertEquals(200,
+				request(put("/api/admin/update/company").content(body + ",\"password\":null}")).getStatus());
+		assertEquals(company.getId(), companyService.login(email, "secret").getId());
+
+		assertEquals(200,
+				request(put("/api/admin/update/company").content(body + ",\"password\":\"changed\"}")).getStatus());
+		assertEquals(company.getId(), companyService.login(email, "changed").getId());
+		assertNull(companyService.login(email, "secret"));
+	}
+
+	@Test
+	void customerPasswordIsWriteOnly() throws Exception {
+		String email = TestFixtures.email();
+		Customer customer = adminService.addCustomer(new Customer(0, "first", "last", email, "secret"));
+
+		MockHttpServletResponse response = request(get("/api/admin/get/customer").param("id", "" + customer.getId()));
+		assertEquals(200, response.getStatus());
+		assertFalse(response.getContentAsString().contains("\"password\""), response.getContentAsString());
+
+		String body = "{\"id\":" + customer.getId() + ",\"firstName\":\"other\",\"lastName\":\"last\",\"email\":\""
+				+ email + "\"}";
+		assertEquals(200, request(put("/api/admin/update/customer").content(body)).getStatus());
+		assertEquals(customer.getId(), customerService.login(email, "secret").getId());
+	}
+
+	private MockHttpServletResponse request(MockHttpServletRequestBuilder request) throws Exception {
+		ClientPrincipal admin = TestFixtures.principal(-1, ClientType.ADMINISTRATOR);
+		return mockMvc.perform(request.requestAttr(ClientPrincipal.ATTRIBUTE, admin)
+				.contentType(MediaType.APPLICATION_JSON)).andReturn().getResponse();
+	}
+
+}
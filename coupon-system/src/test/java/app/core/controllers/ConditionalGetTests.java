@@ -0,0 +1,127 @@
+package app.core.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import app.core.StatementCounter;
+import app.core.TestFixtures;
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.entities.Customer;
+import app.core.enums.ClientType;
+import app.core.jwt.ClientPrincipal;
+import app.core.services.CompanyService;
+import app.core.services.CustomerService;
+
+/**
+ * Checks that lists of coupons are tagged by versions of the catalog, of
+ * company and of customer, revalidated without touching the storage, and
+ * changed only by changes they show (filters of tokens are left out).
+ */
+@SpringBootTest
+class ConditionalGetTests {
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private WebApplicationContext context;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CustomerService customerService;
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+	}
+
+	@Test
+	void catalogIsRevalidatedWithoutStorage() throws Exception {
+		Company company = fixtures.addCompany();
+		fixtures.addCoupon(company, "first");
+		ClientPrincipal customer = TestFixtures.principal(fixtures.addCustomer().getId(), ClientType.CUSTOMER);
+
+		MockHttpServletResponse response = request(customer, "/api/customer/get/coupon/all", null);
+		assertEquals(200, response.getStatus());
+		String etag = response.getHeader(HttpHeaders.ETAG);
+		assertNotNull(etag);
+		assertEquals(1, response.getHeaders(HttpHeaders.ETAG).size());
+		assertTrue(response.getHeader(HttpHeaders.CACHE_CONTROL).contains("max-age="));
+
+		long statements = StatementCounter.count();
+		response = request(customer, "/api/customer/get/coupon/all?view=SUMMARY", etag);
+		assertEquals(304, response.getStatus());
+		assertEquals("", response.getContentAsString());
+		assertEquals(statements, StatementCounter.count());
+
+		fixtures.addCoupon(company, "second");
+		response = request(customer, "/api/customer/get/coupon/all", etag);
+		assertEquals(200, response.getStatus());
+		assertNotEquals(etag, response.getHeader(HttpHeaders.ETAG));
+	}
+
+	@Test
+	void listsChangeByTheirChangesOnly() throws Exception {
+		Company company = fixtures.addCompany();
+		Company other = fixtures.addCompany();
+		Coupon coupon = fixtures.addCoupon(company, "coupon");
+		Customer customer = fixtures.addCustomer();
+		Customer otherCustomer = fixtures.addCustomer();
+		customerService.purchaseCoupon(customer.getId(), coupon.getId());
+
+		ClientPrincipal companyPrincipal = TestFixtures.principal(company.getId(), ClientType.COMPANY);
+		ClientPrincipal customerPrincipal = TestFixtures.principal(customer.getId(), ClientType.CUSTOMER);
+		ClientPrincipal otherCustomerPrincipal = TestFixtures.principal(otherCustomer.getId(), ClientType.CUSTOMER);
+		String companyCoupons = "/api/company/" + company.getId() + "/get/coupon/all";
+		String customerCoupons = "/api/customer/" + customer.getId() + "/get/coupon/all";
+		String otherCustomerCoupons = "/api/customer/" + otherCustomer.getId() + "/get/coupon/query";
+		String companyTag = request(companyPrincipal, companyCoupons, null).getHeader(HttpHeaders.ETAG);
+		String customerTag = request(customerPrincipal, customerCoupons, null).getHeader(HttpHeaders.ETAG);
+		String otherCustomerTag = request(otherCustomerPrincipal, otherCustomerCoupons, null)
+				.getHeader(HttpHeaders.ETAG);
+
+		// coupon of other company is not shown by these lists
+		fixtures.addCoupon(other, "other");
+		assertEquals(304, request(companyPrincipal, companyCoupons, companyTag).getStatus());
+		assertEquals(304, request(customerPrincipal, customerCoupons, customerTag).getStatus());
+
+		// stock of purchased coupon is shown by the customer
+		customerService.purchaseCoupon(otherCustomer.getId(), coupon.getId());
+		assertEquals(200, request(companyPrincipal, companyCoupons, companyTag).getStatus());
+		assertEquals(200, request(customerPrincipal, customerCoupons, customerTag).getStatus());
+		assertEquals(200, request(otherCustomerPrincipal, otherCustomerCoupons, otherCustomerTag).getStatus());
+
+		companyTag = request(companyPrincipal, companyCoupons, null).getHeader(HttpHeaders.ETAG);
+		// purchased coupon is updated from a fresh copy (with current version)
+		coupon = companyService.getOneCoupon(coupon.getId());
+		coupon.setTitle("updated");
+		companyService.updateCoupon(company.getId(), coupon);
+		MockHttpServletResponse response = request(companyPrincipal, companyCoupons, companyTag);
+		assertEquals(200, response.getStatus());
+		assertTrue(response.getContentAsString().contains("updated"));
+	}
+
+	private MockHttpServletResponse request(ClientPrincipal principal, String url, String ifNoneMatch)
+			throws Exception {
+		return mockMvc.perform(ifNoneMatch == null ? get(url).requestAttr(ClientPrincipal.ATTRIBUTE, principal)
+				: get(url).requestAttr(ClientPrincipal.ATTRIBUTE, principal).header(HttpHeaders.IF_NONE_MATCH,
+						ifNoneMatch))
+				.andReturn().getResponse();
+	}
+
+}
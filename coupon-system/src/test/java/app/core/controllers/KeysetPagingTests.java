@@ -0,0 +1,93 @@
+package app.core.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import app.core.TestFixtures;
+import app.core.entities.Company;
+import app.core.enums.ClientType;
+import app.core.jwt.ClientPrincipal;
+
+/**
+ * Checks keyset paging of coupon lists: cursor of the next page is sent in
+ * {@code X-Next-Cursor} header until the last page, and invalid cursor is a
+ * bad request (filters of tokens are left out).
+ */
+@SpringBootTest
+class KeysetPagingTests {
+
+	@Autowired
+	private WebApplicationContext context;
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+	}
+
+	@Test
+	void pagesAreFollowedByNextCursorUntilLastPage() throws Exception {
+		Company company = fixtures.addCompany();
+		for (int i = 0; i < 3; i++)
+			fixtures.addCoupon(company, "page" + i);
+		ClientPrincipal principal = TestFixtures.principal(company.getId(), ClientType.COMPANY);
+		String url = "/api/company/" + company.getId() + "/get/coupon/query";
+
+		MockHttpServletResponse first = request(get(url).param("size", "2"), principal);
+		assertEquals(200, first.getStatus());
+		assertEquals(2, objectMapper.readTree(first.getContentAsString()).size());
+		String cursor = first.getHeader(CustomerController.NEXT_CURSOR_HEADER);
+		assertNotNull(cursor);
+
+		MockHttpServletResponse last = request(get(url).param("size", "2").param("cursor", cursor), principal);
+		assertEquals(200, last.getStatus());
+		assertEquals(1, objectMapper.readTree(last.getContentAsString()).size());
+		assertNull(last.getHeader(CustomerController.NEXT_CURSOR_HEADER));
+	}
+
+	@Test
+	void invalidCursorIsBadRequest() throws Exception {
+		Company company = fixtures.addCompany();
+		fixtures.addCoupon(company, "first");
+		fixtures.addCoupon(company, "second");
+		ClientPrincipal principal = TestFixtures.principal(company.getId(), ClientType.COMPANY);
+		String url = "/api/company/" + company.getId() + "/get/coupon/query";
+		String cursor = request(get(url).param("size", "1"), principal)
+				.getHeader(CustomerController.NEXT_CURSOR_HEADER);
+
+		assertEquals(400, request(get(url).param("cursor", "not a cursor"), principal).getStatus());
+		// cursor of other order
+		assertEquals(400, request(get(url).param("sort", "END_DATE").param("cursor", cursor), principal).getStatus());
+
+		ClientPrincipal customer = TestFixtures.principal(fixtures.addCustomer().getId(), ClientType.CUSTOMER);
+		assertEquals(400, request(get("/api/customer/get/coupon/all").param("cursor", "not a cursor"), customer)
+				.getStatus());
+		assertEquals(400, request(get("/api/customer/" + customer.getId() + "/get/coupon/query").param("cursor",
+				"bm90OmEgY3Vyc29y"), customer).getStatus());
+	}
+
+	private MockHttpServletResponse request(MockHttpServletRequestBuilder request, ClientPrincipal principal)
+			throws Exception {
+		return mockMvc.perform(request.requestAttr(ClientPrincipal.ATTRIBUTE, principal)).andReturn().getResponse();
+	}
+
+}
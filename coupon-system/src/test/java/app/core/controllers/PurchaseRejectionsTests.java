@@ -0,0 +1,49 @@
+package app.core.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import app.core.enums.RejectionReason;
+import app.core.exceptions.CouponSystemException;
+import app.core.exceptions.PurchaseRejectedException;
+import app.core.exceptions.ServiceBusyException;
+
+/**
+ * Checks that failed purchase is answered by status of its reason, and only
+ * purchase that may be retried is answered with {@code Retry-After}.
+ */
+class PurchaseRejectionsTests {
+
+	@Test
+	void statusFollowsReasonOfRejection() {
+		assertStatus(HttpStatus.NOT_FOUND, new PurchaseRejectedException(RejectionReason.NOT_FOUND, "not found"));
+		assertStatus(HttpStatus.CONFLICT, new PurchaseRejectedException(RejectionReason.OUT_OF_STOCK, "out of stock"));
+		assertStatus(HttpStatus.CONFLICT, new PurchaseRejectedException(RejectionReason.EXPIRED, "expired"));
+		assertStatus(HttpStatus.CONFLICT,
+				new PurchaseRejectedException(RejectionReason.ALREADY_PURCHASED, "already purchased"));
+		assertStatus(HttpStatus.BAD_REQUEST, new CouponSystemException("failed"));
+	}
+
+	@Test
+	void retryableRejectionIsAnsweredWithRetryAfter() {
+		for (Exception e : new Exception[] { new PurchaseRejectedException(RejectionReason.UNAVAILABLE, "unavailable"),
+				new ServiceBusyException("busy") }) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE, PurchaseRejections.toStatus(e, response).getStatus());
+			assertEquals(String.valueOf(PurchaseRejections.RETRY_AFTER_SECONDS),
+					response.getHeader(HttpHeaders.RETRY_AFTER));
+		}
+	}
+
+	private static void assertStatus(HttpStatus status, Exception e) {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertEquals(status, PurchaseRejections.toStatus(e, response).getStatus());
+		assertNull(response.getHeader(HttpHeaders.RETRY_AFTER));
+	}
+
+}
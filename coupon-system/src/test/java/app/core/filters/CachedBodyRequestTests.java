@@ -0,0 +1,75 @@
+package app.core.filters;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * Checks that body read by a filter is read again through input stream, reader
+ * and read listener, and that body longer than max length is not read.
+ */
+class CachedBodyRequestTests {
+
+	private static final String BODY = "{\"email\":\"david@mail.com\"}";
+
+	@Test
+	void bodyIsReadAgain() throws IOException {
+		MockHttpServletRequest request = request(BODY);
+		byte[] body = CachedBodyRequest.readBody(request, 1024);
+		assertArrayEquals(BODY.getBytes(StandardCharsets.UTF_8), body);
+
+		CachedBodyRequest cached = new CachedBodyRequest(request, body);
+		assertArrayEquals(body, cached.getInputStream().readAllBytes());
+		assertEquals(BODY, cached.getReader().readLine());
+	}
+
+	@Test
+	void readListenerIsToldWholeBodyIsAvailable() throws IOException {
+		CachedBodyRequest cached = new CachedBodyRequest(request(BODY), BODY.getBytes(StandardCharsets.UTF_8));
+		ServletInputStream input = cached.getInputStream();
+		List<String> events = new ArrayList<>();
+		input.setReadListener(new ReadListener() {
+
+			@Override
+			public void onDataAvailable() throws IOException {
+				events.add(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+			}
+
+			@Override
+			public void onAllDataRead() {
+				events.add("all");
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				events.add("error");
+			}
+		});
+		assertEquals(List.of(BODY, "all"), events);
+		assertTrue(input.isFinished());
+	}
+
+	@Test
+	void bodyLongerThanMaxLengthIsNotRead() throws IOException {
+		assertNull(CachedBodyRequest.readBody(request(BODY), BODY.length() - 1));
+	}
+
+	private static MockHttpServletRequest request(String body) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/login");
+		request.setContent(body.getBytes(StandardCharsets.UTF_8));
+		return request;
+	}
+
+}
@@ -0,0 +1,97 @@
+package app.core.filters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import app.core.TestFixtures;
+import app.core.beans.IdempotencyStore;
+import app.core.enums.ClientType;
+import app.core.jwt.ClientPrincipal;
+
+/**
+ * Checks that retry with {@code Idempotency-Key} header is answered by the
+ * stored response only for the same client and the same body, and that body
+ * too large to be buffered is rejected.
+ */
+@SpringBootTest
+class IdempotencyFilterTests {
+
+	@Autowired
+	private WebApplicationContext context;
+	@Autowired
+	private IdempotencyStore idempotencyStore;
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		mockMvc = MockMvcBuilders.webAppContextSetup(context).addFilters(new IdempotencyFilter(idempotencyStore))
+				.build();
+	}
+
+	@Test
+	void retryIsReplayedForSameClientAndBody() throws Exception {
+		String key = TestFixtures.unique("key");
+		String body = company();
+		MockHttpServletResponse first = addCompany(admin(-1), key, body);
+		assertEquals(201, first.getStatus());
+		assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+
+		MockHttpServletResponse retry = addCompany(admin(-1), key, body);
+		assertEquals(201, retry.getStatus());
+		assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+		assertEquals(first.getContentAsString(), retry.getContentAsString());
+	}
+
+	@Test
+	void retryWithOtherBodyIsRejected() throws Exception {
+		String key = TestFixtures.unique("key");
+		assertEquals(201, addCompany(admin(-1), key, company()).getStatus());
+		assertEquals(422, addCompany(admin(-1), key, company()).getStatus());
+	}
+
+	@Test
+	void keyIsScopedByClient() throws Exception {
+		String key = TestFixtures.unique("key");
+		String body = company();
+		assertEquals(201, addCompany(admin(-1), key, body).getStatus());
+
+		// executed again (same company is rejected), not replayed
+		MockHttpServletResponse other = addCompany(admin(-2), key, body);
+		assertEquals(400, other.getStatus());
+		assertNull(other.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+	}
+
+	@Test
+	void tooLargeBodyIsRejected() throws Exception {
+		String body = "{\"name\":\"" + "n".repeat(IdempotencyFilter.MAX_BODY) + "\"}";
+		assertEquals(413, addCompany(admin(-1), TestFixtures.unique("key"), body).getStatus());
+	}
+
+	private MockHttpServletResponse addCompany(ClientPrincipal principal, String key, String body) throws Exception {
+		return mockMvc.perform(post("/api/admin/add/company").requestAttr(ClientPrincipal.ATTRIBUTE, principal)
+				.header(IdempotencyFilter.HEADER, key).contentType(MediaType.APPLICATION_JSON).content(body))
+				.andReturn().getResponse();
+	}
+
+	private static String company() {
+		String name = TestFixtures.unique("idempotent");
+		return "{\"name\":\"" + name + "\",\"email\":\"" + name + "@mail.com\",\"password\":\"p\"}";
+	}
+
+	private static ClientPrincipal admin(int id) {
+		return TestFixtures.principal(id, ClientType.ADMINISTRATOR);
+	}
+
+}
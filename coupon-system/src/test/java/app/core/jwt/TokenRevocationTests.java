@@ -0,0 +1,52 @@
+package app.core.jwt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import app.core.enums.ClientType;
+import app.core.repositories.RevokedTokenRepository;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checks that token revoked on one node is rejected by other node, that shares
+ * the storage, once it reads revoked tokens.
+ */
+@SpringBootTest
+class TokenRevocationTests {
+
+	@Autowired
+	private JwtUtil jwtUtil;
+	@Autowired
+	private RevokedTokenRepository revokedTokenRepository;
+
+	@Test
+	void tokenRevokedOnOneNodeIsRejectedByOtherNode() {
+		VerifiedTokenCache node = node();
+		VerifiedTokenCache other = node();
+		String token = jwtUtil
+				.generateToken(new UserDetails(1, "Customer 1", "customer1@mail.com", ClientType.CUSTOMER));
+		assertEquals(1, other.verify(token).getId());
+
+		node.revoke(token);
+		assertThrows(JwtException.class, () -> node.verify(token));
+		// still cached by the other node until it reads revoked tokens
+		assertEquals(1, other.verify(token).getId());
+
+		other.sync();
+		assertThrows(JwtException.class, () -> other.verify(token));
+		assertThrows(JwtException.class, () -> node().verify(token));
+	}
+
+	private VerifiedTokenCache node() {
+		VerifiedTokenCache node = new VerifiedTokenCache(jwtUtil, revokedTokenRepository, new SimpleMeterRegistry(),
+				true, 4, 8, 60000, 60000);
+		node.sync();
+		return node;
+	}
+
+}
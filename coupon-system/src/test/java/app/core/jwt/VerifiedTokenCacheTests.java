@@ -0,0 +1,82 @@
+package app.core.jwt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import app.core.enums.ClientType;
+import app.core.repositories.RevokedTokenRepository;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checks that verified tokens are served from the cache, that the cache is
+ * bounded by its entries per stripe and that revoked tokens are rejected.
+ */
+class VerifiedTokenCacheTests {
+
+	private static final String SECRET = "/this+is+my+super+secret+key+even+dont+try+to+crack+it/";
+
+	private JwtUtil jwtUtil;
+	private SimpleMeterRegistry meterRegistry;
+	private VerifiedTokenCache tokenCache;
+
+	@BeforeEach
+	void setUp() {
+		jwtUtil = new JwtUtil(SECRET, 1000 * 60 * 20);
+		jwtUtil.init();
+		meterRegistry = new SimpleMeterRegistry();
+		// 4 stripes of 2 entries
+		tokenCache = new VerifiedTokenCache(jwtUtil, Mockito.mock(RevokedTokenRepository.class), meterRegistry, true, 4,
+				8, 60000, 60000);
+		tokenCache.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		tokenCache.stop();
+	}
+
+	@Test
+	void repeatedTokenIsVerifiedOnce() {
+		String token = token(1);
+		assertEquals(1, tokenCache.verify(token).getId());
+		assertEquals(1, tokenCache.verify(token).getId());
+		assertEquals(1, count("jwt.cache.requests", "result", "hit"));
+		assertEquals(1, count("jwt.cache.requests", "result", "miss"));
+	}
+
+	@Test
+	void cacheIsBoundedPerStripe() {
+		for (int i = 1; i <= 100; i++)
+			tokenCache.verify(token(i));
+
+		double size = meterRegistry.get("jwt.cache.size").gauge().value();
+		assertTrue(size <= 8, "size " + size);
+		assertEquals(100 - size, count("jwt.cache.evictions", "cause", "size"));
+	}
+
+	@Test
+	void revokedTokenIsRejected() {
+		String token = token(1);
+		tokenCache.verify(token);
+		tokenCache.revoke(token);
+		assertThrows(JwtException.class, () -> tokenCache.verify(token));
+		assertEquals(1, count("jwt.cache.evictions", "cause", "revoked"));
+	}
+
+	private String token(int id) {
+		return jwtUtil.generateToken(
+				new UserDetails(id, "Customer " + id, "customer" + id + "@mail.com", ClientType.CUSTOMER));
+	}
+
+	private double count(String name, String tag, String value) {
+		return meterRegistry.get(name).tag(tag, value).counter().count();
+	}
+
+}
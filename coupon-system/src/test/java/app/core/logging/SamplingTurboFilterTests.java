@@ -0,0 +1,71 @@
+package app.core.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Checks that only one of every {@code rate} marked events is let through, and
+ * that unmarked events and events of disabled levels are not sampled.
+ */
+class SamplingTurboFilterTests {
+
+	private SamplingTurboFilter filter;
+	private Logger logger;
+
+	@BeforeEach
+	void setUp() {
+		filter = new SamplingTurboFilter();
+		filter.setRate(10);
+		logger = new LoggerContext().getLogger("test");
+		logger.setLevel(Level.DEBUG);
+	}
+
+	@Test
+	void oneOfRateMarkedEventsIsLogged() {
+		assertEquals(10, passed(SamplingTurboFilter.SAMPLED, Level.DEBUG, 100));
+		// the first of every rate events
+		assertEquals(FilterReply.NEUTRAL, decide(SamplingTurboFilter.SAMPLED, Level.DEBUG));
+		assertEquals(FilterReply.DENY, decide(SamplingTurboFilter.SAMPLED, Level.DEBUG));
+	}
+
+	@Test
+	void unmarkedEventsAreNotSampled() {
+		assertEquals(100, passed(null, Level.DEBUG, 100));
+	}
+
+	@Test
+	void eventsOfDisabledLevelAreNotCounted() {
+		logger.setLevel(Level.INFO);
+		assertEquals(100, passed(SamplingTurboFilter.SAMPLED, Level.DEBUG, 100));
+
+		logger.setLevel(Level.DEBUG);
+		assertEquals(FilterReply.NEUTRAL, decide(SamplingTurboFilter.SAMPLED, Level.DEBUG));
+	}
+
+	@Test
+	void rateOfOneLogsEveryEvent() {
+		filter.setRate(1);
+		assertEquals(100, passed(SamplingTurboFilter.SAMPLED, Level.DEBUG, 100));
+	}
+
+	private int passed(Marker marker, Level level, int events) {
+		int passed = 0;
+		for (int i = 0; i < events; i++)
+			if (decide(marker, level) == FilterReply.NEUTRAL)
+				passed++;
+		return passed;
+	}
+
+	private FilterReply decide(Marker marker, Level level) {
+		return filter.decide(marker, logger, level, "request passed: {} {}", null, null);
+	}
+
+}
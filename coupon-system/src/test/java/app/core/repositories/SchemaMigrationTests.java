@@ -0,0 +1,132 @@
+package app.core.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+/**
+ * Checks that the schema migrated by the scripts of {@code db/migration} has
+ * the same tables, columns, indexes and unique keys as the schema hibernate
+ * creates from the entities, both when created from scratch and when upgraded
+ * by flyway from existing schema baselined at version 1.
+ */
+@SpringBootTest
+class SchemaMigrationTests {
+
+	private static final String BASELINE = "db/migration/V1__baseline.sql";
+	private static final String[] MIGRATIONS = { BASELINE, "db/migration/V2__versions_status_and_job_tables.sql",
+			"db/migration/V3__finder_indexes.sql", "db/migration/V4__idempotency_request_hash.sql",
+			"db/migration/V5__revoked_token.sql" };
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	void migrationsMatchEntities() throws SQLException {
+		try (Connection entities = dataSource.getConnection();
+				Connection migrated = DriverManager.getConnection("jdbc:h2:mem:migrated;MODE=MySQL", "sa", "")) {
+			for (String migration : MIGRATIONS)
+				ScriptUtils.executeSqlScript(migrated, new ClassPathResource(migration));
+
+			assertEquals(columns(entities), columns(migrated));
+			Set<String> indexes = indexes(entities);
+			assertTrue(indexes.contains("CUSTOMERS_VS_COUPONS unique(CUSTOMER_ID, COUPON_ID)"), indexes.toString());
+			assertEquals(indexes, indexes(migrated));
+		}
+	}
+
+	@Test
+	void baselinedSchemaIsUpgradedToEntities() throws SQLException {
+		String url = "jdbc:h2:mem:baselined;MODE=MySQL";
+		try (Connection entities = dataSource.getConnection();
+				Connection baselined = DriverManager.getConnection(url, "sa", "")) {
+			// schema created by ddl-auto from the entities before the schema was versioned, with rows
+			ScriptUtils.executeSqlScript(baselined, new ClassPathResource(BASELINE));
+			try (Statement statement = baselined.createStatement()) {
+				statement.executeUpdate("insert into company (id, email, name, password) "
+						+ "values (1, ' Company@Mail.com ', 'company', 'password')");
+				statement.executeUpdate("insert into customer (id, email, first_name, last_name, password) "
+						+ "values (1, 'Customer@Mail.com', 'first', 'last', 'password')");
+				statement.executeUpdate("insert into coupon (id, amount, category, company_id, description, end_date, "
+						+ "image, price, start_date, title) values (1, 10, 'SPORT', 1, 'description', '2030-01-01', "
+						+ "'image', 9.99, '2020-01-01', 'title')");
+				statement.executeUpdate("insert into customers_vs_coupons (customer_id, coupon_id) values (1, 1)");
+			}
+
+			Flyway flyway = Flyway.configure().dataSource(url, "sa", "").locations("classpath:db/migration")
+					.baselineOnMigrate(true).baselineVersion("1").load();
+			// every version after the baseline
+			assertEquals(MIGRATIONS.length - 1, flyway.migrate().migrationsExecuted);
+			assertEquals(columns(entities), columns(baselined));
+			assertEquals(indexes(entities), indexes(baselined));
+			try (ResultSet rs = baselined.createStatement().executeQuery("select co.email_normalized, co.version, "
+					+ "cu.email_normalized, c.status, c.hot from company co, customer cu, coupon c")) {
+				assertTrue(rs.next());
+				assertEquals("company@mail.com", rs.getString(1));
+				assertEquals(0, rs.getLong(2));
+				assertEquals("customer@mail.com", rs.getString(3));
+				assertEquals("ACTIVE", rs.getString(4));
+				assertFalse(rs.getBoolean(5));
+			}
+		}
+	}
+
+	// tables of the entities (without the history of flyway)
+	private static Set<String> columns(Connection connection) throws SQLException {
+		Set<String> columns = new TreeSet<>();
+		try (ResultSet rs = connection.createStatement()
+				.executeQuery("select table_name, column_name from information_schema.columns "
+						+ "where table_schema = 'PUBLIC' and lower(table_name) <> 'flyway_schema_history'")) {
+			while (rs.next())
+				columns.add(rs.getString(1) + "." + rs.getString(2));
+		}
+		return columns;
+	}
+
+	// declared indexes and unique keys, by columns (names of unique indexes are suffixed by database, primary and
+	// foreign keys are named by hibernate)
+	private static Set<String> indexes(Connection connection) throws SQLException {
+		Set<String> indexes = new TreeSet<>();
+		try (ResultSet rs = connection.createStatement().executeQuery(
+				"select table_name, index_name, column_name, non_unique from information_schema.indexes "
+						+ "where table_schema = 'PUBLIC' and (index_name like 'IDX_%' or index_name like 'UK_%') "
+						+ "order by table_name, index_name, ordinal_position")) {
+			String index = null;
+			StringBuilder columns = new StringBuilder();
+			while (rs.next()) {
+				String name = rs.getString(1) + "." + rs.getString(2);
+				if (!name.equals(index)) {
+					if (index != null)
+						indexes.add(columns.append(")").toString());
+					index = name;
+					columns.setLength(0);
+					columns.append(rs.getString(1)).append(rs.getBoolean(4) ? "(" : " unique(");
+				} else {
+					columns.append(", ");
+				}
+				columns.append(rs.getString(3));
+			}
+			if (index != null)
+				indexes.add(columns.append(")").toString());
+		}
+		return indexes;
+	}
+
+}
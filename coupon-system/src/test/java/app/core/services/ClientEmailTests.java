@@ -0,0 +1,82 @@
+package app.core.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import app.core.TestFixtures;
+import app.core.entities.Company;
+import app.core.entities.Customer;
+import app.core.exceptions.CouponSystemException;
+import app.core.repositories.CompanyRepository;
+import app.core.repositories.CustomerRepository;
+
+/**
+ * Checks that companies and customers are looked up by normalized email: login
+ * ignores case and surrounding spaces, emails that differ in case only are
+ * rejected by the unique keys, and update of email updates the normalized one.
+ */
+@SpringBootTest
+class ClientEmailTests {
+
+	@Autowired
+	private AdminService adminService;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CustomerService customerService;
+	@Autowired
+	private CompanyRepository companyRepository;
+	@Autowired
+	private CustomerRepository customerRepository;
+
+	@Test
+	void loginIgnoresCaseOfEmail() throws Exception {
+		String name = TestFixtures.unique("Mixed");
+		Company company = adminService.addCompany(new Company(0, name, name + "@Mail.com", "secret"));
+		assertEquals(company.getId(), companyService.login(" " + name.toUpperCase() + "@MAIL.com ", "secret").getId());
+
+		String email = TestFixtures.unique("Mixed") + "@Mail.com";
+		Customer customer = adminService.addCustomer(new Customer(0, "first", "last", email, "secret"));
+		assertEquals(customer.getId(), customerService.login(email.toLowerCase(), "secret").getId());
+		assertNull(customerService.login(email.toLowerCase(), "other"));
+	}
+
+	@Test
+	void emailThatDiffersInCaseOnlyIsRejected() throws Exception {
+		String name = TestFixtures.unique("case");
+		adminService.addCompany(new Company(0, name, name + "@mail.com", "p"));
+		assertThrows(CouponSystemException.class,
+				() -> adminService.addCompany(new Company(0, name + "other", name + "@MAIL.com", "p")));
+		// by the unique key too, when the service is bypassed
+		assertThrows(DataIntegrityViolationException.class, () -> companyRepository
+				.saveAndFlush(new Company(0, name + "other", name.toUpperCase() + "@mail.com", "p")));
+
+		String email = TestFixtures.email();
+		adminService.addCustomer(new Customer(0, "first", "last", email, "p"));
+		assertThrows(CouponSystemException.class,
+				() -> adminService.addCustomer(new Customer(0, "first", "last", email.toUpperCase(), "p")));
+		assertThrows(DataIntegrityViolationException.class, () -> customerRepository
+				.saveAndFlush(new Customer(0, "first", "last", email.toUpperCase(), "p")));
+	}
+
+	@Test
+	void updateOfEmailUpdatesNormalizedEmail() throws Exception {
+		String email = TestFixtures.email();
+		Customer customer = adminService.addCustomer(new Customer(0, "first", "last", email, "p"));
+
+		String changed = TestFixtures.unique("Changed") + "@Mail.com";
+		customer.setEmail(changed);
+		adminService.updateCustomer(customer);
+
+		assertEquals(changed.toLowerCase(), customerRepository.findById(customer.getId()).get().getEmailNormalized());
+		assertEquals(customer.getId(), customerRepository.findByEmailNormalized(changed.toLowerCase()).getId());
+		assertNull(customerRepository.findByEmailNormalized(email));
+	}
+
+}
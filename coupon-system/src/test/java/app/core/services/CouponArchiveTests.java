@@ -0,0 +1,112 @@
+package app.core.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import app.core.TestFixtures;
+import app.core.beans.LeaderElection;
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.entities.Customer;
+import app.core.exceptions.CouponSystemException;
+import app.core.repositories.CouponRepository;
+import app.core.services.DailyJobService.ChunkResult;
+
+/**
+ * Checks that expired coupons are hidden from every query of coupons and then
+ * moved to the archive with their purchase records.
+ */
+@SpringBootTest
+class CouponArchiveTests {
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private AdminService adminService;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CustomerService customerService;
+	@Autowired
+	private DailyJobService dailyJobService;
+	@Autowired
+	private CouponRepository couponRepository;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void expiredCouponIsHiddenAndArchivedWithPurchases() throws Exception {
+		Company company = fixtures.addCompany();
+		Coupon active = fixtures.addCoupon(company, "active");
+		Coupon expired = fixtures.addCoupon(company, "expired");
+		Customer customer = fixtures.addCustomer();
+		customerService.purchaseCoupon(customer.getId(), active.getId());
+		customerService.purchaseCoupon(customer.getId(), expired.getId());
+
+		endYesterday(expired);
+		ChunkResult result = dailyJobService.expireCoupons(LocalDate.now(), List.of(active.getId(), expired.getId()),
+				LeaderElection.UNFENCED);
+		assertEquals(1, result.getCoupons());
+
+		// hidden from finders, loads by id and collections
+		assertEquals(List.of(active), companyService.getAllCompanyCoupons(company.getId()));
+		assertEquals(List.of(active), customerService.getAllCustomerCoupons(customer.getId()));
+		assertEquals(List.of(active), adminService.getOneCustomerWithCoupons(customer.getId()).getCoupons());
+		assertEquals(List.of(active), adminService.getOneCompanyWithCoupons(company.getId()).getCoupons());
+		assertTrue(couponRepository.findById(expired.getId()).isEmpty());
+		assertThrows(CouponSystemException.class,
+				() -> customerService.purchaseCoupon(fixtures.addCustomer().getId(), expired.getId()));
+
+		moveAll();
+		assertEquals(0, count("select count(*) from coupon where id = ?", expired.getId()));
+		assertEquals(1, count("select count(*) from coupon_archive where id = ?", expired.getId()));
+		assertEquals(1, count(
+				"select count(*) from customers_vs_coupons_archive where customer_id = ? and coupon_id = ?",
+				customer.getId(), expired.getId()));
+		assertEquals(0, count("select count(*) from customers_vs_coupons where coupon_id = ?", expired.getId()));
+		assertEquals(1, count("select count(*) from customers_vs_coupons where coupon_id = ?", active.getId()));
+		assertEquals(0, dailyJobService.archiveExpiredCoupons(100, LeaderElection.UNFENCED).getCoupons());
+	}
+
+	@Test
+	void deletedCompanyExpiredCouponsAreArchived() throws Exception {
+		Company company = fixtures.addCompany();
+		Coupon expired = fixtures.addCoupon(company, "expired");
+		Customer customer = fixtures.addCustomer();
+		customerService.purchaseCoupon(customer.getId(), expired.getId());
+		endYesterday(expired);
+		dailyJobService.expireCoupons(LocalDate.now(), List.of(expired.getId()), LeaderElection.UNFENCED);
+
+		adminService.deleteCustomer(customer.getId());
+		adminService.deleteCompany(company.getId());
+		assertEquals(0, count("select count(*) from coupon where id = ?", expired.getId()));
+		assertEquals(1, count("select count(*) from coupon_archive where id = ?", expired.getId()));
+		assertEquals(1, count("select count(*) from customers_vs_coupons_archive where coupon_id = ?",
+				expired.getId()));
+	}
+
+	private void moveAll() throws CouponSystemException {
+		while (dailyJobService.archiveExpiredCoupons(100, LeaderElection.UNFENCED).getCoupons() == 100)
+			;
+	}
+
+	private int count(String sql, Object... args) {
+		return jdbcTemplate.queryForObject(sql, Integer.class, args);
+	}
+
+	private void endYesterday(Coupon coupon) {
+		LocalDate yesterday = LocalDate.now().minusDays(1);
+		jdbcTemplate.update("update coupon set start_date = ?, end_date = ? where id = ?", yesterday, yesterday,
+				coupon.getId());
+	}
+
+}
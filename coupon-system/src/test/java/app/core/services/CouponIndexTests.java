@@ -0,0 +1,155 @@
+package app.core.services;
+
+import static app.core.TestFixtures.ids;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import app.core.TestFixtures;
+import app.core.beans.CouponIndex;
+import app.core.dto.CouponCriteria;
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.entities.Customer;
+import app.core.enums.Category;
+import app.core.enums.CouponSort;
+import app.core.exceptions.CouponSystemException;
+import app.core.repositories.CouponRepository;
+
+/**
+ * Checks that coupons of companies and customers found by the coupon index are
+ * the same coupons the query finds, as coupons are added, updated, purchased
+ * and deleted.
+ */
+@SpringBootTest
+class CouponIndexTests {
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CustomerService customerService;
+	@Autowired
+	private CouponIndex couponIndex;
+	@Autowired
+	private CouponRepository couponRepository;
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Test
+	void companyCouponsFollowChanges() throws Exception {
+		Company company = fixtures.addCompany();
+		Coupon sport = addCoupon(company, "sport", Category.SPORT, 10);
+		addCoupon(company, "vacation", Category.VACATION, 50);
+		assertCompanyCoupons(company);
+
+		Coupon cheap = addCoupon(company, "cheap", Category.SPORT, 1);
+		assertEquals(List.of(cheap.getId(), sport.getId()), ids(findCompanyCoupons(company, category(Category.SPORT))));
+		assertCompanyCoupons(company);
+
+		sport.setCategory(Category.VACATION);
+		sport.setPrice(100);
+		companyService.updateCoupon(company.getId(), sport);
+		assertEquals(List.of(cheap.getId()), ids(findCompanyCoupons(company, category(Category.SPORT))));
+		assertCompanyCoupons(company);
+
+		companyService.deleteCoupon(company.getId(), cheap.getId());
+		assertEquals(List.of(), ids(findCompanyCoupons(company, category(Category.SPORT))));
+		assertCompanyCoupons(company);
+	}
+
+	@Test
+	void customerCouponsFollowPurchasesAndChanges() throws Exception {
+		Company company = fixtures.addCompany();
+		Coupon first = addCoupon(company, "first", Category.RESTAURANT, 20);
+		Coupon second = addCoupon(company, "second", Category.RESTAURANT, 30);
+		Customer customer = fixtures.addCustomer();
+		assertCustomerCoupons(customer);
+
+		customerService.purchaseCoupon(customer.getId(), first.getId());
+		assertEquals(List.of(first.getId()), ids(findCustomerCoupons(customer, category(Category.RESTAURANT))));
+		customerService.purchaseCoupon(customer.getId(), second.getId());
+		assertCustomerCoupons(customer);
+
+		// purchased coupon is updated from a fresh copy (with current version)
+		second = companyService.getOneCoupon(second.getId());
+		second.setPrice(5);
+		companyService.updateCoupon(company.getId(), second);
+		CouponCriteria cheaperThan10 = new CouponCriteria();
+		cheaperThan10.setMaxPrice(10.0);
+		assertEquals(List.of(second.getId()), ids(findCustomerCoupons(customer, cheaperThan10)));
+		assertCustomerCoupons(customer);
+
+		companyService.deleteCoupon(company.getId(), first.getId());
+		assertEquals(List.of(second.getId()), ids(findCustomerCoupons(customer, category(Category.RESTAURANT))));
+		assertCustomerCoupons(customer);
+	}
+
+	private List<Coupon> findCompanyCoupons(Company company, CouponCriteria criteria) {
+		criteria.setCompanyId(company.getId());
+		List<Coupon> coupons = transactionTemplate.execute(status -> couponIndex
+				.findCompanyCoupons(company.getId(), criteria, CouponSort.PRICE, null, Integer.MAX_VALUE));
+		assertNotNull(coupons, "not answered by the index: " + criteria);
+		return coupons;
+	}
+
+	private List<Coupon> findCustomerCoupons(Customer customer, CouponCriteria criteria) {
+		List<Coupon> coupons = transactionTemplate.execute(status -> couponIndex
+				.findCustomerCoupons(customer.getId(), criteria, CouponSort.PRICE, null, Integer.MAX_VALUE));
+		assertNotNull(coupons, "not answered by the index: " + criteria);
+		return coupons;
+	}
+
+	private void assertCompanyCoupons(Company company) throws CouponSystemException {
+		for (CouponCriteria criteria : criteria()) {
+			criteria.setCompanyId(company.getId());
+			assertEquals(ids(couponRepository.findByCriteria(criteria, null, CouponSort.PRICE, null, 1000)),
+					ids(findCompanyCoupons(company, criteria)), criteria.toString());
+		}
+	}
+
+	private void assertCustomerCoupons(Customer customer) throws CouponSystemException {
+		for (CouponCriteria criteria : criteria())
+			assertEquals(ids(couponRepository.findByCriteria(criteria, customer.getId(), CouponSort.PRICE, null, 1000)),
+					ids(findCustomerCoupons(customer, criteria)), criteria.toString());
+	}
+
+	private static List<CouponCriteria> criteria() {
+		List<CouponCriteria> criteria = new ArrayList<>();
+		for (Category category : Category.values())
+			criteria.add(category(category));
+		for (double maxPrice : new double[] { 0, 1, 5, 10, 10.5, 20, 30, 50, 101 }) {
+			CouponCriteria cheaper = new CouponCriteria();
+			cheaper.setMaxPrice(maxPrice);
+			criteria.add(cheaper);
+			CouponCriteria range = new CouponCriteria();
+			range.setCategories(EnumSet.of(Category.SPORT, Category.VACATION, Category.RESTAURANT));
+			range.setMinPrice(maxPrice / 2);
+			range.setMaxPrice(maxPrice);
+			criteria.add(range);
+		}
+		return criteria;
+	}
+
+	private static CouponCriteria category(Category category) {
+		CouponCriteria criteria = new CouponCriteria();
+		criteria.setCategories(Set.of(category));
+		return criteria;
+	}
+
+	private Coupon addCoupon(Company company, String title, Category category, double price)
+			throws CouponSystemException {
+		return fixtures.addCoupon(company, TestFixtures.coupon(category, title, 10, 100, price));
+	}
+
+}
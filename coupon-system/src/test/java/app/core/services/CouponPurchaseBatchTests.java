@@ -0,0 +1,65 @@
+package app.core.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import app.core.TestFixtures;
+import app.core.entities.Coupon;
+import app.core.entities.Customer;
+import app.core.enums.RejectionReason;
+import app.core.services.CouponPurchaseService.BatchResult;
+
+/**
+ * Checks that each purchase of the batch gets its own outcome, even if the same
+ * customer purchases the coupon more than once in the batch.
+ */
+@SpringBootTest
+class CouponPurchaseBatchTests {
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private CustomerService customerService;
+	@Autowired
+	private CouponPurchaseService purchaseService;
+
+	@Test
+	void eachPurchaseOfBatchGetsItsOwnOutcome() throws Exception {
+		Coupon coupon = fixtures.addCoupon(fixtures.addCompany(), 2);
+		Customer first = fixtures.addCustomer();
+		Customer second = fixtures.addCustomer();
+		Customer late = fixtures.addCustomer();
+
+		BatchResult result = purchaseService.purchaseCoupons(coupon.getId(),
+				List.of(first.getId(), first.getId(), second.getId(), -1, late.getId()));
+		assertNull(result.getRejection(0));
+		assertEquals(RejectionReason.ALREADY_PURCHASED, result.getRejection(1).getReason());
+		assertNull(result.getRejection(2));
+		assertEquals(RejectionReason.NOT_FOUND, result.getRejection(3).getReason());
+		assertEquals(RejectionReason.OUT_OF_STOCK, result.getRejection(4).getReason());
+		assertEquals(0, result.getCoupon().getAmount());
+		assertEquals(List.of(coupon.getId()), customerService.getAllCustomerCoupons(first.getId()).stream()
+				.map(Coupon::getId).collect(Collectors.toList()));
+	}
+
+	@Test
+	void previousPurchaserIsRejectedByEachPurchase() throws Exception {
+		Coupon coupon = fixtures.addCoupon(fixtures.addCompany(), 10);
+		Customer customer = fixtures.addCustomer();
+		customerService.purchaseCoupon(customer.getId(), coupon.getId());
+
+		BatchResult result = purchaseService.purchaseCoupons(coupon.getId(),
+				List.of(customer.getId(), customer.getId()));
+		assertEquals(RejectionReason.ALREADY_PURCHASED, result.getRejection(0).getReason());
+		assertEquals(RejectionReason.ALREADY_PURCHASED, result.getRejection(1).getReason());
+		assertEquals(9, result.getCoupon().getAmount());
+	}
+
+}
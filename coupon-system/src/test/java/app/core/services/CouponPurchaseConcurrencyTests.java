@@ -0,0 +1,76 @@
+package app.core.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import app.core.TestFixtures;
+import app.core.entities.Coupon;
+import app.core.enums.RejectionReason;
+import app.core.exceptions.PurchaseRejectedException;
+
+/**
+ * Checks that parallel purchases of the last coupon in stock give exactly one
+ * success (stock is taken by conditional decrement, never below zero).
+ */
+@SpringBootTest
+class CouponPurchaseConcurrencyTests {
+
+	private static final int PURCHASERS = 16;
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CouponPurchaseService purchaseService;
+
+	@Test
+	void lastCouponIsPurchasedOnce() throws Exception {
+		Coupon coupon = fixtures.addCoupon(fixtures.addCompany(), 1);
+		List<Integer> customerIds = new ArrayList<>();
+		for (int i = 0; i < PURCHASERS; i++)
+			customerIds.add(fixtures.addCustomer().getId());
+
+		ExecutorService executor = Executors.newFixedThreadPool(PURCHASERS);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Coupon>> purchases = new ArrayList<>();
+			for (int customerId : customerIds) {
+				Callable<Coupon> purchase = () -> {
+					start.await();
+					return purchaseService.purchaseCoupon(customerId, coupon.getId());
+				};
+				purchases.add(executor.submit(purchase));
+			}
+			start.countDown();
+
+			int purchased = 0;
+			for (Future<Coupon> purchase : purchases) {
+				try {
+					purchase.get(30, TimeUnit.SECONDS);
+					purchased++;
+				} catch (ExecutionException e) {
+					assertEquals(RejectionReason.OUT_OF_STOCK, ((PurchaseRejectedException) e.getCause()).getReason());
+				}
+			}
+			assertEquals(1, purchased);
+			assertEquals(0, companyService.getOneCoupon(coupon.getId()).getAmount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package app.core.services;
+
+import static app.core.TestFixtures.ids;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import app.core.TestFixtures;
+import app.core.dto.CouponCriteria;
+import app.core.dto.CouponPage;
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.entities.Customer;
+import app.core.enums.Category;
+import app.core.enums.CouponSort;
+import app.core.exceptions.CouponSystemException;
+
+/**
+ * Checks that coupons of companies and customers queried by combined criteria,
+ * page by page, are exactly the matching coupons in order, whether answered by
+ * the coupon index or by the query.
+ */
+@SpringBootTest
+class CouponQueryTests {
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CustomerService customerService;
+
+	@Test
+	void pagesOfCompanyCouponsMatchCriteria() throws Exception {
+		Company company = fixtures.addCompany();
+		List<Coupon> coupons = addCoupons(company, 40);
+
+		for (CouponCriteria criteria : criteria())
+			for (CouponSort sort : CouponSort.values())
+				assertEquals(expected(coupons, criteria, sort), ids(companyPages(company, criteria, sort, 7)),
+						sort + " " + criteria);
+	}
+
+	@Test
+	void pagesOfCustomerCouponsMatchCriteria() throws Exception {
+		Company company = fixtures.addCompany();
+		List<Coupon> coupons = addCoupons(company, 30);
+		Customer customer = fixtures.addCustomer();
+		List<Coupon> purchased = new ArrayList<>();
+		for (int i = 0; i < coupons.size(); i += 2)
+			if (coupons.get(i).getAmount() > 0) {
+				customerService.purchaseCoupon(customer.getId(), coupons.get(i).getId());
+				purchased.add(companyService.getOneCoupon(coupons.get(i).getId()));
+			}
+
+		for (CouponCriteria criteria : criteria())
+			for (CouponSort sort : CouponSort.values())
+				assertEquals(expected(purchased, criteria, sort), ids(customerPages(customer, criteria, sort, 4)),
+						sort + " " + criteria);
+	}
+
+	@Test
+	void invalidCursorIsRejected() throws Exception {
+		Company company = fixtures.addCompany();
+		assertThrows(IllegalArgumentException.class,
+				() -> companyService.getCompanyCoupons(company.getId(), null, CouponSort.PRICE, 5, "invalid"));
+		CouponPage<Coupon> page = companyService.getCompanyCoupons(company.getId(), null, CouponSort.PRICE, 5, null);
+		assertEquals(List.of(), page.getCoupons());
+		assertNull(page.getNextCursor());
+	}
+
+	private List<Coupon> companyPages(Company company, CouponCriteria criteria, CouponSort sort, int size)
+			throws CouponSystemException {
+		List<Coupon> coupons = new ArrayList<>();
+		String cursor = null;
+		do {
+			CouponPage<Coupon> page = companyService.getCompanyCoupons(company.getId(), criteria, sort, size, cursor);
+			coupons.addAll(page.getCoupons());
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		return coupons;
+	}
+
+	private List<Coupon> customerPages(Customer customer, CouponCriteria criteria, CouponSort sort, int size)
+			throws CouponSystemException {
+		List<Coupon> coupons = new ArrayList<>();
+		String cursor = null;
+		do {
+			CouponPage<Coupon> page = customerService.getCustomerCoupons(customer.getId(), criteria, sort, size,
+					cursor);
+			coupons.addAll(page.getCoupons());
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		return coupons;
+	}
+
+	private static List<Integer> expected(List<Coupon> coupons, CouponCriteria criteria, CouponSort sort) {
+		Comparator<Coupon> order = sort == CouponSort.PRICE ? Comparator.comparingDouble(Coupon::getPrice)
+				: Comparator.comparing(Coupon::getEndDate);
+		return coupons.stream().filter(criteria::matches).sorted(order.thenComparingInt(Coupon::getId))
+				.map(Coupon::getId).collect(Collectors.toList());
+	}
+
+	private static List<CouponCriteria> criteria() {
+		List<CouponCriteria> criteria = new ArrayList<>();
+		criteria.add(new CouponCriteria());
+
+		CouponCriteria categories = new CouponCriteria();
+		categories.setCategories(EnumSet.of(Category.SPORT, Category.HEALTHY));
+		criteria.add(categories);
+
+		CouponCriteria priceRange = new CouponCriteria();
+		priceRange.setCategories(EnumSet.of(Category.VACATION));
+		priceRange.setMinPrice(5.0);
+		priceRange.setMaxPrice(15.0);
+		criteria.add(priceRange);
+
+		CouponCriteria validity = new CouponCriteria();
+		validity.setMaxPrice(12.0);
+		validity.setValidFrom(LocalDate.now().plusDays(5));
+		validity.setValidTo(LocalDate.now().plusDays(20));
+		criteria.add(validity);
+
+		CouponCriteria outOfStock = new CouponCriteria();
+		outOfStock.setInStock(false);
+		criteria.add(outOfStock);
+
+		CouponCriteria inStock = new CouponCriteria();
+		inStock.setCategories(EnumSet.of(Category.RESTAURANT, Category.SPORT, Category.VACATION));
+		inStock.setInStock(true);
+		inStock.setMinPrice(3.0);
+		criteria.add(inStock);
+		return criteria;
+	}
+
+	private List<Coupon> addCoupons(Company company, int count) throws CouponSystemException {
+		Random random = new Random(count);
+		Category[] categories = Category.values();
+		List<Coupon> coupons = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			// few distinct prices and end dates, so pages break between equal sort keys
+			coupons.add(fixtures.addCoupon(company,
+					TestFixtures.coupon(categories[random.nextInt(categories.length)], "query" + i,
+							1 + random.nextInt(4) * 10, random.nextInt(4) == 0 ? 0 : 100, random.nextInt(5) * 5)));
+		return coupons;
+	}
+
+}
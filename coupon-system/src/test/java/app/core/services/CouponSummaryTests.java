@@ -0,0 +1,165 @@
+package app.core.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import app.core.TestFixtures;
+import app.core.dto.CompanySummary;
+import app.core.dto.CouponCriteria;
+import app.core.dto.CouponPage;
+import app.core.dto.CouponSummary;
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.entities.Customer;
+import app.core.enums.Category;
+import app.core.enums.CouponSort;
+import app.core.exceptions.CouponSystemException;
+
+/**
+ * Checks that summary view of every list returns summaries of the same coupons,
+ * companies and customers, in the same pages, as full view does, without
+ * loading entities when summaries are selected by the query.
+ */
+@SpringBootTest
+class CouponSummaryTests {
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private AdminService adminService;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CustomerService customerService;
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Test
+	void summariesOfCompanyAndCustomerCoupons() throws Exception {
+		Company company = fixtures.addCompany();
+		List<Coupon> coupons = addCoupons(company, 12);
+		Customer customer = fixtures.addCustomer();
+		for (int i = 0; i < coupons.size(); i += 3)
+			customerService.purchaseCoupon(customer.getId(), coupons.get(i).getId());
+
+		assertEquals(summaries(companyService.getAllCompanyCoupons(company.getId())),
+				strings(loadsNoEntities(() -> companyService.getAllCompanyCouponSummaries(company.getId()))));
+		assertEquals(summaries(customerService.getAllCustomerCoupons(customer.getId())),
+				strings(loadsNoEntities(() -> customerService.getAllCustomerCouponSummaries(customer.getId()))));
+
+		CouponCriteria category = new CouponCriteria();
+		category.setCategories(EnumSet.of(Category.SPORT, Category.VACATION));
+		CouponCriteria validity = new CouponCriteria();
+		validity.setValidFrom(LocalDate.now().plusDays(10));
+		for (CouponCriteria criteria : List.of(new CouponCriteria(), category, validity))
+			for (CouponSort sort : CouponSort.values()) {
+				assertEquals(pages(cursor -> companyService.getCompanyCoupons(company.getId(), criteria, sort, 5,
+						cursor)),
+						pages(cursor -> companyService.getCompanyCouponSummaries(company.getId(), criteria, sort, 5,
+								cursor)),
+						sort + " " + criteria);
+				assertEquals(pages(cursor -> customerService.getCustomerCoupons(customer.getId(), criteria, sort, 2,
+						cursor)),
+						pages(cursor -> customerService.getCustomerCouponSummaries(customer.getId(), criteria, sort, 2,
+								cursor)),
+						sort + " " + criteria);
+			}
+	}
+
+	@Test
+	void summariesOfAvailableCoupons() throws Exception {
+		addCoupons(fixtures.addCompany(), 10);
+
+		for (CouponSort sort : CouponSort.values())
+			assertEquals(pages(cursor -> customerService.getAvailableCoupons(sort, 7, cursor)), pages(
+					cursor -> loadsNoEntities(() -> customerService.getAvailableCouponSummaries(sort, 7, cursor))),
+					sort.name());
+	}
+
+	@Test
+	void summariesOfCompaniesAndCustomers() throws Exception {
+		Company company = fixtures.addCompany();
+		Customer customer = fixtures.addCustomer();
+
+		List<CompanySummary> companies = loadsNoEntities(adminService::getAllCompanySummaries);
+		assertEquals(adminService.getAllCompanies().size(), companies.size());
+		assertTrue(companies.stream().anyMatch(summary -> summary.getId() == company.getId()
+				&& summary.getName().equals(company.getName()) && summary.getEmail().equals(company.getEmail())));
+		assertEquals(adminService.getAllCustomers().size(), loadsNoEntities(adminService::getAllCustomerSummaries)
+				.stream().filter(summary -> summary.getEmail() != null).count());
+		assertTrue(adminService.getAllCustomerSummaries().stream()
+				.anyMatch(summary -> summary.getId() == customer.getId()
+						&& summary.getFirstName().equals(customer.getFirstName())));
+	}
+
+	// every page of coupons, as summaries, and the cursors of the pages
+	private static <T> List<String> pages(Page<T> page) throws CouponSystemException {
+		List<String> pages = new ArrayList<>();
+		String cursor = null;
+		do {
+			CouponPage<T> next = page.get(cursor);
+			for (T coupon : next.getCoupons())
+				pages.add(coupon instanceof Coupon ? CouponSummary.of((Coupon) coupon).toString() : coupon.toString());
+			cursor = next.getNextCursor();
+			pages.add("cursor " + cursor);
+		} while (cursor != null);
+		return pages;
+	}
+
+	private <T> T loadsNoEntities(Query<T> query) throws CouponSystemException {
+		long loads = statistics.getEntityLoadCount();
+		T result = query.get();
+		assertEquals(loads, statistics.getEntityLoadCount(), "entities loaded");
+		return result;
+	}
+
+	private static List<String> summaries(List<Coupon> coupons) {
+		return coupons.stream().map(coupon -> CouponSummary.of(coupon).toString()).collect(Collectors.toList());
+	}
+
+	private static List<String> strings(List<CouponSummary> summaries) {
+		return summaries.stream().map(CouponSummary::toString).collect(Collectors.toList());
+	}
+
+	private List<Coupon> addCoupons(Company company, int count) throws CouponSystemException {
+		Category[] categories = Category.values();
+		List<Coupon> coupons = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			coupons.add(fixtures.addCoupon(company, TestFixtures.coupon(categories[i % categories.length],
+					"summary" + i, 1 + i % 4 * 10, 100, i % 3 * 5)));
+		return coupons;
+	}
+
+	@FunctionalInterface
+	private interface Page<T> {
+		CouponPage<T> get(String cursor) throws CouponSystemException;
+	}
+
+	@FunctionalInterface
+	private interface Query<T> {
+		T get() throws CouponSystemException;
+	}
+
+}
@@ -0,0 +1,110 @@
+package app.core.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import app.core.TestFixtures;
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.exceptions.CouponSystemException;
+import app.core.repositories.CouponRepository;
+import app.core.repositories.JobCheckpointRepository;
+import app.core.repositories.JobLeaseRepository;
+
+/**
+ * Checks that the sweep of expired coupons marks exactly the range of ids it
+ * was given, that it continues from the saved range after it was stopped, and
+ * that a range with a stale fencing token is rejected without changes.
+ */
+@SpringBootTest
+class ExpirationSweepTests {
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private DailyJobService dailyJobService;
+	@Autowired
+	private CouponRepository couponRepository;
+	@Autowired
+	private JobCheckpointRepository checkpointRepository;
+	@Autowired
+	private JobLeaseRepository leaseRepository;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void rangesAreExpiredUpToTheirBoundsAndResumedFromCheckpoint() throws Exception {
+		List<Integer> ids = addExpiredCoupons(5);
+		LocalDate today = LocalDate.now();
+		long token = currentToken();
+
+		// lower bound is exclusive, upper bound inclusive
+		assertEquals(2, dailyJobService.expireCoupons(today, ids.get(0) - 1, ids.get(1), token).getCoupons());
+		assertTrue(couponRepository.findById(ids.get(1)).isEmpty());
+		assertTrue(couponRepository.findById(ids.get(2)).isPresent());
+		assertEquals(ids.get(1), checkpointRepository.findById(DailyJobService.EXPIRATION_JOB).get().getLastId());
+
+		// run stopped here: the next run of the same day starts after the saved range
+		int fromId = dailyJobService.getExpirationStart(today);
+		assertEquals(ids.get(1), fromId);
+		assertEquals(3, dailyJobService.expireCoupons(today, fromId, ids.get(4), token).getCoupons());
+		for (Integer id : ids)
+			assertTrue(couponRepository.findById(id).isEmpty());
+
+		// expired range is not counted again
+		assertEquals(0, dailyJobService.expireCoupons(today, ids.get(0) - 1, ids.get(4), token).getCoupons());
+	}
+
+	@Test
+	void staleTokenIsRejected() throws Exception {
+		List<Integer> ids = addExpiredCoupons(2);
+		LocalDate today = LocalDate.now();
+		long token = currentToken();
+		dailyJobService.expireCoupons(today, ids.get(0) - 1, ids.get(0), token);
+
+		// other node takes the lease over while the job still runs with its token
+		jdbcTemplate.update("update job_lease set owner = 'other', token = token + 1 where name = ?",
+				DailyJobService.EXPIRATION_JOB);
+		assertThrows(CouponSystemException.class,
+				() -> dailyJobService.expireCoupons(today, ids.get(0), ids.get(1), token));
+		assertThrows(CouponSystemException.class,
+				() -> dailyJobService.expireCoupons(today, List.of(ids.get(1)), token));
+		// nothing expired and the range is not saved
+		assertTrue(couponRepository.findById(ids.get(1)).isPresent());
+		assertEquals(ids.get(0), dailyJobService.getExpirationStart(today));
+
+		assertEquals(1, dailyJobService.expireCoupons(today, ids.get(0), ids.get(1), token + 1).getCoupons());
+	}
+
+	private List<Integer> addExpiredCoupons(int count) throws CouponSystemException {
+		Company company = fixtures.addCompany();
+		LocalDate yesterday = LocalDate.now().minusDays(1);
+		List<Integer> ids = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Coupon coupon = fixtures.addCoupon(company, "expired" + i);
+			jdbcTemplate.update("update coupon set start_date = ?, end_date = ? where id = ?", yesterday, yesterday,
+					coupon.getId());
+			ids.add(coupon.getId());
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns token the lease is held with now (by the node of this or other
+	 * context that shares the database).
+	 */
+	private long currentToken() {
+		return leaseRepository.findById(DailyJobService.EXPIRATION_JOB).get().getToken();
+	}
+
+}
@@ -0,0 +1,98 @@
+package app.core.services;
+
+import static app.core.TestFixtures.countStatements;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import app.core.TestFixtures;
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.entities.Customer;
+import app.core.repositories.CompanyRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Checks that coupons, companies, customers and coupon finders are read from
+ * second level cache, and that updates and purchases are never hidden by it.
+ */
+@SpringBootTest
+class SecondLevelCacheTests {
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private AdminService adminService;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CustomerService customerService;
+	@Autowired
+	private CompanyRepository companyRepository;
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	void getOneIsReadFromCache() throws Exception {
+		Company company = fixtures.addCompany();
+		Coupon coupon = fixtures.addCoupon(company, "coupon");
+		Customer customer = fixtures.addCustomer();
+
+		companyService.getOneCoupon(coupon.getId());
+		adminService.getOneCompany(company.getId());
+		adminService.getOneCustomer(customer.getId());
+		assertEquals(0, countStatements(() -> {
+			companyService.getOneCoupon(coupon.getId());
+			customerService.getOneCoupon(coupon.getId());
+			adminService.getOneCompany(company.getId());
+			companyService.getCompanyDetails(company.getId());
+			adminService.getOneCustomer(customer.getId());
+		}));
+		assertTrue(meterRegistry.get("hibernate.cache.hit.ratio").tag("region", "coupon").gauge().value() > 0);
+	}
+
+	@Test
+	void updateAndPurchaseAreVisible() throws Exception {
+		Company company = fixtures.addCompany();
+		Coupon coupon = fixtures.addCoupon(company, "coupon");
+		Customer customer = fixtures.addCustomer();
+		companyService.getOneCoupon(coupon.getId());
+		assertEquals(List.of(), customerService.getAllCustomerCoupons(customer.getId()));
+		assertEquals(0, countStatements(() -> customerService.getAllCustomerCoupons(customer.getId())));
+
+		coupon.setTitle("updated");
+		companyService.updateCoupon(company.getId(), coupon);
+		assertEquals("updated", customerService.getOneCoupon(coupon.getId()).getTitle());
+
+		customerService.purchaseCoupon(customer.getId(), coupon.getId());
+		assertEquals(99, companyService.getOneCoupon(coupon.getId()).getAmount());
+		assertEquals(List.of(coupon), customerService.getAllCustomerCoupons(customer.getId()));
+	}
+
+	@Test
+	void addedCouponIsInCompanyCoupons() throws Exception {
+		Company company = fixtures.addCompany();
+		fixtures.addCoupon(company, "first");
+		assertEquals(1, countCompanyCoupons(company));
+		assertEquals(1, companyService.getAllCompanyCoupons(company.getId()).size());
+
+		fixtures.addCoupon(company, "second");
+		assertEquals(2, countCompanyCoupons(company));
+		assertEquals(2, companyService.getAllCompanyCoupons(company.getId()).size());
+	}
+
+	private int countCompanyCoupons(Company company) {
+		// lazy collection, initialized from the cache if held there
+		return transactionTemplate
+				.execute(status -> companyRepository.findById(company.getId()).orElseThrow().getCoupons().size());
+	}
+
+}
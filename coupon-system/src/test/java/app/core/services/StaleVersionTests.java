@@ -0,0 +1,64 @@
+package app.core.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import app.core.TestFixtures;
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.entities.Customer;
+import app.core.exceptions.StaleVersionException;
+
+/**
+ * Checks that update of stale copy of coupon, company or customer is rejected
+ * instead of overwriting changes made since the copy was read.
+ */
+@SpringBootTest
+class StaleVersionTests {
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private AdminService adminService;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CustomerService customerService;
+
+	@Test
+	void staleCouponDoesNotOverwriteStock() throws Exception {
+		Company company = fixtures.addCompany();
+		Coupon coupon = fixtures.addCoupon(company);
+		Coupon stale = companyService.getOneCoupon(coupon.getId());
+
+		// stock changed since the copy was read
+		customerService.purchaseCoupon(fixtures.addCustomer().getId(), coupon.getId());
+		stale.setDescription("other");
+		assertThrows(StaleVersionException.class, () -> companyService.updateCoupon(company.getId(), stale));
+		assertEquals(99, companyService.getOneCoupon(coupon.getId()).getAmount());
+
+		Coupon fresh = companyService.getOneCoupon(coupon.getId());
+		fresh.setDescription("other");
+		Coupon updated = companyService.updateCoupon(company.getId(), fresh);
+		assertEquals(99, updated.getAmount());
+		assertEquals(fresh.getVersion() + 1, companyService.getOneCoupon(coupon.getId()).getVersion());
+	}
+
+	@Test
+	void staleCompanyAndCustomerAreRejected() throws Exception {
+		Company company = fixtures.addCompany();
+		company.setEmail(TestFixtures.email());
+		adminService.updateComapany(company);
+		assertThrows(StaleVersionException.class, () -> adminService.updateComapany(company));
+
+		Customer customer = fixtures.addCustomer();
+		customer.setPassword("changed");
+		adminService.updateCustomer(customer);
+		assertThrows(StaleVersionException.class, () -> adminService.updateCustomer(customer));
+	}
+
+}
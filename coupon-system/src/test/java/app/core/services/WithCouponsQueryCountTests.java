@@ -0,0 +1,94 @@
+package app.core.services;
+
+import static app.core.TestFixtures.countStatements;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import app.core.TestFixtures;
+import app.core.entities.Company;
+import app.core.entities.Coupon;
+import app.core.entities.Customer;
+import app.core.exceptions.CouponSystemException;
+
+/**
+ * Checks that "with coupons" methods load entities together with their coupons
+ * by constant count of statements, regardless of count of entities.
+ */
+@SpringBootTest
+class WithCouponsQueryCountTests {
+
+	@Autowired
+	private TestFixtures fixtures;
+	@Autowired
+	private AdminService adminService;
+	@Autowired
+	private CompanyService companyService;
+	@Autowired
+	private CustomerService customerService;
+
+	@Test
+	void getAllCompaniesWithCouponsStatementsNotGrowWithCompanies() throws Exception {
+		addCompanies(2);
+		long few = countStatements(() -> adminService.getAllCompaniesWithCoupons());
+
+		addCompanies(10);
+		long many = countStatements(() -> adminService.getAllCompaniesWithCoupons());
+
+		assertEquals(few, many);
+		assertEquals(1, many);
+	}
+
+	@Test
+	void getAllCustomersWithCouponsStatementsNotGrowWithCustomers() throws Exception {
+		addCustomers(2);
+		long few = countStatements(() -> adminService.getAllCustomersWithCoupons());
+
+		addCustomers(10);
+		long many = countStatements(() -> adminService.getAllCustomersWithCoupons());
+
+		assertEquals(few, many);
+		assertEquals(1, many);
+	}
+
+	@Test
+	void getOneWithCouponsUsesSingleStatement() throws Exception {
+		Company company = addCompanies(1).get(0);
+		Customer customer = addCustomers(1).get(0);
+
+		assertEquals(1, countStatements(() -> adminService.getOneCompanyWithCoupons(company.getId())));
+		assertEquals(1, countStatements(() -> adminService.getOneCustomerWithCoupons(customer.getId())));
+		assertEquals(1, countStatements(() -> companyService.getCompanyDetailsWithCoupons(company.getId())));
+		assertEquals(1, countStatements(() -> customerService.getCustomerDetailsWithCoupons(customer.getId())));
+	}
+
+	private List<Company> addCompanies(int count) throws CouponSystemException {
+		List<Company> companies = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Company company = fixtures.addCompany();
+			for (int j = 0; j < 3; j++)
+				fixtures.addCoupon(company, "title" + j);
+			companies.add(company);
+		}
+		return companies;
+	}
+
+	private List<Customer> addCustomers(int count) throws CouponSystemException {
+		List<Coupon> coupons = companyService.getAllCompanyCoupons(addCompanies(1).get(0).getId());
+
+		List<Customer> customers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Customer customer = fixtures.addCustomer();
+			for (Coupon coupon : coupons)
+				customerService.purchaseCoupon(customer.getId(), coupon.getId());
+			customers.add(customer);
+		}
+		return customers;
+	}
+
+}
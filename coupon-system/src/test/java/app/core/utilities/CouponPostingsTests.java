@@ -0,0 +1,108 @@
+package app.core.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import app.core.dto.CouponKey;
+import app.core.enums.Category;
+
+/**
+ * Checks that postings answer categories, price range and cursor exactly as a
+ * scan of all coupons does, after any sequence of adds, replaces and removes.
+ */
+class CouponPostingsTests {
+
+	private static final Category[] CATEGORIES = Category.values();
+
+	@Test
+	void filtersMatchScanAfterChanges() {
+		Random random = new Random(11);
+		Map<Integer, CouponKey> coupons = new HashMap<>();
+		for (int id = 1; id <= 200; id++)
+			coupons.put(id, randomKey(random, id));
+		CouponPostings postings = CouponPostings.of(coupons.values());
+		assertMatches(coupons, postings, random);
+
+		for (int step = 0; step < 2000; step++) {
+			int id = 1 + random.nextInt(300);
+			if (random.nextInt(3) == 0) {
+				coupons.remove(id);
+				postings = postings.without(id);
+			} else {
+				CouponKey key = randomKey(random, id);
+				coupons.put(id, key);
+				postings = postings.with(id, key.getCategory(), key.getPrice());
+			}
+			if (step % 100 == 0)
+				assertMatches(coupons, postings, random);
+		}
+		assertMatches(coupons, postings, random);
+	}
+
+	@Test
+	void priceRangeAndCursor() {
+		CouponPostings postings = CouponPostings.empty().with(3, Category.SPORT, 10).with(1, Category.SPORT, 5)
+				.with(2, Category.VACATION, 10).with(4, Category.VACATION, 20);
+		double min = Double.NEGATIVE_INFINITY;
+		double max = Double.POSITIVE_INFINITY;
+
+		assertArrayEquals(new int[] {}, postings.find(null, min, 5, min, 0, 10));
+		assertArrayEquals(new int[] { 1 }, postings.find(null, min, 10, min, 0, 10));
+		assertArrayEquals(new int[] { 2, 3, 4 }, postings.find(null, 10, max, min, 0, 10));
+		assertArrayEquals(new int[] { 3, 4 }, postings.find(null, min, max, 10, 2, 10));
+		assertArrayEquals(new int[] { 1, 2 }, postings.find(Set.of(), min, max, min, 0, 2));
+		assertArrayEquals(new int[] { 2, 4 }, postings.find(EnumSet.of(Category.VACATION), min, max, min, 0, 10));
+		assertArrayEquals(new int[] { 4 }, postings.find(EnumSet.of(Category.VACATION), min, max, 10, 2, 10));
+
+		postings = postings.with(2, Category.SPORT, 1).without(4).without(4);
+		assertArrayEquals(new int[] { 2, 1, 3 }, postings.ids());
+		assertArrayEquals(new int[] {}, postings.find(EnumSet.of(Category.VACATION), min, max, min, 0, 10));
+		assertEquals(3, postings.size());
+	}
+
+	private static CouponKey randomKey(Random random, int id) {
+		// few distinct prices, so coupons with equal price are ordered by id
+		return new CouponKey(id, CATEGORIES[random.nextInt(CATEGORIES.length)], random.nextInt(50) / 2.0);
+	}
+
+	private static void assertMatches(Map<Integer, CouponKey> coupons, CouponPostings postings, Random random) {
+		List<CouponKey> sorted = new ArrayList<>(coupons.values());
+		sorted.sort(Comparator.comparingDouble(CouponKey::getPrice).thenComparingInt(CouponKey::getId));
+
+		assertEquals(coupons.size(), postings.size());
+		for (int i = 0; i < 50; i++) {
+			Set<Category> categories = EnumSet.noneOf(Category.class);
+			for (int n = random.nextInt(3); n > 0; n--)
+				categories.add(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+			double minPrice = random.nextInt(52) / 2.0 - 1;
+			double maxPrice = minPrice + random.nextInt(52) / 2.0;
+			CouponKey after = random.nextBoolean() || sorted.isEmpty() ? null
+					: sorted.get(random.nextInt(sorted.size()));
+			int limit = 1 + random.nextInt(20);
+
+			int[] expected = sorted.stream()
+					.filter(key -> categories.isEmpty() || categories.contains(key.getCategory()))
+					.filter(key -> key.getPrice() >= minPrice && key.getPrice() < maxPrice)
+					.filter(key -> after == null || key.getPrice() > after.getPrice()
+							|| key.getPrice() == after.getPrice() && key.getId() > after.getId())
+					.limit(limit).mapToInt(CouponKey::getId).toArray();
+			assertArrayEquals(expected,
+					postings.find(categories, minPrice, maxPrice,
+							after == null ? Double.NEGATIVE_INFINITY : after.getPrice(),
+							after == null ? Integer.MIN_VALUE : after.getId(), limit),
+					categories + " [" + minPrice + ", " + maxPrice + ") after " + after);
+		}
+	}
+
+}
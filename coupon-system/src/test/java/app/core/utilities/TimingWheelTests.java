@@ -0,0 +1,91 @@
+package app.core.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that keys leave the wheel exactly at the tick of their deadline,
+ * whatever level they were placed in.
+ */
+class TimingWheelTests {
+
+	private static final long TICK = 1000;
+
+	@Test
+	void keysAreDueAtTheirDeadlinesOnAllLevels() {
+		long start = 1_700_000_123_000L;
+		TimingWheel<Integer> wheel = new TimingWheel<>(TICK, start);
+		Random random = new Random(7);
+		Map<Integer, Long> deadlines = new HashMap<>();
+		for (int key = 0; key < 5000; key++) {
+			// from seconds to years ahead, so keys are cascaded from every level
+			long deadline = start + (long) Math.pow(10, 3 + random.nextDouble() * 8);
+			deadlines.put(key, deadline);
+			wheel.schedule(key, deadline);
+		}
+
+		Map<Integer, Long> dueAt = new HashMap<>();
+		long now = start;
+		long end = start + (long) Math.pow(10, 11) + TICK;
+		while (now < end && wheel.size() > 0) {
+			// advance by irregular steps, as a late scheduler does
+			now += TICK * (1 + random.nextInt(3000));
+			long at = now;
+			wheel.advance(now, key -> dueAt.put(key, at));
+		}
+
+		assertEquals(0, wheel.size());
+		assertEquals(deadlines.size(), dueAt.size());
+		for (Map.Entry<Integer, Long> entry : deadlines.entrySet()) {
+			long due = dueAt.get(entry.getKey());
+			assertTrue(due >= entry.getValue(), "due before deadline: " + entry.getKey());
+			assertTrue(due - entry.getValue() < TICK * 3001, "due late: " + entry.getKey());
+		}
+	}
+
+	@Test
+	void keysAreDueOnTheTickOfDeadline() {
+		long start = 0;
+		TimingWheel<Integer> wheel = new TimingWheel<>(TICK, start);
+		int[] offsets = { 1, 63, 64, 65, 4095, 4096, 4097, 262_144, 300_000 };
+		for (int i = 0; i < offsets.length; i++)
+			wheel.schedule(i, offsets[i] * TICK);
+
+		List<Integer> due = new ArrayList<>();
+		for (long tick = 1; tick <= 300_000; tick++) {
+			due.clear();
+			wheel.advance(tick * TICK, due::add);
+			for (int key : due)
+				assertEquals(offsets[key], tick, "key " + key);
+		}
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	void rescheduledAndCanceledKeysAreNotDueAtOldDeadline() {
+		TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+		wheel.schedule("moved", 10 * TICK);
+		wheel.schedule("canceled", 10 * TICK);
+		wheel.schedule("overdue", -5 * TICK);
+		wheel.schedule("moved", 100_000 * TICK);
+		assertTrue(wheel.cancel("canceled"));
+
+		List<String> due = new ArrayList<>();
+		wheel.advance(10 * TICK, due::add);
+		assertEquals(List.of("overdue"), due);
+		assertEquals(100_000 * TICK, wheel.deadlineOf("moved"));
+
+		due.clear();
+		wheel.advance(100_000 * TICK, due::add);
+		assertEquals(List.of("moved"), due);
+	}
+
+}